@@ -19,7 +19,6 @@ package org.apache.maven.dist.tools;
  * under the License.
  */
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileWriter;
@@ -30,10 +29,17 @@ import java.io.PrintWriter;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
@@ -76,6 +82,17 @@ public abstract class AbstractDistCheckMojo
     @Parameter( defaultValue = "${project.build.directory}/dist-tool" )
     protected File failuresDirectory;
 
+    /**
+     * Number of artifacts checked concurrently, for checks that support it.
+     */
+    @Parameter( property = "threads", defaultValue = "8" )
+    protected int threads;
+
+    /**
+     * Urls read during this run, shared by all the checks.
+     */
+    protected HttpDocumentCache documentCache;
+
     /**
      * list of artifacts repositories.
      */
@@ -98,6 +115,11 @@ public abstract class AbstractDistCheckMojo
      */
     protected Map<String, String> sites = new HashMap<String, String>();
 
+    /**
+     * Configuration lines to check in this run, in configuration order.
+     */
+    private final List<ConfigurationLineInfo> checkedLines = new ArrayList<>();
+
     /**
      * is it index page check mojo?
      * necessary to only check index page information for plugins marked with asterisk * in db,
@@ -108,6 +130,28 @@ public abstract class AbstractDistCheckMojo
     protected abstract void checkArtifact( ConfigurationLineInfo request, String repoBase )
         throws MojoExecutionException;
 
+    /**
+     * Prepares the check of an artifact, always from the mojo thread and in configuration order, before
+     * {@link #checkArtifact(ConfigurationLineInfo, String)} is called. This is where Maven components which are not
+     * thread safe, like the project builder, are used when the checks are concurrent.
+     */
+    protected void prepareArtifact( ConfigurationLineInfo request, String version )
+        throws MojoExecutionException
+    {
+        // nothing to prepare by default
+    }
+
+    /**
+     * can {@link #checkArtifact(ConfigurationLineInfo, String)} be called from multiple threads at once?
+     * Results are then collected in completion order, and should be sorted with {@link #getConfigurationOrder()}.
+     * Only the metadata reads and the checks run concurrently, {@link #prepareArtifact(ConfigurationLineInfo, String)}
+     * does not.
+     */
+    protected boolean isConcurrentCheck()
+    {
+        return false;
+    }
+
     protected abstract String getFailuresFilename();
 
     @Override
@@ -164,6 +208,8 @@ public abstract class AbstractDistCheckMojo
             failuresDirectory.mkdirs();
         }
 
+        checkedLines.clear();
+        List<String> lineTexts = new ArrayList<>();
         ConfigurationLineInfo currentGroup = null;
         for ( String line : configurationLines )
         {
@@ -177,12 +223,13 @@ public abstract class AbstractDistCheckMojo
                 continue;
             }
 
-            getLog().info( line );
-
+            String text = line;
             line = trim;
 
             if ( line.startsWith( ">" ) )
             {
+                getLog().info( text );
+
                 // parameter
                 int index = line.indexOf( '=' );
                 if ( index < 0 )
@@ -232,6 +279,7 @@ public abstract class AbstractDistCheckMojo
 
                 if ( currentGroup.getArtifactId() == null )
                 {
+                    getLog().info( text );
                     continue;
                 }
 
@@ -264,17 +312,139 @@ public abstract class AbstractDistCheckMojo
                 }
             }
 
-            checkArtifact( aLine, getVersion( aLine ) );
+            checkedLines.add( aLine );
+            lineTexts.add( text );
+        }
+
+        documentCache = new HttpDocumentCache( getLog() );
+        try
+        {
+            if ( isConcurrentCheck() && threads > 1 )
+            {
+                checkConcurrently( lineTexts );
+            }
+            else
+            {
+                for ( int i = 0; i < checkedLines.size(); i++ )
+                {
+                    ConfigurationLineInfo aLine = checkedLines.get( i );
+                    getLog().info( lineTexts.get( i ) );
+                    String version = getVersion( aLine );
+                    prepareArtifact( aLine, version );
+                    checkArtifact( aLine, version );
+                }
+            }
+        }
+        finally
+        {
+            documentCache.close();
+            getLog().info( documentCache.getStatistics() );
         }
 
         getLog().info( "" );
     }
 
+    private void checkConcurrently( List<String> lineTexts )
+        throws MojoExecutionException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( threads, checkedLines.size() + 1 ) );
+        try
+        {
+            List<Future<String>> versions = new ArrayList<>( checkedLines.size() );
+            for ( final ConfigurationLineInfo aLine : checkedLines )
+            {
+                versions.add( executor.submit( new Callable<String>()
+                {
+                    @Override
+                    public String call()
+                        throws MojoExecutionException
+                    {
+                        return getVersion( aLine );
+                    }
+                } ) );
+            }
+
+            // prepare in configuration order from this thread, and hand each check over to the pool
+            List<Future<Void>> futures = new ArrayList<>( checkedLines.size() );
+            for ( int i = 0; i < checkedLines.size(); i++ )
+            {
+                final ConfigurationLineInfo aLine = checkedLines.get( i );
+                final String version = get( versions.get( i ) );
+                getLog().info( lineTexts.get( i ) );
+                prepareArtifact( aLine, version );
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                        throws MojoExecutionException
+                    {
+                        checkArtifact( aLine, version );
+                        return null;
+                    }
+                } ) );
+            }
+
+            // wait in configuration order, to report the first failing line like a sequential run
+            for ( Future<Void> future : futures )
+            {
+                get( future );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "interrupted while checking artifacts", e );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> T get( Future<T> future )
+        throws MojoExecutionException, InterruptedException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof MojoExecutionException )
+            {
+                throw (MojoExecutionException) e.getCause();
+            }
+            throw new MojoExecutionException( e.getCause().getMessage(), e.getCause() );
+        }
+    }
+
+    /**
+     * @return a comparator sorting results in the order of their configuration lines
+     */
+    protected Comparator<AbstractCheckResult> getConfigurationOrder()
+    {
+        final Map<ConfigurationLineInfo, Integer> positions = new IdentityHashMap<>();
+        for ( int i = 0; i < checkedLines.size(); i++ )
+        {
+            positions.put( checkedLines.get( i ), i );
+        }
+        return new Comparator<AbstractCheckResult>()
+        {
+            @Override
+            public int compare( AbstractCheckResult r1, AbstractCheckResult r2 )
+            {
+                Integer p1 = positions.get( r1.getConfigurationLine() );
+                Integer p2 = positions.get( r2.getConfigurationLine() );
+                return p1.compareTo( p2 );
+            }
+        };
+    }
+
     private String getVersion( ConfigurationLineInfo aLine )
         throws MojoExecutionException
     {
         String metadataUrl = aLine.getMetadataFileURL( repoBaseUrl );
-        try ( InputStream input = new BufferedInputStream( new URL( metadataUrl ).openStream() ) )
+        try ( InputStream input = documentCache.openStream( metadataUrl ) )
         {
             MetadataXpp3Reader metadataReader = new MetadataXpp3Reader();
             Metadata metadata = metadataReader.read( input );
@@ -396,7 +566,8 @@ public abstract class AbstractDistCheckMojo
      * @param ignore
      * @param message 
      */
-    protected void addErrorLine( ConfigurationLineInfo cli, String version, List<String> ignore, String message ) 
+    protected synchronized void addErrorLine( ConfigurationLineInfo cli, String version, List<String> ignore,
+                                              String message )
     {
         if ( ( ignore != null )
             && ( ignore.contains( cli.getArtifactId() + ':' + version ) || ignore.contains( cli.getArtifactId() ) ) )
@@ -0,0 +1,426 @@
+package org.apache.maven.dist.tools;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.logging.Log;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+/**
+ * Reads urls for the length of one check run, sharing the responses between all the threads of the run.
+ * <ul>
+ * <li>responses are kept in a bounded LRU cache, and served from it while they are fresh; older ones are revalidated
+ * with a conditional GET, using the <code>ETag</code> and <code>Last-Modified</code> headers</li>
+ * <li>concurrent requests for the same url share one download</li>
+ * <li>failed downloads are retried with an exponential backoff: retries are scheduled, not slept, so no thread is
+ * held while waiting for the next try</li>
+ * <li>HTTP client errors (4xx) are not retried, and are reported as {@link HttpStatusException}</li>
+ * <li>closing the cache fails the reads still waiting for a download</li>
+ * </ul>
+ */
+public class HttpDocumentCache
+{
+    public static final int DEFAULT_MAX_ENTRIES = 512;
+
+    public static final long DEFAULT_FRESHNESS_MILLIS = 60 * 1000L;
+
+    public static final long DEFAULT_BACKOFF_MILLIS = 1000L;
+
+    public static final int DEFAULT_FETCH_THREADS = 8;
+
+    private static final int TIMEOUT_MILLIS = 30 * 1000;
+
+    private final Map<String, Entry> entries;
+
+    private final ConcurrentMap<String, Fetch> inFlight = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Log log;
+
+    private final long freshnessMillis;
+
+    private final long backoffMillis;
+
+    private final AtomicInteger hits = new AtomicInteger();
+
+    private final AtomicInteger coalesced = new AtomicInteger();
+
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    private final AtomicInteger retries = new AtomicInteger();
+
+    /**
+     * @param log where failed tries are reported
+     */
+    public HttpDocumentCache( Log log )
+    {
+        this( log, DEFAULT_MAX_ENTRIES, DEFAULT_FRESHNESS_MILLIS, DEFAULT_BACKOFF_MILLIS, DEFAULT_FETCH_THREADS );
+    }
+
+    /**
+     * @param log where failed tries are reported
+     * @param maxEntries maximum number of responses kept
+     * @param freshnessMillis how long a response is served without revalidation
+     * @param backoffMillis delay before the first retry, doubled on each following one
+     * @param fetchThreads number of threads running downloads
+     */
+    public HttpDocumentCache( Log log, final int maxEntries, long freshnessMillis, long backoffMillis,
+                              int fetchThreads )
+    {
+        this.log = log;
+        this.entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true )
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest )
+            {
+                return size() > maxEntries;
+            }
+        };
+        this.freshnessMillis = freshnessMillis;
+        this.backoffMillis = backoffMillis;
+        this.scheduler = Executors.newScheduledThreadPool( fetchThreads, new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r )
+            {
+                Thread t = new Thread( r, "dist-tool-http-" + count.incrementAndGet() );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+    }
+
+    /**
+     * Reads an HTML page.
+     *
+     * @param url the page url
+     * @return the parsed page
+     * @throws IOException if the page cannot be read after all retries
+     */
+    public Document getDocument( String url )
+        throws IOException
+    {
+        Entry entry = get( url );
+        return Jsoup.parse( new ByteArrayInputStream( entry.body ), entry.charset, entry.url );
+    }
+
+    /**
+     * Reads the raw content of a url.
+     *
+     * @param url the url
+     * @return a stream on the content, which needs no closing
+     * @throws IOException if the content cannot be read after all retries
+     */
+    public InputStream openStream( String url )
+        throws IOException
+    {
+        return new ByteArrayInputStream( get( url ).body );
+    }
+
+    /**
+     * Stops the download threads. Pending reads fail, including the ones waiting for a retry.
+     */
+    public void close()
+    {
+        // a fetch leaves inFlight when it completes: once the scheduler is down, the remaining ones never will
+        scheduler.shutdownNow();
+        for ( Fetch fetch : inFlight.values() )
+        {
+            fetch.complete( null, new IOException( "Cache closed while reading " + fetch.url ) );
+        }
+    }
+
+    /**
+     * @return a summary of the cache usage, for logging
+     */
+    public String getStatistics()
+    {
+        return "http cache: " + hits + " hits, " + coalesced + " coalesced, " + notModified + " revalidated, "
+            + downloads + " downloads, " + retries + " retries";
+    }
+
+    private Entry get( String url )
+        throws IOException
+    {
+        Entry cached;
+        synchronized ( entries )
+        {
+            cached = entries.get( url );
+        }
+        if ( cached != null && System.currentTimeMillis() - cached.validated < freshnessMillis )
+        {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        Fetch fetch = new Fetch( url, cached );
+        Fetch running = inFlight.putIfAbsent( url, fetch );
+        if ( running == null )
+        {
+            try
+            {
+                scheduler.execute( fetch );
+            }
+            catch ( RejectedExecutionException ree )
+            {
+                inFlight.remove( url, fetch );
+                throw new IOException( "Cache closed, cannot read " + url, ree );
+            }
+            running = fetch;
+        }
+        else
+        {
+            // waits for a request already on the wire, which may still fail or download
+            coalesced.incrementAndGet();
+        }
+        return running.await();
+    }
+
+    private Entry download( String url, Entry previous )
+        throws IOException
+    {
+        Connection connection = Jsoup.connect( url ).timeout( TIMEOUT_MILLIS );
+        connection.ignoreHttpErrors( true ).ignoreContentType( true );
+        if ( previous != null )
+        {
+            if ( previous.etag != null )
+            {
+                connection.header( "If-None-Match", previous.etag );
+            }
+            if ( previous.lastModified != null )
+            {
+                connection.header( "If-Modified-Since", previous.lastModified );
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        Connection.Response response;
+        try
+        {
+            response = connection.execute();
+        }
+        catch ( FileNotFoundException fnfe )
+        {
+            // HttpURLConnection reports a 404 or 410 without a body this way, even when HTTP errors are ignored
+            HttpStatusException hse = new HttpStatusException( "HTTP error fetching URL", 404, url );
+            hse.initCause( fnfe );
+            throw hse;
+        }
+        int status = response.statusCode();
+        if ( status == 304 && previous != null )
+        {
+            notModified.incrementAndGet();
+            return new Entry( previous, now );
+        }
+        if ( status < 200 || status >= 300 )
+        {
+            throw new HttpStatusException( "HTTP error fetching URL", status, url );
+        }
+        downloads.incrementAndGet();
+        return new Entry( response.url().toExternalForm(), response.bodyAsBytes(), response.charset(),
+                          response.header( "ETag" ), response.header( "Last-Modified" ), now );
+    }
+
+    /**
+     * A cached response.
+     */
+    private static class Entry
+    {
+        private final String url;
+
+        private final byte[] body;
+
+        private final String charset;
+
+        private final String etag;
+
+        private final String lastModified;
+
+        private final long validated;
+
+        Entry( String url, byte[] body, String charset, String etag, String lastModified, long validated )
+        {
+            this.url = url;
+            this.body = body;
+            this.charset = charset;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.validated = validated;
+        }
+
+        Entry( Entry previous, long validated )
+        {
+            this( previous.url, previous.body, previous.charset, previous.etag, previous.lastModified, validated );
+        }
+    }
+
+    /**
+     * One download of a url, including its retries, awaited by every thread asking for the url meanwhile.
+     */
+    private class Fetch
+        implements Runnable
+    {
+        private final String url;
+
+        private final Entry previous;
+
+        private final CountDownLatch done = new CountDownLatch( 1 );
+
+        private int attempt = 1;
+
+        private Entry result;
+
+        private IOException failure;
+
+        Fetch( String url, Entry previous )
+        {
+            this.url = url;
+            this.previous = previous;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                Entry entry = download( url, previous );
+                synchronized ( entries )
+                {
+                    entries.put( url, entry );
+                }
+                complete( entry, null );
+            }
+            catch ( HttpStatusException hse )
+            {
+                if ( hse.getStatusCode() < 500 )
+                {
+                    complete( null, hse );
+                }
+                else
+                {
+                    retry( hse );
+                }
+            }
+            catch ( IOException ioe )
+            {
+                retry( ioe );
+            }
+            catch ( RuntimeException re )
+            {
+                complete( null, new IOException( "Unexpected error while reading " + url, re ) );
+            }
+        }
+
+        private void retry( IOException ioe )
+        {
+            log.warn( "IOException try " + attempt + " while reading " + url + ": " + ioe.getClass() + " "
+                + ioe.getMessage() );
+
+            if ( attempt < JsoupRetry.MAX_RETRY )
+            {
+                long delay = backoffMillis << ( attempt - 1 );
+                attempt++;
+                try
+                {
+                    scheduler.schedule( this, delay, TimeUnit.MILLISECONDS );
+                    retries.incrementAndGet();
+                    return;
+                }
+                catch ( RejectedExecutionException ree )
+                {
+                    // cache closed: fail now
+                }
+            }
+
+            if ( ioe instanceof HttpStatusException )
+            {
+                complete( null, ioe );
+            }
+            else
+            {
+                complete( null, new IOException( "IOException while reading " + url, ioe ) );
+            }
+        }
+
+        /**
+         * Sets the outcome of the fetch and releases its readers, unless it was already completed: by
+         * {@link HttpDocumentCache#close()}, or by the download once the cache was closed.
+         */
+        synchronized void complete( Entry entry, IOException ioe )
+        {
+            if ( done.getCount() == 0 )
+            {
+                return;
+            }
+            result = entry;
+            failure = ioe;
+            inFlight.remove( url, this );
+            done.countDown();
+        }
+
+        Entry await()
+            throws IOException
+        {
+            try
+            {
+                done.await();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Interrupted while reading " + url );
+            }
+            synchronized ( this )
+            {
+                if ( failure != null )
+                {
+                    throw failure;
+                }
+                return result;
+            }
+        }
+    }
+}
@@ -20,9 +20,12 @@ package org.apache.maven.dist.tools.site;
  */
 
 import java.io.File;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.artifact.Artifact;
@@ -30,7 +33,6 @@ import org.apache.maven.artifact.factory.ArtifactFactory;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.dist.tools.AbstractDistCheckMojo;
 import org.apache.maven.dist.tools.ConfigurationLineInfo;
-import org.apache.maven.dist.tools.JsoupRetry;
 import org.apache.maven.doxia.sink.Sink;
 import org.apache.maven.doxia.sink.SinkEventAttributeSet;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -39,6 +41,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectBuilder;
+import org.apache.maven.project.ProjectBuildingException;
 import org.apache.maven.reporting.MavenReportException;
 import org.jsoup.HttpStatusException;
 import org.jsoup.nodes.Document;
@@ -98,6 +101,12 @@ public class DistCheckSiteMojo
         return false;
     }
 
+    @Override
+    protected boolean isConcurrentCheck()
+    {
+        return true;
+    }
+
     protected String getFailuresFilename()
     {
         return FAILURES_FILENAME;
@@ -116,7 +125,12 @@ public class DistCheckSiteMojo
     }
 
     // keep result
-    private List<CheckSiteResult> results = new LinkedList<>();
+    private List<CheckSiteResult> results = Collections.synchronizedList( new LinkedList<CheckSiteResult>() );
+    // built by prepareArtifact, for checkSite
+    private final Map<ConfigurationLineInfo, MavenProject> projects =
+        Collections.synchronizedMap( new IdentityHashMap<ConfigurationLineInfo, MavenProject>() );
+    private final Map<ConfigurationLineInfo, ProjectBuildingException> projectFailures =
+        Collections.synchronizedMap( new IdentityHashMap<ConfigurationLineInfo, ProjectBuildingException>() );
     private final List<HTMLChecker> checker = HTMLCheckerFactory.getCheckers();
     private WebDriver driver;
 
@@ -136,6 +150,7 @@ public class DistCheckSiteMojo
         {
             throw new MavenReportException( ex.getMessage(), ex );
         }
+        Collections.sort( results, getConfigurationOrder() );
         Sink sink = getSink();
         sink.head();
         sink.title();
@@ -257,16 +272,38 @@ public class DistCheckSiteMojo
         return url.replace( "://maven.apache.org", "://m.a.o" );
     }
 
+    /**
+     * Builds the project of the artifact: the project builder is not thread safe, so this is done from the mojo
+     * thread, and only the site checks run concurrently.
+     */
+    @Override
+    protected void prepareArtifact( ConfigurationLineInfo cli, String version )
+    {
+        Artifact artifact = artifactFactory.createProjectArtifact( cli.getGroupId(), cli.getArtifactId(), version );
+        try
+        {
+            projects.put( cli,
+                          mavenProjectBuilder.buildFromRepository( artifact, artifactRepositories, localRepository,
+                                                                   false ) );
+        }
+        catch ( ProjectBuildingException e )
+        {
+            projectFailures.put( cli, e );
+        }
+    }
+
     private void checkSite( ConfigurationLineInfo cli, String version )
     {
         CheckSiteResult result = new CheckSiteResult( this, cli, version );
         results.add( result );
         try
         {
-            Artifact artifact =
-                artifactFactory.createProjectArtifact( cli.getGroupId(), cli.getArtifactId(), version );
-            MavenProject artifactProject =
-                mavenProjectBuilder.buildFromRepository( artifact, artifactRepositories, localRepository, false );
+            ProjectBuildingException projectFailure = projectFailures.remove( cli );
+            if ( projectFailure != null )
+            {
+                throw projectFailure;
+            }
+            MavenProject artifactProject = projects.remove( cli );
 
             String siteUrl = sites.get( cli.getArtifactId() );
             if ( siteUrl == null )
@@ -279,15 +316,19 @@ public class DistCheckSiteMojo
             }
 
             result.setUrl( siteUrl );
-            Document doc = JsoupRetry.get( siteUrl );
+            Document doc = documentCache.getDocument( siteUrl );
             if ( screenShot )
             {
-                driver.get( artifactProject.getUrl() );
-                File scrFile = ( ( TakesScreenshot ) driver ).getScreenshotAs( OutputType.FILE );
                 String fileName = "images" + File.separator
                         + cli.getGroupId() + "_" + cli.getArtifactId() + ".png";
+                // one browser for all the checks
+                synchronized ( driver )
+                {
+                    driver.get( artifactProject.getUrl() );
+                    File scrFile = ( ( TakesScreenshot ) driver ).getScreenshotAs( OutputType.FILE );
+                    FileUtils.copyFile( scrFile, new File( getReportOutputDirectory(), fileName ) );
+                }
                 result.setScreenShot( fileName );
-                FileUtils.copyFile( scrFile, new File( getReportOutputDirectory(), fileName ) );
             }
             for ( HTMLChecker c : checker )
             {
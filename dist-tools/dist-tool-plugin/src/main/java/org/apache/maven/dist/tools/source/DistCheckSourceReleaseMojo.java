@@ -21,6 +21,7 @@ package org.apache.maven.dist.tools.source;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -28,7 +29,6 @@ import java.util.Locale;
 
 import org.apache.maven.dist.tools.AbstractDistCheckMojo;
 import org.apache.maven.dist.tools.ConfigurationLineInfo;
-import org.apache.maven.dist.tools.JsoupRetry;
 import org.apache.maven.doxia.markup.HtmlMarkup;
 import org.apache.maven.doxia.sink.Sink;
 import org.apache.maven.doxia.sink.SinkEventAttributeSet;
@@ -59,6 +59,12 @@ public class DistCheckSourceReleaseMojo
         return false;
     }
 
+    @Override
+    protected boolean isConcurrentCheck()
+    {
+        return true;
+    }
+
     /**
      * Ignore dist failure for <code>artifactId</code> or <code>artifactId:version</code>
      */
@@ -82,7 +88,8 @@ public class DistCheckSourceReleaseMojo
         return "Verification of source release";
     }
 
-    private final List<CheckSourceReleaseResult> results = new LinkedList<>();
+    private final List<CheckSourceReleaseResult> results =
+        Collections.synchronizedList( new ArrayList<CheckSourceReleaseResult>() );
 
     private static class DirectoryStatistics
     {
@@ -258,6 +265,7 @@ public class DistCheckSourceReleaseMojo
         {
             throw new MavenReportException( ex.getMessage(), ex );
         }
+        Collections.sort( results, getConfigurationOrder() );
 
         DirectoryStatistics stats = new DirectoryStatistics( "", "org.apache.maven" ); // global stats
 
@@ -402,26 +410,11 @@ public class DistCheckSourceReleaseMojo
         return "^" + artifact + "-[0-9].*source-release.*$";
     }
 
-    private String cachedUrl;
-    private Document cachedDocument;
-
     private Document read( String url )
         throws IOException
     {
-        if ( url.startsWith( distributionAreaUrl ) )
-        {
-            // distribution area: cache content, since it is read multiple times
-            if ( !url.equals( cachedUrl ) )
-            {
-                cachedUrl = url;
-                cachedDocument = JsoupRetry.get( url );
-            }
-            return cachedDocument;
-        }
-        else
-        {
-            return JsoupRetry.get( url );
-        }
+        // distribution area directories are read once for every artifact they contain: the cache shares them
+        return documentCache.getDocument( url );
     }
 
     private Elements selectLinks( String repourl )
@@ -0,0 +1,327 @@
+package org.apache.maven.dist.tools;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.jsoup.HttpStatusException;
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Checks {@link HttpDocumentCache} against a local HTTP server.
+ */
+public class HttpDocumentCacheTest
+{
+    private static final String ETAG = "\"v1\"";
+
+    private static final String PAGE = "<html><body><a href=\"doxia-1.4-source-release.zip\">zip</a></body></html>";
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final AtomicInteger conditionalRequests = new AtomicInteger();
+
+    private final AtomicInteger failuresBeforeSuccess = new AtomicInteger();
+
+    private volatile CountDownLatch slowResponse = new CountDownLatch( 0 );
+
+    private HttpDocumentCache cache;
+
+    @Before
+    public void setUp()
+        throws IOException
+    {
+        server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+        server.setExecutor( Executors.newCachedThreadPool() );
+        server.createContext( "/", new HttpHandler()
+        {
+            @Override
+            public void handle( HttpExchange exchange )
+                throws IOException
+            {
+                requests.incrementAndGet();
+                try
+                {
+                    slowResponse.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+
+                String path = exchange.getRequestURI().getPath();
+                if ( path.startsWith( "/missing" ) )
+                {
+                    respond( exchange, 404, null );
+                }
+                else if ( path.startsWith( "/flaky" ) && failuresBeforeSuccess.getAndDecrement() > 0 )
+                {
+                    respond( exchange, 503, null );
+                }
+                else if ( ETAG.equals( exchange.getRequestHeaders().getFirst( "If-None-Match" ) ) )
+                {
+                    conditionalRequests.incrementAndGet();
+                    respond( exchange, 304, null );
+                }
+                else
+                {
+                    exchange.getResponseHeaders().add( "ETag", ETAG );
+                    respond( exchange, 200, PAGE );
+                }
+            }
+        } );
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown()
+    {
+        if ( cache != null )
+        {
+            cache.close();
+        }
+        server.stop( 0 );
+    }
+
+    private static void respond( HttpExchange exchange, int status, String body )
+        throws IOException
+    {
+        if ( body == null )
+        {
+            exchange.sendResponseHeaders( status, -1 );
+        }
+        else
+        {
+            byte[] bytes = body.getBytes( "UTF-8" );
+            exchange.getResponseHeaders().add( "Content-Type", "text/html; charset=UTF-8" );
+            exchange.sendResponseHeaders( status, bytes.length );
+            try ( OutputStream os = exchange.getResponseBody() )
+            {
+                os.write( bytes );
+            }
+        }
+        exchange.close();
+    }
+
+    @Test
+    public void testFreshDocumentIsReadOnce()
+        throws IOException
+    {
+        cache = new HttpDocumentCache( new SystemStreamLog(), 10, 60000L, 10L, 2 );
+
+        Document first = cache.getDocument( baseUrl + "/dist/" );
+        Document second = cache.getDocument( baseUrl + "/dist/" );
+
+        assertEquals( 1, requests.get() );
+        assertEquals( "doxia-1.4-source-release.zip", first.select( "a[href]" ).attr( "href" ) );
+        assertEquals( first.html(), second.html() );
+        assertTrue( cache.getStatistics(), cache.getStatistics().contains( " 1 hits, 0 coalesced," ) );
+    }
+
+    @Test
+    public void testStaleDocumentIsRevalidated()
+        throws IOException
+    {
+        cache = new HttpDocumentCache( new SystemStreamLog(), 10, 0L, 10L, 2 );
+
+        cache.getDocument( baseUrl + "/dist/" );
+        Document revalidated = cache.getDocument( baseUrl + "/dist/" );
+
+        assertEquals( 2, requests.get() );
+        assertEquals( 1, conditionalRequests.get() );
+        assertEquals( "doxia-1.4-source-release.zip", revalidated.select( "a[href]" ).attr( "href" ) );
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted()
+        throws IOException
+    {
+        cache = new HttpDocumentCache( new SystemStreamLog(), 1, 60000L, 10L, 2 );
+
+        cache.getDocument( baseUrl + "/a/" );
+        cache.getDocument( baseUrl + "/b/" );
+        cache.getDocument( baseUrl + "/a/" );
+
+        assertEquals( 3, requests.get() );
+    }
+
+    @Test
+    public void testServerErrorIsRetried()
+        throws IOException
+    {
+        cache = new HttpDocumentCache( new SystemStreamLog(), 10, 60000L, 10L, 2 );
+        failuresBeforeSuccess.set( JsoupRetry.MAX_RETRY - 1 );
+
+        Document doc = cache.getDocument( baseUrl + "/flaky/" );
+
+        assertEquals( JsoupRetry.MAX_RETRY, requests.get() );
+        assertEquals( "doxia-1.4-source-release.zip", doc.select( "a[href]" ).attr( "href" ) );
+    }
+
+    @Test
+    public void testClientErrorIsNotRetried()
+        throws IOException
+    {
+        cache = new HttpDocumentCache( new SystemStreamLog(), 10, 60000L, 10L, 2 );
+
+        try
+        {
+            cache.getDocument( baseUrl + "/missing/" );
+            fail( "404 expected" );
+        }
+        catch ( HttpStatusException hse )
+        {
+            assertEquals( 404, hse.getStatusCode() );
+        }
+        assertEquals( 1, requests.get() );
+    }
+
+    @Test
+    public void testCloseFailsPendingReads()
+        throws Exception
+    {
+        // a long backoff: the flaky read waits for its retry, the other one for a slow response
+        cache = new HttpDocumentCache( new SystemStreamLog(), 10, 60000L, 60000L, 2 );
+        failuresBeforeSuccess.set( JsoupRetry.MAX_RETRY );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            Future<Document> retrying = executor.submit( read( baseUrl + "/flaky/" ) );
+            while ( requests.get() < 1 )
+            {
+                Thread.sleep( 10 );
+            }
+            slowResponse = new CountDownLatch( 1 );
+            Future<Document> downloading = executor.submit( read( baseUrl + "/dist/" ) );
+            while ( requests.get() < 2 )
+            {
+                Thread.sleep( 10 );
+            }
+
+            cache.close();
+
+            assertClosed( retrying );
+            assertClosed( downloading );
+        }
+        finally
+        {
+            slowResponse.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private Callable<Document> read( final String url )
+    {
+        return new Callable<Document>()
+        {
+            @Override
+            public Document call()
+                throws IOException
+            {
+                return cache.getDocument( url );
+            }
+        };
+    }
+
+    private static void assertClosed( Future<Document> read )
+        throws Exception
+    {
+        try
+        {
+            read.get( 5, TimeUnit.SECONDS );
+            fail( "closing the cache should fail the read" );
+        }
+        catch ( ExecutionException e )
+        {
+            assertTrue( e.getCause().getMessage(), e.getCause().getMessage().startsWith( "Cache closed" ) );
+        }
+    }
+
+    @Test
+    public void testConcurrentReadsShareOneDownload()
+        throws Exception
+    {
+        cache = new HttpDocumentCache( new SystemStreamLog(), 10, 60000L, 10L, 4 );
+        slowResponse = new CountDownLatch( 1 );
+
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            List<Future<Document>> futures = new ArrayList<>();
+            for ( int i = 0; i < 8; i++ )
+            {
+                futures.add( executor.submit( new Callable<Document>()
+                {
+                    @Override
+                    public Document call()
+                        throws IOException
+                    {
+                        return cache.getDocument( baseUrl + "/dist/" );
+                    }
+                } ) );
+            }
+            // let the readers pile up on the first download before answering it
+            Thread.sleep( 200 );
+            slowResponse.countDown();
+
+            for ( Future<Document> future : futures )
+            {
+                assertEquals( "doxia-1.4-source-release.zip", future.get().select( "a[href]" ).attr( "href" ) );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertEquals( 1, requests.get() );
+        // the readers joined the download instead of finding a cached document
+        assertTrue( cache.getStatistics(), cache.getStatistics().contains( " 0 hits, 7 coalesced," ) );
+    }
+}
@@ -0,0 +1,188 @@
+package org.apache.maven.doxia.editor.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.doxia.sink.PipelineSink;
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.doxia.sink.SinkAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to send the events of a small document through a pipeline of 1, 2 or 4 sinks, with the reflective proxy of
+ * {@link PipelineSink#newInstance(List)} and with {@link FanOutSink}.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class FanOutSinkBenchmark
+{
+    /** Number of sections of the document */
+    private static final int SECTIONS = 100;
+
+    /** Number of sinks in the pipeline */
+    @Param( { "1", "2", "4" } )
+    public int stages;
+
+    private List counters;
+
+    private Sink proxy;
+
+    private Sink direct;
+
+    @Setup
+    public void createPipelines()
+    {
+        counters = new ArrayList();
+        for ( int i = 0; i < stages; i++ )
+        {
+            counters.add( new CountingSink() );
+        }
+
+        proxy = PipelineSink.newInstance( counters );
+        direct = new FanOutSink( counters );
+    }
+
+    @Benchmark
+    public int proxy()
+    {
+        return write( proxy );
+    }
+
+    @Benchmark
+    public int direct()
+    {
+        return write( direct );
+    }
+
+    private int write( Sink sink )
+    {
+        sink.head();
+        sink.title();
+        sink.text( "Benchmark" );
+        sink.title_();
+        sink.head_();
+
+        sink.body();
+        for ( int i = 0; i < SECTIONS; i++ )
+        {
+            sink.section1();
+            sink.sectionTitle1();
+            sink.text( "Section" );
+            sink.sectionTitle1_();
+            sink.paragraph();
+            sink.text( "Some " );
+            sink.bold();
+            sink.text( "bold" );
+            sink.bold_();
+            sink.text( " text with a " );
+            sink.link( "#anchor" );
+            sink.text( "link" );
+            sink.link_();
+            sink.text( "." );
+            sink.paragraph_();
+            sink.verbatim( true );
+            sink.text( "int i = 0;" );
+            sink.verbatim_();
+            sink.section1_();
+        }
+        sink.body_();
+        sink.flush();
+
+        return ( (CountingSink) counters.get( 0 ) ).events;
+    }
+
+    /**
+     * Counts the events it receives, so that the calls cannot be optimized away.
+     */
+    private static class CountingSink
+        extends SinkAdapter
+    {
+        int events;
+
+        public void head()
+        {
+            events++;
+        }
+
+        public void title()
+        {
+            events++;
+        }
+
+        public void body()
+        {
+            events++;
+        }
+
+        public void section1()
+        {
+            events++;
+        }
+
+        public void sectionTitle1()
+        {
+            events++;
+        }
+
+        public void paragraph()
+        {
+            events++;
+        }
+
+        public void bold()
+        {
+            events++;
+        }
+
+        public void link( String name )
+        {
+            events++;
+        }
+
+        public void verbatim( boolean boxed )
+        {
+            events++;
+        }
+
+        public void text( String text )
+        {
+            events += text.length();
+        }
+    }
+}
@@ -22,7 +22,7 @@ package org.apache.maven.doxia.editor.action;
 import org.apache.maven.doxia.Doxia;
 import org.apache.maven.doxia.editor.io.DebugSink;
 import org.apache.maven.doxia.editor.io.EditorSink;
-import org.apache.maven.doxia.sink.PipelineSink;
+import org.apache.maven.doxia.editor.io.FanOutSink;
 import org.apache.maven.doxia.editor.model.DoxiaDocument;
 
 import java.awt.event.ActionEvent;
@@ -52,7 +52,7 @@ public class OpenDocumentAction
         pipeline.add( DebugSink.newInstance() );
         pipeline.add( editorSink );
 
-        doxia.parse( new FileReader( "src/test/apt/test.apt" ), "apt", PipelineSink.newInstance( pipeline ) );
+        doxia.parse( new FileReader( "src/test/apt/test.apt" ), "apt", new FanOutSink( pipeline ) );
 
         DoxiaDocument document = editorSink.getDocument();
 
@@ -24,7 +24,6 @@ import org.apache.maven.doxia.editor.Application;
 import org.apache.maven.doxia.module.xdoc.XdocSink;
 import org.apache.maven.doxia.parser.ParseException;
 import org.apache.maven.doxia.parser.manager.ParserNotFoundException;
-import org.apache.maven.doxia.sink.PipelineSink;
 import org.codehaus.plexus.logging.AbstractLogEnabled;
 
 import javax.swing.text.Document;
@@ -63,7 +62,7 @@ public class DefaultDoxiaDocumentSerializer
 
         try
         {
-            doxia.parse( null, "doxia-document", PipelineSink.newInstance( list ) );
+            doxia.parse( null, "doxia-document", new FanOutSink( list ) );
         }
         finally
         {
@@ -0,0 +1,1046 @@
+package org.apache.maven.doxia.editor.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.doxia.logging.Log;
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.doxia.sink.SinkEventAttributes;
+
+import java.util.List;
+
+/**
+ * A sink which forwards every event to each sink of a pipeline in turn, calling the delegates directly rather than
+ * through a {@link java.lang.reflect.Proxy} as {@link PipelineSink#newInstance(List)} does.
+ * <p>
+ * It implements {@link Sink} itself rather than extending {@link org.apache.maven.doxia.sink.SinkAdapter}, so
+ * that an event added to the interface fails the build here instead of being silently dropped.
+ *
+ * @version $Id$
+ */
+public class FanOutSink
+    implements Sink
+{
+    private final Sink[] pipeline;
+
+    public FanOutSink( List pipeline )
+    {
+        this.pipeline = (Sink[]) pipeline.toArray( new Sink[pipeline.size()] );
+    }
+
+    // ----------------------------------------------------------------------
+    // Sink Implementation
+    // ----------------------------------------------------------------------
+
+    public void head()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].head();
+        }
+    }
+
+    public void head( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].head( attributes );
+        }
+    }
+
+    public void head_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].head_();
+        }
+    }
+
+    public void title()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].title();
+        }
+    }
+
+    public void title( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].title( attributes );
+        }
+    }
+
+    public void title_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].title_();
+        }
+    }
+
+    public void author()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].author();
+        }
+    }
+
+    public void author( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].author( attributes );
+        }
+    }
+
+    public void author_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].author_();
+        }
+    }
+
+    public void date()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].date();
+        }
+    }
+
+    public void date( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].date( attributes );
+        }
+    }
+
+    public void date_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].date_();
+        }
+    }
+
+    public void body()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].body();
+        }
+    }
+
+    public void body( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].body( attributes );
+        }
+    }
+
+    public void body_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].body_();
+        }
+    }
+
+    public void sectionTitle()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle();
+        }
+    }
+
+    public void sectionTitle_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle_();
+        }
+    }
+
+    public void section1()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].section1();
+        }
+    }
+
+    public void section1_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].section1_();
+        }
+    }
+
+    public void sectionTitle1()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle1();
+        }
+    }
+
+    public void sectionTitle1_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle1_();
+        }
+    }
+
+    public void section2()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].section2();
+        }
+    }
+
+    public void section2_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].section2_();
+        }
+    }
+
+    public void sectionTitle2()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle2();
+        }
+    }
+
+    public void sectionTitle2_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle2_();
+        }
+    }
+
+    public void section3()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].section3();
+        }
+    }
+
+    public void section3_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].section3_();
+        }
+    }
+
+    public void sectionTitle3()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle3();
+        }
+    }
+
+    public void sectionTitle3_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle3_();
+        }
+    }
+
+    public void section4()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].section4();
+        }
+    }
+
+    public void section4_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].section4_();
+        }
+    }
+
+    public void sectionTitle4()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle4();
+        }
+    }
+
+    public void sectionTitle4_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle4_();
+        }
+    }
+
+    public void section5()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].section5();
+        }
+    }
+
+    public void section5_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].section5_();
+        }
+    }
+
+    public void sectionTitle5()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle5();
+        }
+    }
+
+    public void sectionTitle5_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle5_();
+        }
+    }
+
+    public void section( int level, SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].section( level, attributes );
+        }
+    }
+
+    public void section_( int level )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].section_( level );
+        }
+    }
+
+    public void sectionTitle( int level, SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle( level, attributes );
+        }
+    }
+
+    public void sectionTitle_( int level )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].sectionTitle_( level );
+        }
+    }
+
+    public void list()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].list();
+        }
+    }
+
+    public void list( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].list( attributes );
+        }
+    }
+
+    public void list_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].list_();
+        }
+    }
+
+    public void listItem()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].listItem();
+        }
+    }
+
+    public void listItem( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].listItem( attributes );
+        }
+    }
+
+    public void listItem_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].listItem_();
+        }
+    }
+
+    public void numberedList( int numbering )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].numberedList( numbering );
+        }
+    }
+
+    public void numberedList( int numbering, SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].numberedList( numbering, attributes );
+        }
+    }
+
+    public void numberedList_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].numberedList_();
+        }
+    }
+
+    public void numberedListItem()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].numberedListItem();
+        }
+    }
+
+    public void numberedListItem( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].numberedListItem( attributes );
+        }
+    }
+
+    public void numberedListItem_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].numberedListItem_();
+        }
+    }
+
+    public void definitionList()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].definitionList();
+        }
+    }
+
+    public void definitionList( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].definitionList( attributes );
+        }
+    }
+
+    public void definitionList_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].definitionList_();
+        }
+    }
+
+    public void definitionListItem()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].definitionListItem();
+        }
+    }
+
+    public void definitionListItem( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].definitionListItem( attributes );
+        }
+    }
+
+    public void definitionListItem_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].definitionListItem_();
+        }
+    }
+
+    public void definition()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].definition();
+        }
+    }
+
+    public void definition( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].definition( attributes );
+        }
+    }
+
+    public void definition_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].definition_();
+        }
+    }
+
+    public void definedTerm()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].definedTerm();
+        }
+    }
+
+    public void definedTerm( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].definedTerm( attributes );
+        }
+    }
+
+    public void definedTerm_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].definedTerm_();
+        }
+    }
+
+    public void figure()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].figure();
+        }
+    }
+
+    public void figure( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].figure( attributes );
+        }
+    }
+
+    public void figure_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].figure_();
+        }
+    }
+
+    public void figureCaption()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].figureCaption();
+        }
+    }
+
+    public void figureCaption( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].figureCaption( attributes );
+        }
+    }
+
+    public void figureCaption_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].figureCaption_();
+        }
+    }
+
+    public void figureGraphics( String name )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].figureGraphics( name );
+        }
+    }
+
+    public void figureGraphics( String name, SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].figureGraphics( name, attributes );
+        }
+    }
+
+    public void table()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].table();
+        }
+    }
+
+    public void table( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].table( attributes );
+        }
+    }
+
+    public void table_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].table_();
+        }
+    }
+
+    public void tableRows( int[] justification, boolean grid )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableRows( justification, grid );
+        }
+    }
+
+    public void tableRows_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableRows_();
+        }
+    }
+
+    public void tableRow()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableRow();
+        }
+    }
+
+    public void tableRow( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableRow( attributes );
+        }
+    }
+
+    public void tableRow_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableRow_();
+        }
+    }
+
+    public void tableCell()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableCell();
+        }
+    }
+
+    public void tableCell( String width )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableCell( width );
+        }
+    }
+
+    public void tableCell( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableCell( attributes );
+        }
+    }
+
+    public void tableCell_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableCell_();
+        }
+    }
+
+    public void tableHeaderCell()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableHeaderCell();
+        }
+    }
+
+    public void tableHeaderCell( String width )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableHeaderCell( width );
+        }
+    }
+
+    public void tableHeaderCell( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableHeaderCell( attributes );
+        }
+    }
+
+    public void tableHeaderCell_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableHeaderCell_();
+        }
+    }
+
+    public void tableCaption()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableCaption();
+        }
+    }
+
+    public void tableCaption( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableCaption( attributes );
+        }
+    }
+
+    public void tableCaption_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].tableCaption_();
+        }
+    }
+
+    public void paragraph()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].paragraph();
+        }
+    }
+
+    public void paragraph( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].paragraph( attributes );
+        }
+    }
+
+    public void paragraph_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].paragraph_();
+        }
+    }
+
+    public void verbatim( boolean boxed )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].verbatim( boxed );
+        }
+    }
+
+    public void verbatim( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].verbatim( attributes );
+        }
+    }
+
+    public void verbatim_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].verbatim_();
+        }
+    }
+
+    public void horizontalRule()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].horizontalRule();
+        }
+    }
+
+    public void horizontalRule( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].horizontalRule( attributes );
+        }
+    }
+
+    public void pageBreak()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].pageBreak();
+        }
+    }
+
+    public void anchor( String name )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].anchor( name );
+        }
+    }
+
+    public void anchor( String name, SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].anchor( name, attributes );
+        }
+    }
+
+    public void anchor_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].anchor_();
+        }
+    }
+
+    public void link( String name )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].link( name );
+        }
+    }
+
+    public void link( String name, SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].link( name, attributes );
+        }
+    }
+
+    public void link_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].link_();
+        }
+    }
+
+    public void italic()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].italic();
+        }
+    }
+
+    public void italic_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].italic_();
+        }
+    }
+
+    public void bold()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].bold();
+        }
+    }
+
+    public void bold_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].bold_();
+        }
+    }
+
+    public void monospaced()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].monospaced();
+        }
+    }
+
+    public void monospaced_()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].monospaced_();
+        }
+    }
+
+    public void lineBreak()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].lineBreak();
+        }
+    }
+
+    public void lineBreak( SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].lineBreak( attributes );
+        }
+    }
+
+    public void nonBreakingSpace()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].nonBreakingSpace();
+        }
+    }
+
+    public void text( String text )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].text( text );
+        }
+    }
+
+    public void text( String text, SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].text( text, attributes );
+        }
+    }
+
+    public void rawText( String text )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].rawText( text );
+        }
+    }
+
+    public void comment( String comment )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].comment( comment );
+        }
+    }
+
+    public void unknown( String name, Object[] requiredParams, SinkEventAttributes attributes )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].unknown( name, requiredParams, attributes );
+        }
+    }
+
+    public void flush()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].flush();
+        }
+    }
+
+    public void close()
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].close();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // LogEnabled Implementation
+    // ----------------------------------------------------------------------
+
+    public void enableLogging( Log log )
+    {
+        for ( int i = 0; i < pipeline.length; i++ )
+        {
+            pipeline[i].enableLogging( log );
+        }
+    }
+}
@@ -23,7 +23,6 @@ import org.apache.maven.doxia.sink.Sink;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.List;
 import java.util.Iterator;
 import java.util.ArrayList;
@@ -45,10 +44,11 @@ public class PipelineSink
       super( pipeline );
     }
 
+    /**
+     * @return a {@link FanOutSink}, which calls the pipeline directly instead of through a proxy.
+     */
     public static Sink newInstance( List pipeline )
     {
-        return (Sink) Proxy.newProxyInstance( PipelineSink.class.getClassLoader(),
-                                              new Class[]{Sink.class},
-                                              new PipelineSink( pipeline ) );
+        return new FanOutSink( pipeline );
     }
 }
@@ -0,0 +1,140 @@
+package org.apache.maven.doxia.editor.io;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+
+import org.apache.maven.doxia.sink.Sink;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @version $Id$
+ */
+public class FanOutSinkTest
+    extends TestCase
+{
+    /**
+     * Every method of {@link Sink} should reach each sink of the pipeline, with the same arguments.
+     *
+     * @throws Exception if any.
+     */
+    public void testForwardsEveryEvent()
+        throws Exception
+    {
+        List first = new ArrayList();
+        List second = new ArrayList();
+        Sink sink = new FanOutSink( Arrays.asList( new Sink[] { recorder( first ), recorder( second ) } ) );
+
+        Method[] methods = Sink.class.getMethods();
+        for ( int i = 0; i < methods.length; i++ )
+        {
+            first.clear();
+            second.clear();
+
+            Object[] args = arguments( methods[i].getParameterTypes() );
+            methods[i].invoke( sink, args );
+
+            String expected = event( methods[i], args );
+            assertEquals( expected, Arrays.asList( new String[] { expected } ), first );
+            assertEquals( expected, first, second );
+        }
+    }
+
+    private static Sink recorder( final List events )
+    {
+        InvocationHandler handler = new InvocationHandler()
+        {
+            public Object invoke( Object proxy, Method method, Object[] args )
+            {
+                events.add( event( method, args ) );
+                return null;
+            }
+        };
+
+        return (Sink) Proxy.newProxyInstance( Sink.class.getClassLoader(), new Class[] { Sink.class }, handler );
+    }
+
+    private static String event( Method method, Object[] args )
+    {
+        StringBuffer event = new StringBuffer( method.toString() );
+        for ( int i = 0; args != null && i < args.length; i++ )
+        {
+            // primitives are boxed again on each call, the other arguments should be passed on as they are
+            boolean primitive = args[i] instanceof Integer || args[i] instanceof Boolean;
+            event.append( ' ' ).append( primitive ? args[i] : new Integer( System.identityHashCode( args[i] ) ) );
+        }
+
+        return event.toString();
+    }
+
+    private static Object[] arguments( Class[] types )
+    {
+        Object[] args = new Object[types.length];
+        for ( int i = 0; i < types.length; i++ )
+        {
+            if ( types[i] == Integer.TYPE )
+            {
+                args[i] = new Integer( i + 1 );
+            }
+            else if ( types[i] == Boolean.TYPE )
+            {
+                args[i] = Boolean.TRUE;
+            }
+            else if ( types[i] == String.class )
+            {
+                args[i] = "text" + i;
+            }
+            else if ( types[i] == int[].class )
+            {
+                args[i] = new int[] { Sink.JUSTIFY_LEFT };
+            }
+            else if ( types[i] == Object[].class )
+            {
+                args[i] = new Object[0];
+            }
+            else if ( types[i].isInterface() )
+            {
+                // the attributes or the log, which the pipeline should only pass on
+                args[i] = unsupported( types[i] );
+            }
+        }
+
+        return args;
+    }
+
+    private static Object unsupported( Class type )
+    {
+        InvocationHandler handler = new InvocationHandler()
+        {
+            public Object invoke( Object proxy, Method method, Object[] args )
+            {
+                throw new UnsupportedOperationException( method.getName() );
+            }
+        };
+
+        return Proxy.newProxyInstance( type.getClassLoader(), new Class[] { type }, handler );
+    }
+}
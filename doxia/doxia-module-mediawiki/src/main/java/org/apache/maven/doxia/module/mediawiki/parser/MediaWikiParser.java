@@ -1,7 +1,11 @@
 package org.apache.maven.doxia.module.mediawiki.parser;
 
+import org.apache.maven.doxia.module.mediawiki.parser.state.CursorStateFactory;
+import org.apache.maven.doxia.module.mediawiki.parser.state.CursorStateParser;
+import org.apache.maven.doxia.module.mediawiki.parser.state.LookupStateFactory;
 import org.apache.maven.doxia.module.mediawiki.parser.state.StateFactory;
 import org.apache.maven.doxia.module.mediawiki.parser.state.StateParser;
+import org.apache.maven.doxia.module.mediawiki.parser.state.StateStart;
 import org.apache.maven.doxia.parser.AbstractTextParser;
 import org.apache.maven.doxia.parser.ParseException;
 import org.apache.maven.doxia.parser.Parser;
@@ -12,6 +16,7 @@ import org.codehaus.plexus.logging.Logger;
 import org.codehaus.plexus.logging.console.ConsoleLogger;
 
 import java.io.Reader;
+import java.nio.CharBuffer;
 import java.util.Stack;
 
 public class MediaWikiParser
@@ -22,7 +27,9 @@ public class MediaWikiParser
     private Logger logger;
 
     // NOTE: set this to the longest start-marker in the grammar!
-    private static final int LOOKAHEAD_LEN = 2;
+    private static final int LOOKAHEAD_LEN = 3;
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
 
     private Stack states = new Stack();
 
@@ -52,19 +59,46 @@ public class MediaWikiParser
             options = new DefaultParserOptions();
         }
 
+        if ( stateFactory == null )
+        {
+            stateFactory = new LookupStateFactory();
+        }
+
         ByLineReaderSource source = new ByLineReaderSource( reader );
         String line = null;
-        StringBuffer buffer = new StringBuffer();
+
+        // unconsumed content lives in buffer[cursor, end); it is only moved when a new line does not fit after it.
+        char[] buffer = new char[INITIAL_BUFFER_SIZE];
+        int cursor = 0;
+        int end = 0;
 
         while ( ( line = source.getNextLine() ) != null )
         {
-            int lastLineIdx = buffer.length();
-            
-            buffer.append( '\n' ).append( line );
-            
-            while( buffer.length() > LOOKAHEAD_LEN )
+            int lineLen = line.length() + 1;
+            int pending = end - cursor;
+
+            if ( end + lineLen > buffer.length )
             {
-                StateParser newState = stateFactory.getState( buffer );
+                char[] target = buffer;
+                if ( pending + lineLen > buffer.length )
+                {
+                    target = new char[Math.max( buffer.length * 2, pending + lineLen )];
+                }
+                System.arraycopy( buffer, cursor, target, 0, pending );
+                buffer = target;
+                cursor = 0;
+                end = pending;
+            }
+
+            int lastLineIdx = end;
+
+            buffer[end++] = '\n';
+            line.getChars( 0, line.length(), buffer, end );
+            end += line.length();
+
+            while ( end - cursor > LOOKAHEAD_LEN )
+            {
+                StateStart newState = getState( buffer, cursor, end - cursor );
 
                 // if we've detected a new markup class, push the last one onto the stack.
                 if ( newState != null )
@@ -73,26 +107,27 @@ public class MediaWikiParser
                     {
                         states.push( currentState );
                     }
-                    currentState = newState;
+                    currentState = newState.getParser();
+                    cursor += newState.getStartMarkerLength();
                     currentState.beginState( sink, options );
                 }
                 else
                 {
                     if ( currentState == null )
                     {
-                        throw new ParseException( "Cannot parse document; cannot find root-state parser for: \'" + buffer + "\'." );
+                        throw new ParseException( "Cannot parse document; cannot find root-state parser for: \'"
+                            + String.copyValueOf( buffer, cursor, end - cursor ) + "\'." );
                     }
 
-                    int bufferLen = buffer.length();
-                    int remainder = currentState.consume( buffer, bufferLen, sink, options );
-                    if ( remainder > -1 )
+                    int consumedTo = consume( currentState, buffer, cursor, end - cursor, sink, options );
+                    if ( consumedTo > -1 )
                     {
-                        if ( remainder >= lastLineIdx )
+                        if ( consumedTo >= lastLineIdx )
                         {
                             options.incrementLine();
                         }
-                        buffer = buffer.delete( 0, remainder );
-                        
+                        cursor = consumedTo;
+
                         currentState.endState( sink, options );
 
                         if ( !states.isEmpty() )
@@ -104,9 +139,74 @@ public class MediaWikiParser
                             currentState = null;
                         }
                     }
+                    else
+                    {
+                        // the state has taken everything up to the end of the buffer as content.
+                        cursor = end;
+                    }
                 }
             }
         }
+
+        // end of input: finish the open states, including one whose end marker was the last thing consumed.
+        while ( currentState != null )
+        {
+            int consumedTo = consume( currentState, buffer, cursor, end - cursor, sink, options );
+            if ( consumedTo < 0 )
+            {
+                if ( cursor == end )
+                {
+                    break;
+                }
+
+                cursor = end;
+                continue;
+            }
+
+            cursor = consumedTo;
+            currentState.endState( sink, options );
+
+            if ( !states.isEmpty() )
+            {
+                currentState = (StateParser) states.pop();
+            }
+            else
+            {
+                currentState = null;
+            }
+        }
+    }
+
+    /**
+     * Look for a start marker at the cursor. A factory which only implements {@link StateFactory} gets a view of the
+     * pending content, and its states begin at the cursor, as they did before start markers had a length.
+     */
+    private StateStart getState( char[] buffer, int offset, int length )
+    {
+        if ( stateFactory instanceof CursorStateFactory )
+        {
+            return ( (CursorStateFactory) stateFactory ).getState( buffer, offset, length );
+        }
+
+        StateParser parser = stateFactory.getState( CharBuffer.wrap( buffer, offset, length ) );
+
+        return ( parser == null ) ? null : new StateStart( parser, 0 );
+    }
+
+    /**
+     * Let the state consume the pending content, and return the absolute index it consumed to, or -1.
+     */
+    private int consume( StateParser state, char[] buffer, int offset, int length, Sink sink, ParsingContext options )
+        throws ParseException
+    {
+        if ( state instanceof CursorStateParser )
+        {
+            return ( (CursorStateParser) state ).consume( buffer, offset, length, sink, options );
+        }
+
+        int consumedTo = state.consume( CharBuffer.wrap( buffer, offset, length ), length, sink, options );
+
+        return ( consumedTo > -1 ) ? offset + consumedTo : -1;
     }
 
     protected Logger getLogger()
@@ -5,7 +5,7 @@ import org.apache.maven.doxia.parser.ParseException;
 import org.apache.maven.doxia.sink.Sink;
 
 public abstract class AbstractStateParser
-    implements StateParser
+    implements CursorStateParser
 {
 
     private int consumedEndMarkerIndex = -1;
@@ -14,7 +14,8 @@ public abstract class AbstractStateParser
 
     protected abstract String getStateName();
 
-    protected abstract void addContent( char[] buffer, int contentSize, Sink sink, ParsingContext options )
+    protected abstract void addContent( char[] buffer, int offset, int contentSize, Sink sink,
+                                        ParsingContext options )
         throws ParseException;
 
     public int consume( CharSequence buffer, int bufferSize, Sink sink, ParsingContext context )
@@ -24,6 +25,20 @@ public abstract class AbstractStateParser
         {
             return -1;
         }
+
+        char[] chars = buffer.toString().toCharArray();
+
+        return consume( chars, 0, Math.min( bufferSize, chars.length ), sink, context );
+    }
+
+    public int consume( char[] buffer, int offset, int length, Sink sink, ParsingContext context )
+        throws ParseException
+    {
+        // an empty range can still confirm an end marker which finished the previous one.
+        if ( length < 1 && consumedEndMarkerIndex < 0 )
+        {
+            return -1;
+        }
         
         char[] endMarker = getEndMarker();
 
@@ -35,11 +50,19 @@ public abstract class AbstractStateParser
             int bufferMark = 0;
             for ( int i = consumedEndMarkerIndex; i < endMarker.length; i++ )
             {
-                if ( endMarker[i] != buffer.charAt( i - consumedEndMarkerIndex ) )
+                if ( bufferMark >= length )
+                {
+                    // still incomplete; resume at this index next time.
+                    consumedEndMarkerIndex = i - 1;
+                    return -1;
+                }
+
+                if ( endMarker[i] != buffer[offset + bufferMark] )
                 {
                     throw new ParseException( "Invalid end marker for state: " + getStateName() + " (expected: \'"
-                        + String.copyValueOf( endMarker, consumedEndMarkerIndex, endMarker.length ) + "\'; got: \'"
-                        + buffer + "\')." );
+                        + String.copyValueOf( endMarker, consumedEndMarkerIndex, endMarker.length
+                            - consumedEndMarkerIndex ) + "\'; got: \'" + String.copyValueOf( buffer, offset, length )
+                        + "\')." );
                 }
                 
                 // increment the index in the end marker to pick up with on the next consume() call.
@@ -47,17 +70,11 @@ public abstract class AbstractStateParser
                 bufferMark++;
             }
 
-            return bufferMark;
+            return offset + bufferMark;
         }
         else
         {
-            int bufferLen = buffer.length();
-            
-            if ( bufferSize < bufferLen )
-            {
-                bufferLen = bufferSize;
-            }
-            
+            int bufferLen = length;
             int bufferMaxIdx = bufferLen - 1;
             
             int consumedToIdx = -1;
@@ -72,7 +89,7 @@ public abstract class AbstractStateParser
                     consumedToIdx = i;
                     break;
                 }
-                else if ( endMarker[endMarkerIdx] == buffer.charAt( i ) )
+                else if ( endMarker[endMarkerIdx] == buffer[offset + i] )
                 {
                     // if we find the start of the end marker, cap the content sub-array.
                     if ( contentLastIdx == bufferMaxIdx )
@@ -88,10 +105,10 @@ public abstract class AbstractStateParser
             
             if ( contentLastIdx > -1 )
             {
-                addContent( buffer.toString().toCharArray(), contentLastIdx + 1, sink, context );
+                addContent( buffer, offset, contentLastIdx + 1, sink, context );
             }
             
-            return consumedToIdx;
+            return ( consumedToIdx > -1 ) ? offset + consumedToIdx : -1;
         }
     }
 
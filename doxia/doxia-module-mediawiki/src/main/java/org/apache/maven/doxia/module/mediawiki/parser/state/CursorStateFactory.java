@@ -0,0 +1,21 @@
+package org.apache.maven.doxia.module.mediawiki.parser.state;
+
+/**
+ * A {@link StateFactory} which can look for a start marker inside the parser's buffer, without a copy of it.
+ * MediaWikiParser uses this variant when its factory implements it.
+ */
+public interface CursorStateFactory
+    extends StateFactory
+{
+
+    /**
+     * Cursor-based variant of {@link #getState(CharSequence)}, looking for a start marker at the given offset of the
+     * buffer instead of at the beginning of a copy of it.
+     * @param buffer the content buffer
+     * @param offset the index of the first character to look at
+     * @param length the number of characters available from offset
+     * @return the state begun by the start marker found at offset, or null if there is none.
+     */
+    StateStart getState( char[] buffer, int offset, int length );
+
+}
@@ -0,0 +1,31 @@
+package org.apache.maven.doxia.module.mediawiki.parser.state;
+
+import org.apache.maven.doxia.module.mediawiki.parser.ParsingContext;
+import org.apache.maven.doxia.parser.ParseException;
+import org.apache.maven.doxia.sink.Sink;
+
+/**
+ * A {@link StateParser} which can consume a range of the parser's buffer in place. MediaWikiParser uses this variant
+ * when the current state implements it; {@link AbstractStateParser} does.
+ */
+public interface CursorStateParser
+    extends StateParser
+{
+
+    /**
+     * Cursor-based variant of {@link #consume(CharSequence, int, Sink, ParsingContext)}, which consumes a range of
+     * the given array in place, without copying the buffer. An end marker which finishes the range is only reported
+     * by the next call, which may pass an empty range at the end of the input.
+     * @param buffer the content buffer
+     * @param offset the index of the first character to consume
+     * @param length the number of characters to consume. The rest is junk.
+     * @param sink The Sink which will render the document events as they happen
+     * @param options The ParsingContext used to help determine things like relative link locations, etc.
+     * @return -1 if the whole range was used, otherwise the index in the buffer of the first character AFTER the
+     *   LAST character in the end marker. THIS INDEX MUST BE LESS THAN offset + length.
+     * @throws ParseException
+     */
+    int consume( char[] buffer, int offset, int length, Sink sink, ParsingContext options )
+        throws ParseException;
+
+}
@@ -0,0 +1,153 @@
+package org.apache.maven.doxia.module.mediawiki.parser.state;
+
+import org.apache.maven.doxia.module.mediawiki.parser.state.format.BoldFormatParser;
+import org.apache.maven.doxia.module.mediawiki.parser.state.format.ItalicFormatParser;
+import org.apache.maven.doxia.module.mediawiki.parser.state.link.ExternalLinkParser;
+import org.apache.maven.doxia.module.mediawiki.parser.state.link.InternalLinkParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link CursorStateFactory} dispatching on the first character of the lookahead through a lookup table, then trying
+ * the start markers beginning with that character from the longest to the shortest.
+ */
+public class LookupStateFactory
+    implements CursorStateFactory
+{
+
+    private static final int TABLE_SIZE = 128;
+
+    /** The start markers of each first character, longest first */
+    private final List[] table = new List[TABLE_SIZE];
+
+    /**
+     * Creates a factory for the standard MediaWiki markup.
+     */
+    public LookupStateFactory()
+    {
+        addState( "'''", BoldFormatParser.class );
+        addState( "''", ItalicFormatParser.class );
+        addState( "[[", InternalLinkParser.class );
+        addState( "[", ExternalLinkParser.class );
+    }
+
+    /**
+     * Registers the state begun by the given start marker.
+     * @param startMarker the start marker, beginning with an ASCII character
+     * @param parserClass the StateParser implementation, instantiated for each state found
+     */
+    public void addState( String startMarker, Class parserClass )
+    {
+        if ( startMarker.length() < 1 || startMarker.charAt( 0 ) >= TABLE_SIZE )
+        {
+            throw new IllegalArgumentException( "Invalid start marker: \'" + startMarker + "\'." );
+        }
+        if ( !StateParser.class.isAssignableFrom( parserClass ) )
+        {
+            throw new IllegalArgumentException( parserClass.getName() + " is not a StateParser." );
+        }
+
+        char first = startMarker.charAt( 0 );
+        if ( table[first] == null )
+        {
+            table[first] = new ArrayList();
+        }
+
+        List entries = table[first];
+        Entry entry = new Entry( startMarker.toCharArray(), parserClass );
+
+        int i = 0;
+        while ( i < entries.size() && ( (Entry) entries.get( i ) ).marker.length >= entry.marker.length )
+        {
+            i++;
+        }
+        entries.add( i, entry );
+    }
+
+    public StateParser getState( CharSequence lookahead )
+    {
+        char[] chars = lookahead.toString().toCharArray();
+
+        StateStart start = getState( chars, 0, chars.length );
+
+        return ( start == null ) ? null : start.getParser();
+    }
+
+    public StateStart getState( char[] buffer, int offset, int length )
+    {
+        if ( length < 1 )
+        {
+            return null;
+        }
+
+        char first = buffer[offset];
+        List entries = ( first < TABLE_SIZE ) ? table[first] : null;
+        if ( entries == null )
+        {
+            return null;
+        }
+
+        for ( int i = 0; i < entries.size(); i++ )
+        {
+            Entry entry = (Entry) entries.get( i );
+            if ( entry.matches( buffer, offset, length ) )
+            {
+                return new StateStart( entry.newParser(), entry.marker.length );
+            }
+        }
+
+        return null;
+    }
+
+    private static final class Entry
+    {
+
+        private final char[] marker;
+
+        private final Class parserClass;
+
+        Entry( char[] marker, Class parserClass )
+        {
+            this.marker = marker;
+            this.parserClass = parserClass;
+        }
+
+        boolean matches( char[] buffer, int offset, int length )
+        {
+            if ( marker.length > length )
+            {
+                return false;
+            }
+
+            for ( int i = 1; i < marker.length; i++ )
+            {
+                if ( marker[i] != buffer[offset + i] )
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        StateParser newParser()
+        {
+            try
+            {
+                return (StateParser) parserClass.newInstance();
+            }
+            catch ( InstantiationException e )
+            {
+                throw new IllegalStateException( "Cannot create state parser: " + parserClass.getName() + ": "
+                    + e.getMessage() );
+            }
+            catch ( IllegalAccessException e )
+            {
+                throw new IllegalStateException( "Cannot create state parser: " + parserClass.getName() + ": "
+                    + e.getMessage() );
+            }
+        }
+    }
+
+}
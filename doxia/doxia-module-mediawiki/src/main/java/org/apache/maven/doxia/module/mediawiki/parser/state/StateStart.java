@@ -0,0 +1,29 @@
+package org.apache.maven.doxia.module.mediawiki.parser.state;
+
+/**
+ * A new state found by a {@link CursorStateFactory}, along with the length of the start marker which begins it.
+ */
+public final class StateStart
+{
+
+    private final StateParser parser;
+
+    private final int startMarkerLength;
+
+    public StateStart( StateParser parser, int startMarkerLength )
+    {
+        this.parser = parser;
+        this.startMarkerLength = startMarkerLength;
+    }
+
+    public StateParser getParser()
+    {
+        return parser;
+    }
+
+    public int getStartMarkerLength()
+    {
+        return startMarkerLength;
+    }
+
+}
@@ -11,10 +11,10 @@ public class ItalicFormatParser
     
     private static final char[] END_MARKER = "''".toCharArray();
     
-    protected void addContent( char[] buffer, int contentSize, Sink sink, ParsingContext options )
+    protected void addContent( char[] buffer, int offset, int contentSize, Sink sink, ParsingContext options )
         throws ParseException
     {
-        sink.text( String.copyValueOf( buffer, 0, contentSize ) );
+        sink.text( String.copyValueOf( buffer, offset, contentSize ) );
     }
 
     protected char[] getEndMarker()
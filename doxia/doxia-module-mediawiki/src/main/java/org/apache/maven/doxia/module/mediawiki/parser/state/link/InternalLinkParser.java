@@ -18,13 +18,14 @@ public class InternalLinkParser
 
     private StringBuffer labelBuffer = new StringBuffer();
 
-    protected void addContent( char[] buffer, int contentSize, Sink sink, ParsingContext options )
+    protected void addContent( char[] buffer, int offset, int contentSize, Sink sink, ParsingContext options )
         throws ParseException
     {
-        int labelStartIdx = 0;
+        int contentEnd = offset + contentSize;
+        int labelStartIdx = offset;
         if ( !urlFinished )
         {
-            for ( int i = 0; i < contentSize; i++ )
+            for ( int i = offset; i < contentEnd; i++ )
             {
                 if ( buffer[i] == '|' )
                 {
@@ -39,9 +40,9 @@ public class InternalLinkParser
             }
         }
         
-        if ( labelStartIdx < contentSize )
+        if ( labelStartIdx < contentEnd )
         {
-            labelBuffer.append( buffer, labelStartIdx, contentSize - labelStartIdx );
+            labelBuffer.append( buffer, labelStartIdx, contentEnd - labelStartIdx );
         }
     }
 
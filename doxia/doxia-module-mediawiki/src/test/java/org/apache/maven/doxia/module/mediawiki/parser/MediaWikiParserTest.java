@@ -0,0 +1,148 @@
+package org.apache.maven.doxia.module.mediawiki.parser;
+
+import org.apache.maven.doxia.module.mediawiki.parser.state.CursorStateParser;
+import org.apache.maven.doxia.module.mediawiki.parser.state.LookupStateFactory;
+import org.apache.maven.doxia.parser.ParseException;
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.doxia.sink.SinkAdapter;
+
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class MediaWikiParserTest
+    extends TestCase
+{
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private MediaWikiParser parser;
+
+    private RecordingSink sink;
+
+    protected void setUp()
+        throws Exception
+    {
+        // the module has no root-state parser yet, so line starts are handled by a state that ends right away.
+        LookupStateFactory factory = new LookupStateFactory();
+        factory.addState( "\n", LineStartParser.class );
+
+        parser = new MediaWikiParser();
+        Field field = MediaWikiParser.class.getDeclaredField( "stateFactory" );
+        field.setAccessible( true );
+        field.set( parser, factory );
+
+        sink = new RecordingSink();
+    }
+
+    public void testParse_MarkerSplitAcrossBufferBoundary()
+        throws ParseException
+    {
+        // the first line fills the buffer up to its last char, ending with the bold start marker; the rest of the
+        // bold state only fits once the pending marker has been moved to the front of the buffer.
+        String italic = repeat( 'x', INITIAL_BUFFER_SIZE - 8 );
+        String input = "''" + italic + "''" + "'''\nbold'''";
+
+        parser.parse( new StringReader( input ), sink );
+
+        assertEquals( Arrays.asList( new String[] { "italic", "text:" + italic, "italic_", "bold", "text:bold",
+            "bold_" } ), sink.events );
+    }
+
+    public void testParse_InputLongerThanInitialBuffer()
+        throws ParseException
+    {
+        String first = repeat( 'a', INITIAL_BUFFER_SIZE + 1000 );
+        String second = repeat( 'b', INITIAL_BUFFER_SIZE * 2 );
+        String input = "'''" + first + "\n" + second + "'''[[Page]]";
+
+        parser.parse( new StringReader( input ), sink );
+
+        assertEquals( Arrays.asList( new String[] { "bold", "text:" + first, "text:" + second, "bold_",
+            "link:Page", "text:Page", "link_" } ), sink.events );
+    }
+
+    private static String repeat( char c, int count )
+    {
+        char[] chars = new char[count];
+        Arrays.fill( chars, c );
+        return new String( chars );
+    }
+
+    /**
+     * Consumes nothing, so that a line start ends as soon as it begins.
+     */
+    public static class LineStartParser
+        implements CursorStateParser
+    {
+
+        public void beginState( Sink sink, ParsingContext parseOptions )
+        {
+            // nothing to render.
+        }
+
+        public int consume( CharSequence buffer, int bufferSize, Sink sink, ParsingContext options )
+        {
+            return 0;
+        }
+
+        public int consume( char[] buffer, int offset, int length, Sink sink, ParsingContext options )
+        {
+            return offset;
+        }
+
+        public void endState( Sink sink, ParsingContext parseOptions )
+        {
+            // nothing to render.
+        }
+
+    }
+
+    private static class RecordingSink
+        extends SinkAdapter
+    {
+
+        private final List events = new ArrayList();
+
+        public void bold()
+        {
+            events.add( "bold" );
+        }
+
+        public void bold_()
+        {
+            events.add( "bold_" );
+        }
+
+        public void italic()
+        {
+            events.add( "italic" );
+        }
+
+        public void italic_()
+        {
+            events.add( "italic_" );
+        }
+
+        public void link( String name )
+        {
+            events.add( "link:" + name );
+        }
+
+        public void link_()
+        {
+            events.add( "link_" );
+        }
+
+        public void text( String text )
+        {
+            events.add( "text:" + text );
+        }
+
+    }
+
+}
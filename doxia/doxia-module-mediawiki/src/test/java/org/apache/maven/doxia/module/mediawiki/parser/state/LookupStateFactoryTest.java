@@ -0,0 +1,74 @@
+package org.apache.maven.doxia.module.mediawiki.parser.state;
+
+import org.apache.maven.doxia.module.mediawiki.parser.state.format.BoldFormatParser;
+import org.apache.maven.doxia.module.mediawiki.parser.state.format.ItalicFormatParser;
+import org.apache.maven.doxia.module.mediawiki.parser.state.link.ExternalLinkParser;
+import org.apache.maven.doxia.module.mediawiki.parser.state.link.InternalLinkParser;
+
+import junit.framework.TestCase;
+
+public class LookupStateFactoryTest
+    extends TestCase
+{
+
+    public void testGetState_LongestStartMarkerWins()
+    {
+        CursorStateFactory factory = new LookupStateFactory();
+
+        assertStart( factory, "'''bold'''", BoldFormatParser.class, 3 );
+        assertStart( factory, "''italic''", ItalicFormatParser.class, 2 );
+        assertStart( factory, "[[internal]]", InternalLinkParser.class, 2 );
+        assertStart( factory, "[http://maven.apache.org]", ExternalLinkParser.class, 1 );
+    }
+
+    public void testGetState_AtOffset()
+    {
+        CursorStateFactory factory = new LookupStateFactory();
+        char[] buffer = "text [[internal]]".toCharArray();
+
+        StateStart start = factory.getState( buffer, 5, buffer.length - 5 );
+
+        assertNotNull( start );
+        assertTrue( start.getParser() instanceof InternalLinkParser );
+        assertEquals( 2, start.getStartMarkerLength() );
+    }
+
+    public void testGetState_StartMarkerCutOffByLength()
+    {
+        CursorStateFactory factory = new LookupStateFactory();
+        char[] buffer = "'''".toCharArray();
+
+        StateStart start = factory.getState( buffer, 0, 2 );
+
+        assertNotNull( start );
+        assertTrue( start.getParser() instanceof ItalicFormatParser );
+    }
+
+    public void testGetState_NoStartMarker()
+    {
+        CursorStateFactory factory = new LookupStateFactory();
+        char[] buffer = "plain text".toCharArray();
+
+        assertNull( factory.getState( buffer, 0, buffer.length ) );
+        assertNull( factory.getState( "\u00e9t\u00e9" ) );
+        assertNull( factory.getState( "" ) );
+    }
+
+    public void testGetState_NewParserForEachState()
+    {
+        CursorStateFactory factory = new LookupStateFactory();
+
+        assertNotSame( factory.getState( "''" ), factory.getState( "''" ) );
+    }
+
+    private void assertStart( CursorStateFactory factory, String input, Class parserClass, int startMarkerLength )
+    {
+        char[] buffer = input.toCharArray();
+        StateStart start = factory.getState( buffer, 0, buffer.length );
+
+        assertNotNull( "No state found for: " + input, start );
+        assertEquals( parserClass, start.getParser().getClass() );
+        assertEquals( startMarkerLength, start.getStartMarkerLength() );
+    }
+
+}
@@ -19,7 +19,7 @@ package org.apache.maven.doxia.module.xwiki;
  * under the License.
  */
 
-import org.apache.maven.doxia.module.confluence.parser.Block;
+import org.apache.maven.doxia.module.xwiki.blocks.Block;
 import org.apache.maven.doxia.module.xwiki.parser.BlockParser;
 import org.apache.maven.doxia.module.xwiki.parser.FigureBlockParser;
 import org.apache.maven.doxia.module.xwiki.parser.ParagraphBlockParser;
@@ -32,7 +32,6 @@ import org.apache.maven.doxia.util.ByLineSource;
 
 import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -71,52 +70,78 @@ public class XWikiParser
     public List parse( Reader reader )
         throws ParseException
     {
-        return parse( new ByLineReaderSource( reader ) );
+        ByLineSource source = new ByLineReaderSource( reader );
+        List blocks = new ArrayList();
+
+        Block block;
+
+        while ( ( block = nextBlock( source ) ) != null )
+        {
+            blocks.add( block );
+        }
+
+        return blocks;
     }
 
-    private List parse( ByLineSource source )
+    /**
+     * Reads the next block from the source, skipping blank lines.
+     *
+     * @param source the source to read lines from
+     * @return the next block, or <code>null</code> at the end of the source
+     * @throws ParseException if the block cannot be parsed
+     */
+    private Block nextBlock( ByLineSource source )
         throws ParseException
     {
-        List blocks = new ArrayList();
-
         String line;
 
         while ( ( line = source.getNextLine() ) != null )
         {
+            if ( line.trim().length() == 0 )
+            {
+                continue;
+            }
+
             for ( int i = 0; i < parsers.length; i++ )
             {
                 BlockParser parser = parsers[i];
 
-                if ( line.trim().length() == 0 )
-                {
-                    continue;
-                }
-
                 if ( parser.accept( line, source ) )
                 {
-                    blocks.add( parser.visit( line, source ) );
-
-                    break;
+                    return parser.visit( line, source );
                 }
             }
         }
 
-        return blocks;
+        return null;
     }
 
     /**
      * {@inheritDoc}
+     *
+     * Each block is emitted to the sink as soon as it is parsed, so the document's block tree is never held in memory
+     * as a whole. The block parsers keep no per-document state, so a single instance can parse several documents
+     * concurrently.
      */
-    public synchronized void parse( Reader reader, Sink sink )
+    public void parse( Reader reader, Sink sink )
         throws ParseException
     {
-        List blocks;
-
         ByLineSource source = new ByLineReaderSource( reader );
 
+        sink.head();
+
+        sink.head_();
+
+        sink.body();
+
         try
         {
-            blocks = parse( source );
+            Block block;
+
+            while ( ( block = nextBlock( source ) ) != null )
+            {
+                block.traverse( sink );
+            }
         }
         catch ( ParseException e )
         {
@@ -127,19 +152,6 @@ public class XWikiParser
             throw new ParseException( e, source.getName(), source.getLineNumber() );
         }
 
-        sink.head();
-
-        sink.head_();
-
-        sink.body();
-
-        for ( Iterator i = blocks.iterator(); i.hasNext(); )
-        {
-            Block block = (Block) i.next();
-
-            block.traverse( sink );
-        }
-
         sink.body_();
     }
 }
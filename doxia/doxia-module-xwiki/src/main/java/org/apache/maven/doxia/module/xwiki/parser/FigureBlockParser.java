@@ -33,8 +33,6 @@ public class FigureBlockParser
 {
     private static String LS = System.getProperty( "line.separator" );
 
-    private MacroParser macroParser = new MacroParser();
-
     public boolean accept( String line, ByLineSource source )
     {
         return line.startsWith( "{image:" );
@@ -43,6 +41,8 @@ public class FigureBlockParser
     public Block visit( String line, ByLineSource source )
         throws ParseException
     {
+        // a new macro parser for each figure, since it is configured per call and this parser may be shared.
+        MacroParser macroParser = new MacroParser();
         macroParser.setCompatibilityMode( isInCompatibilityMode() );
         MacroParser.MacroParserResult result = macroParser.parse( line, 1 );
         return result.block;
@@ -28,7 +28,10 @@ import org.apache.maven.doxia.module.xwiki.blocks.ParagraphBlock;
 import org.apache.maven.doxia.module.xwiki.blocks.SectionBlock;
 import org.apache.maven.doxia.module.xwiki.blocks.TextBlock;
 
+import org.apache.maven.doxia.sink.Sink;
+
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.List;
 
 /**
@@ -137,4 +140,55 @@ public class XWikiParserTest
         assertEquals( "JIRA", ( (LinkBlock) paraBlock.getBlocks().get( 0 ) ).getText() );
         assertEquals( "http://jira.codehaus.org", ( (LinkBlock) paraBlock.getBlocks().get( 0 ) ).getReference() );
     }
+
+    public void testConcurrentParseToSink()
+        throws Exception
+    {
+        final String content = "1 Section1\n\nSimple paragraph with *bold* and ~~italic~~ text.\n\n"
+            + "{image:photo.jpg}\n\n[JIRA|http://jira.codehaus.org]";
+        final String expected = parseToString( content );
+
+        final String[] results = new String[8];
+        final Exception[] errors = new Exception[results.length];
+        Thread[] threads = new Thread[results.length];
+
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            final int index = i;
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        results[index] = parseToString( content );
+                    }
+                    catch ( Exception e )
+                    {
+                        errors[index] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            threads[i].join();
+            assertNull( errors[i] );
+            assertEquals( expected, results[i] );
+        }
+    }
+
+    private String parseToString( String content )
+        throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        Sink sink = new XWikiWikiSink( writer );
+
+        parser.parse( new StringReader( content ), sink );
+        sink.flush();
+
+        return writer.toString();
+    }
 }
@@ -116,6 +116,13 @@ public abstract class AbstractJavasrcMojo
      */
     private String header;
 
+    /**
+     * True to only regenerate the files whose sources, or referenced declarations, changed since the last run.
+     *
+     * @parameter expression="${incremental}" default-value="false"
+     */
+    private boolean incremental;
+
     /**
      * Specifies the text for upper left frame.
      *
@@ -203,6 +210,7 @@ public abstract class AbstractJavasrcMojo
         {
             options.setHeader( this.header );
         }
+        options.setIncremental( this.incremental );
         if ( StringUtils.isNotEmpty( this.packagesheader ) )
         {
             options.setPackagesheader( this.packagesheader );
@@ -0,0 +1,166 @@
+package org.apache.maven.jxr.java.src.html;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to copy a java source to its HTML page: loading it into a {@link SourceBuffer}, then writing it through
+ * {@link LineOutputWriter} in bulk, as Pass1 does, or one character at a time, as Pass1 used to.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class SourceWriterBenchmark
+{
+    /** Typical source lines, a third of them with characters to escape */
+    private static final String[] LINES = { "    public void run( List javaFiles )",
+        "        for ( int i = 0; i < files.length; i++ )", "        {", "        }",
+        "     * @return the <code>Set</code> of changed files, or <code>null</code>",
+        "        String s = \"a & b\" + '\\t';", "        if ( map.size() > 0 && !done )", "" };
+
+    /** Number of characters of the source */
+    @Param( { "4096", "65536", "1048576" } )
+    public int size;
+
+    private File source;
+
+    private char[] chars;
+
+    @Setup( Level.Trial )
+    public void createSource()
+        throws IOException
+    {
+        StringBuffer text = new StringBuffer( size + 80 );
+        Random random = new Random( 42 );
+        while ( text.length() < size )
+        {
+            text.append( LINES[random.nextInt( LINES.length )] ).append( '\n' );
+        }
+
+        source = File.createTempFile( "jxr-benchmark", ".java" );
+        Writer writer = new OutputStreamWriter( new FileOutputStream( source ), "ISO-8859-1" );
+        try
+        {
+            writer.write( text.toString() );
+        }
+        finally
+        {
+            writer.close();
+        }
+
+        chars = text.toString().toCharArray();
+    }
+
+    @TearDown( Level.Trial )
+    public void deleteSource()
+    {
+        source.delete();
+    }
+
+    @Benchmark
+    public int loadSource()
+        throws IOException
+    {
+        return new SourceBuffer( source, "ISO-8859-1" ).getLength();
+    }
+
+    @Benchmark
+    public long writeInBulk()
+        throws IOException
+    {
+        CountingOutputStream out = new CountingOutputStream();
+        LineOutputWriter writer = new LineOutputWriter( out, "ISO-8859-1" );
+        writer.writeHTML( chars, 0, chars.length );
+        writer.close();
+        return out.count;
+    }
+
+    @Benchmark
+    public long writeByCharacter()
+        throws IOException
+    {
+        CountingOutputStream out = new CountingOutputStream();
+        LineOutputWriter writer = new LineOutputWriter( out, "ISO-8859-1" );
+        for ( int i = 0; i < chars.length; i++ )
+        {
+            writer.writeHTML( chars[i] );
+        }
+        writer.close();
+        return out.count;
+    }
+
+    @Benchmark
+    public long loadAndWrite()
+        throws IOException
+    {
+        SourceBuffer input = new SourceBuffer( source, "ISO-8859-1" );
+        CountingOutputStream out = new CountingOutputStream();
+        LineOutputWriter writer = new LineOutputWriter( out, "ISO-8859-1" );
+        writer.writeHTML( input.getChars(), 0, input.getLength() );
+        writer.close();
+        return out.count;
+    }
+
+    /**
+     * Discards the page, keeping its size so that the writes cannot be optimized away.
+     */
+    private static class CountingOutputStream
+        extends OutputStream
+    {
+        long count;
+
+        public void write( int b )
+        {
+            count++;
+        }
+
+        public void write( byte[] b, int off, int len )
+        {
+            count += len;
+        }
+    }
+}
@@ -242,6 +242,30 @@ tokens {
         parser.compilationUnit();
     }
 
+    /**
+     * Parses a file which has already been lexed, e.g. by another thread.
+     *
+     * @param f a java file lexed ahead of time.
+     * @param symbolTable object keeps track of all symbols encountered while parsing a file.
+     * @param listener listener on the current file that parser processes.
+     * @throws ANTLRException if any
+     * @see LexedFile#lex(File)
+     */
+    public static void doFile( LexedFile f, SymbolTable symbolTable, FileListener listener )
+        throws ANTLRException
+    {
+        listener.notify( f.getFile().getAbsolutePath() );
+        symbolTable.setFile( f.getFile() );
+
+        // the lexer events are replayed while the parser pulls the tokens, so the symbol table
+        // sees them in the same order as with parseFile(InputStream, SymbolTable)
+        f.setSymbolTable( symbolTable );
+
+        JavaXref parser = new JavaXref( f );
+        parser.setSymbolTable( symbolTable );
+        parser.compilationUnit();
+    }
+
     /**
      * Tell the parser which symbol table to use.
      *
@@ -1637,6 +1661,19 @@ options {
         symbolTable.defineLiteral( line, column, text );
     }
 
+    /**
+     * <code>SymbolTable</code> adapter method.
+     *
+     * @param line
+     * @param column
+     * @param text
+     * @see SymbolTable#defineKeyword(int, int, String)
+     */
+    public void defineKeyword( int line, int column, String text )
+    {
+        symbolTable.defineKeyword( line, column, text );
+    }
+
     /** {@inheritDoc} */
     public int testLiteralsTable( int ttype )
     {
@@ -1646,8 +1683,7 @@ options {
         Integer literalsIndex = (Integer) literals.get( hashString );
         if ( literalsIndex != null )
         {
-            symbolTable.defineKeyword( getLine(), getColumn() - text.length(), new String( text.getBuffer(), 0, text
-                .length() ) );
+            defineKeyword( getLine(), getColumn() - text.length(), new String( text.getBuffer(), 0, text.length() ) );
             ttype = literalsIndex.intValue();
         }
         return ttype;
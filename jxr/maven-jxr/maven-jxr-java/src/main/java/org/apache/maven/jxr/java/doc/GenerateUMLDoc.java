@@ -19,6 +19,7 @@ package org.apache.maven.jxr.java.doc;
  * under the License.
  */
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -29,6 +30,7 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.net.URL;
 import java.util.GregorianCalendar;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -36,10 +38,12 @@ import java.util.List;
 import java.util.TimeZone;
 
 import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
@@ -69,6 +73,12 @@ public class GenerateUMLDoc
 {
     private static final String NOW = new GregorianCalendar( TimeZone.getDefault() ).getTime().toString();
 
+    /** The TrAX factory, shared by all the instances. */
+    private static SAXTransformerFactory transformerFactory;
+
+    /** The compiled xml2dot stylesheet, shared by all the instances since it is thread safe. */
+    private static Templates xml2dotTemplates;
+
     /** Source directory */
     private File srcDir;
 
@@ -93,9 +103,6 @@ public class GenerateUMLDoc
     /** Relative path or URI to the generated Java Xref directory. */
     private String javasrcPath = "";
 
-    /** Temp XSL file. */
-    private File xml2dot;
-
     /** Temp javadoc xml file */
     private File javadocXml;
 
@@ -183,23 +190,21 @@ public class GenerateUMLDoc
             }
         }
 
-        // 1. Generate Javadoc xml
-        generateJavadocXML();
-
-        // 2. Generate dot image
+        // 1. Generate the dot graph, the Javadoc XML going straight through the xml2dot stylesheet
+        byte[] graph;
         try
         {
-            generateJavadocDot();
+            graph = generateJavadocDot();
         }
         catch ( TransformerException e )
         {
             throw new UmlDocException( "TransformerException: " + e.getMessage() );
         }
 
-        // 3. Generate UML image
+        // 2. Generate UML image
         try
         {
-            generateUmlImage();
+            generateUmlImage( graph );
         }
         catch ( CommandLineException e )
         {
@@ -208,9 +213,9 @@ public class GenerateUMLDoc
 
         if ( !isVerbose() )
         {
-            // 4. Remove the generated DTD
+            // 3. Remove the generated DTD, if the Javadoc XML was written
             File dtd = new File( getJavadocXml().getParentFile(), XMLDoclet.XMLDOCLET_DTD );
-            if ( !dtd.delete() )
+            if ( dtd.exists() && !dtd.delete() )
             {
                 throw new IOException( "Can't delete the generated DTD file: " + dtd );
             }
@@ -415,40 +420,67 @@ public class GenerateUMLDoc
     }
 
     /**
-     * @return the xml2dot XSL file.
-     * @throws IOException if any
+     * @return the compiled xml2dot stylesheet, which is only compiled once per class loader.
+     * @throws IOException if the stylesheet is missing
+     * @throws TransformerException if any
      */
-    private File getXml2dot()
-        throws IOException
+    private static synchronized Templates getXml2dotTemplates()
+        throws IOException, TransformerException
     {
-        if ( this.xml2dot == null )
+        if ( xml2dotTemplates == null )
         {
-            this.xml2dot = new File( getOut().getParentFile(), FileUtils.removeExtension( getOut().getName() )
-                + ".xml2dot.xsl" );
-            if ( !isVerbose() )
+            URL xsl = GenerateUMLDoc.class.getResource( "xml2dot.xsl" );
+            if ( xsl == null )
             {
-                this.xml2dot.deleteOnExit();
+                throw new IOException( "This resource doesn't exist." );
             }
 
-            InputStream is = getClass().getClassLoader().getResourceAsStream(
-                                                                              GenerateUMLDoc.class.getPackage()
-                                                                                  .getName().replace( '.', '/' )
-                                                                                  + "/xml2dot.xsl" );
-            if ( is == null )
+            InputStream is = xsl.openStream();
+            try
             {
-                throw new IOException( "This resource doesn't exist." );
+                xml2dotTemplates = getTransformerFactory().newTemplates( new StreamSource( is, xsl.toExternalForm() ) );
             }
+            finally
+            {
+                IOUtil.close( is );
+            }
+        }
 
-            FileOutputStream w = new FileOutputStream( this.xml2dot );
+        return xml2dotTemplates;
+    }
 
-            IOUtil.copy( is, w );
+    /**
+     * @return a SAX handler applying the xml2dot stylesheet to the XML it receives.
+     * @throws IOException if the stylesheet is missing
+     * @throws TransformerException if any
+     */
+    private static synchronized TransformerHandler newXml2dotHandler()
+        throws IOException, TransformerException
+    {
+        return getTransformerFactory().newTransformerHandler( getXml2dotTemplates() );
+    }
 
-            IOUtil.close( is );
+    /**
+     * @return the TrAX factory, which should only be used while holding the class lock.
+     * @throws TransformerException if the TrAX library does not support SAX
+     */
+    private static SAXTransformerFactory getTransformerFactory()
+        throws TransformerException
+    {
+        if ( transformerFactory == null )
+        {
+            TransformerFactory factory = TransformerFactory.newInstance();
+            if ( !( factory.getFeature( SAXTransformerFactory.FEATURE ) && factory
+                .getFeature( javax.xml.transform.stream.StreamResult.FEATURE ) ) )
+            {
+                throw new TransformerException( "The supplied TrAX transformer library is inadeguate."
+                    + "Please upgrade to the latest version." );
+            }
 
-            IOUtil.close( w );
+            transformerFactory = (SAXTransformerFactory) factory;
         }
 
-        return this.xml2dot;
+        return transformerFactory;
     }
 
     /**
@@ -517,25 +549,68 @@ public class GenerateUMLDoc
     }
 
     /**
-     * Apply XSLT to generate dot file from the Javadoc xml
+     * Apply XSLT to generate dot graph from the Javadoc xml. The doclet sends its XML straight to the stylesheet,
+     * unless Javadoc loaded it in another class loader, in which case its XML file is transformed.
      *
+     * @return the dot graph, in the diagram encoding
      * @throws IOException if any
      * @throws TransformerException if any
      */
-    private void generateJavadocDot()
+    private byte[] generateJavadocDot()
         throws IOException, TransformerException
     {
-        SAXTransformerFactory transformerFactory = (SAXTransformerFactory) TransformerFactory.newInstance();
-        if ( !( transformerFactory.getFeature( javax.xml.transform.sax.SAXSource.FEATURE ) && transformerFactory
-            .getFeature( javax.xml.transform.stream.StreamResult.FEATURE ) ) )
+        ByteArrayOutputStream graph = new ByteArrayOutputStream();
+
+        TransformerHandler handler = newXml2dotHandler();
+        setParameters( handler.getTransformer() );
+        handler.setResult( new StreamResult( graph ) );
+
+        XMLDoclet.setContentHandler( handler );
+        try
+        {
+            generateJavadocXML();
+        }
+        finally
+        {
+            XMLDoclet.setContentHandler( null );
+        }
+
+        if ( graph.size() == 0 )
         {
+            if ( getLogger() != null ) // for Ant tasks
+            {
+                getLogger().warn( "The doclet was loaded by another class loader, transforming the Javadoc XML file "
+                    + getJavadocXml() + " instead." );
+            }
+
+            Transformer serializer = getXml2dotTemplates().newTransformer();
+            setParameters( serializer );
+            serializer.transform( new StreamSource( getJavadocXml() ), new StreamResult( graph ) );
+        }
 
-            throw new TransformerException( "The supplied TrAX transformer library is inadeguate."
-                + "Please upgrade to the latest version." );
+        if ( isVerbose() )
+        {
+            OutputStream w = new FileOutputStream( getDot() );
+            try
+            {
+                graph.writeTo( w );
+            }
+            finally
+            {
+                IOUtil.close( w );
+            }
         }
 
-        Transformer serializer = transformerFactory.newTransformer( new StreamSource( getXml2dot() ) );
+        return graph.toByteArray();
+    }
 
+    /**
+     * Set the output properties and parameters of the xml2dot stylesheet.
+     *
+     * @param serializer the xml2dot transformer
+     */
+    private void setParameters( Transformer serializer )
+    {
         if ( StringUtils.isNotEmpty( getDiagramEncoding() ) )
         {
             serializer.setOutputProperty( OutputKeys.ENCODING, getDiagramEncoding() );
@@ -557,37 +632,25 @@ public class GenerateUMLDoc
         }
         serializer.setParameter( "javadocPath", ( getJavadocPath() == null ? "" : getJavadocPath() ) );
         serializer.setParameter( "diagramLabel", ( getDiagramLabel() == null ? "" : getDiagramLabel() ) );
-
-        serializer.transform( new StreamSource( getJavadocXml() ), new StreamResult( getDot() ) );
     }
 
     /**
-     * Call Graphviz dot to generate images.
+     * Call Graphviz dot to generate images, feeding it the graph through its standard input.
      *
+     * @param graph the dot graph
      * @throws CommandLineException if any
      * @throws DotNotPresentInPathException if any
      */
-    private void generateUmlImage()
+    private void generateUmlImage( byte[] graph )
         throws CommandLineException, DotNotPresentInPathException
     {
-        String outputPath = getOut().getAbsolutePath();
-        String format;
-        if ( outputPath.lastIndexOf( "." ) != -1 )
-        {
-            format = outputPath.substring( outputPath.lastIndexOf( "." ) + 1 );
-        }
-        else
-        {
-            format = "svg";
-        }
-
         if ( getDotExecutable() == null )
         {
-            DotUtil.executeDot( getDot(), getOut() );
+            DotUtil.executeDot( new ByteArrayInputStream( graph ), getOut() );
         }
         else
         {
-            DotUtil.executeDot( getDotExecutable(), getDot(), getOut() );
+            DotUtil.executeDot( getDotExecutable(), new ByteArrayInputStream( graph ), getOut() );
         }
     }
 
@@ -35,6 +35,7 @@ import javax.xml.transform.stream.StreamResult;
 
 import org.codehaus.plexus.util.IOUtil;
 import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
 
@@ -72,11 +73,12 @@ public class XMLDoclet
     /** Default encoding format for the generated XML. */
     protected static final String DEFAULT_ENCODING_FORMAT = "ISO-8859-1";
 
-    private String xmlns = "";
+    /** The handler receiving the XML of the doclets started by the current thread, if any. */
+    private static final ThreadLocal CONTENT_HANDLER = new ThreadLocal();
 
-    private String localName = "javadoc";
+    private String xmlns = "";
 
-    private TransformerHandler handler = null;
+    private ContentHandler handler = null;
 
     private Attributes emptyAtts = new AttributesImpl();
 
@@ -108,9 +110,10 @@ public class XMLDoclet
         StreamResult result = new StreamResult( outputXMLFile );
 
         // SAX2.0 ContentHandler.
-        handler = tFactory.newTransformerHandler();
+        TransformerHandler transformerHandler = tFactory.newTransformerHandler();
+        handler = transformerHandler;
 
-        Transformer serializer = handler.getTransformer();
+        Transformer serializer = transformerHandler.getTransformer();
         serializer.setOutputProperty( OutputKeys.ENCODING, ( xmlencoding == null ? DEFAULT_ENCODING_FORMAT
                                                                                 : xmlencoding ) );
         serializer.setOutputProperty( OutputKeys.INDENT, "yes" );
@@ -118,13 +121,48 @@ public class XMLDoclet
         serializer.setOutputProperty( OutputKeys.DOCTYPE_PUBLIC, "-//APACHE//DTD JavaDoc V0.4//EN" );
         serializer.setOutputProperty( OutputKeys.DOCTYPE_SYSTEM, XMLDOCLET_DTD );
 
-        handler.setResult( result );
+        transformerHandler.setResult( result );
 
         javadocXML( root );
 
         copyDtd( this.getClass().getClassLoader(), outputXMLFile.getParentFile() );
     }
 
+    /**
+     * Constructor sending the generated XML to the given handler, instead of an XML file.
+     *
+     * @param root of the Javadoc structure information
+     * @param contentHandler the handler receiving the SAX events of the XML, not null.
+     * @throws SAXException if any
+     */
+    protected XMLDoclet( RootDoc root, ContentHandler contentHandler )
+        throws SAXException
+    {
+        handler = contentHandler;
+
+        javadocXML( root );
+    }
+
+    /**
+     * Sends the XML of the next doclets started by the current thread to the given handler, instead of the
+     * <code>-o</code> file. Javadoc may load the doclet in another class loader, in which case the handler is
+     * ignored and the XML file is written.
+     *
+     * @param contentHandler the handler receiving the SAX events of the XML, or <code>null</code> to write the
+     *            XML file again.
+     */
+    static void setContentHandler( ContentHandler contentHandler )
+    {
+        if ( contentHandler == null )
+        {
+            CONTENT_HANDLER.remove();
+        }
+        else
+        {
+            CONTENT_HANDLER.set( contentHandler );
+        }
+    }
+
     /** @see Doclet#validOptions(String[][], DocErrorReporter) */
     public static boolean validOptions( String options[][], DocErrorReporter reporter )
     {
@@ -210,7 +248,15 @@ public class XMLDoclet
     {
         try
         {
-            new XMLDoclet( root, getOutputDir( root.options() ), getXmlEncoding( root.options() ) );
+            ContentHandler contentHandler = (ContentHandler) CONTENT_HANDLER.get();
+            if ( contentHandler != null )
+            {
+                new XMLDoclet( root, contentHandler );
+            }
+            else
+            {
+                new XMLDoclet( root, getOutputDir( root.options() ), getXmlEncoding( root.options() ) );
+            }
         }
         catch ( Exception e )
         {
@@ -262,7 +308,7 @@ public class XMLDoclet
     {
         handler.startDocument();
 
-        handler.startElement( xmlns, localName, "javadoc", emptyAtts );
+        handler.startElement( xmlns, "javadoc", "javadoc", emptyAtts );
         PackageDoc[] packageArray = root.specifiedPackages();
 
         // Generate for packages.
@@ -293,7 +339,7 @@ public class XMLDoclet
             ClassDoc interfaceDoc = (ClassDoc) interfaceEnum.nextElement();
             interfaceXML( interfaceDoc );
         }
-        handler.endElement( xmlns, localName, "javadoc" );
+        handler.endElement( xmlns, "javadoc", "javadoc" );
 
         handler.endDocument();
     }
@@ -308,8 +354,8 @@ public class XMLDoclet
         throws SAXException
     {
         AttributesImpl atts = new AttributesImpl();
-        atts.addAttribute( xmlns, localName, "name", "String", packageDoc.name() );
-        handler.startElement( xmlns, localName, "package", atts );
+        atts.addAttribute( xmlns, "name", "name", "String", packageDoc.name() );
+        handler.startElement( xmlns, "package", "package", atts );
 
         // generate Doc element.
         docXML( packageDoc );
@@ -344,7 +390,7 @@ public class XMLDoclet
             interfaceXML( interfaceArray[i] );
         }
 
-        handler.endElement( xmlns, localName, "package" );
+        handler.endElement( xmlns, "package", "package" );
     }
 
     /**
@@ -364,7 +410,7 @@ public class XMLDoclet
         throws SAXException
     {
         AttributesImpl atts = new AttributesImpl();
-        atts.addAttribute( xmlns, localName, "name", "String", classDoc.name() );
+        atts.addAttribute( xmlns, "name", "name", "String", classDoc.name() );
 
         String extensibility = "default";
         if ( classDoc.isAbstract() )
@@ -375,14 +421,14 @@ public class XMLDoclet
         {
             extensibility = "final";
         }
-        atts.addAttribute( xmlns, localName, "extensibility", "String", extensibility );
+        atts.addAttribute( xmlns, "extensibility", "extensibility", "String", extensibility );
         String access = "package";
         if ( classDoc.isPublic() )
         {
             access = "public";
         }
-        atts.addAttribute( xmlns, localName, "access", "String", access );
-        handler.startElement( xmlns, localName, "class", atts );
+        atts.addAttribute( xmlns, "access", "access", "String", access );
+        handler.startElement( xmlns, "class", "class", atts );
 
         // generate "doc" sub-element
         docXML( classDoc );
@@ -421,7 +467,7 @@ public class XMLDoclet
             innerClassXML( innerClassArray[i] );
         }
 
-        handler.endElement( xmlns, localName, "class" );
+        handler.endElement( xmlns, "class", "class" );
     }
 
     /**
@@ -433,9 +479,9 @@ public class XMLDoclet
     {
         if ( classDoc.superclass() != null )
         {
-            handler.startElement( xmlns, localName, "extends_class", emptyAtts );
+            handler.startElement( xmlns, "extends_class", "extends_class", emptyAtts );
             createRefXML( "classref", classDoc.superclass().qualifiedName() );
-            handler.endElement( xmlns, localName, "extends_class" );
+            handler.endElement( xmlns, "extends_class", "extends_class" );
         }
     }
 
@@ -459,23 +505,23 @@ public class XMLDoclet
         throws SAXException
     {
         AttributesImpl atts = new AttributesImpl();
-        atts.addAttribute( xmlns, localName, "name", "String", classDoc.name() );
+        atts.addAttribute( xmlns, "name", "name", "String", classDoc.name() );
         String access = "package";
         if ( classDoc.isPublic() )
         {
             access = "public";
         }
-        atts.addAttribute( xmlns, localName, "access", "String", access );
-        atts.addAttribute( xmlns, localName, "abstract", "String", "" + classDoc.isAbstract() );
+        atts.addAttribute( xmlns, "access", "access", "String", access );
+        atts.addAttribute( xmlns, "abstract", "abstract", "String", "" + classDoc.isAbstract() );
         String anonymous = "false";
         if ( classDoc.name().equals( "" ) )
         {
             anonymous = "true";
         }
-        atts.addAttribute( xmlns, localName, "anonymous", "String", "" + anonymous );
-        atts.addAttribute( xmlns, localName, "final", "String", "" + "" + classDoc.isFinal() );
-        atts.addAttribute( xmlns, localName, "static", "String", "" + "" + classDoc.isStatic() );
-        handler.startElement( xmlns, localName, "innerclass", atts );
+        atts.addAttribute( xmlns, "anonymous", "anonymous", "String", "" + anonymous );
+        atts.addAttribute( xmlns, "final", "final", "String", "" + "" + classDoc.isFinal() );
+        atts.addAttribute( xmlns, "static", "static", "String", "" + "" + classDoc.isStatic() );
+        handler.startElement( xmlns, "innerclass", "innerclass", atts );
 
         // generate "doc" sub-element
         docXML( classDoc );
@@ -507,7 +553,7 @@ public class XMLDoclet
             methodXML( methodArray[i] );
         }
 
-        handler.endElement( xmlns, localName, "innerclass" );
+        handler.endElement( xmlns, "innerclass", "innerclass" );
     }
 
     /**
@@ -524,14 +570,14 @@ public class XMLDoclet
         throws SAXException
     {
         AttributesImpl atts = new AttributesImpl();
-        atts.addAttribute( xmlns, localName, "name", "String", interfaceDoc.name() );
+        atts.addAttribute( xmlns, "name", "name", "String", interfaceDoc.name() );
         String access = "package";
         if ( interfaceDoc.isPublic() )
         {
             access = "public";
         }
-        atts.addAttribute( xmlns, localName, "access", "String", access );
-        handler.startElement( xmlns, localName, "interface", atts );
+        atts.addAttribute( xmlns, "access", "access", "String", access );
+        handler.startElement( xmlns, "interface", "interface", atts );
 
         // generate "doc" sub-element
         docXML( interfaceDoc );
@@ -553,7 +599,7 @@ public class XMLDoclet
             methodXML( methodArray[i] );
         }
 
-        handler.endElement( xmlns, localName, "interface" );
+        handler.endElement( xmlns, "interface", "interface" );
     }
 
     /**
@@ -566,12 +612,12 @@ public class XMLDoclet
         ClassDoc[] interfaceArray = interfaceDoc.interfaces();
         if ( interfaceArray.length > 0 )
         {
-            handler.startElement( xmlns, localName, "extends_interface", emptyAtts );
+            handler.startElement( xmlns, "extends_interface", "extends_interface", emptyAtts );
             for ( int i = 0; i < interfaceArray.length; ++i )
             {
                 createRefXML( "interfaceref", interfaceArray[i].qualifiedName() );
             }
-            handler.endElement( xmlns, localName, "extends_interface" );
+            handler.endElement( xmlns, "extends_interface", "extends_interface" );
         }
     }
 
@@ -585,12 +631,12 @@ public class XMLDoclet
         ClassDoc[] interfaceArray = classDoc.interfaces();
         if ( interfaceArray.length > 0 )
         {
-            handler.startElement( xmlns, localName, "implements", emptyAtts );
+            handler.startElement( xmlns, "implements", "implements", emptyAtts );
             for ( int i = 0; i < interfaceArray.length; ++i )
             {
                 createRefXML( "interfaceref", interfaceArray[i].qualifiedName() );
             }
-            handler.endElement( xmlns, localName, "implements" );
+            handler.endElement( xmlns, "implements", "implements" );
         }
     }
 
@@ -604,7 +650,7 @@ public class XMLDoclet
         ThrowsTag[] tagArray = member.throwsTags();
         if ( tagArray.length > 0 )
         {
-            handler.startElement( xmlns, localName, "throws", emptyAtts );
+            handler.startElement( xmlns, "throws", "throws", emptyAtts );
             for ( int i = 0; i < tagArray.length; ++i )
             {
                 ClassDoc exceptionClass = tagArray[i].exception();
@@ -619,7 +665,7 @@ public class XMLDoclet
                 }
                 createRefXML( "classref", name );
             }
-            handler.endElement( xmlns, localName, "throws" );
+            handler.endElement( xmlns, "throws", "throws" );
         }
     }
 
@@ -638,9 +684,9 @@ public class XMLDoclet
         throws SAXException
     {
         AttributesImpl atts = new AttributesImpl();
-        atts.addAttribute( xmlns, localName, "name", "String", nameValue );
-        handler.startElement( xmlns, localName, elementName, atts );
-        handler.endElement( xmlns, localName, elementName );
+        atts.addAttribute( xmlns, "name", "name", "String", nameValue );
+        handler.startElement( xmlns, elementName, elementName, atts );
+        handler.endElement( xmlns, elementName, elementName );
     }
 
     /**
@@ -655,9 +701,9 @@ public class XMLDoclet
         {
             // primitive data type
             AttributesImpl subElmAtts = new AttributesImpl();
-            subElmAtts.addAttribute( xmlns, localName, "type", "String", qualifiedName );
-            handler.startElement( xmlns, localName, "primitive", subElmAtts );
-            handler.endElement( xmlns, localName, "primitive" );
+            subElmAtts.addAttribute( xmlns, "type", "type", "String", qualifiedName );
+            handler.startElement( xmlns, "primitive", "primitive", subElmAtts );
+            handler.endElement( xmlns, "primitive", "primitive" );
         }
         else if ( fieldType.isInterface() )
         {
@@ -688,7 +734,7 @@ public class XMLDoclet
         throws SAXException
     {
         AttributesImpl atts = new AttributesImpl();
-        atts.addAttribute( xmlns, localName, "name", "String", field.name() );
+        atts.addAttribute( xmlns, "name", "name", "String", field.name() );
         String access = "package";
 
         if ( field.isPrivate() )
@@ -703,15 +749,15 @@ public class XMLDoclet
         {
             access = "public";
         }
-        atts.addAttribute( xmlns, localName, "access", "String", access );
+        atts.addAttribute( xmlns, "access", "access", "String", access );
 
-        atts.addAttribute( xmlns, localName, "dimension", "String", field.type().dimension() );
-        atts.addAttribute( xmlns, localName, "synthetic", "String", "" + field.isSynthetic() );
-        atts.addAttribute( xmlns, localName, "static", "String", "" + field.isStatic() );
-        atts.addAttribute( xmlns, localName, "final", "String", "" + field.isFinal() );
-        atts.addAttribute( xmlns, localName, "transient", "String", "" + field.isTransient() );
-        atts.addAttribute( xmlns, localName, "volatile", "String", "" + field.isVolatile() );
-        handler.startElement( xmlns, localName, "field", atts );
+        atts.addAttribute( xmlns, "dimension", "dimension", "String", field.type().dimension() );
+        atts.addAttribute( xmlns, "synthetic", "synthetic", "String", "" + field.isSynthetic() );
+        atts.addAttribute( xmlns, "static", "static", "String", "" + field.isStatic() );
+        atts.addAttribute( xmlns, "final", "final", "String", "" + field.isFinal() );
+        atts.addAttribute( xmlns, "transient", "transient", "String", "" + field.isTransient() );
+        atts.addAttribute( xmlns, "volatile", "volatile", "String", "" + field.isVolatile() );
+        handler.startElement( xmlns, "field", "field", atts );
 
         // generate "doc" sub-element
         docXML( field );
@@ -719,7 +765,7 @@ public class XMLDoclet
         // generate "(classref|interfaceref|primitive)" sub-element
         createTypeRef( field.type() ); // foo , field.qualifiedName());
 
-        handler.endElement( xmlns, localName, "field" );
+        handler.endElement( xmlns, "field", "field" );
     }
 
     /**
@@ -734,7 +780,7 @@ public class XMLDoclet
         throws SAXException
     {
         AttributesImpl atts = new AttributesImpl();
-        atts.addAttribute( xmlns, localName, "name", "String", constrDoc.qualifiedName() );
+        atts.addAttribute( xmlns, "name", "name", "String", constrDoc.qualifiedName() );
         String access = "package";
         if ( constrDoc.isPrivate() )
         {
@@ -748,9 +794,9 @@ public class XMLDoclet
         {
             access = "public";
         }
-        atts.addAttribute( xmlns, localName, "access", "String", access );
-        atts.addAttribute( xmlns, localName, "synthetic", "String", "" + constrDoc.isSynthetic() );
-        handler.startElement( xmlns, localName, "constructor", atts );
+        atts.addAttribute( xmlns, "access", "access", "String", access );
+        atts.addAttribute( xmlns, "synthetic", "synthetic", "String", "" + constrDoc.isSynthetic() );
+        handler.startElement( xmlns, "constructor", "constructor", atts );
 
         // generate "doc" sub-element
         docXML( constrDoc );
@@ -765,7 +811,7 @@ public class XMLDoclet
         // generate "throws" sub-element
         throwsXML( constrDoc );
 
-        handler.endElement( xmlns, localName, "constructor" );
+        handler.endElement( xmlns, "constructor", "constructor" );
     }
 
     /**
@@ -785,7 +831,7 @@ public class XMLDoclet
     {
         AttributesImpl atts = new AttributesImpl();
         //atts.addAttribute(xmlns, localName, "", String, );
-        atts.addAttribute( xmlns, localName, "name", "String", methodDoc.name() );
+        atts.addAttribute( xmlns, "name", "name", "String", methodDoc.name() );
 
         String access = "package";
         if ( methodDoc.isPrivate() )
@@ -800,7 +846,7 @@ public class XMLDoclet
         {
             access = "public";
         }
-        atts.addAttribute( xmlns, localName, "access", "String", access );
+        atts.addAttribute( xmlns, "access", "access", "String", access );
 
         String extensibility = "default";
         if ( methodDoc.isAbstract() )
@@ -811,13 +857,13 @@ public class XMLDoclet
         {
             extensibility = "final";
         }
-        atts.addAttribute( xmlns, localName, "extensibility", "String", extensibility );
+        atts.addAttribute( xmlns, "extensibility", "extensibility", "String", extensibility );
 
-        atts.addAttribute( xmlns, localName, "native", "String", "" + methodDoc.isNative() );
-        atts.addAttribute( xmlns, localName, "synthetic", "String", "" + methodDoc.isSynthetic() );
-        atts.addAttribute( xmlns, localName, "static", "String", "" + methodDoc.isStatic() );
-        atts.addAttribute( xmlns, localName, "synchronized", "String", "" + methodDoc.isSynchronized() );
-        handler.startElement( xmlns, localName, "method", atts );
+        atts.addAttribute( xmlns, "native", "native", "String", "" + methodDoc.isNative() );
+        atts.addAttribute( xmlns, "synthetic", "synthetic", "String", "" + methodDoc.isSynthetic() );
+        atts.addAttribute( xmlns, "static", "static", "String", "" + methodDoc.isStatic() );
+        atts.addAttribute( xmlns, "synchronized", "synchronized", "String", "" + methodDoc.isSynchronized() );
+        handler.startElement( xmlns, "method", "method", atts );
 
         // generate "doc" sub-element
         docXML( methodDoc );
@@ -835,7 +881,7 @@ public class XMLDoclet
         // generate "throws" sub-element
         throwsXML( methodDoc );
 
-        handler.endElement( xmlns, localName, "method" );
+        handler.endElement( xmlns, "method", "method" );
     }
 
     /**
@@ -847,13 +893,13 @@ public class XMLDoclet
         throws SAXException
     {
         AttributesImpl atts = new AttributesImpl();
-        atts.addAttribute( xmlns, localName, "dimension", "String", type.dimension() );
-        handler.startElement( xmlns, localName, "returns", atts );
+        atts.addAttribute( xmlns, "dimension", "dimension", "String", type.dimension() );
+        handler.startElement( xmlns, "returns", "returns", atts );
 
         // generate "(classref|interfaceref|primitive)" sub-element
         createTypeRef( type );
 
-        handler.endElement( xmlns, localName, "returns" );
+        handler.endElement( xmlns, "returns", "returns" );
     }
 
     /**
@@ -868,21 +914,21 @@ public class XMLDoclet
         throws SAXException
     {
         AttributesImpl atts = new AttributesImpl();
-        atts.addAttribute( xmlns, localName, "name", "String", parameter.name() );
+        atts.addAttribute( xmlns, "name", "name", "String", parameter.name() );
         boolean isFinal = false;
         Type type = parameter.type();
         if ( type.asClassDoc() == null )
         {
             isFinal = true;
         }
-        atts.addAttribute( xmlns, localName, "final", "String", "" + "" + isFinal );
-        atts.addAttribute( xmlns, localName, "dimension", "String", parameter.type().dimension() );
-        handler.startElement( xmlns, localName, "parameter", atts );
+        atts.addAttribute( xmlns, "final", "final", "String", "" + "" + isFinal );
+        atts.addAttribute( xmlns, "dimension", "dimension", "String", parameter.type().dimension() );
+        handler.startElement( xmlns, "parameter", "parameter", atts );
 
         // generate "(classref|interfaceref|primitive)" sub-element
         createTypeRef( parameter.type() );
 
-        handler.endElement( xmlns, localName, "parameter" );
+        handler.endElement( xmlns, "parameter", "parameter" );
     }
 
     /**
@@ -919,7 +965,7 @@ public class XMLDoclet
         }
         if ( createDoc )
         {
-            handler.startElement( xmlns, localName, "doc", emptyAtts );
+            handler.startElement( xmlns, "doc", "doc", emptyAtts );
             if ( !commentText.equals( "" ) )
             {
                 handler.characters( commentText.toCharArray(), 0, commentText.length() );
@@ -928,7 +974,7 @@ public class XMLDoclet
             {
                 tagXML( tags[i] );
             }
-            handler.endElement( xmlns, localName, "doc" );
+            handler.endElement( xmlns, "doc", "doc" );
         }
     }
 
@@ -941,9 +987,9 @@ public class XMLDoclet
         String name = tag.name().substring( 1 ) + "tag";
         if ( !tag.text().equals( "" ) )
         {
-            handler.startElement( xmlns, localName, name, emptyAtts );
+            handler.startElement( xmlns, name, name, emptyAtts );
             handler.characters( tag.text().toCharArray(), 0, tag.text().length() );
-            handler.endElement( xmlns, localName, name );
+            handler.endElement( xmlns, name, name );
         }
     }
 
@@ -158,6 +158,7 @@ public class GenerateHTMLJavaSrc
         p1.run();
 
         Pass2 p2 = new Pass2( getOptions() );
+        p2.setChangedReferents( p1.getChangedReferents() );
         p2.run();
 
         if ( StringUtils.isNotEmpty( getOptions().getStylesheetfile() ) )
@@ -308,6 +309,17 @@ public class GenerateHTMLJavaSrc
             getOptions().setHeader( header );
         }
 
+        String incrementalStr = System.getProperty( "incremental" );
+        if ( incrementalStr != null )
+        {
+            incrementalStr = incrementalStr.trim();
+            if ( incrementalStr.equalsIgnoreCase( "on" ) || incrementalStr.equalsIgnoreCase( "true" )
+                || incrementalStr.equalsIgnoreCase( "yes" ) || incrementalStr.equalsIgnoreCase( "1" ) )
+            {
+                getOptions().setIncremental( true );
+            }
+        }
+
         String packagesheader = System.getProperty( "packagesheader" );
         if ( StringUtils.isNotEmpty( packagesheader ) )
         {
@@ -331,6 +343,19 @@ public class GenerateHTMLJavaSrc
             getOptions().setStylesheetfile( stylesheetfile );
         }
 
+        String threadsStr = System.getProperty( "threads" );
+        if ( StringUtils.isNotEmpty( threadsStr ) )
+        {
+            try
+            {
+                getOptions().setThreads( Integer.parseInt( threadsStr.trim() ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                throw new IllegalArgumentException( "threads should be a number: " + threadsStr );
+            }
+        }
+
         String top = System.getProperty( "top" );
         if ( StringUtils.isNotEmpty( top ) )
         {
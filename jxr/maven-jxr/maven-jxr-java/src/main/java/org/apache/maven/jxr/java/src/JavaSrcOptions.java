@@ -52,6 +52,9 @@ public class JavaSrcOptions
     /** Specifies the header text to be placed at the top of each output file. */
     private String header;
 
+    /** Specify incremental generation, i.e. only regenerate what changed since the last run, false by default. */
+    private boolean incremental;
+
     /** Specifies the text for upper left frame. */
     private String packagesheader;
 
@@ -64,6 +67,9 @@ public class JavaSrcOptions
     /** Specifies the path of an alternate HTML stylesheet file. */
     private String stylesheetfile;
 
+    /** Number of threads used to parse and write the sources, the number of processors by default. */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
     /** Specifies the top text to be placed at the top of each output file. */
     private String top;
 
@@ -218,6 +224,16 @@ public class JavaSrcOptions
         return this.stylesheetfile;
     }
 
+    /**
+     * Getter for the threads
+     *
+     * @return the threads
+     */
+    public int getThreads()
+    {
+        return this.threads;
+    }
+
     /**
      * Getter for the top
      *
@@ -238,6 +254,16 @@ public class JavaSrcOptions
         return this.windowtitle;
     }
 
+    /**
+     * Getter for the incremental
+     *
+     * @return the incremental
+     */
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
     /**
      * Getter for the recurse
      *
@@ -338,6 +364,16 @@ public class JavaSrcOptions
         this.packagesheader = packagesheader;
     }
 
+    /**
+     * Setter for the incremental
+     *
+     * @param incremental the incremental to set
+     */
+    public void setIncremental( boolean incremental )
+    {
+        this.incremental = incremental;
+    }
+
     /**
      * Setter for the recurse
      *
@@ -373,6 +409,16 @@ public class JavaSrcOptions
         this.stylesheetfile = stylesheetfile;
     }
 
+    /**
+     * Setter for the threads
+     *
+     * @param threads the threads to set, values lower than 2 mean a serial run
+     */
+    public void setThreads( int threads )
+    {
+        this.threads = threads;
+    }
+
     /**
      * Setter for the top
      *
@@ -415,10 +461,12 @@ public class JavaSrcOptions
         buffer.append( " encoding = " ).append( encoding );
         buffer.append( " footer = " ).append( footer );
         buffer.append( " header = " ).append( header );
+        buffer.append( " incremental = " ).append( incremental );
         buffer.append( " packagesheader = " ).append( packagesheader );
         buffer.append( " recurse = " ).append( recurse );
         buffer.append( " srcDir = " ).append( srcDirs );
         buffer.append( " stylesheetfile = " ).append( stylesheetfile );
+        buffer.append( " threads = " ).append( threads );
         buffer.append( " top = " ).append( top );
         buffer.append( " verbose = " ).append( verbose );
         buffer.append( " windowtitle = " ).append( windowtitle );
@@ -55,6 +55,9 @@ public class JavaSrcTask
     /** Specifies the header text to be placed at the top of each output file. */
     private String header;
 
+    /** Specify incremental generation, i.e. only regenerate what changed since the last run, false by default. */
+    private boolean incremental;
+
     /** Specifies the text for upper left frame. */
     private String packagesheader;
 
@@ -67,6 +70,9 @@ public class JavaSrcTask
     /** Specifies the path of an alternate HTML stylesheet file. */
     private String stylesheetfile;
 
+    /** Number of threads used to parse and write the sources, the number of processors by default. */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
     /** Specifies the top text to be placed at the top of each output file. */
     private String top;
 
@@ -100,9 +106,11 @@ public class JavaSrcTask
             options.setEncoding( encoding );
             options.setFooter( footer );
             options.setHeader( header );
+            options.setIncremental( incremental );
             options.setPackagesheader( packagesheader );
             options.setRecurse( recurse );
             options.setStylesheetfile( stylesheetfile );
+            options.setThreads( threads );
             options.setTop( top );
             options.setVerbose( verbose );
             options.setWindowtitle( windowtitle );
@@ -224,6 +232,16 @@ public class JavaSrcTask
         return this.stylesheetfile;
     }
 
+    /**
+     * Getter for the threads
+     *
+     * @return the threads
+     */
+    public int getThreads()
+    {
+        return this.threads;
+    }
+
     /**
      * Getter for the top
      *
@@ -244,6 +262,16 @@ public class JavaSrcTask
         return this.windowtitle;
     }
 
+    /**
+     * Getter for the incremental
+     *
+     * @return the incremental
+     */
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
     /**
      * Getter for the recurse
      *
@@ -344,6 +372,16 @@ public class JavaSrcTask
         this.packagesheader = packagesheader;
     }
 
+    /**
+     * Setter for the incremental
+     *
+     * @param incremental the incremental to set
+     */
+    public void setIncremental( boolean incremental )
+    {
+        this.incremental = incremental;
+    }
+
     /**
      * Setter for the recurse
      *
@@ -374,6 +412,16 @@ public class JavaSrcTask
         this.stylesheetfile = stylesheetfile;
     }
 
+    /**
+     * Setter for the threads
+     *
+     * @param threads the threads to set
+     */
+    public void setThreads( int threads )
+    {
+        this.threads = threads;
+    }
+
     /**
      * Setter for the top
      *
@@ -20,10 +20,18 @@ package org.apache.maven.jxr.java.src.html;
  */
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.GregorianCalendar;
+import java.util.Iterator;
 import java.util.List;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.maven.jxr.java.src.GenerateHTMLJavaSrc;
 import org.apache.maven.jxr.java.src.JavaSrcOptions;
@@ -41,6 +49,9 @@ abstract class AbstractPass
 
     protected static final String DEFAULT_DOCENCODING = "ISO-8859-1";
 
+    /** Number of tasks queued per thread, to keep the threads busy without holding every file in memory */
+    private static final int TASKS_PER_THREAD = 4;
+
     private JavaSrcOptions options;
 
     /**
@@ -85,6 +96,100 @@ abstract class AbstractPass
         return this.options;
     }
 
+    /**
+     * @return the number of threads to use, at least 1.
+     * @see JavaSrcOptions#getThreads()
+     */
+    int getThreads()
+    {
+        return Math.max( 1, this.options.getThreads() );
+    }
+
+    /**
+     * @return the maximum number of tasks which should wait for a thread.
+     */
+    int getMaxPendingTasks()
+    {
+        return getThreads() * TASKS_PER_THREAD;
+    }
+
+    /**
+     * @param name the prefix of the thread names
+     * @return a new pool of daemon threads, sized by the threads option.
+     */
+    ExecutorService newExecutor( final String name )
+    {
+        return Executors.newFixedThreadPool( getThreads(), new ThreadFactory()
+        {
+            private int count;
+
+            public synchronized Thread newThread( Runnable r )
+            {
+                Thread t = new Thread( r, name + "-" + ( ++count ) );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+    }
+
+    /**
+     * Waits for a task to complete.
+     *
+     * @param future the task
+     * @return the task result
+     * @throws IOException if the task failed with it, or if the current thread is interrupted
+     */
+    static Object await( Future future )
+        throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for a task" );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+
+            IOException ioe = new IOException( String.valueOf( cause ) );
+            ioe.initCause( cause );
+            throw ioe;
+        }
+    }
+
+    /**
+     * Waits for all the given tasks to complete.
+     *
+     * @param futures a list of <code>Future</code>
+     * @throws IOException if any
+     * @see #await(Future)
+     */
+    static void awaitAll( List futures )
+        throws IOException
+    {
+        for ( Iterator it = futures.iterator(); it.hasNext(); )
+        {
+            await( (Future) it.next() );
+        }
+        futures.clear();
+    }
+
     /**
      * Returns the path to the top level of the source hierarchy from the files
      * of a given class.
@@ -26,12 +26,32 @@ import java.io.UnsupportedEncodingException;
 
 /**
  * Class HTMLOutputWriter
+ * <p/>
+ * The characters are gathered in a buffer, and handed to the encoder in large chunks.
  *
  * @version $Id$
  */
 class HTMLOutputWriter
     extends OutputStreamWriter
 {
+    /** Size of the character buffer */
+    private static final int BUFFER_SIZE = 16384;
+
+    /** The HTML escape of the ASCII characters, <code>null</code> for the ones written as is */
+    private static final String[] ESCAPES = new String[128];
+
+    static
+    {
+        ESCAPES['<'] = "&lt;";
+        ESCAPES['>'] = "&gt;";
+    }
+
+    /** Field buffer */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /** Field count */
+    private int count;
+
     /**
      * Constructor HTMLOutputWriter
      *
@@ -53,6 +73,43 @@ class HTMLOutputWriter
         super( output, charsetName );
     }
 
+    /** {@inheritDoc} */
+    public void write( int c )
+        throws IOException
+    {
+        writeRaw( c );
+    }
+
+    /** {@inheritDoc} */
+    public void write( char[] cbuf, int off, int len )
+        throws IOException
+    {
+        writeRaw( cbuf, off, len );
+    }
+
+    /** {@inheritDoc} */
+    public void write( String str, int off, int len )
+        throws IOException
+    {
+        writeRaw( str, off, len );
+    }
+
+    /** {@inheritDoc} */
+    public void flush()
+        throws IOException
+    {
+        flushBuffer();
+        super.flush();
+    }
+
+    /** {@inheritDoc} */
+    public void close()
+        throws IOException
+    {
+        flushBuffer();
+        super.close();
+    }
+
     /**
      * Method writeHTML
      *
@@ -62,21 +119,15 @@ class HTMLOutputWriter
     void writeHTML( int c )
         throws IOException
     {
+        String escape = ( c >= 0 && c < ESCAPES.length ) ? ESCAPES[c] : null;
 
-        switch ( c )
+        if ( escape != null )
         {
-
-            case '<':
-                this.write( "&lt;" );
-                break;
-
-            case '>':
-                this.write( "&gt;" );
-                break;
-
-            default:
-                super.write( c );
-                break;
+            writeRaw( escape, 0, escape.length() );
+        }
+        else
+        {
+            writeRaw( c );
         }
     }
 
@@ -89,10 +140,121 @@ class HTMLOutputWriter
     void writeHTML( String s )
         throws IOException
     {
+        char[] chars = s.toCharArray();
+
+        writeHTML( chars, 0, chars.length );
+    }
+
+    /**
+     * Writes a range of characters, escaping them when needed, without going through {@link #writeHTML(int)}.
+     *
+     * @param cbuf
+     * @param off
+     * @param len
+     * @throws IOException
+     */
+    void writeHTML( char[] cbuf, int off, int len )
+        throws IOException
+    {
+        int end = off + len;
+        int start = off;
+
+        for ( int i = off; i < end; i++ )
+        {
+            char c = cbuf[i];
+
+            if ( c < ESCAPES.length && ESCAPES[c] != null )
+            {
+                writeRaw( cbuf, start, i - start );
+                writeRaw( ESCAPES[c], 0, ESCAPES[c].length() );
+                start = i + 1;
+            }
+        }
 
-        for ( int i = 0; i < s.length(); i++ )
+        writeRaw( cbuf, start, end - start );
+    }
+
+    /**
+     * Adds a character to the buffer, as is.
+     *
+     * @param c
+     * @throws IOException
+     */
+    final void writeRaw( int c )
+        throws IOException
+    {
+        if ( count == buffer.length )
+        {
+            flushBuffer();
+        }
+
+        buffer[count++] = (char) c;
+    }
+
+    /**
+     * Adds characters to the buffer, as is.
+     *
+     * @param cbuf
+     * @param off
+     * @param len
+     * @throws IOException
+     */
+    final void writeRaw( char[] cbuf, int off, int len )
+        throws IOException
+    {
+        if ( len > buffer.length - count )
+        {
+            flushBuffer();
+
+            if ( len >= buffer.length )
+            {
+                super.write( cbuf, off, len );
+                return;
+            }
+        }
+
+        System.arraycopy( cbuf, off, buffer, count, len );
+        count += len;
+    }
+
+    /**
+     * Adds characters to the buffer, as is.
+     *
+     * @param str
+     * @param off
+     * @param len
+     * @throws IOException
+     */
+    final void writeRaw( String str, int off, int len )
+        throws IOException
+    {
+        if ( len > buffer.length - count )
+        {
+            flushBuffer();
+
+            if ( len >= buffer.length )
+            {
+                super.write( str, off, len );
+                return;
+            }
+        }
+
+        str.getChars( off, off + len, buffer, count );
+        count += len;
+    }
+
+    /**
+     * Hands the buffered characters to the encoder.
+     *
+     * @throws IOException
+     */
+    private void flushBuffer()
+        throws IOException
+    {
+        if ( count > 0 )
         {
-            this.writeHTML( s.charAt( i ) );
+            super.write( buffer, 0, count );
+            count = 0;
         }
     }
 }
@@ -116,22 +116,63 @@ class LineOutputWriter
     {
         int length = s.length();
 
+        if ( length == 0 )
+        {
+            return;
+        }
+
+        if ( _firstLine )
+        {
+            _firstLine = false;
+
+            writeLineNumber();
+        }
+
+        int start = 0;
+
         for ( int i = 0; i < length; i++ )
         {
-            this.write( s.charAt( i ) );
+            if ( s.charAt( i ) == '\n' )
+            {
+                writeRaw( s, start, i + 1 - start );
+                writeLineNumber();
+                start = i + 1;
+            }
         }
+
+        writeRaw( s, start, length - start );
     }
 
     /** {@inheritDoc} */
-    public void writeHTML( String s )
+    void writeHTML( char[] cbuf, int off, int len )
         throws IOException
     {
-        int length = s.length();
+        if ( len == 0 )
+        {
+            return;
+        }
 
-        for ( int i = 0; i < length; i++ )
+        if ( _firstLine )
+        {
+            _firstLine = false;
+
+            writeLineNumber();
+        }
+
+        int end = off + len;
+        int start = off;
+
+        for ( int i = off; i < end; i++ )
         {
-            this.writeHTML( s.charAt( i ) );
+            if ( cbuf[i] == '\n' )
+            {
+                super.writeHTML( cbuf, start, i + 1 - start );
+                writeLineNumber();
+                start = i + 1;
+            }
         }
+
+        super.writeHTML( cbuf, start, end - start );
     }
 
     /**
@@ -143,20 +184,21 @@ class LineOutputWriter
         throws IOException
     {
         String lineString = Integer.toString( _lineNumber );
-        String spacing = "";
 
-        for ( int i = 0; i < MAX_LINE_NUMBER_DIGITS - lineString.length(); i++ )
+        // add linenum tag
+        writeRaw( "<a href=\"#", 0, 10 );
+        writeRaw( lineString, 0, lineString.length() );
+        writeRaw( "\" name=\"", 0, 8 );
+        writeRaw( lineString, 0, lineString.length() );
+        writeRaw( "\" class=\"linenum\">", 0, 18 );
+        writeRaw( lineString, 0, lineString.length() );
+        writeRaw( "</a>", 0, 4 );
+
+        for ( int i = lineString.length(); i < MAX_LINE_NUMBER_DIGITS; i++ )
         {
-            spacing += " ";
+            writeRaw( ' ' );
         }
 
-        // add linenum tag
-        lineString = "<a href=\"#" + _lineNumber + "\" name=\"" + lineString + "\" class=\"linenum\">" + lineString;
-        lineString += "</a>";
-        lineString += spacing;
-
-        this.write( lineString );
-
         _lineNumber++;
     }
 }
@@ -20,18 +20,23 @@ package org.apache.maven.jxr.java.src.html;
  */
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 import org.apache.maven.jxr.java.src.GenerateHTMLJavaSrc;
@@ -39,11 +44,12 @@ import org.apache.maven.jxr.java.src.JavaSrcOptions;
 import org.apache.maven.jxr.java.src.symtab.HTMLTag;
 import org.apache.maven.jxr.java.src.symtab.HTMLTagContainer;
 import org.apache.maven.jxr.java.src.symtab.PackageDef;
+import org.apache.maven.jxr.java.src.symtab.ReferenceCollector;
 import org.apache.maven.jxr.java.src.symtab.SymbolTable;
 import org.apache.maven.jxr.java.src.util.JSCollections;
-import org.apache.maven.jxr.java.src.util.SkipCRInputStream;
 import org.apache.maven.jxr.java.src.xref.FileListener;
 import org.apache.maven.jxr.java.src.xref.JavaXref;
+import org.apache.maven.jxr.java.src.xref.LexedFile;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
@@ -88,12 +94,11 @@ public class Pass1
         "{@value}",
         "@version" };
 
-    int currentColumn;
-
-    int currentChar;
-
     HashSet inputFiles = new HashSet();
 
+    /** The referents whose references changed, or null if they all did */
+    private Set changedReferents;
+
     // ----------------------------------------------------------------------
     // Constructor
     // ----------------------------------------------------------------------
@@ -132,751 +137,858 @@ public class Pass1
             javaFiles.addAll( FileUtils.getFileNames( new File( srcDir ), "**/*.java", DEFAULT_EXCLUDES, true ) );
         }
 
-        // create a new symbol table
-        SymbolTable symbolTable = SymbolTable.getSymbolTable();
+        if ( getOptions().isIncremental() )
+        {
+            runIncremental( javaFiles );
+        }
+        else
+        {
+            run( javaFiles, null );
+        }
+    }
 
-        print( "Output dir: " + getDestDir() );
+    /**
+     * Returns the referents whose references changed during the last run, i.e. the
+     * <code>_ref.html</code> pages which should be written again.
+     *
+     * @return a Set of <code>package|ReferentFileClass</code> Strings, or <code>null</code> if all the
+     *         pages should be written.
+     */
+    public Set getChangedReferents()
+    {
+        return changedReferents;
+    }
 
-        symbolTable.setOutDirPath( getDestDir() );
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
 
-        println( "Parsing" );
+    /**
+     * Only parses the files which changed since the last run, using the index of the output directory.
+     * Everything is processed again if there is no usable index, if a file was added or removed, or if a
+     * changed file has other declarations than before, since the pages of unchanged files may refer to them.
+     *
+     * @param javaFiles
+     * @throws IOException
+     */
+    private void runIncremental( List javaFiles )
+        throws IOException
+    {
+        File destDir = new File( getDestDir() );
+        String fingerprint = SourceIndex.fingerprint( getOptions() );
+        SourceIndex index = SourceIndex.load( destDir, fingerprint );
 
-        // for each directory/file specified on the command line
+        Map hashes = new HashMap();
+        List changed = new ArrayList();
         for ( Iterator it = javaFiles.iterator(); it.hasNext(); )
         {
-            String file = (String) it.next();
-            try
-            {
-                JavaXref.doFile( new File( file ), symbolTable, getOptions().isRecurse(), this ); // parse it
-            }
-            catch ( ANTLRException e )
+            String path = new File( (String) it.next() ).getPath();
+            byte[] hash = SourceIndex.hash( new File( path ) );
+
+            hashes.put( path, hash );
+            if ( ( index == null ) || !SourceIndex.sameHash( index.getHash( path ), hash ) )
             {
-                throw new IOException( "ANTLRException: " + e.getMessage() + " when processing " + file );
+                changed.add( path );
             }
         }
 
-        println( "Resolving types" );
-
-        // resolve the types of all symbols in the symbol table
-        symbolTable.resolveTypes();
-        symbolTable.resolveRefs();
-
-        // Iterate through each package
-        Hashtable packageTable = symbolTable.getPackages();
-        Enumeration pEnum = packageTable.elements();
-
-        println( "Persisting definitions" );
-
-        while ( pEnum.hasMoreElements() )
+        if ( ( index != null ) && index.getPaths().equals( hashes.keySet() ) )
         {
-            PackageDef pDef = (PackageDef) pEnum.nextElement();
-
-            printAdvancement( "Processing package " + pDef.getName() );
+            if ( changed.isEmpty() )
+            {
+                println( "Sources are up to date" );
 
-            // Generate tags for each package.  We cannot do one class
-            // at a time because more than one class might be in a
-            // single file, and we write out each file only one time.
-            HTMLTagContainer tagList = new HTMLTagContainer();
+                changedReferents = Collections.EMPTY_SET;
+                return;
+            }
 
-            pDef.generateTags( tagList );
+            println( "Processing " + changed.size() + " changed file(s)" );
 
-            Hashtable fileTable = tagList.getFileTable();
-            Enumeration enumList = fileTable.keys();
-            Vector tempFileTags = new Vector();
+            SourceIndex collected = new SourceIndex( fingerprint );
+            run( changed, collected );
 
-            while ( enumList.hasMoreElements() )
+            Set referents = index.update( collected, changed, hashes );
+            if ( referents != null )
             {
-                tempFileTags.clear();
-
-                File f = (File) enumList.nextElement();
+                index.writeReferences( destDir, SourceIndex.packagesOf( referents ) );
+                index.store( destDir );
 
-                if ( inputFiles.contains( f.getAbsolutePath() ) )
-                {
-                    Vector fileTags = (Vector) fileTable.get( f );
-
-                    tempFileTags.addAll( fileTags );
-
-                    // Generate the HTML tags for all references in this file
-                    // I.e. generate HTML mark-up of this .java file
-                    SymbolTable.createReferenceTags( f, tempFileTags );
-                    SymbolTable.getMultiLinesCommentTags( f, tempFileTags );
-                    SymbolTable.getSingleLineCommentTags( f, tempFileTags );
-                    SymbolTable.getLiteralTags( f, tempFileTags );
-                    SymbolTable.getKeywordTags( f, tempFileTags );
-                    createClassFiles( tempFileTags );
-                }
+                changedReferents = referents;
+                return;
             }
 
-            pDef.persistDefinitions( getDestDir() );
+            println( "Declarations have changed, processing all files" );
         }
 
-        println( "Persisting references" );
+        SourceIndex collected = new SourceIndex( fingerprint );
+        run( javaFiles, collected );
 
-        symbolTable.persistRefs( getDestDir() );
+        // classes loaded from .def files may come from files which are not sources anymore
+        collected.getPaths().retainAll( hashes.keySet() );
+        for ( Iterator it = hashes.entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry e = (Map.Entry) it.next();
+            collected.setHash( (String) e.getKey(), (byte[]) e.getValue() );
+        }
 
-        symbolTable.finalize();
-    }
+        Set packageNames = collected.getPackageNames();
+        if ( index != null )
+        {
+            // rewrite the packages which lost all their references too
+            packageNames.addAll( index.getPackageNames() );
+        }
+        collected.writeReferences( destDir, packageNames );
+        collected.store( destDir );
 
-    // ----------------------------------------------------------------------
-    // Private methods
-    // ----------------------------------------------------------------------
+        changedReferents = null;
+    }
 
     /**
-     * Method createClassFile
+     * Parses the given files and writes their HTML pages.
      *
-     * @param tagList
-     * @param element
-     * @return
+     * @param javaFiles
+     * @param collector receives the references, or <code>null</code> to append them to the
+     *            <code>references.bin</code> stores
      * @throws IOException
      */
-    private HTMLOutputWriter createClassFile( Object[] tagList, int element )
+    private void run( List javaFiles, ReferenceCollector collector )
         throws IOException
     {
-        HTMLTag t = (HTMLTag) tagList[element];
-        String packageName = t.getPackageName();
+        // create a new symbol table
+        SymbolTable symbolTable = new SymbolTable();
+        SymbolTable.bind( symbolTable );
 
-        if ( packageName.equals( "" ) )
+        ExecutorService executor = ( getThreads() > 1 ) ? newExecutor( "jxr-pass1" ) : null;
+        try
         {
-            File tempFile = t.getFile();
-            int i = Math.min( element + 1, tagList.length );
-            HTMLTag tempTag = (HTMLTag) tagList[i];
+            print( "Output dir: " + getDestDir() );
 
-            while ( tempTag.getFile().equals( tempFile ) && ( i < tagList.length ) )
+            symbolTable.setOutDirPath( getDestDir() );
+
+            println( "Parsing" );
+
+            if ( executor != null )
             {
-                if ( ( tempTag.getPackageName() != null ) && ( tempTag.getPackageName().length() > 0 ) )
-                {
-                    packageName = tempTag.getPackageName();
+                parse( javaFiles, symbolTable, executor );
+            }
+            else
+            {
+                parse( javaFiles, symbolTable );
+            }
 
-                    break;
-                }
+            println( "Resolving types" );
 
-                i++;
+            // resolve the types of all symbols in the symbol table
+            symbolTable.resolveTypes();
+            symbolTable.resolveRefs();
 
-                tempTag = (HTMLTag) tagList[i];
-            }
-        }
+            // Iterate through each package
+            Hashtable packageTable = symbolTable.getPackages();
+            Enumeration pEnum = packageTable.elements();
 
-        String fileName = t.getFile().toString();
+            println( "Persisting definitions" );
 
-        if ( log.isDebugEnabled() )
-        {
-            log.debug( "createClassFile(Object[], int) - Package name=" + t.getPackageName() );
-        }
+            LinkedList pending = new LinkedList();
 
-        String packagePath = packageName.replace( '.', File.separatorChar );
-        //String htmlPackagePath = packageName.replace('.', '/');
-        String pathName = getDestDir() + File.separatorChar + packagePath;
+            while ( pEnum.hasMoreElements() )
+            {
+                PackageDef pDef = (PackageDef) pEnum.nextElement();
 
-        int position = fileName.lastIndexOf( File.separatorChar );
+                printAdvancement( "Processing package " + pDef.getName() );
 
-        if ( position == -1 )
-        {
-            position = 0;
-        }
+                // Generate tags for each package.  We cannot do one class
+                // at a time because more than one class might be in a
+                // single file, and we write out each file only one time.
+                HTMLTagContainer tagList = new HTMLTagContainer();
 
-        String baseName = fileName.substring( position, fileName.length() );
-        //String className = baseName.substring(
-        //        0, baseName.lastIndexOf('.')).replace(File.separatorChar, '.');
+                pDef.generateTags( tagList );
 
-        baseName = baseName.replace( '.', '_' );
-        baseName = baseName + ".html";
+                Hashtable fileTable = tagList.getFileTable();
+                Enumeration enumList = fileTable.keys();
 
-        String newFileName = pathName + File.separatorChar + baseName;
-        File f = new File( newFileName );
+                while ( enumList.hasMoreElements() )
+                {
+                    File f = (File) enumList.nextElement();
 
-        createDirs( f );
+                    if ( inputFiles.contains( f.getAbsolutePath() ) )
+                    {
+                        Vector fileTags = (Vector) fileTable.get( f );
+
+                        final Vector tempFileTags = new Vector( fileTags );
+
+                        // Generate the HTML tags for all references in this file
+                        // I.e. generate HTML mark-up of this .java file
+                        symbolTable.createReferenceTags( f, tempFileTags );
+                        symbolTable.getMultiLinesCommentTags( f, tempFileTags );
+                        symbolTable.getSingleLineCommentTags( f, tempFileTags );
+                        symbolTable.getLiteralTags( f, tempFileTags );
+                        symbolTable.getKeywordTags( f, tempFileTags );
+
+                        final ClassFileWriter writer = new ClassFileWriter( symbolTable );
+                        if ( executor != null )
+                        {
+                            // the tags are complete, so the file can be written while the next ones are tagged
+                            pending.add( executor.submit( new Runnable()
+                            {
+                                public void run()
+                                {
+                                    writer.createClassFiles( tempFileTags );
+                                }
+                            } ) );
+
+                            if ( pending.size() >= getMaxPendingTasks() )
+                            {
+                                await( (Future) pending.removeFirst() );
+                            }
+                        }
+                        else
+                        {
+                            writer.createClassFiles( tempFileTags );
+                        }
+                    }
+                }
 
-        FileOutputStream fos = new FileOutputStream( f );
-        HTMLOutputWriter output;
-        if ( StringUtils.isNotEmpty( getOptions().getDocencoding() ) )
-        {
-            output = new LineOutputWriter( fos, getOptions().getDocencoding() );
-        }
-        else
-        {
-            output = new LineOutputWriter( fos );
-        }
-        String backup = getBackupPath( tagList, element );
-        String encoding = ( StringUtils.isNotEmpty( getOptions().getDocencoding() ) ? getOptions().getDocencoding()
-                                                                                   : DEFAULT_DOCENCODING );
-
-        String header = "<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\" \"http://www.w3.org/TR/html4/loose.dtd\">\n"
-            + "<HTML>\n"
-            + "<HEAD>\n"
-            + getGeneratedBy()
-            + "\n"
-            + "<META HTTP-EQUIV=\"Content-Type\" CONTENT=\"text/html; charset="
-            + encoding
-            + "\">\n"
-            + "<TITLE>"
-            + packageName
-            + "."
-            + SymbolTable.getClassList( t.getFile() )
-            + "</TITLE>\n"
-            + "<LINK REL=\"stylesheet\" TYPE=\"text/css\" HREF=\""
-            + backup
-            + "styles.css\" TITLE=\"Style\">\n"
-            + "</HEAD>\n" + "<BODY>\n";
-
-        if ( StringUtils.isNotEmpty( getOptions().getTop() ) )
-        {
-            header += getOptions().getTop() + "<hr>\n";
-        }
+                pDef.persistDefinitions( getDestDir() );
+            }
 
-        output.write( header, 0, header.length() );
+            awaitAll( pending );
 
-        // "'<A HREF=\"./"+htmlPackagePath+"/classList.html\" TARGET=\"packageFrame\">" + packageName + "</A>: " + SymbolTable.getClassList(t.getFile()) + "');\n"+
-        packagePath = packageName.replace( '.', '/' );
+            println( "Persisting references" );
 
-        output.write( "<PRE>\n", 0, 6 );
+            if ( collector != null )
+            {
+                symbolTable.persistRefs( collector );
+            }
+            else
+            {
+                symbolTable.persistRefs( getDestDir() );
+            }
+        }
+        finally
+        {
+            if ( executor != null )
+            {
+                executor.shutdownNow();
+            }
 
-        return ( output );
+            symbolTable.finalize();
+            SymbolTable.unbind();
+        }
     }
 
     /**
-     * Method finishFile
+     * Parses the java files one after the other.
      *
-     * @param input
-     * @param output
+     * @param javaFiles
+     * @param symbolTable
      * @throws IOException
      */
-    private void finishFile( LineNumberReader input, HTMLOutputWriter output )
+    private void parse( List javaFiles, SymbolTable symbolTable )
         throws IOException
     {
-        while ( currentChar != -1 )
+        // for each directory/file specified on the command line
+        for ( Iterator it = javaFiles.iterator(); it.hasNext(); )
         {
-            output.writeHTML( currentChar );
-
-            currentChar = input.read();
+            String file = (String) it.next();
+            try
+            {
+                JavaXref.doFile( new File( file ), symbolTable, getOptions().isRecurse(), this ); // parse it
+            }
+            catch ( ANTLRException e )
+            {
+                throw new IOException( "ANTLRException: " + e.getMessage() + " when processing " + file );
+            }
         }
-
-        output.write( "</PRE>\n", 0, 7 );
-        output.write( "<HR>" );
-        output.write( "<CENTER>Generated By <A HREF=\"http://maven.apache.org/jxr\">Maven JXR " + GenerateHTMLJavaSrc.VERSION
-            + "</A>.</CENTER>" );
-        output.write( "</BODY></HTML>" );
-        IOUtil.close( output );
-        IOUtil.close( input );
     }
 
     /**
-     * Method writeUntilNextTag
+     * Lexes the java files in parallel, ahead of the parser. The symbol table is not thread-safe
+     * while parsing, so the files are still parsed one after the other, in the same order as
+     * {@link #parse(List, SymbolTable)} does.
      *
-     * @param t
-     * @param input
-     * @param output
+     * @param javaFiles
+     * @param symbolTable
+     * @param executor
      * @throws IOException
      */
-    private void writeUntilNextTag( HTMLTag t, LineNumberReader input, HTMLOutputWriter output )
+    private void parse( List javaFiles, SymbolTable symbolTable, ExecutorService executor )
         throws IOException
     {
-        if ( log.isDebugEnabled() )
-        {
-            log.debug( "writeUntilNextTag(HTMLTag, LineNumberReader, HTMLOutputWriter) - Looking for next tag line:|" );
-        }
+        LinkedList pending = new LinkedList();
+        Iterator it = javaFiles.iterator();
 
-        while ( ( currentChar != -1 ) && ( input.getLineNumber() + 1 ) != t.getLine() )
+        while ( it.hasNext() || !pending.isEmpty() )
         {
-            output.writeHTML( currentChar );
-
-            if ( log.isDebugEnabled() )
+            while ( it.hasNext() && pending.size() < getMaxPendingTasks() )
             {
-                log.debug( "writeUntilNextTag(HTMLTag, LineNumberReader, HTMLOutputWriter) - _currentChar"
-                    + currentChar );
+                final File file = new File( (String) it.next() );
+                pending.add( executor.submit( new Callable()
+                {
+                    public Object call()
+                        throws IOException
+                    {
+                        return LexedFile.lex( file );
+                    }
+                } ) );
             }
 
-            currentChar = input.read();
+            LexedFile lexedFile = (LexedFile) await( (Future) pending.removeFirst() );
+            try
+            {
+                JavaXref.doFile( lexedFile, symbolTable, this ); // parse it
+            }
+            catch ( ANTLRException e )
+            {
+                throw new IOException( "ANTLRException: " + e.getMessage() + " when processing "
+                    + lexedFile.getFile() );
+            }
         }
+    }
 
-        // Write out last carriage return
-        output.writeHTML( currentChar );
-
-        if ( log.isDebugEnabled() )
+    private void printAdvancement( String description )
+    {
+        if ( getOptions().isVerbose() )
         {
-            log.debug( "writeUntilNextTag(HTMLTag, LineNumberReader, HTMLOutputWriter) - _currentChar" + currentChar );
+            System.out.println( description );
         }
-
-        currentChar = input.read();
-
-        if ( log.isDebugEnabled() )
+        else
         {
-            log.debug( "writeUntilNextTag(HTMLTag, LineNumberReader, HTMLOutputWriter) - |" );
+            System.out.print( "." );
         }
     }
 
+    // ----------------------------------------------------------------------
+    // Static methods
+    // ----------------------------------------------------------------------
+
+    private static void print( String description )
+    {
+        System.out.print( description );
+    }
+
     /**
-     * Method writeHTMLTag
+     * Method getBackupPath
      *
-     * @param t
-     * @param input
-     * @param output
-     * @throws IOException
+     * @param tagList
+     * @param element
+     * @return
      */
-    private void writeHTMLTag( HTMLTag t, LineNumberReader input, HTMLOutputWriter output )
-        throws IOException
+    private static String getBackupPath( Object[] tagList, int element )
     {
-        // Write out line from current column to tag start column
-        if ( log.isDebugEnabled() )
-        {
-            log.debug( "writeHTMLTag(HTMLTag, LineNumberReader, HTMLOutputWriter) - Current column=" + currentColumn );
-            log.debug( "writeHTMLTag(HTMLTag, LineNumberReader, HTMLOutputWriter) - Writing up to tag start:|" );
-        }
+        HTMLTag t = (HTMLTag) tagList[element];
+        String packageName = t.getPackageName();
 
-        while ( currentColumn < t.getStartColumn() )
+        if ( packageName.equals( "" ) )
         {
-            output.writeHTML( currentChar );
+            File tempFile = t.getFile();
+            int i = Math.min( element + 1, tagList.length );
+            HTMLTag tempTag = (HTMLTag) tagList[i];
 
-            if ( currentChar == '\n' )
+            while ( tempTag.getFile().equals( tempFile ) && ( i < tagList.length ) )
             {
-                currentColumn = 0;
-            }
+                if ( ( tempTag.getPackageName() != null ) && ( tempTag.getPackageName().length() > 0 ) )
+                {
+                    packageName = tempTag.getPackageName();
 
-            if ( log.isDebugEnabled() )
-            {
-                log.debug( "writeHTMLTag(HTMLTag, LineNumberReader, HTMLOutputWriter) - _currentChar=" + currentChar );
-            }
+                    break;
+                }
 
-            currentChar = input.read();
-            currentColumn++;
-        }
+                i++;
 
-        if ( log.isDebugEnabled() )
-        {
-            log.debug( "writeHTMLTag(HTMLTag, LineNumberReader, HTMLOutputWriter) - |" );
+                tempTag = (HTMLTag) tagList[i];
+            }
         }
 
-        // Check for comment
-        if ( t.isMultiLinesComment() )
-        {
-            writeMultiLinesComment( t, input, output );
-        }
-        if ( t.isSingleLineComment() )
-        {
-            writeSingleLineComment( t, input, output );
-        }
-        else if ( t.isLiteral() )
-        {
-            writeLiteral( t, input, output );
-        }
-        else if ( t.isKeyword() )
+        return getBackupPath( packageName );
+    }
+
+    /**
+     * Writes the HTML mark-up of java files. The reading position is kept per instance, so
+     * several files can be written concurrently, each one by its own writer.
+     */
+    private class ClassFileWriter
+    {
+        private final SymbolTable symbolTable;
+
+        int currentColumn;
+
+        ClassFileWriter( SymbolTable symbolTable )
         {
-            writeKeyword( t, input, output );
+            this.symbolTable = symbolTable;
         }
-        else
+
+        /**
+         * Method createClassFile
+         *
+         * @param tagList
+         * @param element
+         * @return
+         * @throws IOException
+         */
+        private HTMLOutputWriter createClassFile( Object[] tagList, int element )
+            throws IOException
         {
-            // Write HTML tag
-            if ( t.getText() != null )
-            {
-                output.write( t.getText() );
-            }
+            HTMLTag t = (HTMLTag) tagList[element];
+            String packageName = t.getPackageName();
 
-            if ( log.isDebugEnabled() )
+            if ( packageName.equals( "" ) )
             {
-                log.debug( "writeHTMLTag(HTMLTag, LineNumberReader, HTMLOutputWriter) - Wrote tag:" + t.getText() );
-            }
+                File tempFile = t.getFile();
+                int i = Math.min( element + 1, tagList.length );
+                HTMLTag tempTag = (HTMLTag) tagList[i];
 
-            // Read past original token
-            int length = t.getOrigLength();
-
-            length = length - t.getNumBreaks();
+                while ( tempTag.getFile().equals( tempFile ) && ( i < tagList.length ) )
+                {
+                    if ( ( tempTag.getPackageName() != null ) && ( tempTag.getPackageName().length() > 0 ) )
+                    {
+                        packageName = tempTag.getPackageName();
 
-            if ( log.isDebugEnabled() )
-            {
-                log.debug( "writeHTMLTag(HTMLTag, LineNumberReader, HTMLOutputWriter) - Skipping:\"" );
-            }
+                        break;
+                    }
 
-            for ( int j = 0; j < length; j++ )
-            {
-                if ( log.isDebugEnabled() )
-                {
-                    log.debug( "writeHTMLTag(HTMLTag, LineNumberReader, HTMLOutputWriter) - _currentChar="
-                        + currentChar );
-                }
+                    i++;
 
-                if ( currentChar == '\n' )
-                {
-                    currentColumn = 0;
+                    tempTag = (HTMLTag) tagList[i];
                 }
-
-                currentChar = input.read();
-                currentColumn++;
             }
 
-            if ( currentChar == '\n' )
+            String fileName = t.getFile().toString();
+
+            if ( log.isDebugEnabled() )
             {
-                currentColumn = 0;
+                log.debug( "createClassFile(Object[], int) - Package name=" + t.getPackageName() );
             }
-        }
-    }
 
-    /**
-     * Method writeComment
-     *
-     * @param t
-     * @param input
-     * @param output
-     * @throws IOException
-     */
-    private void writeMultiLinesComment( HTMLTag t, LineNumberReader input, HTMLOutputWriter output )
-        throws IOException
-    {
-        int length = t.getLength();
-        int i = 0;
+            String packagePath = packageName.replace( '.', File.separatorChar );
+            //String htmlPackagePath = packageName.replace('.', '/');
+            String pathName = getDestDir() + File.separatorChar + packagePath;
 
-        StringBuffer sb = new StringBuffer();
-        sb.append( "<SPAN CLASS=\"singleLineComment\">" );
+            int position = fileName.lastIndexOf( File.separatorChar );
 
-        while ( i < length )
-        {
-            if ( currentChar == '\n' )
+            if ( position == -1 )
             {
-                sb.append( "</SPAN>" );
+                position = 0;
             }
 
-            switch ( currentChar )
-            {
-                case '<':
-                    sb.append( "&lt;" );
-                    break;
+            String baseName = fileName.substring( position, fileName.length() );
+            //String className = baseName.substring(
+            //        0, baseName.lastIndexOf('.')).replace(File.separatorChar, '.');
 
-                case '>':
-                    sb.append( "&gt;" );
-                    break;
+            baseName = baseName.replace( '.', '_' );
+            baseName = baseName + ".html";
 
-                default:
-                    sb.append( (char) currentChar );
-                    break;
-            }
+            String newFileName = pathName + File.separatorChar + baseName;
+            File f = new File( newFileName );
 
-            if ( currentChar == '\n' )
+            createDirs( f );
+
+            FileOutputStream fos = new FileOutputStream( f );
+            HTMLOutputWriter output;
+            if ( StringUtils.isNotEmpty( getOptions().getDocencoding() ) )
             {
-                sb.append( "<SPAN CLASS=\"singleLineComment\">" );
-                currentColumn = 0;
+                output = new LineOutputWriter( fos, getOptions().getDocencoding() );
+            }
+            else
+            {
+                output = new LineOutputWriter( fos );
+            }
+            String backup = getBackupPath( tagList, element );
+            String encoding = ( StringUtils.isNotEmpty( getOptions().getDocencoding() ) ? getOptions().getDocencoding()
+                                                                                       : DEFAULT_DOCENCODING );
+
+            String header = "<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\" \"http://www.w3.org/TR/html4/loose.dtd\">\n"
+                + "<HTML>\n"
+                + "<HEAD>\n"
+                + getGeneratedBy()
+                + "\n"
+                + "<META HTTP-EQUIV=\"Content-Type\" CONTENT=\"text/html; charset="
+                + encoding
+                + "\">\n"
+                + "<TITLE>"
+                + packageName
+                + "."
+                + symbolTable.getClassList( t.getFile() )
+                + "</TITLE>\n"
+                + "<LINK REL=\"stylesheet\" TYPE=\"text/css\" HREF=\""
+                + backup
+                + "styles.css\" TITLE=\"Style\">\n"
+                + "</HEAD>\n" + "<BODY>\n";
+
+            if ( StringUtils.isNotEmpty( getOptions().getTop() ) )
+            {
+                header += getOptions().getTop() + "<hr>\n";
             }
 
-            currentChar = input.read();
-            currentColumn++;
-            i++;
-        }
+            output.write( header, 0, header.length() );
 
-        sb.append( "</SPAN>" );
+            // "'<A HREF=\"./"+htmlPackagePath+"/classList.html\" TARGET=\"packageFrame\">" + packageName + "</A>: " + SymbolTable.getClassList(t.getFile()) + "');\n"+
+            packagePath = packageName.replace( '.', '/' );
 
-        String comment = sb.toString();
+            output.write( "<PRE>\n", 0, 6 );
 
-        // Javadoc comments
-        if ( comment.startsWith( "<SPAN CLASS=\"singleLineComment\">/**" ) )
+            return ( output );
+        }
+
+        /**
+         * Method finishFile
+         *
+         * @param input
+         * @param output
+         * @throws IOException
+         */
+        private void finishFile( SourceBuffer input, HTMLOutputWriter output )
+            throws IOException
         {
-            comment = StringUtils.replace( comment, "singleLineComment", "multiLinesComment" );
+            output.writeHTML( input.getChars(), input.getPosition(), input.getLength() - input.getPosition() );
 
-            // Highlight Javadoc reserved words
-            for ( int j = 0; j < TAGS.length; j++ )
-            {
-                comment = StringUtils.replace( comment, TAGS[j], "<B>" + TAGS[j] + "</B>" );
-            }
+            output.write( "</PRE>\n", 0, 7 );
+            output.write( "<HR>" );
+            output.write( "<CENTER>Generated By <A HREF=\"http://maven.apache.org/jxr\">Maven JXR " + GenerateHTMLJavaSrc.VERSION
+                + "</A>.</CENTER>" );
+            output.write( "</BODY></HTML>" );
+            IOUtil.close( output );
         }
-        output.write( comment );
 
-        if ( currentChar == '\n' )
+        /**
+         * Method writeUntilNextTag
+         *
+         * @param t
+         * @param input
+         * @param output
+         * @throws IOException
+         */
+        private void writeUntilNextTag( HTMLTag t, SourceBuffer input, HTMLOutputWriter output )
+            throws IOException
         {
-            currentColumn = 0;
-        }
-    }
+            // copy up to and including the last carriage return in one go
+            int start = input.getPosition();
 
-    /**
-     * Method writeSingleComment
-     *
-     * @param t
-     * @param input
-     * @param output
-     * @throws IOException
-     */
-    private void writeSingleLineComment( HTMLTag t, LineNumberReader input, HTMLOutputWriter output )
-        throws IOException
-    {
-        int length = t.getLength();
-        int i = 0;
+            input.advanceToLine( t.getLine() );
 
-        output.write( "<SPAN CLASS=\"singleLineComment\">" );
+            output.writeHTML( input.getChars(), start, input.getPosition() - start );
+        }
 
-        while ( i < length )
+        /**
+         * Method writeHTMLTag
+         *
+         * @param t
+         * @param input
+         * @param output
+         * @throws IOException
+         */
+        private void writeHTMLTag( HTMLTag t, SourceBuffer input, HTMLOutputWriter output )
+            throws IOException
         {
-            if ( currentChar == '\n' )
+            // Write out line from current column to tag start column
+            int start = input.getPosition();
+
+            while ( ( currentColumn < t.getStartColumn() ) && ( input.current() != -1 ) )
             {
-                output.write( "</SPAN>" );
+                if ( input.current() == '\n' )
+                {
+                    currentColumn = 0;
+                }
+
+                input.advance();
+                currentColumn++;
             }
-            output.writeHTML( (char) currentChar );
 
-            if ( currentChar == '\n' )
+            output.writeHTML( input.getChars(), start, input.getPosition() - start );
+
+            // Check for comment
+            if ( t.isMultiLinesComment() )
             {
-                output.write( "<SPAN CLASS=\"singleLineComment\">" );
-                currentColumn = 0;
+                writeMultiLinesComment( t, input, output );
+            }
+            if ( t.isSingleLineComment() )
+            {
+                writeSingleLineComment( t, input, output );
+            }
+            else if ( t.isLiteral() )
+            {
+                writeLiteral( t, input, output );
             }
+            else if ( t.isKeyword() )
+            {
+                writeKeyword( t, input, output );
+            }
+            else
+            {
+                // Write HTML tag
+                if ( t.getText() != null )
+                {
+                    output.write( t.getText() );
+                }
 
-            currentChar = input.read();
-            currentColumn++;
-            i++;
-        }
+                if ( log.isDebugEnabled() )
+                {
+                    log.debug( "writeHTMLTag(HTMLTag, SourceBuffer, HTMLOutputWriter) - Wrote tag:" + t.getText() );
+                }
 
-        output.write( "</SPAN>" );
+                // Read past original token
+                skip( t.getOrigLength() - t.getNumBreaks(), input );
+            }
 
-        if ( currentChar == '\n' )
-        {
-            currentColumn = 0;
+            if ( input.current() == '\n' )
+            {
+                currentColumn = 0;
+            }
         }
-    }
-
-    private void writeLiteral( HTMLTag t, LineNumberReader input, HTMLOutputWriter output )
-        throws IOException
-    {
-        int length = t.getLength();
-        int i = 0;
-
-        output.write( "<SPAN CLASS=\"string\">" );
 
-        while ( i < length )
+        /**
+         * Moves past the given number of characters, keeping track of the current column.
+         *
+         * @param length
+         * @param input
+         * @return the position of the first character skipped.
+         */
+        private int skip( int length, SourceBuffer input )
         {
-            output.writeHTML( (char) currentChar );
+            int start = input.getPosition();
 
-            if ( currentChar == '\n' )
+            for ( int i = 0; i < length; i++ )
             {
-                currentColumn = 0;
+                if ( input.current() == '\n' )
+                {
+                    currentColumn = 0;
+                }
+
+                input.advance();
+                currentColumn++;
             }
 
-            currentChar = input.read();
-            currentColumn++;
-            i++;
+            return start;
         }
 
-        output.write( "</SPAN>" );
-
-        if ( currentChar == '\n' )
+        /**
+         * Method writeComment
+         *
+         * @param t
+         * @param input
+         * @param output
+         * @throws IOException
+         */
+        private void writeMultiLinesComment( HTMLTag t, SourceBuffer input, HTMLOutputWriter output )
+            throws IOException
         {
-            currentColumn = 0;
-        }
-    }
+            int start = skip( t.getLength(), input );
+            char[] chars = input.getChars();
 
-    private void writeKeyword( HTMLTag t, LineNumberReader input, HTMLOutputWriter output )
-        throws IOException
-    {
-        int length = t.getLength();
-        int i = 0;
+            StringBuffer sb = new StringBuffer();
+            sb.append( "<SPAN CLASS=\"singleLineComment\">" );
+
+            for ( int i = start; i < input.getPosition(); i++ )
+            {
+                switch ( chars[i] )
+                {
+                    case '<':
+                        sb.append( "&lt;" );
+                        break;
 
-        output.write( "<SPAN CLASS=\"keywords\"><B>" );
+                    case '>':
+                        sb.append( "&gt;" );
+                        break;
 
-        while ( i < length )
-        {
-            output.writeHTML( (char) currentChar );
+                    case '\n':
+                        sb.append( "</SPAN>\n<SPAN CLASS=\"singleLineComment\">" );
+                        break;
 
-            if ( currentChar == '\n' )
-            {
-                currentColumn = 0;
+                    default:
+                        sb.append( chars[i] );
+                        break;
+                }
             }
 
-            currentChar = input.read();
-            currentColumn++;
-            i++;
-        }
+            sb.append( "</SPAN>" );
 
-        output.write( "</B></SPAN>" );
+            String comment = sb.toString();
 
-        if ( currentChar == '\n' )
-        {
-            currentColumn = 0;
+            // Javadoc comments
+            if ( comment.startsWith( "<SPAN CLASS=\"singleLineComment\">/**" ) )
+            {
+                comment = StringUtils.replace( comment, "singleLineComment", "multiLinesComment" );
+
+                // Highlight Javadoc reserved words
+                for ( int j = 0; j < TAGS.length; j++ )
+                {
+                    comment = StringUtils.replace( comment, TAGS[j], "<B>" + TAGS[j] + "</B>" );
+                }
+            }
+            output.write( comment );
         }
-    }
 
-    /**
-     * Method createClassFiles
-     *
-     * @param tagList
-     */
-    private void createClassFiles( Vector tagList )
-    {
-        HTMLTag t;
-        File javaFile;
-        LineNumberReader input;
-        HTMLOutputWriter output;
-        Object[] sortedList;
+        /**
+         * Method writeSingleComment
+         *
+         * @param t
+         * @param input
+         * @param output
+         * @throws IOException
+         */
+        private void writeSingleLineComment( HTMLTag t, SourceBuffer input, HTMLOutputWriter output )
+            throws IOException
+        {
+            int start = skip( t.getLength(), input );
+            int end = input.getPosition();
+            char[] chars = input.getChars();
 
-        sortedList = JSCollections.sortVector( tagList );
+            output.write( "<SPAN CLASS=\"singleLineComment\">" );
 
-        // Collections.sort(tagList);
-        t = (HTMLTag) sortedList[0];
-        javaFile = t.getFile();
+            for ( int i = start; i < end; i++ )
+            {
+                if ( chars[i] == '\n' )
+                {
+                    output.writeHTML( chars, start, i - start );
+                    output.write( "</SPAN>" );
+                    output.writeHTML( '\n' );
+                    output.write( "<SPAN CLASS=\"singleLineComment\">" );
+                    start = i + 1;
+                }
+            }
 
-        printAdvancement( "Writing tags for file " + javaFile.toString() );
+            output.writeHTML( chars, start, end - start );
+            output.write( "</SPAN>" );
+        }
 
-        // Create first file
-        try
+        private void writeLiteral( HTMLTag t, SourceBuffer input, HTMLOutputWriter output )
+            throws IOException
         {
-            output = createClassFile( sortedList, 0 );
-            SkipCRInputStream is = new SkipCRInputStream( new FileInputStream( javaFile ) );
-            if ( StringUtils.isNotEmpty( getOptions().getEncoding() ) )
-            {
-                input = new LineNumberReader( new InputStreamReader( is, getOptions().getEncoding() ) );
-            }
-            else
-            {
+            output.write( "<SPAN CLASS=\"string\">" );
 
-                input = new LineNumberReader( new InputStreamReader( is ) );
-            }
-            currentChar = input.read();
-            currentColumn = 1;
+            int start = skip( t.getLength(), input );
+            output.writeHTML( input.getChars(), start, input.getPosition() - start );
+
+            output.write( "</SPAN>" );
         }
-        catch ( Exception e )
+
+        private void writeKeyword( HTMLTag t, SourceBuffer input, HTMLOutputWriter output )
+            throws IOException
         {
-            log.error( "1: Could not open file:" + javaFile.getAbsolutePath() + " or html file.", e );
-            return;
+            output.write( "<SPAN CLASS=\"keywords\"><B>" );
+
+            int start = skip( t.getLength(), input );
+            output.writeHTML( input.getChars(), start, input.getPosition() - start );
+
+            output.write( "</B></SPAN>" );
         }
 
-        for ( int i = 0; i < sortedList.length; i++ )
+        /**
+         * Method createClassFiles
+         *
+         * @param tagList
+         */
+        private void createClassFiles( Vector tagList )
         {
-            t = (HTMLTag) sortedList[i];
+            HTMLTag t;
+            File javaFile;
+            SourceBuffer input;
+            HTMLOutputWriter output;
+            Object[] sortedList;
 
-            if ( log.isDebugEnabled() )
-            {
-                log.debug( "createClassFiles(Vector) - nTag Text=\"" + t.getText() + "\"" );
-                log.debug( "createClassFiles(Vector) - Length=" + t.getOrigLength() );
-                log.debug( "createClassFiles(Vector) - Line,col=" + t.getLine() + "," + t.getStartColumn() );
-            }
+            sortedList = JSCollections.sortVector( tagList );
 
-            // Check for new java file encountered.
-            // Close previous files and open new ones.
-            String currentFile = javaFile.toString();
-            String newFile = t.getFile().toString();
+            // Collections.sort(tagList);
+            t = (HTMLTag) sortedList[0];
+            javaFile = t.getFile();
 
-            if ( log.isDebugEnabled() )
+            printAdvancement( "Writing tags for file " + javaFile.toString() );
+
+            // Create first file
+            try
             {
-                log.debug( "createClassFiles(Vector) - cur file=|" + currentFile + "|" );
-                log.debug( "createClassFiles(Vector) - new file=|" + newFile + "|" );
+                output = createClassFile( sortedList, 0 );
+                input = new SourceBuffer( javaFile, getOptions().getEncoding() );
+                currentColumn = 1;
+            }
+            catch ( Exception e )
+            {
+                log.error( "1: Could not open file:" + javaFile.getAbsolutePath() + " or html file.", e );
+                return;
             }
 
-            if ( !newFile.equals( currentFile ) )
+            for ( int i = 0; i < sortedList.length; i++ )
             {
-                try
+                t = (HTMLTag) sortedList[i];
+
+                if ( log.isDebugEnabled() )
                 {
+                    log.debug( "createClassFiles(Vector) - nTag Text=\"" + t.getText() + "\"" );
+                    log.debug( "createClassFiles(Vector) - Length=" + t.getOrigLength() );
+                    log.debug( "createClassFiles(Vector) - Line,col=" + t.getLine() + "," + t.getStartColumn() );
+                }
 
-                    // Write out rest of previous file
-                    finishFile( input, output );
+                // Check for new java file encountered.
+                // Close previous files and open new ones.
+                String currentFile = javaFile.toString();
+                String newFile = t.getFile().toString();
 
-                    // Open new file
-                    javaFile = t.getFile();
-                    SkipCRInputStream is = new SkipCRInputStream( new FileInputStream( javaFile ) );
-                    if ( StringUtils.isNotEmpty( getOptions().getEncoding() ) )
+                if ( log.isDebugEnabled() )
+                {
+                    log.debug( "createClassFiles(Vector) - cur file=|" + currentFile + "|" );
+                    log.debug( "createClassFiles(Vector) - new file=|" + newFile + "|" );
+                }
+
+                if ( !newFile.equals( currentFile ) )
+                {
+                    try
                     {
-                        input = new LineNumberReader( new InputStreamReader( is, getOptions().getEncoding() ) );
+
+                        // Write out rest of previous file
+                        finishFile( input, output );
+
+                        // Open new file
+                        javaFile = t.getFile();
+                        input = new SourceBuffer( javaFile, getOptions().getEncoding() );
+                        output = createClassFile( sortedList, i );
+                        currentColumn = 1;
                     }
-                    else
+                    catch ( Exception e )
                     {
-                        input = new LineNumberReader( new InputStreamReader( is ) );
+                        log.error( "2: Error handling tag:" + t, e );
+
+                        continue;
                     }
-                    output = createClassFile( sortedList, i );
-                    currentColumn = 1;
-                    currentChar = input.read();
                 }
-                catch ( Exception e )
+
+                // Check for new line encountered
+                if ( t.getLine() != ( input.getLineNumber() + 1 ) )
                 {
-                    log.error( "2: Error handling tag:" + t, e );
+                    currentColumn = 1;
 
-                    continue;
-                }
-            }
+                    // Write out characters until we reach the line
+                    try
+                    {
+                        writeUntilNextTag( t, input, output );
+                    }
+                    catch ( Exception e )
+                    {
+                        log.error( "3: Error handling tag:" + t, e );
 
-            // Check for new line encountered
-            if ( t.getLine() != ( input.getLineNumber() + 1 ) )
-            {
-                currentColumn = 1;
+                        continue;
+                    }
+                }
 
-                // Write out characters until we reach the line
                 try
                 {
-                    writeUntilNextTag( t, input, output );
+                    writeHTMLTag( t, input, output );
                 }
                 catch ( Exception e )
                 {
-                    log.error( "3: Error handling tag:" + t, e );
+                    log.error( "4: Error handling tag:" + t, e );
 
                     continue;
                 }
-            }
+            } // end for
 
+            // Finish writing out the file
             try
             {
-                writeHTMLTag( t, input, output );
-            }
-            catch ( Exception e )
-            {
-                log.error( "4: Error handling tag:" + t, e );
-
-                continue;
+                finishFile( input, output );
             }
-        } // end for
-
-        // Finish writing out the file
-        try
-        {
-            finishFile( input, output );
-        }
-        catch ( IOException e )
-        {
-            log.error( "IOException: " + e.getMessage(), e );
-        }
-    }
-
-    private void printAdvancement( String description )
-    {
-        if ( getOptions().isVerbose() )
-        {
-            System.out.println( description );
-        }
-        else
-        {
-            System.out.print( "." );
-        }
-    }
-
-    // ----------------------------------------------------------------------
-    // Static methods
-    // ----------------------------------------------------------------------
-
-    private static void print( String description )
-    {
-        System.out.print( description );
-    }
-
-    /**
-     * Method getBackupPath
-     *
-     * @param tagList
-     * @param element
-     * @return
-     */
-    private static String getBackupPath( Object[] tagList, int element )
-    {
-        HTMLTag t = (HTMLTag) tagList[element];
-        String packageName = t.getPackageName();
-
-        if ( packageName.equals( "" ) )
-        {
-            File tempFile = t.getFile();
-            int i = Math.min( element + 1, tagList.length );
-            HTMLTag tempTag = (HTMLTag) tagList[i];
-
-            while ( tempTag.getFile().equals( tempFile ) && ( i < tagList.length ) )
+            catch ( IOException e )
             {
-                if ( ( tempTag.getPackageName() != null ) && ( tempTag.getPackageName().length() > 0 ) )
-                {
-                    packageName = tempTag.getPackageName();
-
-                    break;
-                }
-
-                i++;
-
-                tempTag = (HTMLTag) tagList[i];
+                log.error( "IOException: " + e.getMessage(), e );
             }
         }
-
-        return getBackupPath( packageName );
     }
 }
@@ -19,30 +19,30 @@ package org.apache.maven.jxr.java.src.html;
  * under the License.
  */
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.log4j.Logger;
 import org.apache.maven.jxr.java.src.JavaSrcOptions;
+import org.apache.maven.jxr.java.src.symtab.ReferenceReader;
 import org.apache.maven.jxr.java.src.symtab.ReferenceTypes;
+import org.apache.maven.jxr.java.src.symtab.ReferenceWriter;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
 
@@ -54,8 +54,7 @@ import com.thoughtworks.qdox.model.JavaClass;
  * <p/>
  * For each package (i.e for each output directory):
  * <ul>
- * <li>Load reference.txt</li>
- * <li>Sort references</li>
+ * <li>Stream references.bin, which is already sorted</li>
  * <li>Generate HTML one public class at a time</li>
  * </ul>
  *
@@ -71,6 +70,9 @@ public class Pass2
 
     Hashtable packageClasses;
 
+    /** The referents whose pages should be written, or null for all of them */
+    private Set changedReferents;
+
     // ----------------------------------------------------------------------
     // Constructor
     // ----------------------------------------------------------------------
@@ -92,6 +94,18 @@ public class Pass2
     // Public methods
     // ----------------------------------------------------------------------
 
+    /**
+     * Restricts the <code>_ref.html</code> pages to write, the other ones being up to date.
+     *
+     * @param changedReferents a Set of <code>package|ReferentFileClass</code> Strings, or <code>null</code>
+     *            to write all the pages, which is the default.
+     * @see Pass1#getChangedReferents()
+     */
+    public void setChangedReferents( Set changedReferents )
+    {
+        this.changedReferents = changedReferents;
+    }
+
     /**
      * @throws IOException if any
      */
@@ -105,7 +119,9 @@ public class Pass2
             log.debug( "run(String[]) - File outDir=" + outDir );
         }
 
-        walkDirectories( null, outDir );
+        Map refFiles = new LinkedHashMap();
+        walkDirectories( null, outDir, refFiles );
+        processRefFiles( refFiles );
         Collections.sort( packageNames, stringComparator() );
 
         // Create package files
@@ -135,25 +151,15 @@ public class Pass2
      *
      * @param packageName
      * @param outDir
-     * @throws IOException
+     * @param refFiles the map where to add the reference file found for each package
      */
-    private void walkDirectories( String packageName, File outDir )
-        throws IOException
+    private void walkDirectories( String packageName, File outDir, Map refFiles )
     {
-        File refFile = new File( outDir, "references.txt" );
+        File refFile = new File( outDir, ReferenceWriter.FILE_NAME );
 
         if ( refFile.exists() )
         {
-            // packageNames.add(packageName);
-            // processRefFile(packageName, refFile);
-            processRefFile( packageName, refFile );
-
-            HashMap classes = (HashMap) packageClasses.get( packageName );
-
-            if ( classes.size() > 0 )
-            {
-                packageNames.add( packageName );
-            }
+            refFiles.put( packageName, refFile );
         }
 
         File[] entries = outDir.listFiles();
@@ -164,7 +170,70 @@ public class Pass2
                 String newPackageName = ( packageName == null ) ? entries[i].getName() : packageName + "."
                     + entries[i].getName();
 
-                walkDirectories( newPackageName, entries[i] );
+                walkDirectories( newPackageName, entries[i], refFiles );
+            }
+        }
+    }
+
+    /**
+     * Processes the reference files of each package, in parallel if more than one thread is allowed.
+     * The packages are registered in the order they were found, as if they were processed one by one.
+     *
+     * @param refFiles the reference file of each package, in walk order
+     * @throws IOException
+     */
+    private void processRefFiles( Map refFiles )
+        throws IOException
+    {
+        if ( getThreads() > 1 && refFiles.size() > 1 )
+        {
+            ExecutorService executor = newExecutor( "jxr-pass2" );
+            try
+            {
+                List pending = new ArrayList();
+                for ( Iterator it = refFiles.entrySet().iterator(); it.hasNext(); )
+                {
+                    Map.Entry entry = (Map.Entry) it.next();
+                    final String packageName = (String) entry.getKey();
+                    final File refFile = (File) entry.getValue();
+
+                    // each package writes its own directory, only packageClasses is shared
+                    pending.add( executor.submit( new Callable()
+                    {
+                        public Object call()
+                            throws IOException
+                        {
+                            processRefFile( packageName, refFile );
+                            return null;
+                        }
+                    } ) );
+                }
+
+                awaitAll( pending );
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+        else
+        {
+            for ( Iterator it = refFiles.entrySet().iterator(); it.hasNext(); )
+            {
+                Map.Entry entry = (Map.Entry) it.next();
+                processRefFile( (String) entry.getKey(), (File) entry.getValue() );
+            }
+        }
+
+        for ( Iterator it = refFiles.keySet().iterator(); it.hasNext(); )
+        {
+            String packageName = (String) it.next();
+
+            HashMap classes = (HashMap) packageClasses.get( packageName );
+
+            if ( classes.size() > 0 )
+            {
+                packageNames.add( packageName );
             }
         }
     }
@@ -191,102 +260,89 @@ public class Pass2
             classes = new HashMap();
         }
 
-        // load the entire file
-        String line;
-        FileInputStream fis = new FileInputStream( refFile );
-        InputStreamReader isr;
-        if ( StringUtils.isNotEmpty( getOptions().getEncoding() ) )
-        {
-            isr = new InputStreamReader( fis, getOptions().getEncoding() );
-        }
-        else
-        {
-            isr = new InputStreamReader( fis );
-        }
-        BufferedReader br = new BufferedReader( isr );
-        Vector v = new Vector();
-
-        while ( ( line = br.readLine() ) != null )
-        {
-            v.addElement( line );
-        }
-
-        IOUtil.close( br );
-        IOUtil.close( isr );
-        IOUtil.close( fis );
-
-        String[] lines = new String[v.size()];
-        v.copyInto( lines );
-
-        // sort the lines
-        Arrays.sort( lines, stringComparator() );
+        // the references are sorted by referentFileClass, then referentTag, so stream them
+        ReferenceReader reader = new ReferenceReader( refFile );
 
         // process one referentFileClass (=one source file) at a time
         BufferedWriter bw = null;
         String prevReferentFileClass = null;
         String prevReferentTag = null;
 
-        for ( int i = 0; i < lines.length; i++ )
+        try
         {
-            line = lines[i];
-
-            if ( line.charAt( 0 ) == '#' )
+            String[] fields;
+            while ( ( fields = reader.next() ) != null )
             {
-                continue;
-            }
+                ReferenceEntry ref = new ReferenceEntry( fields );
 
-            ReferenceEntry ref = new ReferenceEntry( line );
+                if ( !ref.getReferentFileClass().equals( prevReferentFileClass ) )
+                {
+                    // close current section, if any
+                    if ( ( prevReferentTag != null ) && ( bw != null ) )
+                    {
+                        closeSection( bw, prevReferentTag );
+                    }
 
-            if ( !ref.getReferentFileClass().equals( prevReferentFileClass ) )
-            {
-                // close current section, if any
-                if ( prevReferentTag != null )
+                    // close current output file, if any
+                    if ( bw != null )
+                    {
+                        closeOutputFile( bw, prevReferentFileClass );
+                    }
+
+                    // open new output file, unless it is up to date
+                    if ( ( changedReferents == null )
+                        || changedReferents.contains( packageName + "|" + ref.getReferentFileClass() ) )
+                    {
+                        bw = openOutputFile( packageName, ref );
+                    }
+                    else
+                    {
+                        bw = null;
+                    }
+                    prevReferentFileClass = ref.getReferentFileClass();
+                    prevReferentTag = null;
+                }
+
+                if ( !classes.containsKey( ref.getReferentClass() ) )
                 {
-                    closeSection( bw, prevReferentTag );
+                    classes.put( ref.getReferentClass(), ref.getReferentFileClass() );
                 }
 
-                // close current output file, if any
-                if ( bw != null )
+                if ( bw == null )
                 {
-                    closeOutputFile( bw, prevReferentFileClass );
+                    continue;
                 }
 
-                // open new output file
-                bw = openOutputFile( packageName, ref );
-                prevReferentFileClass = ref.getReferentFileClass();
-                prevReferentTag = null;
-            }
+                if ( !ref.getReferentTag().equals( prevReferentTag ) )
+                {
+                    // write close-section stuff, if any
+                    if ( prevReferentTag != null )
+                    {
+                        closeSection( bw, prevReferentTag );
+                    }
 
-            if ( !classes.containsKey( ref.getReferentClass() ) )
-            {
-                classes.put( ref.getReferentClass(), ref.getReferentFileClass() );
-            }
+                    // write new heading based on new referent type
+                    prevReferentTag = ref.getReferentTag();
 
-            if ( !ref.getReferentTag().equals( prevReferentTag ) )
-            {
-                // write close-section stuff, if any
-                if ( prevReferentTag != null )
-                {
-                    closeSection( bw, prevReferentTag );
+                    openSection( bw, packageName, ref );
                 }
 
-                // write new heading based on new referent type
-                prevReferentTag = ref.getReferentTag();
-
-                openSection( bw, packageName, ref );
+                // write link for this reference
+                if ( !ref.getReferringMethod().equals( "?" ) )
+                {
+                    writeLink( bw, packageName, ref );
+                }
             }
 
-            // write link for this reference
-            if ( !ref.getReferringMethod().equals( "?" ) )
+            // close the last output file
+            if ( bw != null )
             {
-                writeLink( bw, packageName, ref );
+                closeOutputFile( bw, prevReferentFileClass );
             }
         }
-
-        // close the last output file
-        if ( bw != null )
+        finally
         {
-            closeOutputFile( bw, prevReferentFileClass );
+            reader.close();
         }
 
         if ( log.isDebugEnabled() )
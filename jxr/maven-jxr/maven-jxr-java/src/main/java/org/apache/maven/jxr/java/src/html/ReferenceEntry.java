@@ -19,10 +19,10 @@ package org.apache.maven.jxr.java.src.html;
  * under the License.
  */
 
-import java.util.StringTokenizer;
+import org.apache.maven.jxr.java.src.symtab.ReferenceWriter;
 
 /**
- * An entry in the references.txt file used in Pass2 class.
+ * An entry in the references.bin store used in Pass2 class.
  *
  * @author  <a href="mailto:vincent.siveton@gmail.com">Vincent Siveton</a>
  * @version  $Id$
@@ -50,21 +50,19 @@ class ReferenceEntry
     /**
      * Constructor Reference
      *
-     * @param line
+     * @param fields the fields of a reference, as read by <code>ReferenceReader</code>
      */
-    ReferenceEntry( String line )
-    {
-        StringTokenizer st = new StringTokenizer( line, "|" );
-
-        setReferentFileClass( st.nextToken() );
-        setReferentClass( st.nextToken() );
-        setReferentTag( st.nextToken() );
-        setReferentType( st.nextToken() );
-        setReferringPackage( st.nextToken() );
-        setReferringClass( st.nextToken() );
-        setReferringMethod( st.nextToken() );
-        setReferringFile( st.nextToken() );
-        setReferringLineNumber( st.nextToken() );
+    ReferenceEntry( String[] fields )
+    {
+        setReferentFileClass( fields[ReferenceWriter.REFERENT_FILE_CLASS] );
+        setReferentClass( fields[ReferenceWriter.REFERENT_CLASS] );
+        setReferentTag( fields[ReferenceWriter.REFERENT_TAG] );
+        setReferentType( fields[ReferenceWriter.REFERENT_TYPE] );
+        setReferringPackage( fields[ReferenceWriter.REFERRING_PACKAGE] );
+        setReferringClass( fields[ReferenceWriter.REFERRING_CLASS] );
+        setReferringMethod( fields[ReferenceWriter.REFERRING_METHOD] );
+        setReferringFile( fields[ReferenceWriter.REFERRING_FILE] );
+        setReferringLineNumber( fields[ReferenceWriter.REFERRING_LINE_NUMBER] );
     }
 
     String getReferentFileClass()
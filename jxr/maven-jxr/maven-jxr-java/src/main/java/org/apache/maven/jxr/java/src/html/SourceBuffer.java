@@ -0,0 +1,173 @@
+package org.apache.maven.jxr.java.src.html;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import org.apache.maven.jxr.java.src.util.SkipCRInputStream;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+
+/**
+ * The whole content of a java file, read once without carriage returns, so that <code>Pass1</code> can copy it
+ * between tags in bulk instead of one character at a time.
+ * <p/>
+ * Like a <code>LineNumberReader</code> whose last read character is the current one, it keeps track of the number
+ * of lines read up to and including the current character.
+ *
+ * @version $Id$
+ */
+class SourceBuffer
+{
+    private final char[] chars;
+
+    private final int length;
+
+    /** Index of the current character */
+    private int position;
+
+    /** Number of new lines up to and including the current character */
+    private int lineNumber;
+
+    /**
+     * Constructor SourceBuffer
+     *
+     * @param file the java file
+     * @param encoding its encoding, or <code>null</code> to use the platform one
+     * @throws IOException if any
+     */
+    SourceBuffer( File file, String encoding )
+        throws IOException
+    {
+        SkipCRInputStream is = new SkipCRInputStream( new FileInputStream( file ) );
+        Reader reader;
+        if ( StringUtils.isNotEmpty( encoding ) )
+        {
+            reader = new InputStreamReader( is, encoding );
+        }
+        else
+        {
+            reader = new InputStreamReader( is );
+        }
+
+        // most encodings need at least one byte per character
+        char[] buffer = new char[(int) file.length() + 1];
+        int count = 0;
+        try
+        {
+            int n;
+            while ( ( n = reader.read( buffer, count, buffer.length - count ) ) != -1 )
+            {
+                count += n;
+
+                if ( count == buffer.length )
+                {
+                    char[] larger = new char[buffer.length * 2];
+                    System.arraycopy( buffer, 0, larger, 0, count );
+                    buffer = larger;
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+
+        chars = buffer;
+        length = count;
+        lineNumber = ( current() == '\n' ) ? 1 : 0;
+    }
+
+    /**
+     * @return the current character, or -1 at the end of the file.
+     */
+    int current()
+    {
+        return ( position < length ) ? chars[position] : -1;
+    }
+
+    /**
+     * Moves to the next character, if any.
+     */
+    void advance()
+    {
+        if ( position < length )
+        {
+            position++;
+
+            if ( ( position < length ) && ( chars[position] == '\n' ) )
+            {
+                lineNumber++;
+            }
+        }
+    }
+
+    /**
+     * Moves past the new line which ends the line before the given one. If the current line is already past it,
+     * moves to the end of the file.
+     *
+     * @param line a line number, starting at 1
+     */
+    void advanceToLine( int line )
+    {
+        while ( ( position < length ) && ( lineNumber + 1 != line ) )
+        {
+            advance();
+        }
+
+        advance();
+    }
+
+    /**
+     * @return the number of lines read, including the current character, as <code>LineNumberReader</code> does.
+     */
+    int getLineNumber()
+    {
+        return lineNumber;
+    }
+
+    /**
+     * @return the index of the current character in {@link #getChars()}.
+     */
+    int getPosition()
+    {
+        return position;
+    }
+
+    /**
+     * @return the number of characters of the file.
+     */
+    int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * @return the content of the file, which should not be modified.
+     */
+    char[] getChars()
+    {
+        return chars;
+    }
+}
@@ -0,0 +1,486 @@
+package org.apache.maven.jxr.java.src.html;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+import org.apache.maven.jxr.java.src.GenerateHTMLJavaSrc;
+import org.apache.maven.jxr.java.src.JavaSrcOptions;
+import org.apache.maven.jxr.java.src.symtab.ReferenceCollector;
+import org.apache.maven.jxr.java.src.symtab.ReferenceWriter;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Binary index of the sources cross-referenced in an output directory, used by incremental runs.
+ * <p/>
+ * For each source file, the index keeps a hash of its content, the declarations other files may refer to, and the
+ * lines it contributed to the <code>references.bin</code> store of each package. The resolved definitions themselves
+ * are the <code>.def</code> files, which <code>PackageDef</code> loads whenever a class was not parsed.
+ *
+ * @version $Id$
+ */
+class SourceIndex
+    implements ReferenceCollector
+{
+    /** Logger for this class  */
+    private static final Logger log = Logger.getLogger( SourceIndex.class );
+
+    /** The index file name, in the output directory */
+    static final String FILE_NAME = "javasrc.idx";
+
+    private static final int VERSION = 2;
+
+    /** The options which the generated files depend on */
+    private final String fingerprint;
+
+    /** The entries, by source file path */
+    private final Map entries = new TreeMap();
+
+    /**
+     * @param fingerprint the options which the generated files depend on
+     * @see #fingerprint(JavaSrcOptions)
+     */
+    SourceIndex( String fingerprint )
+    {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Loads the index of an output directory.
+     *
+     * @param destDir the output directory
+     * @param fingerprint the options of the current run
+     * @return the index, or <code>null</code> if there is none, or if it was written by a run with other options.
+     */
+    static SourceIndex load( File destDir, String fingerprint )
+    {
+        File indexFile = new File( destDir, FILE_NAME );
+        if ( !indexFile.exists() )
+        {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream( new BufferedInputStream( new FileInputStream( indexFile ) ) );
+            if ( in.readInt() != VERSION || !fingerprint.equals( in.readUTF() ) )
+            {
+                return null;
+            }
+
+            SourceIndex index = new SourceIndex( fingerprint );
+            for ( int i = in.readInt(); i > 0; i-- )
+            {
+                Entry entry = index.getEntry( in.readUTF() );
+
+                entry.hash = new byte[in.readInt()];
+                in.readFully( entry.hash );
+
+                for ( int j = in.readInt(); j > 0; j-- )
+                {
+                    entry.declarations.add( in.readUTF() );
+                }
+
+                for ( int j = in.readInt(); j > 0; j-- )
+                {
+                    String packageName = in.readUTF();
+                    for ( int k = in.readInt(); k > 0; k-- )
+                    {
+                        entry.addReference( packageName, in.readUTF() );
+                    }
+                }
+            }
+
+            return index;
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Ignoring unreadable index " + indexFile + ": " + e.getMessage() );
+
+            return null;
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * Writes this index in an output directory.
+     *
+     * @param destDir the output directory
+     * @throws IOException if any
+     */
+    void store( File destDir )
+        throws IOException
+    {
+        DataOutputStream out =
+            new DataOutputStream( new BufferedOutputStream( new FileOutputStream( new File( destDir, FILE_NAME ) ) ) );
+        try
+        {
+            out.writeInt( VERSION );
+            out.writeUTF( fingerprint );
+            out.writeInt( entries.size() );
+
+            for ( Iterator it = entries.entrySet().iterator(); it.hasNext(); )
+            {
+                Map.Entry e = (Map.Entry) it.next();
+                Entry entry = (Entry) e.getValue();
+
+                out.writeUTF( (String) e.getKey() );
+                out.writeInt( entry.hash.length );
+                out.write( entry.hash );
+
+                out.writeInt( entry.declarations.size() );
+                for ( Iterator d = entry.declarations.iterator(); d.hasNext(); )
+                {
+                    out.writeUTF( (String) d.next() );
+                }
+
+                out.writeInt( entry.references.size() );
+                for ( Iterator r = entry.references.entrySet().iterator(); r.hasNext(); )
+                {
+                    Map.Entry refs = (Map.Entry) r.next();
+                    List lines = (List) refs.getValue();
+
+                    out.writeUTF( (String) refs.getKey() );
+                    out.writeInt( lines.size() );
+                    for ( Iterator l = lines.iterator(); l.hasNext(); )
+                    {
+                        out.writeUTF( (String) l.next() );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void reference( String packageName, File referringFile, String line )
+    {
+        getEntry( referringFile.getPath() ).addReference( packageName, line );
+    }
+
+    /** {@inheritDoc} */
+    public void declaration( File declaringFile, String referent )
+    {
+        getEntry( declaringFile.getPath() ).declarations.add( referent );
+    }
+
+    /**
+     * @return the paths of the indexed source files.
+     */
+    Set getPaths()
+    {
+        return entries.keySet();
+    }
+
+    /**
+     * @param path a source file path
+     * @return the content hash recorded for this file, or <code>null</code> if it is not indexed.
+     */
+    byte[] getHash( String path )
+    {
+        Entry entry = (Entry) entries.get( path );
+
+        return ( entry == null ) ? null : entry.hash;
+    }
+
+    /**
+     * @param path a source file path
+     * @param hash its content hash
+     */
+    void setHash( String path, byte[] hash )
+    {
+        getEntry( path ).hash = hash;
+    }
+
+    /**
+     * @return the names of the packages which have references.
+     */
+    Set getPackageNames()
+    {
+        Set packageNames = new HashSet();
+        for ( Iterator it = entries.values().iterator(); it.hasNext(); )
+        {
+            packageNames.addAll( ( (Entry) it.next() ).references.keySet() );
+        }
+
+        return packageNames;
+    }
+
+    /**
+     * Replaces the entries of the given files by the ones collected while parsing them again.
+     *
+     * @param collected the index collected while parsing the changed files
+     * @param paths the changed source file paths
+     * @param hashes the new content hash of each changed file, by path
+     * @return the referents whose references changed, as <code>package|ReferentFileClass</code>, or
+     *         <code>null</code> if the declarations changed, in which case this index is left as is.
+     * @see #getReferent(String, String)
+     */
+    Set update( SourceIndex collected, List paths, Map hashes )
+    {
+        for ( Iterator it = paths.iterator(); it.hasNext(); )
+        {
+            String path = (String) it.next();
+            Entry oldEntry = (Entry) entries.get( path );
+
+            if ( !oldEntry.declarations.equals( collected.getEntry( path ).declarations ) )
+            {
+                if ( log.isDebugEnabled() )
+                {
+                    log.debug( "update(SourceIndex, List, Map) - declarations changed in " + path );
+                }
+
+                return null;
+            }
+        }
+
+        Set referents = new HashSet();
+        for ( Iterator it = paths.iterator(); it.hasNext(); )
+        {
+            String path = (String) it.next();
+            Entry newEntry = collected.getEntry( path );
+
+            ( (Entry) entries.get( path ) ).addReferents( referents );
+            newEntry.addReferents( referents );
+
+            newEntry.hash = (byte[]) hashes.get( path );
+            entries.put( path, newEntry );
+        }
+
+        return referents;
+    }
+
+    /**
+     * Writes the <code>references.bin</code> store of the given packages, from the lines of all the indexed files.
+     *
+     * @param destDir the output directory
+     * @param packageNames the packages to write
+     * @throws IOException if any
+     */
+    void writeReferences( File destDir, Set packageNames )
+        throws IOException
+    {
+        for ( Iterator it = packageNames.iterator(); it.hasNext(); )
+        {
+            String packageName = (String) it.next();
+            File dir = new File( destDir, packageName.replace( '.', File.separatorChar ) );
+            dir.mkdirs();
+
+            // the store is rewritten instead of appended to, as ReferencePersistor does
+            ReferenceWriter writer = new ReferenceWriter( new File( dir, ReferenceWriter.FILE_NAME ), false );
+
+            for ( Iterator e = entries.values().iterator(); e.hasNext(); )
+            {
+                List lines = (List) ( (Entry) e.next() ).references.get( packageName );
+                if ( lines != null )
+                {
+                    for ( Iterator l = lines.iterator(); l.hasNext(); )
+                    {
+                        writer.add( (String) l.next() );
+                    }
+                }
+            }
+
+            writer.close();
+        }
+    }
+
+    private Entry getEntry( String path )
+    {
+        Entry entry = (Entry) entries.get( path );
+        if ( entry == null )
+        {
+            entry = new Entry();
+            entries.put( path, entry );
+        }
+
+        return entry;
+    }
+
+    // ----------------------------------------------------------------------
+    // Static methods
+    // ----------------------------------------------------------------------
+
+    /**
+     * @param options the options of a run
+     * @return a string which changes whenever an option the generated files depend on changes.
+     */
+    static String fingerprint( JavaSrcOptions options )
+    {
+        StringBuffer sb = new StringBuffer();
+        sb.append( GenerateHTMLJavaSrc.VERSION );
+        sb.append( '|' ).append( options.getBottom() );
+        sb.append( '|' ).append( options.getDocencoding() );
+        sb.append( '|' ).append( options.getDoctitle() );
+        sb.append( '|' ).append( options.getEncoding() );
+        sb.append( '|' ).append( options.getFooter() );
+        sb.append( '|' ).append( options.getHeader() );
+        sb.append( '|' ).append( options.getPackagesheader() );
+        sb.append( '|' ).append( options.isRecurse() );
+        sb.append( '|' ).append( options.getSrcDirs() );
+        sb.append( '|' ).append( options.getStylesheetfile() );
+        sb.append( '|' ).append( options.getTop() );
+        sb.append( '|' ).append( options.getWindowtitle() );
+
+        return sb.toString();
+    }
+
+    /**
+     * @param f a file
+     * @return the SHA-1 hash of the file content.
+     * @throws IOException if any
+     */
+    static byte[] hash( File f )
+        throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 should be supported by every JVM" );
+        }
+
+        InputStream in = new FileInputStream( f );
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ( ( n = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, n );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * @param hash a content hash, may be <code>null</code>
+     * @param other another content hash, may be <code>null</code>
+     * @return true if both are known and equal.
+     */
+    static boolean sameHash( byte[] hash, byte[] other )
+    {
+        return ( hash != null ) && Arrays.equals( hash, other );
+    }
+
+    /**
+     * @param packageName the package of a <code>references.bin</code> store
+     * @param line one of its lines
+     * @return the referent of the line, as <code>package|ReferentFileClass</code>, which is also the
+     *         <code>_ref.html</code> page showing it.
+     */
+    static String getReferent( String packageName, String line )
+    {
+        return packageName + "|" + line.substring( 0, line.indexOf( '|' ) );
+    }
+
+    /**
+     * @param referents a Set of <code>package|ReferentFileClass</code> Strings
+     * @return the packages of the given referents.
+     * @see #getReferent(String, String)
+     */
+    static Set packagesOf( Set referents )
+    {
+        Set packageNames = new HashSet();
+        for ( Iterator it = referents.iterator(); it.hasNext(); )
+        {
+            String referent = (String) it.next();
+            packageNames.add( referent.substring( 0, referent.indexOf( '|' ) ) );
+        }
+
+        return packageNames;
+    }
+
+    /**
+     * Indexed data of a source file.
+     */
+    private static class Entry
+    {
+        /** Content hash */
+        byte[] hash;
+
+        /** Declarations other files may refer to, as the referent part of their reference lines */
+        Set declarations = new TreeSet();
+
+        /** References contributed to each package, as Lists of lines by package name */
+        Map references = new TreeMap();
+
+        void addReference( String packageName, String line )
+        {
+            List lines = (List) references.get( packageName );
+            if ( lines == null )
+            {
+                lines = new ArrayList();
+                references.put( packageName, lines );
+            }
+
+            lines.add( line );
+        }
+
+        void addReferents( Set referents )
+        {
+            for ( Iterator it = references.entrySet().iterator(); it.hasNext(); )
+            {
+                Map.Entry e = (Map.Entry) it.next();
+                String packageName = (String) e.getKey();
+
+                for ( Iterator l = ( (List) e.getValue() ).iterator(); l.hasNext(); )
+                {
+                    referents.add( getReferent( packageName, (String) l.next() ) );
+                }
+            }
+        }
+    }
+}
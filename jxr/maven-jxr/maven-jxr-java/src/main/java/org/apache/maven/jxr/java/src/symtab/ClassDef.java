@@ -26,8 +26,6 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.Enumeration;
-import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.Set;
 import java.util.Vector;
 
@@ -98,9 +96,6 @@ public class ClassDef
     /** Field packageName */
     protected String packageName;
 
-    /** Field allClassDefs */
-    private static Hashtable allClassDefs = new Hashtable();
-
     // ==========================================================================
     // ==  Methods
     // ==========================================================================
@@ -118,16 +113,9 @@ public class ClassDef
         if ( log.isDebugEnabled() )
         {
             log.debug( "findLoadedClass(String, String) - String qualifiedName=" + qualifiedName );
-            Enumeration keys = allClassDefs.keys();
-            StringBuffer sb = new StringBuffer( "allClassDefs={" );
-            while ( keys.hasMoreElements() )
-            {
-                sb.append( ( (String) keys.nextElement() ) + ", " );
-            }
-            log.debug( "findLoadedClass(String, String) - " + sb.toString() );
         }
 
-        return (ClassDef) allClassDefs.get( qualifiedName );
+        return SymbolTable.getSymbolTable().getLoadedClassDef( qualifiedName );
     }
 
     /**
@@ -137,13 +125,6 @@ public class ClassDef
     {
     }
 
-    /** {@inheritDoc} */
-    protected void finalize()
-    {
-        allClassDefs = new Hashtable();
-        goals = new HashSet();
-    }
-
     /**
      * Constructor to set up a class
      *
@@ -269,17 +250,13 @@ public class ClassDef
         return classOrInterface == INTERFACE;
     }
 
-    // debugging stuff -- see below
-
-    /** Field goals */
-    private static Set goals = new HashSet();
-
     /**
      * @see org.apache.maven.jxr.java.src.symtab.ScopedDef#lookup(java.lang.String, int, java.lang.Class)
      */
     Definition lookup( String name, int numParams, Class type )
     {
 
+        Set goals = SymbolTable.getSymbolTable().getLookupGoals();
         String goal = name + "|" + getQualifiedName() + "|" + numParams + "|" + type;
 
         if ( goals.contains( goal ) )
@@ -648,7 +625,7 @@ public class ClassDef
             log.debug( "readExternal(ObjectInput) - String qualifiedName=" + qualifiedName );
         }
 
-        allClassDefs.put( qualifiedName, this );
+        SymbolTable.getSymbolTable().addLoadedClassDef( qualifiedName, this );
         SymbolTable.endReadExternal();
     }
 
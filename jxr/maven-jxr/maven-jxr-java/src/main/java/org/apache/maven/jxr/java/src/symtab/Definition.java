@@ -170,7 +170,7 @@ public abstract class Definition
         {
             occ.setDefinition( this );
             references.addElement( occ );
-            SymbolTable.addFileReference( occ );
+            SymbolTable.getSymbolTable().addFileReference( occ );
         }
     }
 
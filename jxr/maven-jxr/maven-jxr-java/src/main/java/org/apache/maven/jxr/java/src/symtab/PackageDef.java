@@ -260,7 +260,7 @@ public class PackageDef
                 {
                     o = d.getOccurrence();
 
-                    SymbolTable.addFileClassDef( o.getFile(), (ClassDef) d );
+                    SymbolTable.getSymbolTable().addFileClassDef( o.getFile(), (ClassDef) d );
 
                     baseName = o.getFile().getName();
                     baseName = baseName.substring( 0, baseName.lastIndexOf( "." ) );
@@ -308,28 +308,31 @@ public class PackageDef
     // TBD: reimplement to search outputdir for this class if the class isn't already loaded
 
     /**
-     * @see org.apache.maven.jxr.java.src.symtab.Definition#lookup(java.lang.String, java.lang.Class)
+     * Classes which were not parsed are loaded from their <code>.def</code> file, whether the package is searched
+     * as an import or, for the classes of the package being parsed, as an enclosing scope.
+     *
+     * @see org.apache.maven.jxr.java.src.symtab.ScopedDef#lookup(java.lang.String, int, java.lang.Class)
      */
-    Definition lookup( String name, Class type )
+    Definition lookup( String name, int numParams, Class type )
     {
 
         if ( log.isDebugEnabled() )
         {
-            log.debug( "lookup(String, Class) - String name=" + name );
+            log.debug( "lookup(String, int, Class) - String name=" + name );
         }
 
-        Definition result = super.lookup( name, type );
+        Definition result = super.lookup( name, numParams, type );
 
         if ( log.isDebugEnabled() )
         {
-            log.debug( "lookup(String, Class) - result=" + result );
+            log.debug( "lookup(String, int, Class) - result=" + result );
         }
-        if ( ( result == null ) || ( result instanceof DummyClass ) )
+        if ( ( numParams < 0 ) && ( ( result == null ) || ( result instanceof DummyClass ) ) )
         {
 
             if ( log.isDebugEnabled() )
             {
-                log.debug( "lookup(String, Class) - " + getName() + ": PackageDef.lookup(\"" + name + "\", \""
+                log.debug( "lookup(String, int, Class) - " + getName() + ": PackageDef.lookup(\"" + name + "\", \""
                     + type.getName() + "\") returned " + ( result == null ? "null" : result.getClass().getName() ) );
             }
             ClassDef classDef = ClassDef.findLoadedClass( getName(), name );
@@ -351,7 +354,7 @@ public class PackageDef
         {
             if ( log.isDebugEnabled() )
             {
-                log.debug( "lookup(String, Class) - not found: " + name );
+                log.debug( "lookup(String, int, Class) - not found: " + name );
             }
         }
         return result;
@@ -386,6 +389,12 @@ public class PackageDef
                 ois.close();
                 fis.close();
 
+                // classes loaded through a type, e.g. of a field, are visited when references are persisted too
+                Object element = elements.get( name );
+                if ( ( element == null ) || ( element instanceof DummyClass ) )
+                {
+                    elements.put( name, new ClassDefProxy( result ) );
+                }
             }
             catch ( Exception ex )
             {
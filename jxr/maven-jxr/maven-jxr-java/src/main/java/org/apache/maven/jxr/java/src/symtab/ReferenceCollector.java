@@ -0,0 +1,51 @@
+package org.apache.maven.jxr.java.src.symtab;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+/**
+ * Receives the references found by a {@link ReferencePersistor}, instead of having them written
+ * to the <code>references.bin</code> file of each package.
+ *
+ * @version $Id$
+ */
+public interface ReferenceCollector
+{
+
+    /**
+     * Called for each reference that would be written to a <code>references.bin</code> file.
+     *
+     * @param packageName the package of the referent, i.e. whose <code>references.bin</code> gets the reference
+     * @param referringFile the source file of the reference, or of the declaration
+     * @param line the fields of the reference, separated by <code>|</code>
+     */
+    public void reference( String packageName, File referringFile, String line );
+
+    /**
+     * Called for each declaration which may be referred to from other source files,
+     * i.e. classes, methods and fields but not local variables.
+     *
+     * @param declaringFile the source file of the declaration
+     * @param referent the referent, as the first fields of its references, followed by the qualified name of the
+     *            declared type for fields and methods
+     */
+    public void declaration( File declaringFile, String referent );
+}
@@ -21,17 +21,21 @@ package org.apache.maven.jxr.java.src.symtab;
 
 import org.apache.log4j.Logger;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * A visitor (in the Visitor design pattern sense) for persisting
  * references.  All references to anything in a package are stored
- * in that package's references.txt file.
+ * in that package's references.bin file.
+ * <p/>
+ * A package may be visited more than once during a traversal. Its writer is kept open until {@link #done()}, its
+ * references being spilled as a sorted run whenever another package is visited, so that each store is read and
+ * written once per traversal whatever the order of the visits.
  *
  * @version $Id$
  */
@@ -50,20 +54,36 @@ public class ReferencePersistor
         this.outDirPath = outDirPath;
     }
 
+    /**
+     * @param collector receives the references instead of the <code>references.bin</code> files
+     */
+    public ReferencePersistor( ReferenceCollector collector )
+    {
+        this.collector = collector;
+    }
+
     /**
      * Call this after traversal completes.
      */
     public void done()
     {
 
-        if ( pw != null )
+        for ( Iterator it = writers.entrySet().iterator(); it.hasNext(); )
         {
-            closeWriters();
+            Map.Entry entry = (Map.Entry) it.next();
+
+            try
+            {
+                ( (ReferenceWriter) entry.getValue() ).close();
+            }
+            catch ( IOException ex )
+            {
+                log.error( "Unable to write " + entry.getKey(), ex );
+            }
         }
 
-        pw = null;
-        bw = null;
-        fw = null;
+        writers.clear();
+        writer = null;
     }
 
     /**
@@ -72,9 +92,11 @@ public class ReferencePersistor
     public void visit( PackageDef def )
     {
 
-        if ( pw != null )
+        if ( collector != null )
         {
-            closeWriters();
+            packageName = def.getName();
+
+            return;
         }
 
         String finalDirPath = outDirPath + File.separatorChar + def.getName().replace( '.', File.separatorChar );
@@ -84,39 +106,30 @@ public class ReferencePersistor
             log.debug( "visit(PackageDef) - String finalDirPath=" + finalDirPath );
         }
 
-        File dir = new File( finalDirPath );
-
-        dir.mkdirs();
-
-        filePath = finalDirPath + File.separatorChar + "references.txt";
+        String filePath = finalDirPath + File.separatorChar + ReferenceWriter.FILE_NAME;
 
         try
         {
-            boolean append = true;
+            if ( writer != null )
+            {
+                writer.flush();
+            }
+
+            writer = (ReferenceWriter) writers.get( filePath );
+            if ( writer == null )
+            {
+                boolean append = true;
 
-            fw = new FileWriter( filePath, append );
+                writer = new ReferenceWriter( new File( filePath ), append );
+                writers.put( filePath, writer );
+            }
         }
         catch ( IOException ex )
         {
             log.error( "IOException: " + ex.getMessage(), ex );
 
-            fw = null; // TBD: fix this hack
+            writer = null;
         }
-
-        bw = new BufferedWriter( fw );
-        pw = new PrintWriter( bw );
-
-        // ReferentFileClass - name of class whose .java file this referent lives in.
-        // ReferentType -- Class Method, or Variable
-        // ReferentClass - name of this referent's class.  If that class is an inner class, format is outer.inner
-        // ReferentTag - referent's name as used below [TBD: change usage in Pass1]
-        //
-        // Referent's URL in source code is {ReferentFileClass}_java.html#{ReferentTag}
-        // Referent's URL in referent list is {ReferentFileClass}_java_ref.html#{ReferentTag}
-        // Referent class's name in package list is {ReferentClass}
-        //
-        pw
-            .println( "# ReferentFileClass | ReferentClass | ReferentType | ReferentTag | ReferringPackage | ReferringClass | ReferringMethod | ReferringFile | ReferringLineNumber" );
     }
 
     /**
@@ -274,6 +287,21 @@ public class ReferencePersistor
         }
 
         persist( referentFileClass, referentType, referentTag, referentClass, def.getOccurrence() );
+
+        // local variables cannot be referred to from another file
+        if ( ( collector != null )
+            && !( ( def instanceof VariableDef ) && !( def.getParentScope() instanceof ClassDef ) ) )
+        {
+            String declaration = referentFileClass + "|" + referentClass + "|" + referentTag + "|" + referentType;
+            // the declared type decides how member accesses through the field or method resolve in other files
+            if ( def instanceof TypedDef )
+            {
+                Definition type = ( (TypedDef) def ).getType();
+                declaration += "|" + ( ( type == null ) ? null : type.getQualifiedName() );
+            }
+
+            collector.declaration( def.getOccurrence().getFile(), declaration );
+        }
     }
 
     /**
@@ -289,55 +317,62 @@ public class ReferencePersistor
                           Occurrence occ )
     {
 
-        pw.print( referentFileClass );
-        pw.print( "|" );
-        pw.print( referentClass );
-        pw.print( "|" );
-        pw.print( referentTag );
-        pw.print( "|" );
-        pw.print( referentType );
-        pw.print( "|" );
-        pw.print( occ.getPackageName() );
-        pw.print( "|" );
-        pw.print( occ.getClassName() );
-        pw.print( "|" );
-        pw.print( occ.getMethodName() );
-        pw.print( "|" );
-        pw.print( occ.getFile().getName() );
-        pw.print( "|" );
-        pw.println( occ.getLine() );
-    }
+        if ( collector != null )
+        {
+            collector.reference( packageName, occ.getFile(), referentFileClass + "|" + referentClass + "|"
+                + referentTag + "|" + referentType + "|" + occ.getPackageName() + "|" + occ.getClassName() + "|"
+                + occ.getMethodName() + "|" + occ.getFile().getName() + "|" + occ.getLine() );
 
-    /**
-     * Method closeWriters
-     */
-    private void closeWriters()
-    {
+            return;
+        }
+
+        if ( writer == null )
+        {
+            return;
+        }
+
+        // ReferentFileClass - name of class whose .java file this referent lives in.
+        // ReferentType -- Class Method, or Variable
+        // ReferentClass - name of this referent's class.  If that class is an inner class, format is outer.inner
+        // ReferentTag - referent's name as used below [TBD: change usage in Pass1]
+        //
+        // Referent's URL in source code is {ReferentFileClass}_java.html#{ReferentTag}
+        // Referent's URL in referent list is {ReferentFileClass}_java_ref.html#{ReferentTag}
+        // Referent class's name in package list is {ReferentClass}
+        //
+        String[] fields = new String[ReferenceWriter.FIELDS];
+        fields[ReferenceWriter.REFERENT_FILE_CLASS] = referentFileClass;
+        fields[ReferenceWriter.REFERENT_CLASS] = referentClass;
+        fields[ReferenceWriter.REFERENT_TAG] = referentTag;
+        fields[ReferenceWriter.REFERENT_TYPE] = referentType;
+        fields[ReferenceWriter.REFERRING_PACKAGE] = String.valueOf( occ.getPackageName() );
+        fields[ReferenceWriter.REFERRING_CLASS] = String.valueOf( occ.getClassName() );
+        fields[ReferenceWriter.REFERRING_METHOD] = String.valueOf( occ.getMethodName() );
+        fields[ReferenceWriter.REFERRING_FILE] = occ.getFile().getName();
+        fields[ReferenceWriter.REFERRING_LINE_NUMBER] = String.valueOf( occ.getLine() );
 
         try
         {
-            pw.close();
-            bw.close();
-            fw.close();
+            writer.add( fields );
         }
         catch ( IOException ex )
         {
-            log.error( "Hell has frozen over.", ex );
+            log.error( "IOException: " + ex.getMessage(), ex );
         }
     }
 
-    /** Field filePath */
-    private String filePath = null;
+    /** Field collector */
+    private ReferenceCollector collector = null;
+
+    /** Field packageName */
+    private String packageName = null;
 
     /** Field outDirPath */
     private String outDirPath = null;
 
-    /** Field pw */
-    private PrintWriter pw = null;
-
-    /** Field bw */
-    private BufferedWriter bw = null;
+    /** Field writer, the writer of the package being visited */
+    private ReferenceWriter writer = null;
 
-    /** Field fw */
-    private FileWriter fw = null;
+    /** Field writers, the writer of each package visited so far, by path of its store */
+    private final Map writers = new HashMap();
 }
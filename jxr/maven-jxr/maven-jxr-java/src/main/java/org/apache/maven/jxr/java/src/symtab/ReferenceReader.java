@@ -0,0 +1,106 @@
+package org.apache.maven.jxr.java.src.symtab;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Streams the references of a <code>references.bin</code> store, in the order they were sorted by
+ * {@link ReferenceWriter}. Only the symbol table of the store is kept in memory.
+ *
+ * @version $Id$
+ */
+public class ReferenceReader
+{
+    private final DataInputStream in;
+
+    private final String[] symbols;
+
+    /** The number of references not read yet */
+    private int remaining;
+
+    /**
+     * @param file the store to read
+     * @throws IOException if the file is not a reference store, or cannot be read
+     */
+    public ReferenceReader( File file )
+        throws IOException
+    {
+        in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+
+        try
+        {
+            if ( in.readInt() != ReferenceWriter.MAGIC || in.readInt() != ReferenceWriter.VERSION )
+            {
+                throw new IOException( "Not a reference store: " + file );
+            }
+
+            symbols = new String[in.readInt()];
+            for ( int i = 0; i < symbols.length; i++ )
+            {
+                symbols[i] = in.readUTF();
+            }
+
+            remaining = in.readInt();
+        }
+        catch ( IOException e )
+        {
+            IOUtil.close( in );
+            throw e;
+        }
+    }
+
+    /**
+     * @return the {@link ReferenceWriter#FIELDS} fields of the next reference, or <code>null</code> if there are no
+     *         more references. The Strings are shared between the references.
+     * @throws IOException if any
+     */
+    public String[] next()
+        throws IOException
+    {
+        if ( remaining == 0 )
+        {
+            return null;
+        }
+
+        String[] fields = new String[ReferenceWriter.FIELDS];
+        for ( int i = 0; i < fields.length; i++ )
+        {
+            fields[i] = symbols[in.readInt()];
+        }
+        remaining--;
+
+        return fields;
+    }
+
+    /**
+     * Closes the store.
+     */
+    public void close()
+    {
+        IOUtil.close( in );
+    }
+}
@@ -0,0 +1,458 @@
+package org.apache.maven.jxr.java.src.symtab;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.StringTokenizer;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Writes the binary reference store of a package, i.e. its <code>references.bin</code> file.
+ * <p/>
+ * Each reference is a record of {@link #FIELDS} symbol ids:
+ * <pre>
+ * ReferentFileClass | ReferentClass | ReferentTag | ReferentType | ReferringPackage | ReferringClass
+ *     | ReferringMethod | ReferringFile | ReferringLineNumber
+ * </pre>
+ * The store starts with its symbol table, and its records are sorted by referent file class, then referent tag, so
+ * that <code>Pass2</code> can stream one <code>_ref.html</code> page after the other. The records are kept in memory
+ * up to {@link #RUN_SIZE}, then spilled as sorted runs which are merged by {@link #close()}.
+ *
+ * @version $Id$
+ * @see ReferenceReader
+ */
+public class ReferenceWriter
+{
+    /** Name of the reference store in each package directory */
+    public static final String FILE_NAME = "references.bin";
+
+    /** Number of fields of a reference */
+    public static final int FIELDS = 9;
+
+    public static final int REFERENT_FILE_CLASS = 0;
+
+    public static final int REFERENT_CLASS = 1;
+
+    public static final int REFERENT_TAG = 2;
+
+    public static final int REFERENT_TYPE = 3;
+
+    public static final int REFERRING_PACKAGE = 4;
+
+    public static final int REFERRING_CLASS = 5;
+
+    public static final int REFERRING_METHOD = 6;
+
+    public static final int REFERRING_FILE = 7;
+
+    public static final int REFERRING_LINE_NUMBER = 8;
+
+    /** Magic number of the store, "JXRR" */
+    static final int MAGIC = 0x4A585252;
+
+    static final int VERSION = 1;
+
+    /** Maximum number of references kept in memory before spilling a sorted run */
+    static final int RUN_SIZE = 65536;
+
+    /** Order in which the fields are compared when sorting */
+    private static final int[] SORT_ORDER = { REFERENT_FILE_CLASS, REFERENT_TAG, REFERENT_CLASS, REFERENT_TYPE,
+        REFERRING_PACKAGE, REFERRING_CLASS, REFERRING_METHOD, REFERRING_FILE, REFERRING_LINE_NUMBER };
+
+    private final File file;
+
+    /** The symbol id of each String */
+    private final Map symbolIds = new HashMap();
+
+    /** The String of each symbol id */
+    private final List symbols = new ArrayList();
+
+    /** The references not spilled yet, as int[] */
+    private final List buffer = new ArrayList();
+
+    /** The spilled runs, as temporary Files */
+    private final List runs = new ArrayList();
+
+    private final Comparator comparator = new Comparator()
+    {
+        /** {@inheritDoc} */
+        public int compare( Object o1, Object o2 )
+        {
+            return compareRecords( (int[]) o1, (int[]) o2 );
+        }
+    };
+
+    /**
+     * @param file the store to write
+     * @param append if true, the references already in the store are kept
+     * @throws IOException if the existing store cannot be read
+     */
+    public ReferenceWriter( File file, boolean append )
+        throws IOException
+    {
+        this.file = file;
+
+        if ( append && file.exists() )
+        {
+            ReferenceReader reader = new ReferenceReader( file );
+            try
+            {
+                String[] fields;
+                while ( ( fields = reader.next() ) != null )
+                {
+                    add( fields );
+                }
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Adds a reference.
+     *
+     * @param fields the {@link #FIELDS} fields of the reference
+     * @throws IOException if a sorted run cannot be spilled
+     */
+    public void add( String[] fields )
+        throws IOException
+    {
+        int[] record = new int[FIELDS];
+        for ( int i = 0; i < FIELDS; i++ )
+        {
+            record[i] = intern( fields[i] );
+        }
+
+        buffer.add( record );
+
+        if ( buffer.size() >= RUN_SIZE )
+        {
+            spill();
+        }
+    }
+
+    /**
+     * Adds a reference given in the former <code>references.txt</code> format, i.e. its fields separated by
+     * <code>|</code>. Comment lines are ignored.
+     *
+     * @param line the reference
+     * @throws IOException if a sorted run cannot be spilled
+     */
+    public void add( String line )
+        throws IOException
+    {
+        if ( line.charAt( 0 ) == '#' )
+        {
+            return;
+        }
+
+        StringTokenizer st = new StringTokenizer( line, "|" );
+        String[] fields = new String[FIELDS];
+        for ( int i = 0; i < FIELDS; i++ )
+        {
+            fields[i] = st.nextToken();
+        }
+
+        add( fields );
+    }
+
+    /**
+     * Spills the references added so far as a sorted run, so that they do not stay in memory until {@link #close()}.
+     *
+     * @throws IOException if the run cannot be written
+     */
+    public void flush()
+        throws IOException
+    {
+        if ( !buffer.isEmpty() )
+        {
+            spill();
+        }
+    }
+
+    /**
+     * Writes the sorted store, merging the spilled runs if any.
+     *
+     * @throws IOException if any
+     */
+    public void close()
+        throws IOException
+    {
+        try
+        {
+            if ( runs.isEmpty() )
+            {
+                Collections.sort( buffer, comparator );
+
+                DataOutputStream out = openStore( buffer.size() );
+                try
+                {
+                    for ( Iterator it = buffer.iterator(); it.hasNext(); )
+                    {
+                        writeRecord( out, (int[]) it.next() );
+                    }
+                }
+                finally
+                {
+                    IOUtil.close( out );
+                }
+            }
+            else
+            {
+                spill();
+                merge();
+            }
+        }
+        finally
+        {
+            buffer.clear();
+            for ( Iterator it = runs.iterator(); it.hasNext(); )
+            {
+                ( (File) it.next() ).delete();
+            }
+            runs.clear();
+        }
+    }
+
+    // ----------------------------------------------------------------------
+    // Private methods
+    // ----------------------------------------------------------------------
+
+    private int intern( String symbol )
+    {
+        Integer id = (Integer) symbolIds.get( symbol );
+
+        if ( id == null )
+        {
+            id = new Integer( symbols.size() );
+            symbolIds.put( symbol, id );
+            symbols.add( symbol );
+        }
+
+        return id.intValue();
+    }
+
+    private int compareRecords( int[] r1, int[] r2 )
+    {
+        for ( int i = 0; i < SORT_ORDER.length; i++ )
+        {
+            int field = SORT_ORDER[i];
+
+            if ( r1[field] == r2[field] )
+            {
+                continue;
+            }
+
+            String s1 = (String) symbols.get( r1[field] );
+            String s2 = (String) symbols.get( r2[field] );
+
+            int cmp;
+            if ( field == REFERRING_LINE_NUMBER && s1.length() != s2.length() )
+            {
+                // line numbers are sorted numerically
+                cmp = s1.length() - s2.length();
+            }
+            else
+            {
+                cmp = s1.compareTo( s2 );
+            }
+
+            if ( cmp != 0 )
+            {
+                return cmp;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Sorts the buffered references and writes them in a temporary run file.
+     *
+     * @throws IOException if any
+     */
+    private void spill()
+        throws IOException
+    {
+        Collections.sort( buffer, comparator );
+
+        file.getParentFile().mkdirs();
+        File run = File.createTempFile( "references", ".run", file.getParentFile() );
+        runs.add( run );
+
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( run ) ) );
+        try
+        {
+            out.writeInt( buffer.size() );
+            for ( Iterator it = buffer.iterator(); it.hasNext(); )
+            {
+                writeRecord( out, (int[]) it.next() );
+            }
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+
+        buffer.clear();
+    }
+
+    /**
+     * Merges the spilled runs into the store.
+     *
+     * @throws IOException if any
+     */
+    private void merge()
+        throws IOException
+    {
+        List inputs = new ArrayList();
+        try
+        {
+            int count = 0;
+            for ( Iterator it = runs.iterator(); it.hasNext(); )
+            {
+                DataInputStream in =
+                    new DataInputStream( new BufferedInputStream( new FileInputStream( (File) it.next() ) ) );
+                inputs.add( in );
+                count += in.readInt();
+            }
+
+            // the queue holds the current record of each run, followed by the run index
+            PriorityQueue queue = new PriorityQueue( inputs.size(), comparator );
+            for ( int i = 0; i < inputs.size(); i++ )
+            {
+                int[] record = readRecord( (DataInputStream) inputs.get( i ), i );
+                if ( record != null )
+                {
+                    queue.add( record );
+                }
+            }
+
+            DataOutputStream out = openStore( count );
+            try
+            {
+                while ( !queue.isEmpty() )
+                {
+                    int[] record = (int[]) queue.poll();
+                    writeRecord( out, record );
+
+                    int run = record[FIELDS];
+                    int[] next = readRecord( (DataInputStream) inputs.get( run ), run );
+                    if ( next != null )
+                    {
+                        queue.add( next );
+                    }
+                }
+            }
+            finally
+            {
+                IOUtil.close( out );
+            }
+        }
+        finally
+        {
+            for ( Iterator it = inputs.iterator(); it.hasNext(); )
+            {
+                IOUtil.close( (DataInputStream) it.next() );
+            }
+        }
+    }
+
+    /**
+     * Creates the store and writes its header and symbol table.
+     *
+     * @param count the number of references which will follow
+     * @return the stream to write the references to
+     * @throws IOException if any
+     */
+    private DataOutputStream openStore( int count )
+        throws IOException
+    {
+        file.getParentFile().mkdirs();
+
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+        out.writeInt( MAGIC );
+        out.writeInt( VERSION );
+        out.writeInt( symbols.size() );
+        for ( Iterator it = symbols.iterator(); it.hasNext(); )
+        {
+            out.writeUTF( (String) it.next() );
+        }
+        out.writeInt( count );
+
+        return out;
+    }
+
+    private static void writeRecord( DataOutputStream out, int[] record )
+        throws IOException
+    {
+        for ( int i = 0; i < FIELDS; i++ )
+        {
+            out.writeInt( record[i] );
+        }
+    }
+
+    /**
+     * @param in a spilled run
+     * @param run the index of the run
+     * @return the next record of the run followed by its index, or <code>null</code> at the end of the run.
+     * @throws IOException if any
+     */
+    private static int[] readRecord( DataInputStream in, int run )
+        throws IOException
+    {
+        int[] record = new int[FIELDS + 1];
+        try
+        {
+            record[0] = in.readInt();
+        }
+        catch ( EOFException e )
+        {
+            return null;
+        }
+
+        for ( int i = 1; i < FIELDS; i++ )
+        {
+            record[i] = in.readInt();
+        }
+        record[FIELDS] = run;
+
+        return record;
+    }
+}
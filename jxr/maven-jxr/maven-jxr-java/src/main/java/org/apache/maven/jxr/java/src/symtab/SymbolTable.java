@@ -26,7 +26,9 @@ import org.apache.maven.jxr.java.src.xref.JavaToken;
 
 import java.io.File;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.Vector;
 
@@ -44,8 +46,8 @@ public class SymbolTable
     /** Logger for this class  */
     private static final Logger log = Logger.getLogger( SymbolTable.class );
 
-    /** Field singleton */
-    public static SymbolTable singleton = null;
+    /** The symbol table bound to the current thread, if any */
+    private static final ThreadLocal CURRENT = new ThreadLocal();
 
     // ==========================================================================
     // ==  Class Variables
@@ -98,22 +100,28 @@ public class SymbolTable
     private String outDirPath = null;
 
     /** Hashtable holds Vectors of ClassDefs for files */
-    private static Hashtable _fileClassDefs;
+    private Hashtable _fileClassDefs = new Hashtable();
 
     /** Hashtable holds Vectors mapping symbol references to files */
-    private static Hashtable _fileReferences = new Hashtable();
+    private Hashtable _fileReferences = new Hashtable();
 
     /** Hashtable holds Vectors mapping multi lines comments to files */
-    private static Hashtable _fileMultiLinesComments = new Hashtable();
+    private Hashtable _fileMultiLinesComments = new Hashtable();
 
     /** Hashtable holds Vectors mapping single line comments to files */
-    private static Hashtable _fileSingleLineComments = new Hashtable();
+    private Hashtable _fileSingleLineComments = new Hashtable();
 
     /** Hashtable holds Vectors mapping literals to files */
-    private static Hashtable _fileLiterals = new Hashtable();
+    private Hashtable _fileLiterals = new Hashtable();
 
     /** Hashtable holds Vectors mapping keywords to files */
-    private static Hashtable _fileKeywords = new Hashtable();
+    private Hashtable _fileKeywords = new Hashtable();
+
+    /** The deserialized ClassDefs, by qualified name */
+    private final Hashtable loadedClassDefs = new Hashtable();
+
+    /** The lookups in progress in ClassDefs, to detect infinite loops */
+    private final Set lookupGoals = new HashSet();
 
     // ==========================================================================
     // ==  Methods
@@ -135,7 +143,7 @@ public class SymbolTable
      * @param f
      * @param tagList
      */
-    public static void createReferenceTags( File f, Vector tagList )
+    public void createReferenceTags( File f, Vector tagList )
     {
         Vector v = (Vector) _fileReferences.get( f );
 
@@ -161,16 +169,21 @@ public class SymbolTable
      *
      * @param occ
      */
-    public static void addFileReference( Occurrence occ )
+    public void addFileReference( Occurrence occ )
     {
         File f = occ.getFile();
-        Vector v = (Vector) _fileReferences.get( f );
+        Vector v;
 
-        if ( v == null )
+        synchronized ( _fileReferences )
         {
-            v = new Vector();
+            v = (Vector) _fileReferences.get( f );
 
-            _fileReferences.put( f, v );
+            if ( v == null )
+            {
+                v = new Vector();
+
+                _fileReferences.put( f, v );
+            }
         }
 
         v.add( occ );
@@ -182,7 +195,7 @@ public class SymbolTable
      * @param f
      * @param tagList
      */
-    public static void getMultiLinesCommentTags( File f, Vector tagList )
+    public void getMultiLinesCommentTags( File f, Vector tagList )
     {
         Vector commentList = (Vector) _fileMultiLinesComments.get( f );
 
@@ -198,7 +211,7 @@ public class SymbolTable
      * @param f
      * @param tagList
      */
-    public static void getSingleLineCommentTags( File f, Vector tagList )
+    public void getSingleLineCommentTags( File f, Vector tagList )
     {
         Vector commentList = (Vector) _fileSingleLineComments.get( f );
 
@@ -214,7 +227,7 @@ public class SymbolTable
      * @param f
      * @param tagList
      */
-    public static void getLiteralTags( File f, Vector tagList )
+    public void getLiteralTags( File f, Vector tagList )
     {
         Vector literalList = (Vector) _fileLiterals.get( f );
 
@@ -230,7 +243,7 @@ public class SymbolTable
      * @param f
      * @param tagList
      */
-    public static void getKeywordTags( File f, Vector tagList )
+    public void getKeywordTags( File f, Vector tagList )
     {
         Vector keywordList = (Vector) _fileKeywords.get( f );
 
@@ -281,41 +294,91 @@ public class SymbolTable
     }
 
     /**
-     * Method getSymbolTable
+     * Returns the symbol table bound to the current thread.
      *
-     * @return
+     * @return the current symbol table
+     * @throws IllegalStateException if no symbol table is bound to the current thread
+     * @see #bind(SymbolTable)
      */
     public static SymbolTable getSymbolTable()
     {
-        if ( singleton == null )
+        SymbolTable current = (SymbolTable) CURRENT.get();
+        if ( current == null )
         {
-            singleton = new SymbolTable();
+            throw new IllegalStateException( "No symbol table is bound to " + Thread.currentThread().getName() );
         }
 
-        return singleton;
+        return current;
     }
 
-    /** {@inheritDoc} */
-    public void finalize()
+    /**
+     * Binds a symbol table to the current thread, so definitions which do not know their
+     * symbol table, like deserialized ones, resolve against it. It must be bound before any
+     * definition is created or read.
+     *
+     * @param symbolTable the symbol table to bind, not null
+     */
+    public static void bind( SymbolTable symbolTable )
     {
-        if ( singleton != null )
+        if ( symbolTable == null )
         {
-            singleton = null;
+            throw new IllegalArgumentException( "symbolTable could not be null" );
         }
 
-        _fileClassDefs = null;
-        _fileReferences = new Hashtable();
-        _fileMultiLinesComments = new Hashtable();
-        _fileSingleLineComments = new Hashtable();
-        _fileLiterals = new Hashtable();
-        _fileKeywords = new Hashtable();
-        readLevel = 0;
+        CURRENT.set( symbolTable );
+    }
+
+    /**
+     * Removes the symbol table bound to the current thread, if any.
+     */
+    public static void unbind()
+    {
+        CURRENT.set( null );
+    }
+
+    /** {@inheritDoc} */
+    public void finalize()
+    {
+        _fileClassDefs.clear();
+        _fileReferences.clear();
+        _fileMultiLinesComments.clear();
+        _fileSingleLineComments.clear();
+        _fileLiterals.clear();
+        _fileKeywords.clear();
+        loadedClassDefs.clear();
+        lookupGoals.clear();
+    }
+
+    /**
+     * @param qualifiedName the qualified name of a class
+     * @return the ClassDef read for it from a persisted definition, or <code>null</code>
+     */
+    ClassDef getLoadedClassDef( String qualifiedName )
+    {
+        return (ClassDef) loadedClassDefs.get( qualifiedName );
+    }
+
+    /**
+     * @param qualifiedName the qualified name of a class
+     * @param def the ClassDef read for it from a persisted definition
+     */
+    void addLoadedClassDef( String qualifiedName, ClassDef def )
+    {
+        loadedClassDefs.put( qualifiedName, def );
+    }
+
+    /**
+     * @return the goals of the lookups in progress in ClassDefs
+     */
+    Set getLookupGoals()
+    {
+        return lookupGoals;
     }
 
     /**
      * Constructor to create a new symbol table
      */
-    private SymbolTable()
+    public SymbolTable()
     {
         // allocate storage for the packages and scope lists
         packages = new JavaHashtable();
@@ -418,20 +481,20 @@ public class SymbolTable
      * @param f
      * @param classDef
      */
-    public static void addFileClassDef( File f, ClassDef classDef )
+    public void addFileClassDef( File f, ClassDef classDef )
     {
-        if ( _fileClassDefs == null )
-        {
-            _fileClassDefs = new Hashtable( 2 );
-        }
-
-        Vector v = (Vector) _fileClassDefs.get( f );
+        Vector v;
 
-        if ( v == null )
+        synchronized ( _fileClassDefs )
         {
-            v = new Vector( 2, 2 );
+            v = (Vector) _fileClassDefs.get( f );
+
+            if ( v == null )
+            {
+                v = new Vector( 2, 2 );
 
-            _fileClassDefs.put( f, v );
+                _fileClassDefs.put( f, v );
+            }
         }
 
         v.addElement( classDef );
@@ -443,13 +506,8 @@ public class SymbolTable
      * @param f
      * @return
      */
-    public static String getClassList( File f )
+    public String getClassList( File f )
     {
-        if ( _fileClassDefs == null )
-        {
-            return null;
-        }
-
         Vector v = (Vector) _fileClassDefs.get( f );
 
         if ( v == null )
@@ -611,7 +669,7 @@ public class SymbolTable
 
         // add the class to the current scope
         addToCurrentScope( def );
-        SymbolTable.addFileClassDef( currentFile, def );
+        addFileClassDef( currentFile, def );
 
         // make the claa be the new current scope
         pushScope( def );
@@ -634,7 +692,7 @@ public class SymbolTable
 
         // add it to the current scope
         addToCurrentScope( def );
-        SymbolTable.addFileClassDef( currentFile, def );
+        addFileClassDef( currentFile, def );
 
         // make the interface the current scope
         pushScope( def );
@@ -1726,6 +1784,24 @@ public class SymbolTable
         rp.done();
     }
 
+    /**
+     * Method persistRefs
+     *
+     * @param collector receives the references instead of the <code>references.bin</code> files
+     */
+    public void persistRefs( ReferenceCollector collector )
+    {
+        ReferencePersistor rp = new ReferencePersistor( collector );
+
+        if ( defaultPackage != null )
+        {
+            defaultPackage.accept( rp );
+        }
+
+        packages.accept( rp );
+        rp.done();
+    }
+
     /**
      * Mark the current file that is being parsed
      *
@@ -0,0 +1,259 @@
+package org.apache.maven.jxr.java.src.xref;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.jxr.java.src.symtab.SymbolTable;
+import org.apache.maven.jxr.java.src.util.SkipCRInputStream;
+import org.codehaus.plexus.util.IOUtil;
+
+import antlr.Token;
+import antlr.TokenStream;
+import antlr.TokenStreamException;
+
+/**
+ * The tokens of a java file, lexed ahead of parsing so that several files can be lexed in parallel.
+ * <p/>
+ * The lexer defines comments, literals and keywords in the <code>SymbolTable</code> as a side effect,
+ * and the symbol table tags them with the package being parsed at that time. These definitions are
+ * recorded with the token they precede, and replayed when the parser reads that token, so the
+ * symbol table ends up exactly as if the file had been lexed and parsed in one go.
+ *
+ * @version $Id$
+ */
+public class LexedFile
+    implements TokenStream
+{
+    private static final int MULTI_LINES_COMMENT = 0;
+
+    private static final int SINGLE_LINE_COMMENT = 1;
+
+    private static final int LITERAL = 2;
+
+    private static final int KEYWORD = 3;
+
+    /** The lexed file */
+    private final File file;
+
+    /** The tokens, in lexing order */
+    private final List tokens = new ArrayList();
+
+    /** The recorded symbol table definitions, in lexing order */
+    private final List definitions = new ArrayList();
+
+    /** For each token, the number of definitions recorded before the lexer returned it */
+    private final List marks = new ArrayList();
+
+    /** The lexer error which ended the token stream, if any */
+    private TokenStreamException failure;
+
+    private SymbolTable symbolTable;
+
+    private int nextToken;
+
+    private int nextDefinition;
+
+    private LexedFile( File file )
+    {
+        this.file = file;
+    }
+
+    /**
+     * Lexes a whole java file.
+     *
+     * @param f a java file.
+     * @return the lexed file, ready to be parsed.
+     * @throws IOException if any
+     */
+    public static LexedFile lex( File f )
+        throws IOException
+    {
+        LexedFile lexedFile = new LexedFile( f );
+
+        InputStream is = new SkipCRInputStream( new FileInputStream( f ) );
+        try
+        {
+            RecordingLexer lexer = new RecordingLexer( is, lexedFile );
+
+            // Tell the scanner to create tokens of class JavaToken
+            lexer.setTokenObjectClass( "org.apache.maven.jxr.java.src.xref.JavaToken" );
+
+            Token t;
+            do
+            {
+                t = lexer.nextToken();
+                lexedFile.tokens.add( t );
+                lexedFile.marks.add( new Integer( lexedFile.definitions.size() ) );
+            }
+            while ( t.getType() != Token.EOF_TYPE );
+        }
+        catch ( TokenStreamException e )
+        {
+            // reported when the parser reaches it, like a lexer error would be
+            lexedFile.failure = e;
+        }
+        finally
+        {
+            IOUtil.close( is );
+        }
+
+        return lexedFile;
+    }
+
+    /**
+     * @return the lexed file.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Tell which symbol table should receive the recorded definitions.
+     *
+     * @param symbolTable new symbolTable to use.
+     */
+    public void setSymbolTable( SymbolTable symbolTable )
+    {
+        this.symbolTable = symbolTable;
+    }
+
+    /** {@inheritDoc} */
+    public Token nextToken()
+        throws TokenStreamException
+    {
+        if ( nextToken < tokens.size() )
+        {
+            int mark = ( (Integer) marks.get( nextToken ) ).intValue();
+            replay( mark );
+
+            return (Token) tokens.get( nextToken++ );
+        }
+
+        replay( definitions.size() );
+
+        if ( failure != null )
+        {
+            throw failure;
+        }
+
+        // the parser may look ahead past the end of the file
+        return (Token) tokens.get( tokens.size() - 1 );
+    }
+
+    private void replay( int mark )
+    {
+        while ( nextDefinition < mark )
+        {
+            RecordedDefinition d = (RecordedDefinition) definitions.get( nextDefinition++ );
+
+            switch ( d.type )
+            {
+                case MULTI_LINES_COMMENT:
+                    symbolTable.defineMultiLinesComment( d.line, d.column, d.text );
+                    break;
+
+                case SINGLE_LINE_COMMENT:
+                    symbolTable.defineSingleLineComment( d.line, d.column, d.text );
+                    break;
+
+                case LITERAL:
+                    symbolTable.defineLiteral( d.line, d.column, d.text );
+                    break;
+
+                default:
+                    symbolTable.defineKeyword( d.line, d.column, d.text );
+                    break;
+            }
+        }
+    }
+
+    /**
+     * A symbol table definition made by the lexer.
+     */
+    private static final class RecordedDefinition
+    {
+        final int type;
+
+        final int line;
+
+        final int column;
+
+        final String text;
+
+        RecordedDefinition( int type, int line, int column, String text )
+        {
+            this.type = type;
+            this.line = line;
+            this.column = column;
+            this.text = text;
+        }
+    }
+
+    /**
+     * A lexer which records its symbol table definitions instead of making them.
+     */
+    private static final class RecordingLexer
+        extends JavaLexer
+    {
+        private final LexedFile lexedFile;
+
+        RecordingLexer( InputStream in, LexedFile lexedFile )
+        {
+            super( in );
+            this.lexedFile = lexedFile;
+        }
+
+        /** {@inheritDoc} */
+        public void defineMultiLinesComment( int line, int column, String text )
+        {
+            record( MULTI_LINES_COMMENT, line, column, text );
+        }
+
+        /** {@inheritDoc} */
+        public void defineSingleLineComment( int line, int column, String text )
+        {
+            record( SINGLE_LINE_COMMENT, line, column, text );
+        }
+
+        /** {@inheritDoc} */
+        public void defineLiteral( int line, int column, String text )
+        {
+            record( LITERAL, line, column, text );
+        }
+
+        /** {@inheritDoc} */
+        public void defineKeyword( int line, int column, String text )
+        {
+            record( KEYWORD, line, column, text );
+        }
+
+        private void record( int type, int line, int column, String text )
+        {
+            lexedFile.definitions.add( new RecordedDefinition( type, line, column, text ) );
+        }
+    }
+}
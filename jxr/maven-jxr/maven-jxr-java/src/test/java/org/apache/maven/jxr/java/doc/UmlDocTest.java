@@ -107,4 +107,34 @@ public class UmlDocTest
         assertTrue( out.exists() );
         assertTrue( out.length() > 0 );
     }
+
+    /**
+     * The Javadoc XML should go straight through the xml2dot stylesheet, which does not need dot.
+     *
+     * @throws Exception if any.
+     */
+    public void testInMemoryGraph()
+        throws Exception
+    {
+        File out = new File( getBasedir(), "target/unit/umldoc-memory/umlMemory.svg" );
+        File srcDir = new File( getBasedir(), "src/test/resources/javasrc" );
+        FileUtils.deleteDirectory( out.getParentFile() );
+
+        // verbose, so that the dot graph is kept
+        GenerateUMLDoc umldoc = new GenerateUMLDoc();
+        umldoc.setVerbose( true );
+        try
+        {
+            umldoc.generate( srcDir, out );
+        }
+        catch ( DotNotPresentInPathException e )
+        {
+            // the graph is generated before dot is called
+        }
+
+        String graph = FileUtils.fileRead( new File( out.getParentFile(), "umlMemory.javadoc.dot" ) );
+        assertTrue( graph.indexOf( "digraph" ) != -1 );
+        assertTrue( graph.indexOf( "TweedleDee" ) != -1 );
+        assertFalse( new File( out.getParentFile(), "umlMemory.javadoc.xml" ).exists() );
+    }
 }
@@ -20,6 +20,8 @@ package org.apache.maven.jxr.java.src;
  */
 
 import java.io.File;
+import java.util.Iterator;
+import java.util.List;
 
 import org.codehaus.plexus.PlexusTestCase;
 import org.codehaus.plexus.util.FileUtils;
@@ -101,4 +103,155 @@ public class JavaSrcTest
         assertTrue( generated.exists() );
         assertTrue( generated.length() > 0 );
     }
+
+    /**
+     * Call JavaSrc with several threads, the output should be the same as a serial run.
+     *
+     * @throws Exception if any.
+     */
+    public void testParallelExecute()
+        throws Exception
+    {
+        File srcDir = new File( getBasedir(), "target/unit/src" );
+        File serialDir = new File( getBasedir(), "target/unit/jxrdoc-serial" );
+        File parallelDir = new File( getBasedir(), "target/unit/jxrdoc-parallel" );
+
+        JavaSrcOptions options = new JavaSrcOptions();
+        options.setThreads( 1 );
+        ( (JavaSrc) lookup( JavaSrc.ROLE ) ).generate( srcDir, serialDir, options );
+
+        options = new JavaSrcOptions();
+        options.setThreads( 4 );
+        ( (JavaSrc) lookup( JavaSrc.ROLE ) ).generate( srcDir, parallelDir, options );
+
+        List serialFiles = FileUtils.getFileNames( serialDir, "**/*.html", null, false );
+        List parallelFiles = FileUtils.getFileNames( parallelDir, "**/*.html", null, false );
+        assertFalse( serialFiles.isEmpty() );
+        assertEquals( serialFiles.size(), parallelFiles.size() );
+
+        for ( Iterator it = serialFiles.iterator(); it.hasNext(); )
+        {
+            String name = (String) it.next();
+
+            assertEquals( name, withoutTimestamp( FileUtils.fileRead( new File( serialDir, name ) ) ),
+                          withoutTimestamp( FileUtils.fileRead( new File( parallelDir, name ) ) ) );
+        }
+    }
+
+    /**
+     * Test the incremental generation, which should give the same pages as a full one.
+     *
+     * @throws Exception if any.
+     */
+    public void testIncrementalExecute()
+        throws Exception
+    {
+        File srcDir = new File( getBasedir(), "target/unit/src" );
+        File fullDir = new File( getBasedir(), "target/unit/jxrdoc-full" );
+        File incrementalDir = new File( getBasedir(), "target/unit/jxrdoc-incremental" );
+        FileUtils.deleteDirectory( incrementalDir );
+
+        // a full run appends to the references of a previous one
+        generateFull( srcDir, fullDir );
+
+        JavaSrcOptions options = new JavaSrcOptions();
+        options.setIncremental( true );
+        ( (JavaSrc) lookup( JavaSrc.ROLE ) ).generate( srcDir, incrementalDir, options );
+        assertTrue( new File( incrementalDir, "javasrc.idx" ).exists() );
+
+        // nothing changed: the index should be reused
+        options = new JavaSrcOptions();
+        options.setIncremental( true );
+        ( (JavaSrc) lookup( JavaSrc.ROLE ) ).generate( srcDir, incrementalDir, options );
+
+        assertSamePages( fullDir, incrementalDir );
+    }
+
+    /**
+     * Test the incremental generation after source edits: the pages of the unchanged files which refer to the
+     * edited ones should be written again, as a full generation would.
+     *
+     * @throws Exception if any.
+     */
+    public void testIncrementalExecuteAfterEdits()
+        throws Exception
+    {
+        File srcDir = new File( getBasedir(), "target/unit/src-edited" );
+        File fullDir = new File( getBasedir(), "target/unit/jxrdoc-edited-full" );
+        File incrementalDir = new File( getBasedir(), "target/unit/jxrdoc-edited-incremental" );
+        FileUtils.deleteDirectory( srcDir );
+        FileUtils.deleteDirectory( incrementalDir );
+
+        File demoDir = new File( srcDir, "demo" );
+        demoDir.mkdirs();
+        FileUtils.fileWrite( new File( demoDir, "Alpha.java" ).getPath(),
+                             "package demo;\npublic class Alpha\n{\n    public void run()\n    {\n    }\n}\n" );
+        FileUtils.fileWrite( new File( demoDir, "Beta.java" ).getPath(),
+                             "package demo;\npublic class Beta\n{\n    public void run()\n    {\n    }\n}\n" );
+        FileUtils.fileWrite( new File( demoDir, "Holder.java" ).getPath(),
+                             "package demo;\npublic class Holder\n{\n    public Alpha value;\n}\n" );
+        String user = "public class User\n{\n    void use( Holder holder )\n    {\n        holder.value.run();\n"
+            + "    }\n}\n";
+        FileUtils.fileWrite( new File( demoDir, "User.java" ).getPath(), "package demo;\n" + user );
+
+        generateIncremental( srcDir, incrementalDir );
+        File alphaRef = new File( incrementalDir, "demo/Alpha_java_ref.html" );
+        String alphaRefBefore = FileUtils.fileRead( alphaRef );
+        assertTrue( alphaRefBefore.indexOf( "User" ) != -1 );
+
+        // same declarations, but the references from User move to other lines
+        FileUtils.fileWrite( new File( demoDir, "User.java" ).getPath(), "package demo;\n\n\n\n" + user );
+        generateIncremental( srcDir, incrementalDir );
+        generateFull( srcDir, fullDir );
+
+        assertFalse( alphaRefBefore.equals( FileUtils.fileRead( alphaRef ) ) );
+        assertSamePages( fullDir, incrementalDir );
+
+        // the field type changes: the reference to run() in User now resolves to Beta
+        FileUtils.fileWrite( new File( demoDir, "Holder.java" ).getPath(),
+                             "package demo;\npublic class Holder\n{\n    public Beta value;\n}\n" );
+        generateIncremental( srcDir, incrementalDir );
+        generateFull( srcDir, fullDir );
+
+        assertTrue( FileUtils.fileRead( new File( incrementalDir, "demo/Beta_java_ref.html" ) ).indexOf( "User" )
+            != -1 );
+        assertSamePages( fullDir, incrementalDir );
+    }
+
+    private void generateIncremental( File srcDir, File destDir )
+        throws Exception
+    {
+        JavaSrcOptions options = new JavaSrcOptions();
+        options.setIncremental( true );
+        ( (JavaSrc) lookup( JavaSrc.ROLE ) ).generate( srcDir, destDir, options );
+    }
+
+    private void generateFull( File srcDir, File destDir )
+        throws Exception
+    {
+        FileUtils.deleteDirectory( destDir );
+        ( (JavaSrc) lookup( JavaSrc.ROLE ) ).generate( srcDir, destDir, new JavaSrcOptions() );
+    }
+
+    private static void assertSamePages( File expectedDir, File actualDir )
+        throws Exception
+    {
+        List expectedFiles = FileUtils.getFileNames( expectedDir, "**/*.html", null, false );
+        List actualFiles = FileUtils.getFileNames( actualDir, "**/*.html", null, false );
+        assertFalse( expectedFiles.isEmpty() );
+        assertEquals( expectedFiles.size(), actualFiles.size() );
+
+        for ( Iterator it = expectedFiles.iterator(); it.hasNext(); )
+        {
+            String name = (String) it.next();
+
+            assertEquals( name, withoutTimestamp( FileUtils.fileRead( new File( expectedDir, name ) ) ),
+                          withoutTimestamp( FileUtils.fileRead( new File( actualDir, name ) ) ) );
+        }
+    }
+
+    private static String withoutTimestamp( String html )
+    {
+        return html.replaceAll( "<!-- Generated by Maven JXR .* -->", "" );
+    }
 }
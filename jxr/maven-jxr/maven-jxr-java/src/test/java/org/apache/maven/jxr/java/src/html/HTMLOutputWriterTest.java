@@ -0,0 +1,325 @@
+package org.apache.maven.jxr.java.src.html;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the buffered {@link HTMLOutputWriter} and {@link LineOutputWriter} against the character by character
+ * writers they replaced, on random sequences of writes.
+ *
+ * @version $Id$
+ */
+public class HTMLOutputWriterTest
+    extends TestCase
+{
+    /** The pieces random text is made of: markup, entities, quotes, tabs, the new line flavours, non ASCII */
+    private static final String[] PIECES = { "a", "Foo", " ", "\t", "<", ">", "&", "&amp;", "\"", "'", "\n", "\r",
+        "\r\n", "\n\n", "<a href=\"#x\">", "</a>", "i < j && j > k", "\u00e9", "\u4e2d", "\ud83d\ude00" };
+
+    private static final String ENCODING = "UTF-8";
+
+    private static final int RUNS = 200;
+
+    public void testEscaping()
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HTMLOutputWriter writer = new HTMLOutputWriter( bytes, ENCODING );
+        writer.writeHTML( "if (a < b && c > d) { s = \"<\\t>\"; }" );
+        writer.close();
+
+        assertEquals( "if (a &lt; b && c &gt; d) { s = \"&lt;\\t&gt;\"; }", bytes.toString( ENCODING ) );
+    }
+
+    public void testLineNumberAnchors()
+        throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        LineOutputWriter writer = new LineOutputWriter( bytes, ENCODING );
+        char[] source = "a\r\nb\n".toCharArray();
+        writer.writeHTML( source, 0, source.length );
+        writer.close();
+
+        assertEquals( "<a href=\"#1\" name=\"1\" class=\"linenum\">1</a>    a\r\n"
+            + "<a href=\"#2\" name=\"2\" class=\"linenum\">2</a>    b\n"
+            + "<a href=\"#3\" name=\"3\" class=\"linenum\">3</a>    ", bytes.toString( ENCODING ) );
+    }
+
+    public void testSameOutputAsCharacterByCharacterWriter()
+        throws IOException
+    {
+        Random random = new Random( 1234 );
+        for ( int run = 0; run < RUNS; run++ )
+        {
+            long seed = random.nextLong();
+            assertSameOutput( seed, false );
+            assertSameOutput( seed, true );
+        }
+    }
+
+    public void testSameOutputPastTheBuffer()
+        throws IOException
+    {
+        // long runs exercise the flushes of the 16K character buffer and the writes bypassing it
+        Random random = new Random( 5678 );
+        for ( int run = 0; run < 10; run++ )
+        {
+            long seed = random.nextLong();
+            assertSameOutput( seed, false, 40000 );
+            assertSameOutput( seed, true, 40000 );
+        }
+    }
+
+    private void assertSameOutput( long seed, boolean lineNumbers )
+        throws IOException
+    {
+        assertSameOutput( seed, lineNumbers, 2000 );
+    }
+
+    /**
+     * Replays the same random writes on both writers.
+     */
+    private void assertSameOutput( long seed, boolean lineNumbers, int maxLength )
+        throws IOException
+    {
+        Random random = new Random( seed );
+
+        ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream actualBytes = new ByteArrayOutputStream();
+        CharacterHTMLWriter expected;
+        HTMLOutputWriter actual;
+        if ( lineNumbers )
+        {
+            expected = new CharacterLineWriter( expectedBytes );
+            actual = new LineOutputWriter( actualBytes, ENCODING );
+        }
+        else
+        {
+            expected = new CharacterHTMLWriter( expectedBytes );
+            actual = new HTMLOutputWriter( actualBytes, ENCODING );
+        }
+
+        int writes = random.nextInt( 50 ) + 1;
+        for ( int i = 0; i < writes; i++ )
+        {
+            String text = randomText( random, random.nextInt( maxLength ) );
+            switch ( random.nextInt( 6 ) )
+            {
+                case 0:
+                    if ( text.length() > 0 )
+                    {
+                        expected.writeHTML( text.charAt( 0 ) );
+                        actual.writeHTML( text.charAt( 0 ) );
+                    }
+                    break;
+
+                case 1:
+                    expected.writeHTML( text );
+                    actual.writeHTML( text );
+                    break;
+
+                case 2:
+                    // a range in the middle of a larger array, as Pass1 copies from the source buffer
+                    char[] chars = ( "<>" + text + "\n&" ).toCharArray();
+                    for ( int j = 2; j < 2 + text.length(); j++ )
+                    {
+                        expected.writeHTML( chars[j] );
+                    }
+                    actual.writeHTML( chars, 2, text.length() );
+                    break;
+
+                case 3:
+                    if ( text.length() > 0 )
+                    {
+                        expected.write( text.charAt( 0 ) );
+                        actual.write( text.charAt( 0 ) );
+                    }
+                    break;
+
+                case 4:
+                    expected.write( text );
+                    actual.write( text );
+                    break;
+
+                default:
+                    // the header and footer of the pages, written without line numbers
+                    expected.write( text, 0, text.length() );
+                    actual.write( text, 0, text.length() );
+                    break;
+            }
+        }
+
+        expected.close();
+        actual.close();
+
+        assertEquals( "seed " + seed, expectedBytes.toString( ENCODING ), actualBytes.toString( ENCODING ) );
+    }
+
+    private static String randomText( Random random, int length )
+    {
+        StringBuffer text = new StringBuffer( length );
+        while ( text.length() < length )
+        {
+            text.append( PIECES[random.nextInt( PIECES.length )] );
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * The HTML writer as it was before the output was buffered: every character goes through
+     * {@link #writeHTML(int)}.
+     */
+    private static class CharacterHTMLWriter
+        extends OutputStreamWriter
+    {
+        CharacterHTMLWriter( OutputStream output )
+            throws IOException
+        {
+            super( output, ENCODING );
+        }
+
+        void writeHTML( int c )
+            throws IOException
+        {
+            switch ( c )
+            {
+                case '<':
+                    this.write( "&lt;" );
+                    break;
+
+                case '>':
+                    this.write( "&gt;" );
+                    break;
+
+                default:
+                    super.write( c );
+                    break;
+            }
+        }
+
+        void writeHTML( String s )
+            throws IOException
+        {
+            for ( int i = 0; i < s.length(); i++ )
+            {
+                this.writeHTML( s.charAt( i ) );
+            }
+        }
+    }
+
+    /**
+     * The line numbering writer as it was before the output was buffered.
+     */
+    private static class CharacterLineWriter
+        extends CharacterHTMLWriter
+    {
+        private int lineNumber = 1;
+
+        private boolean firstLine = true;
+
+        CharacterLineWriter( OutputStream output )
+            throws IOException
+        {
+            super( output );
+        }
+
+        public void write( int c )
+            throws IOException
+        {
+            if ( firstLine )
+            {
+                firstLine = false;
+
+                writeLineNumber();
+            }
+
+            super.write( c );
+
+            if ( c == '\n' )
+            {
+                writeLineNumber();
+            }
+        }
+
+        void writeHTML( int c )
+            throws IOException
+        {
+            if ( firstLine )
+            {
+                firstLine = false;
+
+                writeLineNumber();
+            }
+
+            super.writeHTML( c );
+
+            if ( c == '\n' )
+            {
+                writeLineNumber();
+            }
+        }
+
+        public void write( String s )
+            throws IOException
+        {
+            for ( int i = 0; i < s.length(); i++ )
+            {
+                this.write( s.charAt( i ) );
+            }
+        }
+
+        void writeHTML( String s )
+            throws IOException
+        {
+            for ( int i = 0; i < s.length(); i++ )
+            {
+                this.writeHTML( s.charAt( i ) );
+            }
+        }
+
+        private void writeLineNumber()
+            throws IOException
+        {
+            String lineString = Integer.toString( lineNumber );
+            String spacing = "";
+
+            for ( int i = 0; i < 5 - lineString.length(); i++ )
+            {
+                spacing += " ";
+            }
+
+            lineString = "<a href=\"#" + lineNumber + "\" name=\"" + lineString + "\" class=\"linenum\">" + lineString;
+            lineString += "</a>";
+            lineString += spacing;
+
+            this.write( lineString );
+
+            lineNumber++;
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.maven.jxr.util;
  */
 
 import java.io.File;
+import java.io.InputStream;
 
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
@@ -182,6 +183,70 @@ public class DotUtil
         process( exe, input, format, output );
     }
 
+    /**
+     * Execute Graphviz dot, which reads the graph from its standard input.
+     *
+     * @param input the dot graph, not null.
+     * @param output the output generated file, not null. Its extension gives the wanted format.
+     * @throws CommandLineException if any.
+     * @throws IllegalArgumentException if any.
+     * @throws DotNotPresentInPathException if any.
+     */
+    public static void executeDot( InputStream input, File output )
+        throws CommandLineException, DotNotPresentInPathException
+    {
+        executeDot( null, input, output );
+    }
+
+    /**
+     * Execute Graphviz dot, which reads the graph from its standard input.
+     *
+     * @param exe the dot executable, could be null to use the one in the path.
+     * @param input the dot graph, not null.
+     * @param output the output generated file, not null. Its extension gives the wanted format.
+     * @throws CommandLineException if any.
+     * @throws IllegalArgumentException if any.
+     * @throws DotNotPresentInPathException if any.
+     */
+    public static void executeDot( File exe, InputStream input, File output )
+        throws CommandLineException, DotNotPresentInPathException
+    {
+        if ( ( exe != null ) && ( !exe.exists() || !exe.isFile() ) )
+        {
+            throw new IllegalArgumentException( "Exe file '" + exe + "' not found or not a file." );
+        }
+
+        if ( input == null )
+        {
+            throw new IllegalArgumentException( "Input parameter is mandatory." );
+        }
+
+        if ( output == null )
+        {
+            throw new IllegalArgumentException( "Output parameters could not be null" );
+        }
+        if ( output.exists() && output.isDirectory() )
+        {
+            throw new IllegalArgumentException( "Output file '" + output + "' is a dir." );
+        }
+
+        if ( !output.getParentFile().exists() && !output.getParentFile().mkdirs() )
+        {
+            throw new IllegalArgumentException( "Parent output file '" + output.getParentFile()
+                + "' could not be created." );
+        }
+
+        String format = getFormat( output );
+        checkFormat( format );
+
+        Commandline cmd = createCommandline( exe, output.getParentFile() );
+        cmd.createArg().setValue( "-T" + format );
+        cmd.createArg().setValue( "-o" );
+        cmd.createArg().setValue( output.getAbsolutePath() );
+
+        execute( cmd, input );
+    }
+
     // ----------------------------------------------------------------------
     // Private
     // ----------------------------------------------------------------------
@@ -210,31 +275,14 @@ public class DotUtil
             throw new IllegalArgumentException( "Input file '" + input + "' not found or not a file." );
         }
 
-        Commandline cmd = new Commandline();
-        cmd.setWorkingDirectory( input.getParentFile() );
-        if ( exe == null )
-        {
-            // in the path
-            verifyDotInPath();
-            cmd.setExecutable( "dot" );
-        }
-        else
-        {
-            cmd.setExecutable( exe.getAbsolutePath() );
-        }
+        Commandline cmd = createCommandline( exe, input.getParentFile() );
 
         if ( StringUtils.isEmpty( format ) )
         {
-            if ( output.getAbsolutePath().lastIndexOf( "." ) != -1 )
-            {
-                format = output.getAbsolutePath().substring( output.getAbsolutePath().lastIndexOf( "." ) + 1 );
-            }
-            else
-            {
-                format = DEFAULT_OUTPUT_FORMAT;
-            }
+            format = getFormat( output );
         }
         format = format.toLowerCase();
+        checkFormat( format );
 
         if ( output == null )
         {
@@ -255,9 +303,75 @@ public class DotUtil
         cmd.createArg().setValue( output.getAbsolutePath() );
         cmd.createArg().setValue( input.getAbsolutePath() );
 
+        execute( cmd, null );
+    }
+
+    /**
+     * @param exe the dot executable, could be null to use the one in the path.
+     * @param workingDirectory the working directory of dot, not null.
+     * @return the command line to call dot.
+     * @throws CommandLineException if any.
+     * @throws DotNotPresentInPathException if any.
+     */
+    private static Commandline createCommandline( File exe, File workingDirectory )
+        throws CommandLineException, DotNotPresentInPathException
+    {
+        Commandline cmd = new Commandline();
+        cmd.setWorkingDirectory( workingDirectory );
+        if ( exe == null )
+        {
+            // in the path
+            verifyDotInPath();
+            cmd.setExecutable( "dot" );
+        }
+        else
+        {
+            cmd.setExecutable( exe.getAbsolutePath() );
+        }
+
+        return cmd;
+    }
+
+    /**
+     * @param output the output generated file, could be null.
+     * @return the extension of the output file in lower case, or the default format.
+     */
+    private static String getFormat( File output )
+    {
+        if ( ( output != null ) && ( output.getName().lastIndexOf( "." ) != -1 ) )
+        {
+            return output.getName().substring( output.getName().lastIndexOf( "." ) + 1 ).toLowerCase();
+        }
+
+        return DEFAULT_OUTPUT_FORMAT;
+    }
+
+    /**
+     * @param format the wanted format, in lower case, not null.
+     * @throws IllegalArgumentException if the format is not a dot output format, e.g. <code>png</code>,
+     *             <code>plain-ext</code> or <code>png:cairo</code>.
+     */
+    static void checkFormat( String format )
+    {
+        if ( !format.matches( "[a-z0-9_-]+(:[a-z0-9_-]+)*" ) )
+        {
+            throw new IllegalArgumentException( "Output format '" + format + "' is not a dot format." );
+        }
+    }
+
+    /**
+     * Execute a dot command line.
+     *
+     * @param cmd the command line, not null.
+     * @param systemIn the standard input of dot, could be null.
+     * @throws CommandLineException if any.
+     */
+    private static void execute( Commandline cmd, InputStream systemIn )
+        throws CommandLineException
+    {
         CommandLineUtils.StringStreamConsumer err = new CommandLineUtils.StringStreamConsumer();
 
-        int exitCode = CommandLineUtils.executeCommandLine( cmd, new DefaultConsumer(), err );
+        int exitCode = CommandLineUtils.executeCommandLine( cmd, systemIn, new DefaultConsumer(), err );
 
         if ( exitCode != 0 )
         {
@@ -20,10 +20,13 @@ package org.apache.maven.jxr.util;
  */
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 
 import junit.framework.TestCase;
 
 import org.apache.maven.jxr.util.DotUtil.DotNotPresentInPathException;
+import org.codehaus.plexus.util.IOUtil;
 
 /**
  * @author <a href="mailto:vincent.siveton@gmail.com">Vincent Siveton</a>
@@ -81,4 +84,81 @@ public class DotUtilTest
         assertTrue( generated.exists() );
         assertTrue( generated.length() > 0 );
     }
+
+    public void testStreamExecuteDot()
+        throws Exception
+    {
+        final String basedir = new File( "" ).getAbsolutePath();
+
+        File out = new File( basedir, "target/unit/dot-stream/output.png" );
+
+        InputStream in = new FileInputStream( new File( basedir, "src/test/resources/dot/target.dot" ) );
+        try
+        {
+            DotUtil.executeDot( in, out );
+            assertTrue( "DOT exists in the path", true );
+        }
+        catch ( DotNotPresentInPathException e )
+        {
+            assertTrue( "DOT doesnt exist in the path. Ignored test", true );
+            return;
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        // Generated files
+        assertTrue( out.exists() );
+        assertTrue( out.length() > 0 );
+    }
+
+    public void testStreamExecuteDotInvalidFormat()
+        throws Exception
+    {
+        final String basedir = new File( "" ).getAbsolutePath();
+
+        // checked before dot is looked for
+        File out = new File( basedir, "target/unit/dot-stream/output.png -Gfoo" );
+
+        InputStream in = new FileInputStream( new File( basedir, "src/test/resources/dot/target.dot" ) );
+        try
+        {
+            DotUtil.executeDot( in, out );
+            fail( "The format should be rejected" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertTrue( e.getMessage().indexOf( "png -gfoo" ) != -1 );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+
+        assertFalse( out.exists() );
+    }
+
+    public void testCheckFormat()
+    {
+        String[] valid = { "png", "svg", "plain-ext", "png:cairo", "png:cairo:gd", "x11_win" };
+        for ( int i = 0; i < valid.length; i++ )
+        {
+            DotUtil.checkFormat( valid[i] );
+        }
+
+        String[] invalid = { "", "png -gfoo", "png:", ":png", "png;rm", "../png" };
+        for ( int i = 0; i < invalid.length; i++ )
+        {
+            try
+            {
+                DotUtil.checkFormat( invalid[i] );
+                fail( "The format '" + invalid[i] + "' should be rejected" );
+            }
+            catch ( IllegalArgumentException e )
+            {
+                assertTrue( true );
+            }
+        }
+    }
 }
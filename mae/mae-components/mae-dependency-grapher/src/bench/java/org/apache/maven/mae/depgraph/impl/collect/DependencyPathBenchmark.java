@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.graph.Dependency;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+
+/**
+ * Cycle checks on a deep collection path: the indexed {@link DependencyPath} against a scan of the edge list, as the
+ * collector did before. Each check looks up every artifact of the path plus one that is not on it, which is what
+ * visiting the dependencies of a node at the bottom of the path costs.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class DependencyPathBenchmark
+{
+
+    @Param( { "5", "50" } )
+    public int depth;
+
+    private DependencyPath path;
+
+    private LinkedList<SlimDependencyEdge> edges;
+
+    private SlimDependencyEdge[] pushed;
+
+    private Artifact[] lookups;
+
+    @Setup
+    public void setUp()
+    {
+        final SlimDepGraph graph = new SlimDepGraph( new DefaultRepositorySystemSession() );
+        path = new DependencyPath();
+        edges = new LinkedList<SlimDependencyEdge>();
+        pushed = new SlimDependencyEdge[depth];
+        lookups = new Artifact[depth + 1];
+
+        SlimDependencyNode from = new SlimDependencyNode( "org.bench:root:jar:1", graph );
+        for ( int i = 0; i < depth; i++ )
+        {
+            final Artifact artifact = new DefaultArtifact( "org.bench", "artifact-" + i, "jar", "1.0" );
+            final SlimDependencyNode to = new SlimDependencyNode( artifact.toString(), graph );
+            final SlimDependencyEdge edge = new SlimDependencyEdge( from, to, graph );
+            edge.setDependency( new Dependency( artifact, "compile" ) );
+
+            pushed[i] = edge;
+            path.push( edge );
+            edges.addFirst( edge );
+            // a distinct instance, as the collector looks up freshly resolved artifacts.
+            lookups[i] = new DefaultArtifact( "org.bench", "artifact-" + i, "jar", "1.0" );
+            from = to;
+        }
+
+        lookups[depth] = new DefaultArtifact( "org.bench", "not-on-path", "jar", "1.0" );
+    }
+
+    @Benchmark
+    public int indexedPath()
+    {
+        int found = 0;
+        for ( final Artifact artifact : lookups )
+        {
+            if ( path.findDuplicate( artifact ) != null )
+            {
+                found++;
+            }
+        }
+
+        return found;
+    }
+
+    @Benchmark
+    public int scannedPath()
+    {
+        int found = 0;
+        for ( final Artifact artifact : lookups )
+        {
+            if ( scan( edges, artifact ) != null )
+            {
+                found++;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Unwinding and rebuilding the path, as the collector does around each recursion.
+     */
+    @Benchmark
+    public int pushAndPop()
+    {
+        for ( int i = depth - 1; i >= 0; i-- )
+        {
+            path.pop();
+        }
+        for ( int i = 0; i < depth; i++ )
+        {
+            path.push( pushed[i] );
+        }
+
+        return path.size();
+    }
+
+    /**
+     * The cycle check the collector used before the path was indexed.
+     */
+    private static SlimDependencyEdge scan( final LinkedList<SlimDependencyEdge> edges, final Artifact artifact )
+    {
+        for ( final SlimDependencyEdge edge : edges )
+        {
+            final Dependency dependency = edge.getDependency();
+            if ( dependency == null )
+            {
+                break;
+            }
+
+            final Artifact a = dependency.getArtifact();
+            if ( a.getArtifactId().equals( artifact.getArtifactId() ) && a.getGroupId().equals( artifact.getGroupId() )
+                && a.getBaseVersion().equals( artifact.getBaseVersion() )
+                && a.getExtension().equals( artifact.getExtension() )
+                && a.getClassifier().equals( artifact.getClassifier() ) )
+            {
+                return edge;
+            }
+        }
+
+        return null;
+    }
+
+}
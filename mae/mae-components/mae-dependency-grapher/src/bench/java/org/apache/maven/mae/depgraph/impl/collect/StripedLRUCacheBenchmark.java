@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of a {@link StripedLRUCache} shared by 8 to 32 collector threads, each looking up descriptors and storing
+ * one on a miss. With a single segment every access takes the same lock, which is what a synchronized cache would
+ * cost; the default 16 segments show what striping buys under contention.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class StripedLRUCacheBenchmark
+{
+
+    private static final int MAX_SIZE = 20000;
+
+    /** Keys are drawn from a range larger than the cache, so that some lookups miss and evict. */
+    private static final int KEYS = MAX_SIZE * 5 / 4;
+
+    @Param( { "1", "16" } )
+    public int segments;
+
+    private StripedLRUCache<Integer, Object> cache;
+
+    private Integer[] keys;
+
+    @Setup
+    public void setUp()
+    {
+        cache = new StripedLRUCache<Integer, Object>( "benchmark", MAX_SIZE, segments );
+        keys = new Integer[KEYS];
+        for ( int i = 0; i < KEYS; i++ )
+        {
+            keys[i] = i;
+            if ( i < MAX_SIZE )
+            {
+                cache.put( keys[i], keys[i] );
+            }
+        }
+    }
+
+    @State( Scope.Thread )
+    public static class Lookups
+    {
+        private final Random random = new Random();
+
+        Integer next( final Integer[] keys )
+        {
+            return keys[random.nextInt( keys.length )];
+        }
+    }
+
+    @Benchmark
+    @Threads( 8 )
+    public Object threads8( final Lookups lookups )
+    {
+        return getOrPut( lookups );
+    }
+
+    @Benchmark
+    @Threads( 16 )
+    public Object threads16( final Lookups lookups )
+    {
+        return getOrPut( lookups );
+    }
+
+    @Benchmark
+    @Threads( 32 )
+    public Object threads32( final Lookups lookups )
+    {
+        return getOrPut( lookups );
+    }
+
+    private Object getOrPut( final Lookups lookups )
+    {
+        final Integer key = lookups.next( keys );
+        final Object value = cache.get( key );
+        if ( value == null )
+        {
+            cache.put( key, key );
+            return key;
+        }
+
+        return value;
+    }
+
+}
@@ -37,4 +37,13 @@ public interface DepGraphLoader
                                                 final boolean includeModuleProjects )
         throws MAEException;
 
+    /**
+     * Reload the project(s) and update the session's dependency graph, collecting again only the roots whose
+     * dependencies changed since the last call.
+     */
+    DependencyGraphDelta updateProjectDependencyGraph( final File rootPom,
+                                                       final ProjectToolsSession session,
+                                                       final boolean includeModuleProjects )
+        throws MAEException;
+
 }
\ No newline at end of file
@@ -21,8 +21,10 @@ package org.apache.maven.mae.depgraph;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
@@ -179,6 +181,76 @@ public class DependencyGraph
         return find( new DepGraphNode( dep ) ) != null;
     }
 
+    public Set<DepGraphNode> getChildren( final DepGraphNode node )
+    {
+        if ( !graph.containsVertex( node ) )
+        {
+            return Collections.emptySet();
+        }
+
+        return new LinkedHashSet<DepGraphNode>( graph.successors( node ) );
+    }
+
+    /**
+     * Collect every node reachable from the given nodes, including the nodes themselves.
+     */
+    public Set<DepGraphNode> getReachable( final Collection<? extends DepGraphNode> from )
+    {
+        final Set<DepGraphNode> seen = new LinkedHashSet<DepGraphNode>();
+        final LinkedList<DepGraphNode> queue = new LinkedList<DepGraphNode>();
+        for ( final DepGraphNode node : from )
+        {
+            if ( graph.containsVertex( node ) && seen.add( node ) )
+            {
+                queue.add( node );
+            }
+        }
+
+        while ( !queue.isEmpty() )
+        {
+            for ( final DepGraphNode child : graph.successors( queue.removeFirst() ) )
+            {
+                if ( seen.add( child ) )
+                {
+                    queue.add( child );
+                }
+            }
+        }
+
+        return seen;
+    }
+
+    /**
+     * Remove the node and all of its edges. If the node is a root, it is no longer reported by {@link #getRoots()}.
+     */
+    public boolean removeNode( final DepGraphNode node )
+    {
+        roots.remove( node );
+        return graph.removeVertex( node );
+    }
+
+    /**
+     * Remove every node that can no longer be reached from one of the roots.
+     * 
+     * @return The nodes that were removed.
+     */
+    public Set<DepGraphNode> prune()
+    {
+        final Set<DepGraphNode> reachable = getReachable( roots );
+
+        final Set<DepGraphNode> removed = new LinkedHashSet<DepGraphNode>();
+        for ( final DepGraphNode node : new ArrayList<DepGraphNode>( graph.vertices() ) )
+        {
+            if ( !reachable.contains( node ) )
+            {
+                graph.removeVertex( node );
+                removed.add( node );
+            }
+        }
+
+        return removed;
+    }
+
     private static final class DepGraph
         extends SimpleDirectedGraph<DepGraphNode>
     {
@@ -193,6 +265,21 @@ public class DependencyGraph
             return getNakedGraph().getVertices();
         }
 
+        public Collection<? extends DepGraphNode> successors( final DepGraphNode node )
+        {
+            return getNakedGraph().getSuccessors( node );
+        }
+
+        public boolean containsVertex( final DepGraphNode node )
+        {
+            return getNakedGraph().containsVertex( node );
+        }
+
+        public boolean removeVertex( final DepGraphNode node )
+        {
+            return getNakedGraph().removeVertex( node );
+        }
+
     }
 
     public static DependencyGraph constructFromRoot( final DependencyNode rootNode,
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Result of an incremental dependency-graph update: the updated graph, plus the nodes that were added, removed or
+ * changed relative to the previous graph. A node counts as changed if it exists in both graphs but its set of direct
+ * dependencies is different, or if it is the root of a project whose dependencies were recomputed.
+ */
+public class DependencyGraphDelta
+{
+
+    private final DependencyGraph graph;
+
+    private final boolean fullRebuild;
+
+    private final Set<DepGraphNode> added;
+
+    private final Set<DepGraphNode> removed;
+
+    private final Set<DepGraphNode> changed;
+
+    public DependencyGraphDelta( final DependencyGraph graph, final boolean fullRebuild,
+                                 final Set<DepGraphNode> added, final Set<DepGraphNode> removed,
+                                 final Set<DepGraphNode> changed )
+    {
+        this.graph = graph;
+        this.fullRebuild = fullRebuild;
+        this.added = Collections.unmodifiableSet( new LinkedHashSet<DepGraphNode>( added ) );
+        this.removed = Collections.unmodifiableSet( new LinkedHashSet<DepGraphNode>( removed ) );
+        this.changed = Collections.unmodifiableSet( new LinkedHashSet<DepGraphNode>( changed ) );
+    }
+
+    public DependencyGraph getGraph()
+    {
+        return graph;
+    }
+
+    /**
+     * @return true if there was no usable previous graph, so every node was computed from scratch and reported as
+     *         added.
+     */
+    public boolean isFullRebuild()
+    {
+        return fullRebuild;
+    }
+
+    public Set<DepGraphNode> getAdded()
+    {
+        return added;
+    }
+
+    public Set<DepGraphNode> getRemoved()
+    {
+        return removed;
+    }
+
+    public Set<DepGraphNode> getChanged()
+    {
+        return changed;
+    }
+
+    public boolean isEmpty()
+    {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DependencyGraphDelta [fullRebuild=" + fullRebuild + ", added=" + added.size() + ", removed="
+            + removed.size() + ", changed=" + changed.size() + "]";
+    }
+
+}
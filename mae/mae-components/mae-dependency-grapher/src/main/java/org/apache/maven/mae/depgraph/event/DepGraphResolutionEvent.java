@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.event;
+
+import org.apache.maven.mae.depgraph.DepGraphNode;
+import org.sonatype.aether.resolution.ArtifactResult;
+
+/**
+ * Progress notification for the artifact resolution of a single {@link DepGraphNode}. These events are fired from the
+ * resolver's worker threads, so listeners registered for them must be thread-safe.
+ */
+public class DepGraphResolutionEvent
+{
+
+    private final DepGraphResolutionEventType type;
+
+    private final DepGraphNode node;
+
+    public DepGraphResolutionEvent( final DepGraphResolutionEventType type, final DepGraphNode node )
+    {
+        this.type = type;
+        this.node = node;
+    }
+
+    public DepGraphResolutionEventType getType()
+    {
+        return type;
+    }
+
+    public DepGraphNode getNode()
+    {
+        return node;
+    }
+
+    public ArtifactResult getResult()
+    {
+        return node.getLatestResult();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DepGraphResolutionEvent [type=" + type + ", node=" + node.getKey() + "]";
+    }
+
+}
@@ -0,0 +1,416 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.apache.maven.mae.depgraph.DepGraphNode;
+import org.apache.maven.mae.depgraph.event.DepGraphResolutionEvent;
+import org.apache.maven.mae.depgraph.event.DepGraphResolutionEventType;
+import org.apache.maven.mae.project.ProjectToolsException;
+import org.apache.maven.mae.project.event.EventDispatcher;
+import org.apache.maven.mae.project.session.ProjectToolsSession;
+import org.sonatype.aether.RepositorySystem;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.resolution.ArtifactRequest;
+import org.sonatype.aether.resolution.ArtifactResolutionException;
+import org.sonatype.aether.resolution.ArtifactResult;
+
+/**
+ * Long-lived artifact resolution pool, stored as state on the {@link ProjectToolsSession} so every resolution in that
+ * session shares the same worker threads. Work is grouped into {@link Batch}es; a batch accepts nodes while the graph
+ * is still being accumulated, and {@link Batch#await()} returns as soon as the last submitted node completes. Each
+ * completed node is published as a {@link DepGraphResolutionEvent} through the session's event dispatcher. The worker
+ * threads are stopped when the session's states are cleared ({@link ProjectToolsSession#clearStates()}).
+ */
+final class ArtifactResolutionPipeline
+    implements Closeable
+{
+
+    private static final Logger LOGGER = Logger.getLogger( ArtifactResolutionPipeline.class );
+
+    private static final long IDLE_SECONDS = 30;
+
+    private final ThreadPoolExecutor executor;
+
+    private ArtifactResolutionPipeline( final int threads )
+    {
+        executor =
+            new ThreadPoolExecutor( threads, threads, IDLE_SECONDS, TimeUnit.SECONDS,
+                                    new LinkedBlockingQueue<Runnable>(), new ResolverThreadFactory() );
+
+        // idle sessions should not pin threads.
+        executor.allowCoreThreadTimeOut( true );
+    }
+
+    static ArtifactResolutionPipeline forSession( final ProjectToolsSession session )
+    {
+        synchronized ( session )
+        {
+            ArtifactResolutionPipeline pipeline = session.getState( ArtifactResolutionPipeline.class );
+            if ( pipeline == null || pipeline.isShutdown() )
+            {
+                pipeline = new ArtifactResolutionPipeline( Math.max( 1, session.getResolveThreads() ) );
+                session.setState( pipeline );
+            }
+
+            return pipeline;
+        }
+    }
+
+    Batch newBatch( final RepositorySystemSession rss, final RepositorySystem repositorySystem,
+                    final ProjectToolsSession session )
+    {
+        return new Batch( rss, repositorySystem, session );
+    }
+
+    void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    boolean isShutdown()
+    {
+        return executor.isShutdown();
+    }
+
+    /**
+     * Stop the worker threads; called when the owning session's states are cleared. Work still running is interrupted,
+     * and a later {@link #forSession(ProjectToolsSession)} starts a new pipeline.
+     */
+    @Override
+    public void close()
+    {
+        shutdown();
+    }
+
+    final class Batch
+    {
+        private final RepositorySystemSession rss;
+
+        private final RepositorySystem repositorySystem;
+
+        private final ProjectToolsSession session;
+
+        private final CompletionService<DepGraphNode> completion;
+
+        private final Map<DepGraphNode, Future<DepGraphNode>> futures =
+            new HashMap<DepGraphNode, Future<DepGraphNode>>();
+
+        // number of remote repositories each node had when it was last submitted.
+        private final Map<DepGraphNode, Integer> submittedRepositories = new HashMap<DepGraphNode, Integer>();
+
+        private int pending;
+
+        private boolean cancelled;
+
+        private Batch( final RepositorySystemSession rss, final RepositorySystem repositorySystem,
+                       final ProjectToolsSession session )
+        {
+            this.rss = rss;
+            this.repositorySystem = repositorySystem;
+            this.session = session;
+            this.completion = new ExecutorCompletionService<DepGraphNode>( executor );
+        }
+
+        /**
+         * Queue the node for resolution, unless it has already been submitted to this batch.
+         */
+        synchronized boolean submit( final DepGraphNode node )
+        {
+            if ( cancelled || submittedRepositories.containsKey( node ) )
+            {
+                return false;
+            }
+
+            queue( node );
+            return true;
+        }
+
+        /**
+         * Queue the node again if its earlier resolution failed and more remote repositories have been merged into it
+         * since then. Only meaningful once {@link #await()} has returned.
+         */
+        synchronized boolean retry( final DepGraphNode node )
+        {
+            final Integer repositories = submittedRepositories.get( node );
+            if ( cancelled || repositories == null || isResolved( node ) )
+            {
+                return false;
+            }
+
+            if ( snapshotRepositories( node ).size() <= repositories )
+            {
+                return false;
+            }
+
+            queue( node );
+            return true;
+        }
+
+        /**
+         * Block until every node submitted so far has completed or been cancelled. If the calling thread is
+         * interrupted, the remaining work is cancelled and the interrupt status is restored.
+         */
+        void await()
+        {
+            while ( true )
+            {
+                synchronized ( this )
+                {
+                    if ( pending < 1 )
+                    {
+                        return;
+                    }
+                }
+
+                final Future<DepGraphNode> future;
+                try
+                {
+                    future = completion.take();
+                }
+                catch ( final InterruptedException e )
+                {
+                    cancel();
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                synchronized ( this )
+                {
+                    pending--;
+                }
+
+                if ( future.isCancelled() )
+                {
+                    continue;
+                }
+
+                try
+                {
+                    future.get();
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                catch ( final ExecutionException e )
+                {
+                    LOGGER.error( "Artifact resolution failed unexpectedly: " + e.getCause().getMessage(),
+                                  e.getCause() );
+                }
+            }
+        }
+
+        /**
+         * Cancel all work in this batch that has not completed yet. Nodes that were cancelled are reported with a
+         * {@link DepGraphResolutionEventType#CANCELLED} event.
+         */
+        public void cancel()
+        {
+            final List<DepGraphNode> cancelledNodes = new ArrayList<DepGraphNode>();
+            synchronized ( this )
+            {
+                if ( cancelled )
+                {
+                    return;
+                }
+
+                cancelled = true;
+                for ( final Map.Entry<DepGraphNode, Future<DepGraphNode>> entry : futures.entrySet() )
+                {
+                    if ( entry.getValue().cancel( true ) )
+                    {
+                        cancelledNodes.add( entry.getKey() );
+                    }
+                }
+
+                // cancelled futures are still delivered to the completion queue, but nobody needs to drain them.
+                pending = 0;
+            }
+
+            for ( final DepGraphNode node : cancelledNodes )
+            {
+                fire( DepGraphResolutionEventType.CANCELLED, node );
+            }
+        }
+
+        synchronized boolean isCancelled()
+        {
+            return cancelled;
+        }
+
+        private void queue( final DepGraphNode node )
+        {
+            final List<RemoteRepository> repositories = snapshotRepositories( node );
+            submittedRepositories.put( node, repositories.size() );
+            futures.put( node, completion.submit( new ResolveTask( node, repositories ) ) );
+            pending++;
+        }
+
+        private void fire( final DepGraphResolutionEventType type, final DepGraphNode node )
+        {
+            if ( session == null )
+            {
+                return;
+            }
+
+            final EventDispatcher<DepGraphResolutionEvent> dispatcher =
+                session.getEventDispatcher( DepGraphResolutionEvent.class );
+            if ( dispatcher == null )
+            {
+                return;
+            }
+
+            try
+            {
+                dispatcher.fire( new DepGraphResolutionEvent( type, node ) );
+            }
+            catch ( final ProjectToolsException e )
+            {
+                LOGGER.error( "Failed to publish " + type + " event for: " + node.getKey() + ". Reason: "
+                    + e.getMessage(), e );
+            }
+        }
+
+        private final class ResolveTask
+            implements Callable<DepGraphNode>
+        {
+            private final DepGraphNode depState;
+
+            private final List<RemoteRepository> repositories;
+
+            ResolveTask( final DepGraphNode depState, final List<RemoteRepository> repositories )
+            {
+                this.depState = depState;
+                this.repositories = repositories;
+            }
+
+            @Override
+            public DepGraphNode call()
+            {
+                final Artifact artifact = depState.getLatestArtifact();
+                final ArtifactRequest request = new ArtifactRequest( artifact, repositories, "project" );
+
+                ArtifactResult result = new ArtifactResult( request );
+                if ( validateForResolution( result ) )
+                {
+                    try
+                    {
+                        if ( LOGGER.isDebugEnabled() )
+                        {
+                            LOGGER.debug( "RESOLVE: " + artifact );
+                        }
+
+                        result = repositorySystem.resolveArtifact( rss, request );
+                    }
+                    catch ( final ArtifactResolutionException e )
+                    {
+                        result.addException( e );
+                    }
+                }
+
+                if ( Thread.currentThread().isInterrupted() && isCancelled() )
+                {
+                    return depState;
+                }
+
+                depState.merge( result );
+                fire( isResolved( depState ) ? DepGraphResolutionEventType.RESOLVED
+                                : DepGraphResolutionEventType.FAILED, depState );
+
+                return depState;
+            }
+
+            private boolean validateForResolution( final ArtifactResult result )
+            {
+                boolean valid = true;
+                if ( rss == null )
+                {
+                    result.addException( new IllegalArgumentException( "Cannot resolve dependency: "
+                        + depState.getLatestArtifact() + ", RepositorySystemSession has not been set!" ) );
+
+                    valid = false;
+                }
+
+                if ( repositorySystem == null )
+                {
+                    result.addException( new IllegalArgumentException( "Cannot resolve dependency: "
+                        + depState.getLatestArtifact() + ", RepositorySystem has not been set!" ) );
+
+                    valid = false;
+                }
+
+                return valid;
+            }
+        }
+    }
+
+    private static List<RemoteRepository> snapshotRepositories( final DepGraphNode node )
+    {
+        // the accumulator may still be merging repositories into this node.
+        synchronized ( node )
+        {
+            return new ArrayList<RemoteRepository>( node.getRemoteRepositories() );
+        }
+    }
+
+    private static boolean isResolved( final DepGraphNode node )
+    {
+        final ArtifactResult result = node.getLatestResult();
+        return result != null && result.getArtifact() != null && result.getArtifact().getFile() != null;
+    }
+
+    private static final class ResolverThreadFactory
+        implements ThreadFactory
+    {
+        private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private final int pool = POOL_COUNTER.incrementAndGet();
+
+        @Override
+        public Thread newThread( final Runnable r )
+        {
+            final Thread t = new Thread( r, "depgraph-resolver-" + pool + "-" + counter.incrementAndGet() );
+            t.setDaemon( true );
+            return t;
+        }
+    }
+
+}
@@ -27,6 +27,7 @@ import org.apache.log4j.Logger;
 import org.apache.maven.mae.MAEException;
 import org.apache.maven.mae.depgraph.DepGraphLoader;
 import org.apache.maven.mae.depgraph.DependencyGraph;
+import org.apache.maven.mae.depgraph.DependencyGraphDelta;
 import org.apache.maven.mae.project.ProjectLoader;
 import org.apache.maven.mae.project.session.ProjectToolsSession;
 import org.apache.maven.mae.project.session.SessionInitializer;
@@ -102,12 +103,34 @@ public class DefaultDepGraphLoader
 
         final RepositorySystemSession rss = session.getRepositorySystemSession();
         final DependencyGraph depGraph =
-            dependencyGraphResolver.accumulateGraph( projects, rss, session );
-        dependencyGraphResolver.resolveGraph( depGraph, projects, rss, session );
+            dependencyGraphResolver.accumulateAndResolveGraph( projects, rss, session );
 
         session.setState( depGraph );
 
         return depGraph;
     }
 
+    @Override
+    public DependencyGraphDelta updateProjectDependencyGraph( final File rootPom,
+                                                              final ProjectToolsSession session,
+                                                              final boolean includeModuleProjects )
+        throws MAEException
+    {
+        sessionInitializer.initializeSessionComponents( session );
+
+        List<MavenProject> projects;
+        if ( includeModuleProjects )
+        {
+            projects =
+                projectLoader.buildReactorProjectInstances( session, includeModuleProjects, rootPom );
+        }
+        else
+        {
+            projects =
+                Collections.singletonList( projectLoader.buildProjectInstance( rootPom, session ) );
+        }
+
+        return dependencyGraphResolver.updateGraph( projects, session.getRepositorySystemSession(), session );
+    }
+
 }
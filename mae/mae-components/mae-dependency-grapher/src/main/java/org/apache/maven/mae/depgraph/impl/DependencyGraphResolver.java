@@ -22,21 +22,21 @@ package org.apache.maven.mae.depgraph.impl;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.apache.maven.RepositoryUtils;
 import org.apache.maven.mae.depgraph.DepGraphNode;
 import org.apache.maven.mae.depgraph.DepGraphRootNode;
 import org.apache.maven.mae.depgraph.DependencyGraph;
+import org.apache.maven.mae.depgraph.DependencyGraphDelta;
 import org.apache.maven.mae.project.session.ProjectToolsSession;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.DependencyManagement;
@@ -55,9 +55,6 @@ import org.sonatype.aether.graph.DependencyNode;
 import org.sonatype.aether.graph.DependencyVisitor;
 import org.sonatype.aether.graph.Exclusion;
 import org.sonatype.aether.repository.RemoteRepository;
-import org.sonatype.aether.resolution.ArtifactRequest;
-import org.sonatype.aether.resolution.ArtifactResolutionException;
-import org.sonatype.aether.resolution.ArtifactResult;
 import org.sonatype.aether.util.DefaultRepositorySystemSession;
 import org.sonatype.aether.util.artifact.JavaScopes;
 
@@ -91,7 +88,8 @@ public class DependencyGraphResolver
             }
         }
 
-        return accumulate( session, rss, rootProjects, session.getRemoteRepositoriesArray() );
+        return accumulate( session, rss, rootProjects, getOrCreateGraph( session ), null,
+                           session.getRemoteRepositoriesArray() );
     }
 
     public DependencyGraph resolveGraph( final DependencyGraph depGraph,
@@ -120,134 +118,418 @@ public class DependencyGraphResolver
         return depGraph;
     }
 
-    // TODO: Allow fine-tuning of scopes resolved...
-    private RepositorySystemSession prepareForGraphResolution( final RepositorySystemSession s,
-                                                               final ProjectToolsSession session )
+    /**
+     * Accumulate the dependency graph for the given projects and resolve its artifacts in one pass. Artifacts are
+     * handed to the session's resolution pipeline as soon as their nodes are discovered, so downloads overlap with the
+     * rest of the graph accumulation instead of waiting for it to finish.
+     */
+    public DependencyGraph accumulateAndResolveGraph( final Collection<MavenProject> rootProjects,
+                                                      final RepositorySystemSession rss,
+                                                      final ProjectToolsSession session )
     {
-        final DefaultRepositorySystemSession result = new DefaultRepositorySystemSession( s );
-        result.setDependencySelector( session.getDependencySelector() );
+        // if ( LOGGER.isDebugEnabled() )
+        {
+            if ( LOGGER.isDebugEnabled() )
+            {
+                LOGGER.debug( "Accumulating and resolving dependency graph..." );
+            }
+        }
 
-        return result;
+        final ArtifactResolutionPipeline.Batch batch =
+            ArtifactResolutionPipeline.forSession( session ).newBatch( rss, repositorySystem, session );
+
+        final DependencyGraph depGraph;
+        try
+        {
+            depGraph =
+                accumulate( session, prepareForGraphResolution( rss, session ), rootProjects,
+                            getOrCreateGraph( session ), batch, session.getRemoteRepositoriesArray() );
+        }
+        catch ( final RuntimeException e )
+        {
+            batch.cancel();
+            throw e;
+        }
+
+        resolve( depGraph, batch );
+
+        // if ( LOGGER.isDebugEnabled() )
+        {
+            if ( LOGGER.isDebugEnabled() )
+            {
+                LOGGER.debug( "Graph state contains: " + depGraph.size() + " nodes." );
+            }
+        }
+
+        return depGraph;
     }
 
-    private void resolve( final RepositorySystemSession session,
-                          final Collection<MavenProject> rootProjects,
-                          final DependencyGraph depGraph, final ProjectToolsSession toolsSession )
+    /**
+     * Bring the session's dependency graph up to date with the given projects, collecting dependencies again only for
+     * roots whose effective dependency list (including dependency management) changed since the last update, or that
+     * depend on another of the given projects whose list changed. The whole subgraph reachable from those roots is
+     * dropped and re-collected, except nodes that an unchanged root still reaches under the same dependency
+     * management; an unchanged root that shares nodes with them under different management is collected again too.
+     * Without a previous graph from this method, or if the session's remote repositories changed, the graph is rebuilt
+     * from scratch.
+     * <br/>
+     * The returned graph is accumulated but not resolved; pass it to
+     * {@link #resolveGraph(DependencyGraph, Collection, RepositorySystemSession, ProjectToolsSession)} if artifact
+     * files are needed.
+     */
+    public DependencyGraphDelta updateGraph( final Collection<MavenProject> rootProjects,
+                                             final RepositorySystemSession rss,
+                                             final ProjectToolsSession session )
     {
-        final Set<DependencyResolveWorker> workers = new HashSet<DependencyResolveWorker>();
-        for ( final DepGraphNode node : depGraph )
+        final RemoteRepository[] remoteRepositories = session.getRemoteRepositoriesArray();
+        final String global = GraphFingerprints.fingerprint( remoteRepositories );
+        final Map<String, String> fingerprints = GraphFingerprints.fingerprint( rootProjects );
+        final Map<String, String> managed = GraphFingerprints.managed( rootProjects );
+
+        final GraphFingerprints previous;
+        DependencyGraph depGraph;
+        synchronized ( session )
+        {
+            previous = session.getState( GraphFingerprints.class );
+            depGraph = session.getState( DependencyGraph.class );
+        }
+
+        final RepositorySystemSession prepared = prepareForGraphResolution( rss, session );
+
+        final DependencyGraphDelta delta;
+        if ( previous == null || depGraph == null || previous.getGraph() != depGraph
+            || !previous.getGlobal().equals( global ) )
         {
-            if ( node == null || node.hasErrors() || node.isPreResolved() )
+            // if ( LOGGER.isDebugEnabled() )
+            {
+                if ( LOGGER.isDebugEnabled() )
+                {
+                    LOGGER.debug( "No reusable dependency graph. Accumulating from scratch..." );
+                }
+            }
+
+            depGraph = accumulate( session, prepared, rootProjects, new DependencyGraph(), null, remoteRepositories );
+
+            final Set<DepGraphNode> added = new LinkedHashSet<DepGraphNode>();
+            for ( final DepGraphNode node : depGraph )
             {
-                continue;
+                added.add( node );
+            }
+
+            final Set<DepGraphNode> none = Collections.emptySet();
+            delta = new DependencyGraphDelta( depGraph, true, added, none, none );
+        }
+        else
+        {
+            final Map<String, DepGraphRootNode> roots = new HashMap<String, DepGraphRootNode>();
+            for ( final DepGraphRootNode root : depGraph.getRoots() )
+            {
+                roots.put( root.getKey(), root );
+            }
+
+            final Set<String> changedRootKeys = new HashSet<String>();
+            final Set<DepGraphRootNode> staleRoots = new LinkedHashSet<DepGraphRootNode>();
+            for ( final MavenProject project : rootProjects )
+            {
+                final String key = GraphFingerprints.rootKey( project );
+                final DepGraphRootNode root = roots.get( key );
+                if ( root == null || !fingerprints.get( key ).equals( previous.getRoots().get( key ) ) )
+                {
+                    changedRootKeys.add( key );
+                    if ( root != null )
+                    {
+                        staleRoots.add( root );
+                    }
+                }
+            }
+
+            for ( final Map.Entry<String, DepGraphRootNode> entry : roots.entrySet() )
+            {
+                if ( !fingerprints.containsKey( entry.getKey() ) )
+                {
+                    staleRoots.add( entry.getValue() );
+                }
+            }
+
+            // removed roots are compared by the management they were collected with.
+            final Map<String, String> rootManagement = new HashMap<String, String>( previous.getManaged() );
+            rootManagement.putAll( managed );
+
+            final Set<String> recollectKeys = new HashSet<String>( changedRootKeys );
+            recollectKeys.addAll( addRootsSharingNodes( depGraph, roots.values(), staleRoots, rootManagement ) );
+
+            // collect in the order of the given projects, as a rebuild from scratch would.
+            final List<MavenProject> changedProjects = new ArrayList<MavenProject>();
+            for ( final MavenProject project : rootProjects )
+            {
+                if ( recollectKeys.contains( GraphFingerprints.rootKey( project ) ) )
+                {
+                    changedProjects.add( project );
+                }
             }
 
             // if ( LOGGER.isDebugEnabled() )
             {
                 if ( LOGGER.isDebugEnabled() )
                 {
-                    LOGGER.debug( "Resolving: " + node.getLatestArtifact() );
+                    LOGGER.debug( "Recomputing " + changedProjects.size() + " of " + rootProjects.size()
+                        + " dependency-graph roots; discarding " + staleRoots.size() + " stale roots." );
                 }
             }
-            workers.add( new DependencyResolveWorker( node, session, repositorySystem ) );
+
+            final Map<DepGraphNode, Set<DepGraphNode>> before = snapshot( depGraph );
+
+            detach( depGraph, staleRoots );
+            if ( !changedProjects.isEmpty() )
+            {
+                accumulate( session, prepared, changedProjects, depGraph, null, remoteRepositories );
+            }
+            depGraph.prune();
+
+            delta = diff( depGraph, before, snapshot( depGraph ), changedRootKeys );
         }
 
-        runResolve( workers, toolsSession );
-        // for ( final DependencyResolveWorker worker : workers )
-        // {
-        // worker.run();
-        // }
+        synchronized ( session )
+        {
+            session.setState( depGraph );
+            session.setState( new GraphFingerprints( depGraph, global, fingerprints, managed ) );
+        }
 
         // if ( LOGGER.isDebugEnabled() )
         {
             if ( LOGGER.isDebugEnabled() )
             {
-                LOGGER.debug( "Dependency-graph resolution complete." );
+                LOGGER.debug( "Dependency-graph update: " + delta );
             }
         }
+
+        return delta;
     }
 
-    private void runResolve( final Set<DependencyResolveWorker> workers,
-                             final ProjectToolsSession session )
+    /**
+     * A node reached from several roots was collected under the dependency management of whichever root reached it
+     * first, and re-accumulation connects to a kept node without descending into it. So a kept root that shares a node
+     * with a stale root is only left alone if both have the same management; otherwise it becomes stale as well, and
+     * so on for the roots it shares nodes with.
+     * 
+     * @return The keys of the kept roots that were added to <code>staleRoots</code>.
+     */
+    private Set<String> addRootsSharingNodes( final DependencyGraph depGraph,
+                                              final Collection<DepGraphRootNode> roots,
+                                              final Set<DepGraphRootNode> staleRoots,
+                                              final Map<String, String> rootManagement )
     {
-        final ExecutorService executorService =
-            Executors.newFixedThreadPool( session.getResolveThreads() );
+        final Set<String> added = new LinkedHashSet<String>();
+        if ( staleRoots.isEmpty() )
+        {
+            return added;
+        }
 
-        final CountDownLatch latch = new CountDownLatch( workers.size() );
-        for ( final DependencyResolveWorker worker : workers )
+        final Map<DepGraphRootNode, Set<DepGraphNode>> reachable = new HashMap<DepGraphRootNode, Set<DepGraphNode>>();
+        for ( final DepGraphRootNode root : roots )
         {
-            worker.setLatch( latch );
-            executorService.execute( worker );
+            reachable.put( root, depGraph.getReachable( Collections.singleton( root ) ) );
         }
 
-        synchronized ( latch )
+        final LinkedList<DepGraphRootNode> queue = new LinkedList<DepGraphRootNode>( staleRoots );
+        while ( !queue.isEmpty() )
         {
-            long count = 0;
-            while ( ( count = latch.getCount() ) > 0 )
+            final DepGraphRootNode stale = queue.removeFirst();
+            final String management = rootManagement.get( stale.getKey() );
+            for ( final DepGraphRootNode root : roots )
             {
-                // if ( LOGGER.isDebugEnabled() )
+                if ( staleRoots.contains( root ) || ( management != null
+                    && management.equals( rootManagement.get( root.getKey() ) ) ) )
                 {
-                    if ( LOGGER.isDebugEnabled() )
-                    {
-                        LOGGER.debug( count + " resolution workers remaining. Waiting 3s..." );
-                    }
+                    continue;
                 }
-                try
+
+                if ( !Collections.disjoint( reachable.get( stale ), reachable.get( root ) ) )
                 {
-                    latch.await( 3, TimeUnit.SECONDS );
+                    // if ( LOGGER.isDebugEnabled() )
+                    {
+                        if ( LOGGER.isDebugEnabled() )
+                        {
+                            LOGGER.debug( "Collecting " + root.getKey() + " again: it shares nodes with "
+                                + stale.getKey() + " under different dependency management." );
+                        }
+                    }
+
+                    staleRoots.add( root );
+                    added.add( root.getKey() );
+                    queue.add( root );
                 }
-                catch ( final InterruptedException e )
+            }
+        }
+
+        return added;
+    }
+
+    /**
+     * Remove the stale roots, plus every node that cannot be reached from a root that is being kept. Nodes that are
+     * still shared with a kept root keep their edges, so re-accumulation will connect to them without descending;
+     * {@link #addRootsSharingNodes(DependencyGraph, Collection, Set, Map)} makes sure they were collected under the
+     * same dependency management.
+     */
+    private void detach( final DependencyGraph depGraph, final Set<DepGraphRootNode> staleRoots )
+    {
+        if ( staleRoots.isEmpty() )
+        {
+            return;
+        }
+
+        final Set<DepGraphRootNode> kept = depGraph.getRoots();
+        kept.removeAll( staleRoots );
+
+        final Set<DepGraphNode> shared = depGraph.getReachable( kept );
+        for ( final DepGraphNode node : depGraph.getReachable( staleRoots ) )
+        {
+            if ( !shared.contains( node ) )
+            {
+                depGraph.removeNode( node );
+            }
+        }
+    }
+
+    private Map<DepGraphNode, Set<DepGraphNode>> snapshot( final DependencyGraph depGraph )
+    {
+        final Map<DepGraphNode, Set<DepGraphNode>> result = new HashMap<DepGraphNode, Set<DepGraphNode>>();
+        for ( final DepGraphNode node : depGraph )
+        {
+            result.put( node, depGraph.getChildren( node ) );
+        }
+
+        return result;
+    }
+
+    private DependencyGraphDelta diff( final DependencyGraph depGraph,
+                                       final Map<DepGraphNode, Set<DepGraphNode>> before,
+                                       final Map<DepGraphNode, Set<DepGraphNode>> after,
+                                       final Set<String> changedRootKeys )
+    {
+        final Set<DepGraphNode> added = new LinkedHashSet<DepGraphNode>();
+        final Set<DepGraphNode> changed = new LinkedHashSet<DepGraphNode>();
+        for ( final Map.Entry<DepGraphNode, Set<DepGraphNode>> entry : after.entrySet() )
+        {
+            final DepGraphNode node = entry.getKey();
+            final Set<DepGraphNode> oldChildren = before.get( node );
+            if ( oldChildren == null )
+            {
+                added.add( node );
+            }
+            else if ( !oldChildren.equals( entry.getValue() )
+                || ( node instanceof DepGraphRootNode && changedRootKeys.contains( node.getKey() ) ) )
+            {
+                changed.add( node );
+            }
+        }
+
+        final Set<DepGraphNode> removed = new LinkedHashSet<DepGraphNode>();
+        for ( final DepGraphNode node : before.keySet() )
+        {
+            if ( !after.containsKey( node ) )
+            {
+                removed.add( node );
+            }
+        }
+
+        return new DependencyGraphDelta( depGraph, false, added, removed, changed );
+    }
+
+    private DependencyGraph getOrCreateGraph( final ProjectToolsSession session )
+    {
+        synchronized ( session )
+        {
+            DependencyGraph depGraph = session.getState( DependencyGraph.class );
+            if ( depGraph == null )
+            {
+                depGraph = new DependencyGraph();
+            }
+
+            return depGraph;
+        }
+    }
+
+    // TODO: Allow fine-tuning of scopes resolved...
+    private RepositorySystemSession prepareForGraphResolution( final RepositorySystemSession s,
+                                                               final ProjectToolsSession session )
+    {
+        final DefaultRepositorySystemSession result = new DefaultRepositorySystemSession( s );
+        result.setDependencySelector( session.getDependencySelector() );
+
+        return result;
+    }
+
+    private void resolve( final RepositorySystemSession session,
+                          final Collection<MavenProject> rootProjects,
+                          final DependencyGraph depGraph, final ProjectToolsSession toolsSession )
+    {
+        final ArtifactResolutionPipeline.Batch batch =
+            ArtifactResolutionPipeline.forSession( toolsSession ).newBatch( session, repositorySystem, toolsSession );
+
+        resolve( depGraph, batch );
+    }
+
+    private void resolve( final DependencyGraph depGraph, final ArtifactResolutionPipeline.Batch batch )
+    {
+        for ( final DepGraphNode node : depGraph )
+        {
+            if ( isResolvable( node ) && batch.submit( node ) )
+            {
+                // if ( LOGGER.isDebugEnabled() )
                 {
-                    break;
+                    if ( LOGGER.isDebugEnabled() )
+                    {
+                        LOGGER.debug( "Resolving: " + node.getLatestArtifact() );
+                    }
                 }
             }
         }
 
-        boolean terminated = false;
-        int count = 1;
-        while ( !terminated )
+        batch.await();
+
+        // nodes resolved during accumulation may have failed before all of their repositories were known.
+        for ( final DepGraphNode node : depGraph )
         {
-            try
+            if ( isResolvable( node ) && batch.retry( node ) )
             {
-                executorService.shutdown();
                 // if ( LOGGER.isDebugEnabled() )
                 {
                     if ( LOGGER.isDebugEnabled() )
                     {
-                        LOGGER.debug( "Attempt " + count
-                            + " to shutdown graph-resolver. Waiting 3s..." );
+                        LOGGER.debug( "Retrying with additional repositories: " + node.getLatestArtifact() );
                     }
                 }
-
-                count++;
-                terminated = executorService.awaitTermination( 3, TimeUnit.SECONDS );
             }
-            catch ( final InterruptedException e )
+        }
+
+        batch.await();
+
+        // if ( LOGGER.isDebugEnabled() )
+        {
+            if ( LOGGER.isDebugEnabled() )
             {
-                break;
+                LOGGER.debug( "Dependency-graph resolution complete." );
             }
         }
     }
 
+    private static boolean isResolvable( final DepGraphNode node )
+    {
+        return node != null && !node.hasErrors() && !node.isPreResolved();
+    }
+
     private DependencyGraph accumulate( final ProjectToolsSession session,
                                         final RepositorySystemSession rss,
                                         final Collection<MavenProject> projects,
+                                        final DependencyGraph depGraph,
+                                        final ArtifactResolutionPipeline.Batch batch,
                                         final RemoteRepository... remoteRepositories )
     {
         final ArtifactTypeRegistry stereotypes = rss.getArtifactTypeRegistry();
 
-        DependencyGraph depGraph;
-        synchronized ( session )
-        {
-            depGraph = session.getState( DependencyGraph.class );
-            if ( depGraph == null )
-            {
-                depGraph = new DependencyGraph();
-            }
-        }
-
         final GraphAccumulator accumulator =
-            new GraphAccumulator( depGraph, session.getDependencyFilter() );
+            new GraphAccumulator( depGraph, session.getDependencyFilter(), batch );
 
         for ( final MavenProject project : projects )
         {
@@ -403,10 +685,14 @@ public class DependencyGraphResolver
 
         private final DependencyFilter filter;
 
-        GraphAccumulator( final DependencyGraph depGraph, final DependencyFilter filter )
+        private final ArtifactResolutionPipeline.Batch batch;
+
+        GraphAccumulator( final DependencyGraph depGraph, final DependencyFilter filter,
+                          final ArtifactResolutionPipeline.Batch batch )
         {
             this.depGraph = depGraph;
             this.filter = filter;
+            this.batch = batch;
         }
 
         void resetForNextRun( final DependencyNode root, final DepGraphRootNode rootNode )
@@ -480,13 +766,20 @@ public class DependencyGraphResolver
 
                 // result = true;
 
+                final DepGraphNode[] added;
                 if ( parent == root )
                 {
-                    depGraph.addDependency( rootNode, node );
+                    added = depGraph.addDependency( rootNode, node );
                 }
                 else
                 {
-                    depGraph.addDependency( parent, node );
+                    added = depGraph.addDependency( parent, node );
+                }
+
+                // start resolving the artifact while the rest of the graph is still being discovered.
+                if ( batch != null && isResolvable( added[1] ) )
+                {
+                    batch.submit( added[1] );
                 }
 
                 if ( node.getDependency().getExclusions() != null )
@@ -654,110 +947,4 @@ public class DependencyGraphResolver
 
     }
 
-    private static final class DependencyResolveWorker
-        implements Runnable
-    {
-
-        private final DepGraphNode depState;
-
-        private final RepositorySystemSession session;
-
-        private final RepositorySystem repositorySystem;
-
-        private ArtifactResult result;
-
-        private CountDownLatch latch;
-
-        DependencyResolveWorker( final DepGraphNode depState,
-                                 final RepositorySystemSession session,
-                                 final RepositorySystem repositorySystem )
-        {
-            this.depState = depState;
-            this.session = session;
-            this.repositorySystem = repositorySystem;
-        }
-
-        void setLatch( final CountDownLatch latch )
-        {
-            this.latch = latch;
-        }
-
-        @Override
-        public void run()
-        {
-            final Artifact artifact = depState.getLatestArtifact();
-
-            try
-            {
-                final ArtifactRequest request =
-                    new ArtifactRequest(
-                                         artifact,
-                                         new ArrayList<RemoteRepository>(
-                                                                          depState.getRemoteRepositories() ),
-                                         "project" );
-
-                result = new ArtifactResult( request );
-                if ( validateForResolution() )
-                {
-                    try
-                    {
-                        // if ( LOGGER.isDebugEnabled() )
-                        {
-                            if ( LOGGER.isDebugEnabled() )
-                            {
-                                LOGGER.debug( "RESOLVE: " + artifact );
-                            }
-                        }
-
-                        result = repositorySystem.resolveArtifact( session, request );
-                    }
-                    catch ( final ArtifactResolutionException e )
-                    {
-                        result.addException( e );
-                    }
-                }
-            }
-            finally
-            {
-                // final Runtime r = Runtime.getRuntime();
-                //
-                // final long MB = 1024 * 1024;
-                //
-                // System.out.println( "Memory status: " + ( r.totalMemory() - r.freeMemory() ) / MB + "M/"
-                // + r.totalMemory() / MB + "M" );
-
-                // FIXME: Do we need to detect whether resolution already happened for this artifact before we try to
-                // resolve it
-                // again??
-                depState.merge( result );
-                if ( latch != null )
-                {
-                    latch.countDown();
-                }
-            }
-        }
-
-        private boolean validateForResolution()
-        {
-            boolean valid = true;
-            if ( session == null )
-            {
-                result.addException( new IllegalArgumentException( "Cannot resolve dependency: "
-                    + depState.getLatestArtifact() + ", RepositorySystemSession has not been set!" ) );
-
-                valid = false;
-            }
-
-            if ( repositorySystem == null )
-            {
-                result.addException( new IllegalArgumentException( "Cannot resolve dependency: "
-                    + depState.getLatestArtifact() + ", RepositorySystem has not been set!" ) );
-
-                valid = false;
-            }
-
-            return valid;
-        }
-    }
-
 }
@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.mae.depgraph.DependencyGraph;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.project.MavenProject;
+import org.sonatype.aether.repository.RemoteRepository;
+
+/**
+ * Fingerprints of the effective dependency lists that produced a {@link DependencyGraph}, one per root project plus
+ * one for the session-wide inputs. Stored as session state next to the graph, so the next incremental update can tell
+ * which roots need to be collected again.
+ */
+final class GraphFingerprints
+{
+
+    private final DependencyGraph graph;
+
+    private final String global;
+
+    private final Map<String, String> roots;
+
+    private final Map<String, String> managed;
+
+    GraphFingerprints( final DependencyGraph graph, final String global, final Map<String, String> roots,
+                       final Map<String, String> managed )
+    {
+        this.graph = graph;
+        this.global = global;
+        this.roots = Collections.unmodifiableMap( new LinkedHashMap<String, String>( roots ) );
+        this.managed = Collections.unmodifiableMap( new LinkedHashMap<String, String>( managed ) );
+    }
+
+    DependencyGraph getGraph()
+    {
+        return graph;
+    }
+
+    String getGlobal()
+    {
+        return global;
+    }
+
+    Map<String, String> getRoots()
+    {
+        return roots;
+    }
+
+    /**
+     * @return the fingerprint of each root's dependency management alone, see {@link #managed(Collection)}.
+     */
+    Map<String, String> getManaged()
+    {
+        return managed;
+    }
+
+    static String rootKey( final MavenProject project )
+    {
+        return ArtifactUtils.key( project.getGroupId(), project.getArtifactId(), project.getVersion() );
+    }
+
+    /**
+     * Dependencies on other projects in <code>projects</code> are collected from those projects' current models (via
+     * the workspace), not from the repository. So each root's fingerprint also covers the fingerprints of every
+     * project it reaches that way, directly or through other projects; a change to one of them means the root has to be
+     * collected again as well.
+     */
+    static Map<String, String> fingerprint( final Collection<MavenProject> projects )
+    {
+        final Map<String, String> own = new LinkedHashMap<String, String>();
+        final Map<String, List<MavenProject>> byVersionlessKey = new HashMap<String, List<MavenProject>>();
+        for ( final MavenProject project : projects )
+        {
+            own.put( rootKey( project ), fingerprint( project ) );
+
+            final String key = ArtifactUtils.versionlessKey( project.getGroupId(), project.getArtifactId() );
+            List<MavenProject> sameKey = byVersionlessKey.get( key );
+            if ( sameKey == null )
+            {
+                sameKey = new ArrayList<MavenProject>( 1 );
+                byVersionlessKey.put( key, sameKey );
+            }
+            sameKey.add( project );
+        }
+
+        final Map<String, String> result = new LinkedHashMap<String, String>();
+        for ( final MavenProject project : projects )
+        {
+            final String rootKey = rootKey( project );
+
+            final StringBuilder sb = new StringBuilder( own.get( rootKey ) ).append( '\n' );
+            for ( final String reached : reachableProjects( project, byVersionlessKey ) )
+            {
+                if ( !reached.equals( rootKey ) )
+                {
+                    sb.append( "project:" ).append( reached ).append( '=' ).append( own.get( reached ) ).append( '\n' );
+                }
+            }
+
+            result.put( rootKey, digest( sb ) );
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the root keys of the projects reachable from <code>project</code> through dependencies, sorted. Versions
+     *         are not compared, since a range or a managed version may still select the project.
+     */
+    private static Set<String> reachableProjects( final MavenProject project,
+                                                  final Map<String, List<MavenProject>> byVersionlessKey )
+    {
+        final Set<String> reached = new TreeSet<String>();
+        final LinkedList<MavenProject> queue = new LinkedList<MavenProject>();
+        queue.add( project );
+        while ( !queue.isEmpty() )
+        {
+            final MavenProject next = queue.removeFirst();
+            if ( next.getDependencies() == null )
+            {
+                continue;
+            }
+
+            for ( final Dependency dep : next.getDependencies() )
+            {
+                final List<MavenProject> targets =
+                    byVersionlessKey.get( ArtifactUtils.versionlessKey( dep.getGroupId(), dep.getArtifactId() ) );
+                if ( targets == null )
+                {
+                    continue;
+                }
+
+                for ( final MavenProject target : targets )
+                {
+                    if ( reached.add( rootKey( target ) ) )
+                    {
+                        queue.add( target );
+                    }
+                }
+            }
+        }
+
+        return reached;
+    }
+
+    /**
+     * Fingerprint only the dependency management of each project, which decides the versions of transitive
+     * dependencies collected under it. Two roots with the same fingerprint collect the same subgraph below any node
+     * they share.
+     */
+    static Map<String, String> managed( final Collection<MavenProject> projects )
+    {
+        final Map<String, String> result = new LinkedHashMap<String, String>();
+        for ( final MavenProject project : projects )
+        {
+            final StringBuilder sb = new StringBuilder();
+            final DependencyManagement depMgmt = project.getDependencyManagement();
+            if ( depMgmt != null )
+            {
+                append( sb, "managed", depMgmt.getDependencies() );
+            }
+
+            result.put( rootKey( project ), digest( sb ) );
+        }
+
+        return result;
+    }
+
+    static String fingerprint( final RemoteRepository... repositories )
+    {
+        final StringBuilder sb = new StringBuilder();
+        if ( repositories != null )
+        {
+            for ( final RemoteRepository repository : repositories )
+            {
+                sb.append( repository.getId() ).append( '=' ).append( repository.getUrl() ).append( '\n' );
+            }
+        }
+
+        return digest( sb );
+    }
+
+    /**
+     * Covers everything {@link DependencyGraphResolver} feeds into the collect request for this project: its
+     * dependencies in declaration order, the resolved dependency artifacts if present, and dependency management.
+     */
+    static String fingerprint( final MavenProject project )
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( rootKey( project ) ).append( '\n' );
+
+        append( sb, "dep", project.getDependencies() );
+
+        if ( project.getDependencyArtifacts() != null )
+        {
+            for ( final org.apache.maven.artifact.Artifact artifact : project.getDependencyArtifacts() )
+            {
+                sb.append( "artifact:" )
+                  .append( artifact.getDependencyConflictId() )
+                  .append( ':' )
+                  .append( artifact.getBaseVersion() )
+                  .append( ':' )
+                  .append( artifact.getScope() )
+                  .append( '\n' );
+            }
+        }
+
+        final DependencyManagement depMgmt = project.getDependencyManagement();
+        if ( depMgmt != null )
+        {
+            append( sb, "managed", depMgmt.getDependencies() );
+        }
+
+        return digest( sb );
+    }
+
+    private static void append( final StringBuilder sb, final String prefix, final List<Dependency> dependencies )
+    {
+        if ( dependencies == null )
+        {
+            return;
+        }
+
+        for ( final Dependency dep : dependencies )
+        {
+            sb.append( prefix )
+              .append( ':' )
+              .append( dep.getManagementKey() )
+              .append( ':' )
+              .append( dep.getVersion() )
+              .append( ':' )
+              .append( dep.getScope() )
+              .append( ':' )
+              .append( dep.isOptional() )
+              .append( ':' )
+              .append( dep.getSystemPath() );
+
+            for ( final Exclusion exclusion : dep.getExclusions() )
+            {
+                sb.append( ":-" ).append( exclusion.getGroupId() ).append( ':' ).append( exclusion.getArtifactId() );
+            }
+
+            sb.append( '\n' );
+        }
+    }
+
+    private static String digest( final CharSequence content )
+    {
+        try
+        {
+            final byte[] digest = MessageDigest.getInstance( "SHA-1" ).digest( content.toString().getBytes( "UTF-8" ) );
+
+            final StringBuilder sb = new StringBuilder( digest.length * 2 );
+            for ( final byte b : digest )
+            {
+                sb.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+            }
+
+            return sb.toString();
+        }
+        catch ( final NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 digests are not available: " + e.getMessage(), e );
+        }
+        catch ( final UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( "UTF-8 encoding is not available: " + e.getMessage(), e );
+        }
+    }
+
+}
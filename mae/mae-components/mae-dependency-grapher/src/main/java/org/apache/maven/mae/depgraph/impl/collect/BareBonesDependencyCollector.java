@@ -62,9 +62,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * {@link DependencyCollector} implementation based on {@link DefaultDependencyCollector}, but which uses a more
@@ -251,15 +251,15 @@ public class BareBonesDependencyCollector
 
         if ( traverse && !dependencies.isEmpty() )
         {
-            final LinkedList<SlimDependencyEdge> edges = new LinkedList<SlimDependencyEdge>();
-            edges.addFirst( edge );
+            final DependencyPath edges = new DependencyPath();
+            edges.push( edge );
 
             final DependencyCollectionContext context = new CollectionContext( session, root, managedDependencies );
 
             final DepGraphCache pool = new DepGraphCache( session );
-            process( session, toolsSession, trace, result, edges, dependencies, repositories,
-                     depSelector.deriveChildSelector( context ), depManager.deriveChildManager( context ),
-                     depTraverser.deriveChildTraverser( context ), pool, graph );
+            collectChildren( session, toolsSession, trace, result, edges, dependencies, repositories,
+                             depSelector.deriveChildSelector( context ), depManager.deriveChildManager( context ),
+                             depTraverser.deriveChildTraverser( context ), pool, graph );
         }
 
         final DependencyGraphTransformer transformer = session.getDependencyGraphTransformer();
@@ -288,6 +288,38 @@ public class BareBonesDependencyCollector
         return optimized;
     }
 
+    /**
+     * Collect the graph below the root edge, which is the only entry in <code>edges</code> when this is called. The
+     * default implementation walks the graph recursively on the calling thread, resolving version ranges and
+     * descriptors as it goes.
+     */
+    void collectChildren( final RepositorySystemSession session, final ProjectToolsSession toolsSession,
+                          final RequestTrace trace, final CollectResult result,
+                          final DependencyPath edges, final List<Dependency> dependencies,
+                          final List<RemoteRepository> repositories, final DependencySelector depSelector,
+                          final DependencyManager depManager, final DependencyTraverser depTraverser,
+                          final DepGraphCache pool, final SlimDepGraph graph )
+        throws DependencyCollectionException
+    {
+        process( session, toolsSession, trace, result, edges, dependencies, repositories, depSelector, depManager,
+                 depTraverser, new Resolution( session, pool ), pool, graph );
+    }
+
+    RemoteRepositoryManager getRemoteRepositoryManager()
+    {
+        return remoteRepositoryManager;
+    }
+
+    ArtifactDescriptorReader getArtifactDescriptorReader()
+    {
+        return descriptorReader;
+    }
+
+    VersionRangeResolver getVersionRangeResolver()
+    {
+        return versionRangeResolver;
+    }
+
     private List<Dependency> mergeDeps( final List<Dependency> dominant, final List<Dependency> recessive )
     {
         List<Dependency> result;
@@ -324,18 +356,20 @@ public class BareBonesDependencyCollector
         return a.getGroupId() + ':' + a.getArtifactId() + ':' + a.getClassifier() + ':' + a.getExtension();
     }
 
-    private boolean process( final RepositorySystemSession session, final ProjectToolsSession toolsSession,
-                             final RequestTrace trace, final CollectResult result,
-                             final LinkedList<SlimDependencyEdge> edges, final List<Dependency> dependencies,
-                             final List<RemoteRepository> repositories, final DependencySelector depSelector,
-                             final DependencyManager depManager, final DependencyTraverser depTraverser,
-                             final DepGraphCache pool, final SlimDepGraph graph )
+    final boolean process( final RepositorySystemSession session, final ProjectToolsSession toolsSession,
+                           final RequestTrace trace, final CollectResult result,
+                           final DependencyPath edges, final List<Dependency> dependencies,
+                           final List<RemoteRepository> repositories, final DependencySelector depSelector,
+                           final DependencyManager depManager, final DependencyTraverser depTraverser,
+                           final Resolution resolution, final DepGraphCache pool, final SlimDepGraph graph )
         throws DependencyCollectionException
     {
         boolean cycle = false;
 
         final DependencyFilter filter = toolsSession == null ? null : toolsSession.getDependencyFilter();
 
+        resolution.prefetch( dependencies, repositories, depSelector, depManager );
+
         nextDependency: for ( Dependency dependency : dependencies )
         {
             boolean disableVersionManagement = false;
@@ -350,33 +384,8 @@ public class BareBonesDependencyCollector
                     continue nextDependency;
                 }
 
-                final DependencyManagement depMngt = depManager.manageDependency( dependency );
-                String premanagedVersion = null;
-                String premanagedScope = null;
-
-                if ( depMngt != null )
-                {
-                    if ( depMngt.getVersion() != null && !disableVersionManagement )
-                    {
-                        final Artifact artifact = dependency.getArtifact();
-                        premanagedVersion = artifact.getVersion();
-                        dependency = dependency.setArtifact( artifact.setVersion( depMngt.getVersion() ) );
-                    }
-                    if ( depMngt.getProperties() != null )
-                    {
-                        final Artifact artifact = dependency.getArtifact();
-                        dependency = dependency.setArtifact( artifact.setProperties( depMngt.getProperties() ) );
-                    }
-                    if ( depMngt.getScope() != null )
-                    {
-                        premanagedScope = dependency.getScope();
-                        dependency = dependency.setScope( depMngt.getScope() );
-                    }
-                    if ( depMngt.getExclusions() != null )
-                    {
-                        dependency = dependency.setExclusions( depMngt.getExclusions() );
-                    }
-                }
+                final Managed managed = manage( dependency, depManager, disableVersionManagement );
+                dependency = managed.dependency;
                 disableVersionManagement = false;
 
                 final boolean noDescriptor = isLackingDescriptor( dependency.getArtifact() );
@@ -386,19 +395,9 @@ public class BareBonesDependencyCollector
                 VersionRangeResult rangeResult;
                 try
                 {
-                    final VersionRangeRequest rangeRequest = new VersionRangeRequest();
-                    rangeRequest.setArtifact( dependency.getArtifact() );
-                    rangeRequest.setRepositories( repositories );
-                    rangeRequest.setRequestContext( result.getRequest().getRequestContext() );
-                    rangeRequest.setTrace( trace );
-
-                    final Object key = pool.toKey( rangeRequest );
-                    rangeResult = pool.getConstraint( key, rangeRequest );
-                    if ( rangeResult == null )
-                    {
-                        rangeResult = versionRangeResolver.resolveVersionRange( session, rangeRequest );
-                        pool.putConstraint( key, rangeResult );
-                    }
+                    rangeResult =
+                        resolution.resolveRange( newRangeRequest( dependency.getArtifact(), repositories, trace,
+                                                                  result ) );
 
                     if ( rangeResult.getVersions().isEmpty() )
                     {
@@ -423,11 +422,8 @@ public class BareBonesDependencyCollector
                     ArtifactDescriptorResult descriptorResult;
                     try
                     {
-                        final ArtifactDescriptorRequest descriptorRequest = new ArtifactDescriptorRequest();
-                        descriptorRequest.setArtifact( d.getArtifact() );
-                        descriptorRequest.setRepositories( repositories );
-                        descriptorRequest.setRequestContext( result.getRequest().getRequestContext() );
-                        descriptorRequest.setTrace( trace );
+                        final ArtifactDescriptorRequest descriptorRequest =
+                            newDescriptorRequest( d.getArtifact(), repositories, trace, result );
 
                         if ( noDescriptor )
                         {
@@ -435,13 +431,7 @@ public class BareBonesDependencyCollector
                         }
                         else
                         {
-                            final Object key = pool.toKey( descriptorRequest );
-                            descriptorResult = pool.getDescriptor( key, descriptorRequest );
-                            if ( descriptorResult == null )
-                            {
-                                descriptorResult = descriptorReader.readArtifactDescriptor( session, descriptorRequest );
-                                pool.putDescriptor( key, descriptorResult );
-                            }
+                            descriptorResult = resolution.readDescriptor( descriptorRequest );
                         }
                     }
                     catch ( final ArtifactDescriptorException e )
@@ -452,7 +442,7 @@ public class BareBonesDependencyCollector
 
                     d = d.setArtifact( descriptorResult.getArtifact() );
 
-                    if ( findDuplicate( edges, d.getArtifact() ) != null )
+                    if ( edges.findDuplicate( d.getArtifact() ) != null )
                     {
                         cycle = true;
                         continue nextDependency;
@@ -525,20 +515,20 @@ public class BareBonesDependencyCollector
                         }
                     }
 
-                    final SlimDependencyNode node = edges.getFirst().getTo();
+                    final SlimDependencyNode node = edges.peek().getTo();
 
                     final SlimDependencyEdge edge = new SlimDependencyEdge( node, child, graph );
                     edge.setDependency( d );
                     edge.setScope( d.getScope() );
-                    edge.setPremanagedScope( premanagedScope );
-                    edge.setPremanagedVersion( premanagedVersion );
+                    edge.setPremanagedScope( managed.premanagedScope );
+                    edge.setPremanagedVersion( managed.premanagedVersion );
                     edge.setRelocations( relocations );
                     edge.setVersionConstraint( rangeResult.getVersionConstraint() );
                     edge.setVersion( version );
                     edge.setRequestContext( result.getRequest().getRequestContext() );
 
                     final List<DependencyNode> parents = new ArrayList<DependencyNode>();
-                    parents.add( edges.getFirst() );
+                    parents.add( edges.peek() );
 
                     if ( filter != null && !filter.accept( edge, parents ) )
                     {
@@ -549,16 +539,17 @@ public class BareBonesDependencyCollector
 
                     if ( recurse )
                     {
-                        edges.addFirst( edge );
+                        edges.push( edge );
 
-                        if ( process( session, toolsSession, trace, result, edges, descriptorResult.getDependencies(), childRepos,
-                                      childSelector, childManager, childTraverser, pool, graph ) )
+                        if ( process( session, toolsSession, trace, result, edges, descriptorResult.getDependencies(),
+                                      childRepos, childSelector, childManager, childTraverser, resolution, pool,
+                                      graph ) )
                         {
                             cycle = true;
                             continue nextDependency;
                         }
 
-                        edges.removeFirst();
+                        edges.pop();
                     }
                 }
 
@@ -569,50 +560,134 @@ public class BareBonesDependencyCollector
         return cycle;
     }
 
-    private SlimDependencyEdge findDuplicate( final List<SlimDependencyEdge> edges, final Artifact artifact )
+    static Managed manage( final Dependency original, final DependencyManager depManager,
+                           final boolean disableVersionManagement )
     {
-        for ( final SlimDependencyEdge edge : edges )
-        {
-            final Dependency dependency = edge.getDependency();
-            if ( dependency == null )
-            {
-                break;
-            }
+        final Managed managed = new Managed();
+        Dependency dependency = original;
 
-            final Artifact a = dependency.getArtifact();
-            if ( !a.getArtifactId().equals( artifact.getArtifactId() ) )
-            {
-                continue;
-            }
-            if ( !a.getGroupId().equals( artifact.getGroupId() ) )
+        final DependencyManagement depMngt = depManager.manageDependency( dependency );
+        if ( depMngt != null )
+        {
+            if ( depMngt.getVersion() != null && !disableVersionManagement )
             {
-                continue;
+                final Artifact artifact = dependency.getArtifact();
+                managed.premanagedVersion = artifact.getVersion();
+                dependency = dependency.setArtifact( artifact.setVersion( depMngt.getVersion() ) );
             }
-            if ( !a.getBaseVersion().equals( artifact.getBaseVersion() ) )
+            if ( depMngt.getProperties() != null )
             {
-                continue;
+                final Artifact artifact = dependency.getArtifact();
+                dependency = dependency.setArtifact( artifact.setProperties( depMngt.getProperties() ) );
             }
-            if ( !a.getExtension().equals( artifact.getExtension() ) )
+            if ( depMngt.getScope() != null )
             {
-                continue;
+                managed.premanagedScope = dependency.getScope();
+                dependency = dependency.setScope( depMngt.getScope() );
             }
-            if ( !a.getClassifier().equals( artifact.getClassifier() ) )
+            if ( depMngt.getExclusions() != null )
             {
-                continue;
+                dependency = dependency.setExclusions( depMngt.getExclusions() );
             }
-
-            return edge;
         }
 
-        return null;
+        managed.dependency = dependency;
+        return managed;
     }
 
-    private boolean isLackingDescriptor( final Artifact artifact )
+    static VersionRangeRequest newRangeRequest( final Artifact artifact, final List<RemoteRepository> repositories,
+                                                final RequestTrace trace, final CollectResult result )
+    {
+        final VersionRangeRequest request = new VersionRangeRequest();
+        request.setArtifact( artifact );
+        request.setRepositories( repositories );
+        request.setRequestContext( result.getRequest().getRequestContext() );
+        request.setTrace( trace );
+
+        return request;
+    }
+
+    static ArtifactDescriptorRequest newDescriptorRequest( final Artifact artifact,
+                                                           final List<RemoteRepository> repositories,
+                                                           final RequestTrace trace, final CollectResult result )
+    {
+        final ArtifactDescriptorRequest request = new ArtifactDescriptorRequest();
+        request.setArtifact( artifact );
+        request.setRepositories( repositories );
+        request.setRequestContext( result.getRequest().getRequestContext() );
+        request.setTrace( trace );
+
+        return request;
+    }
+
+    boolean isLackingDescriptor( final Artifact artifact )
     {
         return artifact.getProperty( ArtifactProperties.LOCAL_PATH, null ) != null;
     }
 
-    private static final class CollectionContext
+    static final class Managed
+    {
+        Dependency dependency;
+
+        String premanagedVersion;
+
+        String premanagedScope;
+    }
+
+    /**
+     * Supplies the version ranges and descriptors {@link #process} needs, resolving them on the calling thread and
+     * keeping them in the {@link DepGraphCache}.
+     */
+    class Resolution
+    {
+        final RepositorySystemSession session;
+
+        final DepGraphCache pool;
+
+        Resolution( final RepositorySystemSession session, final DepGraphCache pool )
+        {
+            this.session = session;
+            this.pool = pool;
+        }
+
+        /**
+         * Called with the dependencies of a node before any of them is processed. Does nothing here.
+         */
+        void prefetch( final List<Dependency> dependencies, final List<RemoteRepository> repositories,
+                       final DependencySelector depSelector, final DependencyManager depManager )
+        {
+        }
+
+        VersionRangeResult resolveRange( final VersionRangeRequest request )
+            throws VersionRangeResolutionException, DependencyCollectionException
+        {
+            final Object key = pool.toKey( request );
+            VersionRangeResult rangeResult = pool.getConstraint( key, request );
+            if ( rangeResult == null )
+            {
+                rangeResult = versionRangeResolver.resolveVersionRange( session, request );
+                pool.putConstraint( key, rangeResult );
+            }
+
+            return rangeResult;
+        }
+
+        ArtifactDescriptorResult readDescriptor( final ArtifactDescriptorRequest request )
+            throws ArtifactDescriptorException, DependencyCollectionException
+        {
+            final Object key = pool.toKey( request );
+            ArtifactDescriptorResult descriptorResult = pool.getDescriptor( key, request );
+            if ( descriptorResult == null )
+            {
+                descriptorResult = descriptorReader.readArtifactDescriptor( session, request );
+                pool.putDescriptor( key, descriptorResult );
+            }
+
+            return descriptorResult;
+        }
+    }
+
+    static final class CollectionContext
         implements DependencyCollectionContext
     {
 
@@ -688,7 +763,7 @@ public class BareBonesDependencyCollector
     {
         private final ArtifactTypeRegistry delegate;
 
-        private final Map<String, ArtifactType> types = new HashMap<String, ArtifactType>();
+        private final Map<String, ArtifactType> types = new ConcurrentHashMap<String, ArtifactType>();
 
         TypeRegistry( final RepositorySystemSession session )
         {
@@ -703,7 +778,10 @@ public class BareBonesDependencyCollector
             if ( type == null )
             {
                 type = delegate.get( typeId );
-                types.put( typeId, type );
+                if ( type != null )
+                {
+                    types.put( typeId, type );
+                }
             }
 
             return type;
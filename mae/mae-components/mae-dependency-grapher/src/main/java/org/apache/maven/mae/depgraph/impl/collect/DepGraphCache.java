@@ -33,7 +33,6 @@ import org.sonatype.aether.version.VersionConstraint;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -44,6 +43,11 @@ import java.util.WeakHashMap;
  * Based on DataPool in aether-impl, this cache provides the ability to clear the cache in the
  * {@link RepositorySystemSession}, along with tracking for {@link RemoteRepository} instances, and NOT including
  * tracking for nodes.
+ * <p>
+ * When the session configuration property <code>mae.depgraph.cache.persistent</code> is <code>true</code>, descriptors
+ * and version ranges missing from memory are also looked up in (and saved to) a {@link PersistentDescriptorStore} in
+ * the local repository, so they survive from one session to the next.
+ * </p>
  * 
  * @author Benjamin Bentmann
  * @author John Casey
@@ -59,19 +63,52 @@ public final class DepGraphCache
 
     private static final String DESCRIPTORS = DepGraphCache.class.getName() + "$Descriptors";
 
+    private static final String CONSTRAINTS = DepGraphCache.class.getName() + "$Constraints";
+
+    /**
+     * Session configuration property giving the maximum number of artifact descriptors to keep in the cache.
+     */
+    public static final String MAX_DESCRIPTORS_KEY = "mae.depgraph.cache.maxDescriptors";
+
+    /**
+     * Session configuration property giving the maximum number of version-range results to keep in the cache.
+     */
+    public static final String MAX_CONSTRAINTS_KEY = "mae.depgraph.cache.maxConstraints";
+
+    /**
+     * Key of the descriptor cache's {@link DepGraphCacheStats} in the session's {@link RepositoryCache}.
+     */
+    public static final String DESCRIPTOR_STATS = DepGraphCacheStats.class.getName() + "$Descriptors";
+
+    /**
+     * Key of the version-range cache's {@link DepGraphCacheStats} in the session's {@link RepositoryCache}.
+     */
+    public static final String CONSTRAINT_STATS = DepGraphCacheStats.class.getName() + "$Constraints";
+
+    public static final int DEFAULT_MAX_DESCRIPTORS = 20000;
+
+    public static final int DEFAULT_MAX_CONSTRAINTS = 20000;
+
     private ObjectPool<String, Artifact> artifacts;
 
     private ObjectPool<Dependency, Dependency> dependencies;
 
     private ObjectPool<RemoteRepository, RemoteRepository> repositories;
 
-    private Map<Object, Descriptor> descriptors;
+    private StripedLRUCache<Object, Descriptor> descriptors;
 
-    private final Map<Object, Constraint> constraints = new WeakHashMap<Object, Constraint>();
+    private StripedLRUCache<Object, Constraint> constraints;
+
+    private final RepositorySystemSession session;
+
+    private final PersistentDescriptorStore store;
 
     @SuppressWarnings( "unchecked" )
     DepGraphCache( final RepositorySystemSession session )
     {
+        this.session = session;
+        store = PersistentDescriptorStore.get( session );
+
         final RepositoryCache cache = session.getCache();
 
         if ( cache != null )
@@ -79,7 +116,8 @@ public final class DepGraphCache
             artifacts = (ObjectPool<String, Artifact>) cache.get( session, ARTIFACT_POOL );
             dependencies = (ObjectPool<Dependency, Dependency>) cache.get( session, DEPENDENCY_POOL );
             repositories = (ObjectPool<RemoteRepository, RemoteRepository>) cache.get( session, REPOSITORY_POOL );
-            descriptors = (Map<Object, Descriptor>) cache.get( session, DESCRIPTORS );
+            descriptors = (StripedLRUCache<Object, Descriptor>) cache.get( session, DESCRIPTORS );
+            constraints = (StripedLRUCache<Object, Constraint>) cache.get( session, CONSTRAINTS );
         }
 
         if ( artifacts == null )
@@ -111,12 +149,76 @@ public final class DepGraphCache
 
         if ( descriptors == null )
         {
-            descriptors = Collections.synchronizedMap( new WeakHashMap<Object, Descriptor>( 256 ) );
+            descriptors =
+                new StripedLRUCache<Object, Descriptor>( DESCRIPTORS, getSize( session, MAX_DESCRIPTORS_KEY,
+                                                                               DEFAULT_MAX_DESCRIPTORS ) );
             if ( cache != null )
             {
                 cache.put( session, DESCRIPTORS, descriptors );
+                cache.put( session, DESCRIPTOR_STATS, descriptors.getStats() );
+            }
+        }
+
+        if ( constraints == null )
+        {
+            constraints =
+                new StripedLRUCache<Object, Constraint>( CONSTRAINTS, getSize( session, MAX_CONSTRAINTS_KEY,
+                                                                               DEFAULT_MAX_CONSTRAINTS ) );
+            if ( cache != null )
+            {
+                cache.put( session, CONSTRAINTS, constraints );
+                cache.put( session, CONSTRAINT_STATS, constraints.getStats() );
+            }
+        }
+    }
+
+    private static int getSize( final RepositorySystemSession session, final String key, final int defaultSize )
+    {
+        final Map<String, Object> config = session.getConfigProperties();
+        final Object value = config == null ? null : config.get( key );
+        if ( value instanceof Number )
+        {
+            return ( (Number) value ).intValue();
+        }
+        else if ( value != null )
+        {
+            try
+            {
+                return Integer.parseInt( value.toString().trim() );
+            }
+            catch ( final NumberFormatException e )
+            {
+                throw new IllegalArgumentException( "Invalid value for: " + key + ": '" + value
+                    + "'. Must be an integer." );
             }
         }
+
+        return defaultSize;
+    }
+
+    /**
+     * Retrieve the hit/miss/eviction counters of the descriptor cache, which are published in the session's
+     * {@link RepositoryCache} under {@link #DESCRIPTOR_STATS}, or null if no collection has used that cache yet.
+     */
+    public static DepGraphCacheStats getDescriptorStats( final RepositorySystemSession session )
+    {
+        return getStats( session, DESCRIPTOR_STATS );
+    }
+
+    /**
+     * Retrieve the hit/miss/eviction counters of the version-range cache, which are published in the session's
+     * {@link RepositoryCache} under {@link #CONSTRAINT_STATS}, or null if no collection has used that cache yet.
+     */
+    public static DepGraphCacheStats getConstraintStats( final RepositorySystemSession session )
+    {
+        return getStats( session, CONSTRAINT_STATS );
+    }
+
+    private static DepGraphCacheStats getStats( final RepositorySystemSession session, final String key )
+    {
+        final RepositoryCache cache = session.getCache();
+        final Object value = cache == null ? null : cache.get( session, key );
+        return value instanceof DepGraphCacheStats ? (DepGraphCacheStats) value : null;
     }
 
     public static void clear( final RepositorySystemSession session )
@@ -131,7 +233,12 @@ public final class DepGraphCache
                 cache.put( session, DEPENDENCY_POOL, null );
                 cache.put( session, REPOSITORY_POOL, null );
                 cache.put( session, DESCRIPTORS, null );
+                cache.put( session, CONSTRAINTS, null );
+                cache.put( session, DESCRIPTOR_STATS, null );
+                cache.put( session, CONSTRAINT_STATS, null );
             }
+
+            PersistentDescriptorStore.clear( session );
         }
     }
 
@@ -173,12 +280,27 @@ public final class DepGraphCache
         {
             return descriptor.toResult( request );
         }
+
+        if ( store != null )
+        {
+            final ArtifactDescriptorResult result = store.getDescriptor( session, request );
+            if ( result != null )
+            {
+                descriptors.put( key, new Descriptor( result ) );
+                return result;
+            }
+        }
+
         return null;
     }
 
     void putDescriptor( final Object key, final ArtifactDescriptorResult result )
     {
         descriptors.put( key, new Descriptor( result ) );
+        if ( store != null )
+        {
+            store.putDescriptor( session, result );
+        }
     }
 
     Object toKey( final VersionRangeRequest request )
@@ -193,12 +315,27 @@ public final class DepGraphCache
         {
             return constraint.toResult( request );
         }
+
+        if ( store != null )
+        {
+            final VersionRangeResult result = store.getConstraint( session, request );
+            if ( result != null )
+            {
+                constraints.put( key, new Constraint( result ) );
+                return result;
+            }
+        }
+
         return null;
     }
 
     void putConstraint( final Object key, final VersionRangeResult result )
     {
         constraints.put( key, new Constraint( result ) );
+        if ( store != null )
+        {
+            store.putConstraint( session, result );
+        }
     }
 
     Object toKey( final Artifact artifact, final List<RemoteRepository> repositories )
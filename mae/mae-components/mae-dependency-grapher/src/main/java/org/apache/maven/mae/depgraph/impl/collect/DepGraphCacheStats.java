@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss and eviction counters for one cache. These are published in the session's
+ * {@link org.sonatype.aether.RepositoryCache}, under {@link DepGraphCache#DESCRIPTOR_STATS} and
+ * {@link DepGraphCache#CONSTRAINT_STATS}, so callers can inspect cache behavior after a collection run.
+ */
+public final class DepGraphCacheStats
+{
+    private final String name;
+
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    DepGraphCacheStats( final String name, final int maxSize )
+    {
+        this.name = name;
+        this.maxSize = maxSize;
+    }
+
+    void hit()
+    {
+        hits.incrementAndGet();
+    }
+
+    void miss()
+    {
+        misses.incrementAndGet();
+    }
+
+    void evicted()
+    {
+        evictions.incrementAndGet();
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    public double getHitRate()
+    {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + " [hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions()
+            + ", maxSize=" + maxSize + "]";
+    }
+}
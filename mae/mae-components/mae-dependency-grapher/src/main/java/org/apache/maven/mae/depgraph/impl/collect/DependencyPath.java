@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.graph.Dependency;
+
+/**
+ * The chain of edges from the collection root down to the node currently being processed, with the most recent edge
+ * on top. Alongside the stack, each edge's artifact coordinates are kept in a hash index, so checking whether an
+ * artifact already appears on the path (a cycle) does not have to walk the whole path.
+ */
+final class DependencyPath
+{
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    private final Map<Coordinates, Entry> index = new HashMap<Coordinates, Entry>();
+
+    // position of the topmost edge without a dependency; duplicates below it are not reported.
+    private int barrier = -1;
+
+    void push( final SlimDependencyEdge edge )
+    {
+        final Dependency dependency = edge.getDependency();
+        final Coordinates key = dependency == null ? null : new Coordinates( dependency.getArtifact() );
+
+        final Entry entry = new Entry( edge, key, entries.size() );
+        if ( key != null )
+        {
+            entry.shadowed = index.put( key, entry );
+        }
+        else
+        {
+            entry.shadowedBarrier = barrier;
+            barrier = entry.position;
+        }
+
+        entries.add( entry );
+    }
+
+    SlimDependencyEdge pop()
+    {
+        final Entry entry = entries.remove( entries.size() - 1 );
+        if ( entry.key == null )
+        {
+            barrier = entry.shadowedBarrier;
+        }
+        else if ( entry.shadowed == null )
+        {
+            index.remove( entry.key );
+        }
+        else
+        {
+            index.put( entry.key, entry.shadowed );
+        }
+
+        return entry.edge;
+    }
+
+    SlimDependencyEdge peek()
+    {
+        return entries.get( entries.size() - 1 ).edge;
+    }
+
+    int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return The edge nearest the top of the path whose artifact has the same coordinates as the given one, or null.
+     *         Edges below an edge without a dependency (an unknown root) are not considered.
+     */
+    SlimDependencyEdge findDuplicate( final Artifact artifact )
+    {
+        final Entry entry = index.get( new Coordinates( artifact ) );
+        if ( entry == null || entry.position < barrier )
+        {
+            return null;
+        }
+
+        return entry.edge;
+    }
+
+    private static final class Entry
+    {
+        private final SlimDependencyEdge edge;
+
+        private final Coordinates key;
+
+        private final int position;
+
+        // the index entry this one replaced, or the barrier it replaced if it has no key.
+        private Entry shadowed;
+
+        private int shadowedBarrier;
+
+        Entry( final SlimDependencyEdge edge, final Coordinates key, final int position )
+        {
+            this.edge = edge;
+            this.key = key;
+            this.position = position;
+        }
+    }
+
+    /**
+     * The coordinates compared by a cycle check. The hash is computed once, when the edge is pushed.
+     */
+    static final class Coordinates
+    {
+        private final String groupId;
+
+        private final String artifactId;
+
+        private final String baseVersion;
+
+        private final String extension;
+
+        private final String classifier;
+
+        private final int hash;
+
+        Coordinates( final Artifact artifact )
+        {
+            groupId = artifact.getGroupId();
+            artifactId = artifact.getArtifactId();
+            baseVersion = artifact.getBaseVersion();
+            extension = artifact.getExtension();
+            classifier = artifact.getClassifier();
+
+            int h = artifactId.hashCode();
+            h = 31 * h + groupId.hashCode();
+            h = 31 * h + baseVersion.hashCode();
+            h = 31 * h + extension.hashCode();
+            h = 31 * h + classifier.hashCode();
+            hash = h;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals( final Object obj )
+        {
+            if ( this == obj )
+            {
+                return true;
+            }
+            if ( !( obj instanceof Coordinates ) )
+            {
+                return false;
+            }
+
+            final Coordinates other = (Coordinates) obj;
+            return hash == other.hash && artifactId.equals( other.artifactId ) && groupId.equals( other.groupId )
+                && baseVersion.equals( other.baseVersion ) && extension.equals( other.extension )
+                && classifier.equals( other.classifier );
+        }
+    }
+
+}
@@ -0,0 +1,362 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.Logger;
+import org.apache.maven.mae.project.session.ProjectToolsSession;
+import org.codehaus.plexus.component.annotations.Component;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.RequestTrace;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.collection.CollectResult;
+import org.sonatype.aether.collection.DependencyCollectionException;
+import org.sonatype.aether.collection.DependencyManager;
+import org.sonatype.aether.collection.DependencySelector;
+import org.sonatype.aether.collection.DependencyTraverser;
+import org.sonatype.aether.graph.Dependency;
+import org.sonatype.aether.impl.ArtifactDescriptorReader;
+import org.sonatype.aether.impl.DependencyCollector;
+import org.sonatype.aether.impl.RemoteRepositoryManager;
+import org.sonatype.aether.impl.VersionRangeResolver;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.resolution.ArtifactDescriptorException;
+import org.sonatype.aether.resolution.ArtifactDescriptorRequest;
+import org.sonatype.aether.resolution.ArtifactDescriptorResult;
+import org.sonatype.aether.resolution.VersionRangeRequest;
+import org.sonatype.aether.resolution.VersionRangeResolutionException;
+import org.sonatype.aether.resolution.VersionRangeResult;
+import org.sonatype.aether.version.Version;
+
+/**
+ * {@link DependencyCollector} that builds the same {@link SlimDepGraph} as {@link BareBonesDependencyCollector} while
+ * fetching version ranges and descriptors concurrently, on a pool sized by
+ * {@link ProjectToolsSession#getResolveThreads()}.
+ * <p>
+ * The graph is wired by the serial collector's own depth-first walk on the calling thread, so every node is expanded
+ * from the same path, with the same selector, manager and traverser state, as in a serial collection. What runs in
+ * parallel is the I/O: whenever the walk reaches a node, the version ranges of all of its dependencies, and the
+ * descriptors of their newest versions, are submitted to the pool. They are usually done by the time the walk gets
+ * back from the subtree of the previous sibling.
+ * </p>
+ * <p>
+ * Concurrent requests for the same coordinate share a single in-flight fetch. A fetch that fails is forgotten, so the
+ * next request for that coordinate tries again.
+ * </p>
+ */
+@Component( role = DependencyCollector.class, hint = ParallelBareBonesDependencyCollector.HINT )
+public class ParallelBareBonesDependencyCollector
+    extends BareBonesDependencyCollector
+{
+
+    public static final String HINT = "parallel-bare-bones";
+
+    public ParallelBareBonesDependencyCollector()
+    {
+        // enables default constructor
+    }
+
+    public ParallelBareBonesDependencyCollector( final Logger logger,
+                                                 final RemoteRepositoryManager remoteRepositoryManager,
+                                                 final ArtifactDescriptorReader artifactDescriptorReader,
+                                                 final VersionRangeResolver versionRangeResolver )
+    {
+        super( logger, remoteRepositoryManager, artifactDescriptorReader, versionRangeResolver );
+    }
+
+    @Override
+    void collectChildren( final RepositorySystemSession session, final ProjectToolsSession toolsSession,
+                          final RequestTrace trace, final CollectResult result,
+                          final DependencyPath edges, final List<Dependency> dependencies,
+                          final List<RemoteRepository> repositories, final DependencySelector depSelector,
+                          final DependencyManager depManager, final DependencyTraverser depTraverser,
+                          final DepGraphCache pool, final SlimDepGraph graph )
+        throws DependencyCollectionException
+    {
+        final int threads = toolsSession == null ? 1 : toolsSession.getResolveThreads();
+        if ( threads < 2 )
+        {
+            super.collectChildren( session, toolsSession, trace, result, edges, dependencies, repositories,
+                                   depSelector, depManager, depTraverser, pool, graph );
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            process( session, toolsSession, trace, result, edges, dependencies, repositories, depSelector,
+                     depManager, depTraverser, new ParallelResolution( session, trace, result, pool,
+                                                                               executor ), pool, graph );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Resolves on the worker pool, handing out the same fetch to everyone asking for the same key while the fetch is in
+     * flight (or done). Results also go into the {@link DepGraphCache}, so other collections in this session can reuse
+     * them.
+     */
+    final class ParallelResolution
+        extends Resolution
+    {
+        private final RequestTrace trace;
+
+        private final CollectResult result;
+
+        private final ExecutorService executor;
+
+        private final ConcurrentMap<Object, Fetch<VersionRangeResult>> ranges =
+            new ConcurrentHashMap<Object, Fetch<VersionRangeResult>>();
+
+        private final ConcurrentMap<Object, Fetch<ArtifactDescriptorResult>> descriptors =
+            new ConcurrentHashMap<Object, Fetch<ArtifactDescriptorResult>>();
+
+        ParallelResolution( final RepositorySystemSession session, final RequestTrace trace, final CollectResult result,
+                            final DepGraphCache pool, final ExecutorService executor )
+        {
+            super( session, pool );
+            this.trace = trace;
+            this.result = result;
+            this.executor = executor;
+        }
+
+        /**
+         * Start fetching the version range (and, as soon as it's known, the descriptor of the newest version) of every
+         * dependency of the node about to be processed. Nothing here touches the graph.
+         */
+        @Override
+        void prefetch( final List<Dependency> dependencies, final List<RemoteRepository> repositories,
+                       final DependencySelector depSelector, final DependencyManager depManager )
+        {
+            for ( final Dependency dependency : dependencies )
+            {
+                if ( !depSelector.selectDependency( dependency ) )
+                {
+                    continue;
+                }
+
+                final Artifact artifact = manage( dependency, depManager, false ).dependency.getArtifact();
+                range( newRangeRequest( artifact, repositories, trace, result ), true,
+                       !isLackingDescriptor( artifact ) );
+            }
+        }
+
+        @Override
+        VersionRangeResult resolveRange( final VersionRangeRequest request )
+            throws VersionRangeResolutionException, DependencyCollectionException
+        {
+            try
+            {
+                final Fetch<VersionRangeResult> fetch = range( request, false, false );
+                try
+                {
+                    return fetch.await( result );
+                }
+                catch ( final VersionRangeResolutionException e )
+                {
+                    if ( !fetch.prefetch )
+                    {
+                        throw e;
+                    }
+
+                    // the serial collector would not have tried before now; give it a try of its own.
+                    return range( request, false, false ).await( result );
+                }
+            }
+            catch ( final ArtifactDescriptorException e )
+            {
+                // not thrown when resolving ranges.
+                throw new IllegalStateException( e );
+            }
+        }
+
+        @Override
+        ArtifactDescriptorResult readDescriptor( final ArtifactDescriptorRequest request )
+            throws ArtifactDescriptorException, DependencyCollectionException
+        {
+            try
+            {
+                final Fetch<ArtifactDescriptorResult> fetch = descriptor( request, false );
+                try
+                {
+                    return fetch.await( result );
+                }
+                catch ( final ArtifactDescriptorException e )
+                {
+                    if ( !fetch.prefetch )
+                    {
+                        throw e;
+                    }
+
+                    // the serial collector would not have tried before now; give it a try of its own.
+                    return descriptor( request, false ).await( result );
+                }
+            }
+            catch ( final VersionRangeResolutionException e )
+            {
+                // not thrown when reading descriptors.
+                throw new IllegalStateException( e );
+            }
+        }
+
+        /**
+         * @param prefetch whether the range is fetched ahead of being needed, rather than by the collection itself.
+         */
+        private Fetch<VersionRangeResult> range( final VersionRangeRequest request, final boolean prefetch,
+                                                 final boolean prefetchDescriptor )
+        {
+            return submit( ranges, pool.toKey( request ), prefetch, new Callable<VersionRangeResult>()
+            {
+                @Override
+                public VersionRangeResult call()
+                    throws VersionRangeResolutionException, DependencyCollectionException
+                {
+                    final VersionRangeResult rangeResult = ParallelResolution.super.resolveRange( request );
+
+                    final List<Version> versions = rangeResult.getVersions();
+                    if ( prefetchDescriptor && !versions.isEmpty() )
+                    {
+                        final Version newest = versions.get( versions.size() - 1 );
+                        final Artifact artifact = request.getArtifact().setVersion( newest.toString() );
+                        descriptor( newDescriptorRequest( artifact, request.getRepositories(), trace, result ), true );
+                    }
+
+                    return rangeResult;
+                }
+            } );
+        }
+
+        private Fetch<ArtifactDescriptorResult> descriptor( final ArtifactDescriptorRequest request,
+                                                            final boolean prefetch )
+        {
+            return submit( descriptors, pool.toKey( request ), prefetch, new Callable<ArtifactDescriptorResult>()
+            {
+                @Override
+                public ArtifactDescriptorResult call()
+                    throws ArtifactDescriptorException, DependencyCollectionException
+                {
+                    return ParallelResolution.super.readDescriptor( request );
+                }
+            } );
+        }
+
+        private <T> Fetch<T> submit( final ConcurrentMap<Object, Fetch<T>> inFlight, final Object key,
+                                     final boolean prefetch, final Callable<T> callable )
+        {
+            Fetch<T> fetch = inFlight.get( key );
+            if ( fetch == null )
+            {
+                final Fetch<T> created = new Fetch<T>( inFlight, key, prefetch, callable );
+                fetch = inFlight.putIfAbsent( key, created );
+                if ( fetch == null )
+                {
+                    fetch = created;
+                    executor.execute( created );
+                }
+            }
+
+            return fetch;
+        }
+    }
+
+    /**
+     * A fetch shared by everyone asking for its key. When it fails, it removes itself from the in-flight map before
+     * reporting the failure to the threads already waiting on it, so that later requests start a new fetch instead of
+     * reusing the failure. A waiter that needs the result tries again once if the failed fetch was only a prefetch.
+     */
+    private static final class Fetch<T>
+        extends FutureTask<T>
+    {
+        private final ConcurrentMap<Object, Fetch<T>> inFlight;
+
+        private final Object key;
+
+        private final boolean prefetch;
+
+        Fetch( final ConcurrentMap<Object, Fetch<T>> inFlight, final Object key, final boolean prefetch,
+               final Callable<T> callable )
+        {
+            super( callable );
+            this.inFlight = inFlight;
+            this.key = key;
+            this.prefetch = prefetch;
+        }
+
+        @Override
+        protected void setException( final Throwable t )
+        {
+            inFlight.remove( key, this );
+            super.setException( t );
+        }
+
+        T await( final CollectResult result )
+            throws VersionRangeResolutionException, ArtifactDescriptorException, DependencyCollectionException
+        {
+            try
+            {
+                return super.get();
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                result.addException( e );
+                throw new DependencyCollectionException( result );
+            }
+            catch ( final ExecutionException e )
+            {
+                final Throwable cause = e.getCause();
+                if ( cause instanceof VersionRangeResolutionException )
+                {
+                    throw (VersionRangeResolutionException) cause;
+                }
+                else if ( cause instanceof ArtifactDescriptorException )
+                {
+                    throw (ArtifactDescriptorException) cause;
+                }
+                else if ( cause instanceof DependencyCollectionException )
+                {
+                    throw (DependencyCollectionException) cause;
+                }
+                else if ( cause instanceof RuntimeException )
+                {
+                    throw (RuntimeException) cause;
+                }
+                else if ( cause instanceof Error )
+                {
+                    throw (Error) cause;
+                }
+
+                throw new IllegalStateException( cause );
+            }
+        }
+    }
+
+}
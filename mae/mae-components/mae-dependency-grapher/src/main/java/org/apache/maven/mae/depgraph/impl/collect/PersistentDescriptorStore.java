@@ -0,0 +1,1182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+import org.sonatype.aether.RepositoryCache;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.graph.Dependency;
+import org.sonatype.aether.graph.Exclusion;
+import org.sonatype.aether.repository.ArtifactRepository;
+import org.sonatype.aether.repository.LocalRepository;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.repository.RepositoryPolicy;
+import org.sonatype.aether.resolution.ArtifactDescriptorRequest;
+import org.sonatype.aether.resolution.ArtifactDescriptorResult;
+import org.sonatype.aether.resolution.VersionRangeRequest;
+import org.sonatype.aether.resolution.VersionRangeResult;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+import org.sonatype.aether.util.version.GenericVersionScheme;
+import org.sonatype.aether.version.InvalidVersionSpecificationException;
+import org.sonatype.aether.version.Version;
+import org.sonatype.aether.version.VersionScheme;
+
+/**
+ * Append-only key/value file in the local repository that keeps {@link ArtifactDescriptorResult} and
+ * {@link VersionRangeResult} instances across sessions. The file is memory-mapped when opened and indexed by key;
+ * entries written during the session are appended to the end of the file.
+ * <p>
+ * Each entry carries a fingerprint of the local-repository files it was derived from: for descriptors, the POM
+ * together with its parents, imported POMs and profile activation inputs (see {@link PomStamps}); for version ranges,
+ * the artifact directory plus its <code>maven-metadata*.xml</code> files. An entry is only used while the fingerprint
+ * still matches, and artifacts that are not backed by the local repository (or that are served from the workspace)
+ * are never stored. Version ranges also expire according to the update policy of the repositories they were resolved
+ * from, so that remote repositories still get checked for new versions as often as they would without this cache.
+ * A descriptor entry lists the POMs and properties its fingerprint covers, so a later process checks it with a few file
+ * system lookups instead of parsing the POMs again.
+ * </p>
+ * <p>
+ * There is one open store per file in a JVM, shared by all the sessions using that file. Each session holds a
+ * reference to it until {@link #clear(RepositorySystemSession)} (called by {@link DepGraphCache#clear}), and the last
+ * session to let go closes the file. If the file is locked by another process, or by another copy of this class in the
+ * same JVM, the store is read-only.
+ * </p>
+ * <p>
+ * Each payload is protected by a CRC32, and a truncated or damaged tail is dropped on open. Entries that have been
+ * superseded by a later one for the same key are left in place until they take up as much of the file as the live
+ * entries do; the next process to open the file then rewrites it with only the live entries.
+ * </p>
+ */
+final class PersistentDescriptorStore
+{
+
+    private static final Logger logger = Logger.getLogger( PersistentDescriptorStore.class );
+
+    /**
+     * Session configuration property that enables the persistent cache when set to <code>true</code>.
+     */
+    static final String ENABLED_KEY = "mae.depgraph.cache.persistent";
+
+    /**
+     * Session configuration property giving an alternate location for the cache file.
+     */
+    static final String FILE_KEY = "mae.depgraph.cache.persistentFile";
+
+    static final String DEFAULT_FILENAME = ".mae/depgraph-descriptors.bin";
+
+    private static final String STORE = PersistentDescriptorStore.class.getName();
+
+    private static final int MAGIC = 0x4D414544;
+
+    private static final int FORMAT_VERSION = 3;
+
+    private static final int HEADER_LENGTH = 8;
+
+    private static final String DESCRIPTOR_PREFIX = "D|";
+
+    private static final String RANGE_PREFIX = "R|";
+
+    private static final int NO_REPOSITORY = 0;
+
+    private static final int LOCAL_REPOSITORY = 1;
+
+    private static final int REMOTE_REPOSITORY = 2;
+
+    /**
+     * The stores open in this JVM, by canonical file.
+     */
+    private static final Map<File, PersistentDescriptorStore> OPEN = new HashMap<File, PersistentDescriptorStore>();
+
+    private final File file;
+
+    private final VersionScheme versionScheme = new GenericVersionScheme();
+
+    private final PomStamps pomStamps = new PomStamps();
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<String, Entry>();
+
+    private MappedByteBuffer mapped;
+
+    private RandomAccessFile raf;
+
+    private FileChannel channel;
+
+    private FileLock lock;
+
+    private long supersededBytes;
+
+    // number of sessions using the store; guarded by the class lock.
+    private int references;
+
+    private PersistentDescriptorStore( final File file )
+    {
+        this.file = file;
+    }
+
+    /**
+     * Retrieve the store for this session, opening it on first use. Returns null unless the store has been enabled
+     * via {@link #ENABLED_KEY}, or if it can't be opened.
+     */
+    static PersistentDescriptorStore get( final RepositorySystemSession session )
+    {
+        final Map<String, Object> config = session.getConfigProperties();
+        if ( config == null || !Boolean.parseBoolean( String.valueOf( config.get( ENABLED_KEY ) ) ) )
+        {
+            return null;
+        }
+
+        final RepositoryCache cache = session.getCache();
+        if ( cache == null )
+        {
+            // without somewhere to keep the open store, we'd leak a file handle per collection.
+            return null;
+        }
+
+        synchronized ( PersistentDescriptorStore.class )
+        {
+            PersistentDescriptorStore store = (PersistentDescriptorStore) cache.get( session, STORE );
+
+            if ( store == null )
+            {
+                final Object location = config.get( FILE_KEY );
+                final File f =
+                    canonical( location != null ? new File( location.toString() )
+                                    : new File( session.getLocalRepository().getBasedir(), DEFAULT_FILENAME ) );
+
+                store = OPEN.get( f );
+                if ( store == null )
+                {
+                    store = new PersistentDescriptorStore( f );
+                    try
+                    {
+                        store.open( true );
+                    }
+                    catch ( final IOException e )
+                    {
+                        logger.warn( "Persistent descriptor cache disabled. Cannot open: " + f + ". Reason: "
+                            + e.getMessage() );
+                        store.close();
+                        return null;
+                    }
+
+                    OPEN.put( f, store );
+                }
+
+                store.references++;
+                cache.put( session, STORE, store );
+            }
+
+            return store;
+        }
+    }
+
+    /**
+     * Release the session's reference to its store, closing the store if no other session uses it.
+     */
+    static void clear( final RepositorySystemSession session )
+    {
+        final RepositoryCache cache = session.getCache();
+        if ( cache == null )
+        {
+            return;
+        }
+
+        synchronized ( PersistentDescriptorStore.class )
+        {
+            final PersistentDescriptorStore store = (PersistentDescriptorStore) cache.get( session, STORE );
+            if ( store != null )
+            {
+                cache.put( session, STORE, null );
+                if ( --store.references == 0 )
+                {
+                    OPEN.remove( store.file );
+                    store.close();
+                }
+            }
+        }
+    }
+
+    private static File canonical( final File f )
+    {
+        try
+        {
+            return f.getCanonicalFile();
+        }
+        catch ( final IOException e )
+        {
+            return f.getAbsoluteFile();
+        }
+    }
+
+    ArtifactDescriptorResult getDescriptor( final RepositorySystemSession session,
+                                            final ArtifactDescriptorRequest request )
+    {
+        final Artifact artifact = request.getArtifact();
+        final Entry entry = index.get( DESCRIPTOR_PREFIX + coordinate( artifact ) );
+        final byte[] payload = entry == null ? null : payload( entry );
+        if ( payload == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            final DataInputStream in = new DataInputStream( new ByteArrayInputStream( payload ) );
+
+            final int inputCount = in.readInt();
+            final List<String> inputs = new ArrayList<String>( inputCount );
+            for ( int i = 0; i < inputCount; i++ )
+            {
+                inputs.add( in.readUTF() );
+            }
+
+            final long[] stamp = pomStamps.restamp( session, inputs );
+            if ( stamp == null || entry.lastModified != stamp[0] || entry.fingerprint != stamp[1] )
+            {
+                return null;
+            }
+
+            final ArtifactDescriptorResult result = new ArtifactDescriptorResult( request );
+            result.setArtifact( readArtifact( in ) );
+            result.setRelocations( readArtifacts( in ) );
+            result.setAliases( readArtifacts( in ) );
+            result.setDependencies( readDependencies( in ) );
+            result.setManagedDependencies( readDependencies( in ) );
+
+            final int repoCount = in.readInt();
+            final List<RemoteRepository> repos = new ArrayList<RemoteRepository>( repoCount );
+            for ( int i = 0; i < repoCount; i++ )
+            {
+                repos.add( readRemoteRepository( in ) );
+            }
+            result.setRepositories( repos );
+
+            final Map<String, String> props = readStringMap( in );
+            result.setProperties( new HashMap<String, Object>( props ) );
+
+            return result;
+        }
+        catch ( final IOException e )
+        {
+            logger.warn( "Discarding unreadable cached descriptor for: " + artifact + ". Reason: " + e.getMessage() );
+            return null;
+        }
+    }
+
+    void putDescriptor( final RepositorySystemSession session, final ArtifactDescriptorResult result )
+    {
+        final Artifact artifact = result.getRequest().getArtifact();
+        final PomStamps.Fingerprint fingerprint = pomStamps.stamp( session, artifact );
+        if ( fingerprint == null )
+        {
+            return;
+        }
+
+        for ( final Object value : result.getProperties().values() )
+        {
+            if ( value != null && !( value instanceof String ) )
+            {
+                // we can't round-trip arbitrary objects.
+                return;
+            }
+        }
+
+        try
+        {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream( bytes );
+
+            final List<String> inputs = fingerprint.getInputs();
+            out.writeInt( inputs.size() );
+            for ( final String input : inputs )
+            {
+                out.writeUTF( input );
+            }
+
+            writeArtifact( out, result.getArtifact() );
+            writeArtifacts( out, result.getRelocations() );
+            writeArtifacts( out, result.getAliases() );
+            writeDependencies( out, result.getDependencies() );
+            writeDependencies( out, result.getManagedDependencies() );
+
+            out.writeInt( result.getRepositories().size() );
+            for ( final RemoteRepository repo : result.getRepositories() )
+            {
+                writeRemoteRepository( out, repo );
+            }
+
+            final Map<String, String> props = new LinkedHashMap<String, String>();
+            for ( final Map.Entry<String, Object> entry : result.getProperties().entrySet() )
+            {
+                if ( entry.getValue() != null )
+                {
+                    props.put( entry.getKey(), (String) entry.getValue() );
+                }
+            }
+            writeStringMap( out, props );
+
+            out.flush();
+            write( DESCRIPTOR_PREFIX + coordinate( artifact ), fingerprint.toStamp(), bytes.toByteArray(), false );
+        }
+        catch ( final IOException e )
+        {
+            logger.warn( "Cannot persist descriptor for: " + artifact + ". Reason: " + e.getMessage() );
+        }
+    }
+
+    VersionRangeResult getConstraint( final RepositorySystemSession session, final VersionRangeRequest request )
+    {
+        final Artifact artifact = request.getArtifact();
+        final long[] stamp = metadataStamp( session, artifact );
+        if ( stamp == null )
+        {
+            return null;
+        }
+
+        final byte[] payload = read( RANGE_PREFIX + rangeKey( request ), stamp );
+        if ( payload == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            final DataInputStream in = new DataInputStream( new ByteArrayInputStream( payload ) );
+            if ( isUpdateRequired( session, request, in.readLong() ) )
+            {
+                // let the resolver check the remote repositories again.
+                return null;
+            }
+
+            final VersionRangeResult result = new VersionRangeResult( request );
+            result.setVersionConstraint( versionScheme.parseVersionConstraint( in.readUTF() ) );
+
+            final int count = in.readInt();
+            for ( int i = 0; i < count; i++ )
+            {
+                final Version version = versionScheme.parseVersion( in.readUTF() );
+                result.addVersion( version );
+
+                final ArtifactRepository repo = readArtifactRepository( in );
+                if ( repo != null )
+                {
+                    result.setRepository( version, repo );
+                }
+            }
+
+            return result;
+        }
+        catch ( final IOException e )
+        {
+            logger.warn( "Discarding unreadable cached version range for: " + artifact + ". Reason: "
+                + e.getMessage() );
+            return null;
+        }
+        catch ( final InvalidVersionSpecificationException e )
+        {
+            logger.warn( "Discarding unreadable cached version range for: " + artifact + ". Reason: "
+                + e.getMessage() );
+            return null;
+        }
+    }
+
+    void putConstraint( final RepositorySystemSession session, final VersionRangeResult result )
+    {
+        final VersionRangeRequest request = result.getRequest();
+        final String requested = request.getArtifact().getVersion();
+        if ( result.getVersionConstraint() == null || !( requested.startsWith( "[" ) || requested.startsWith( "(" ) ) )
+        {
+            // not a range, so there's nothing expensive to remember.
+            return;
+        }
+
+        final long[] stamp = metadataStamp( session, request.getArtifact() );
+        if ( stamp == null )
+        {
+            return;
+        }
+
+        try
+        {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream( bytes );
+            out.writeLong( System.currentTimeMillis() );
+            out.writeUTF( result.getVersionConstraint().toString() );
+            out.writeInt( result.getVersions().size() );
+            for ( final Version version : result.getVersions() )
+            {
+                out.writeUTF( version.toString() );
+                if ( !writeArtifactRepository( out, result.getRepository( version ) ) )
+                {
+                    // workspace and other transient repositories must not outlive the session.
+                    return;
+                }
+            }
+
+            out.flush();
+            write( RANGE_PREFIX + rangeKey( request ), stamp, bytes.toByteArray(), true );
+        }
+        catch ( final IOException e )
+        {
+            logger.warn( "Cannot persist version range for: " + request.getArtifact() + ". Reason: "
+                + e.getMessage() );
+        }
+    }
+
+    int size()
+    {
+        return index.size();
+    }
+
+    synchronized void close()
+    {
+        try
+        {
+            if ( lock != null )
+            {
+                lock.release();
+            }
+        }
+        catch ( final IOException e )
+        {
+            logger.debug( "Failed to release lock on: " + file, e );
+        }
+
+        try
+        {
+            if ( raf != null )
+            {
+                raf.close();
+            }
+        }
+        catch ( final IOException e )
+        {
+            logger.debug( "Failed to close: " + file, e );
+        }
+
+        lock = null;
+        raf = null;
+        channel = null;
+        mapped = null;
+    }
+
+    /**
+     * @param compact whether to rewrite the file without its superseded entries, if they take up more than half of it.
+     */
+    private void open( final boolean compact )
+        throws IOException
+    {
+        final File dir = file.getAbsoluteFile().getParentFile();
+        if ( !dir.isDirectory() && !dir.mkdirs() )
+        {
+            throw new IOException( "Cannot create directory: " + dir );
+        }
+
+        raf = new RandomAccessFile( file, "rw" );
+        channel = raf.getChannel();
+
+        try
+        {
+            lock = channel.tryLock();
+        }
+        catch ( final OverlappingFileLockException e )
+        {
+            // held by another copy of this class, loaded by a different class loader.
+            lock = null;
+        }
+
+        if ( lock == null )
+        {
+            logger.info( "Persistent descriptor cache: " + file
+                + " is locked elsewhere. Existing entries will be used, but none will be added." );
+        }
+
+        final long length = channel.size();
+        if ( length < HEADER_LENGTH )
+        {
+            if ( lock != null )
+            {
+                channel.truncate( 0 );
+                final ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH );
+                header.putInt( MAGIC ).putInt( FORMAT_VERSION ).flip();
+                channel.write( header, 0 );
+            }
+            return;
+        }
+
+        mapped = channel.map( MapMode.READ_ONLY, 0, length );
+        if ( mapped.getInt( 0 ) != MAGIC || mapped.getInt( 4 ) != FORMAT_VERSION )
+        {
+            logger.info( "Persistent descriptor cache: " + file + " has an unknown format. Starting over." );
+            mapped = null;
+            if ( lock != null )
+            {
+                channel.truncate( HEADER_LENGTH );
+                final ByteBuffer header = ByteBuffer.allocate( HEADER_LENGTH );
+                header.putInt( MAGIC ).putInt( FORMAT_VERSION ).flip();
+                channel.write( header, 0 );
+            }
+            return;
+        }
+
+        supersededBytes = 0;
+        int pos = HEADER_LENGTH;
+        while ( pos < length )
+        {
+            final int next = readEntry( pos, (int) length );
+            if ( next < 0 )
+            {
+                logger.info( "Persistent descriptor cache: " + file + " has a damaged entry at offset: " + pos
+                    + ". Dropping the remainder." );
+
+                if ( lock != null )
+                {
+                    channel.truncate( pos );
+                }
+                break;
+            }
+            pos = next;
+        }
+
+        if ( logger.isDebugEnabled() )
+        {
+            logger.debug( "Loaded " + index.size() + " entries from persistent descriptor cache: " + file );
+        }
+
+        if ( compact && lock != null && supersededBytes > 0 && supersededBytes * 2 >= pos - HEADER_LENGTH )
+        {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the file with only the live entries, and reopen it. The new file is written next to the old one and
+     * renamed over it while the lock is still held, so processes still reading the old one are not disturbed.
+     */
+    private void compact()
+        throws IOException
+    {
+        final File tmp = new File( file.getPath() + ".tmp" );
+        boolean written = false;
+
+        final DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) );
+        try
+        {
+            out.writeInt( MAGIC );
+            out.writeInt( FORMAT_VERSION );
+            for ( final Map.Entry<String, Entry> mapping : index.entrySet() )
+            {
+                final Entry entry = mapping.getValue();
+                final byte[] payload = payload( entry );
+                out.write( record( mapping.getKey(), entry.lastModified, entry.fingerprint, payload ).array() );
+            }
+
+            out.close();
+            written = tmp.renameTo( file );
+        }
+        finally
+        {
+            out.close();
+            if ( !written )
+            {
+                tmp.delete();
+            }
+        }
+
+        if ( !written )
+        {
+            logger.debug( "Cannot replace: " + file + " with its compacted copy. Leaving it as it is." );
+            return;
+        }
+
+        if ( logger.isDebugEnabled() )
+        {
+            logger.debug( "Dropped " + supersededBytes + " bytes of superseded entries from: " + file );
+        }
+
+        close();
+        index.clear();
+        open( false );
+    }
+
+    /**
+     * Index the entry at <code>pos</code> in the mapped file. Returns the offset of the next entry, or -1 if the entry
+     * is incomplete or fails its checksum.
+     */
+    private int readEntry( final int pos, final int length )
+    {
+        // keyLength + key + stamp(16) + payloadLength + payload + crc(8)
+        if ( pos + 4 > length )
+        {
+            return -1;
+        }
+
+        final int keyLength = mapped.getInt( pos );
+        if ( keyLength < 0 || pos + 4 + keyLength + 20 > length )
+        {
+            return -1;
+        }
+
+        final byte[] keyBytes = new byte[keyLength];
+        final ByteBuffer buf = mapped.duplicate();
+        buf.position( pos + 4 );
+        buf.get( keyBytes );
+
+        final long lastModified = buf.getLong();
+        final long fingerprint = buf.getLong();
+        final int payloadLength = buf.getInt();
+        final int payloadOffset = buf.position();
+        if ( payloadLength < 0 || payloadOffset + payloadLength + 8 > length )
+        {
+            return -1;
+        }
+
+        final byte[] payload = new byte[payloadLength];
+        buf.get( payload );
+        final long crc = buf.getLong();
+        if ( crc != checksum( payload ) )
+        {
+            return -1;
+        }
+
+        final Entry previous =
+            index.put( decode( keyBytes ), new Entry( lastModified, fingerprint, payloadOffset, payloadLength, null ) );
+        if ( previous != null )
+        {
+            supersededBytes += 4 + keyLength + 20 + previous.length + 8;
+        }
+
+        return buf.position();
+    }
+
+    private byte[] read( final String key, final long[] stamp )
+    {
+        final Entry entry = index.get( key );
+        if ( entry == null || entry.lastModified != stamp[0] || entry.fingerprint != stamp[1] )
+        {
+            return null;
+        }
+
+        return payload( entry );
+    }
+
+    private byte[] payload( final Entry entry )
+    {
+        if ( entry.payload != null )
+        {
+            return entry.payload;
+        }
+
+        final MappedByteBuffer m = mapped;
+        if ( m == null )
+        {
+            return null;
+        }
+
+        final byte[] payload = new byte[entry.length];
+        final ByteBuffer buf = m.duplicate();
+        buf.position( entry.offset );
+        buf.get( payload );
+
+        return payload;
+    }
+
+    /**
+     * @param replace whether to write the entry even if the stored one still matches the stamp, because it has expired.
+     */
+    private synchronized void write( final String key, final long[] stamp, final byte[] payload,
+                                     final boolean replace )
+        throws IOException
+    {
+        final Entry existing = index.get( key );
+        if ( !replace && existing != null && existing.lastModified == stamp[0] && existing.fingerprint == stamp[1] )
+        {
+            return;
+        }
+
+        if ( lock == null || channel == null )
+        {
+            // read-only, or closed.
+            index.put( key, new Entry( stamp[0], stamp[1], -1, payload.length, payload ) );
+            return;
+        }
+
+        final ByteBuffer buf = record( key, stamp[0], stamp[1], payload );
+
+        long pos = channel.size();
+        while ( buf.hasRemaining() )
+        {
+            pos += channel.write( buf, pos );
+        }
+
+        index.put( key, new Entry( stamp[0], stamp[1], -1, payload.length, payload ) );
+    }
+
+    private static ByteBuffer record( final String key, final long lastModified, final long fingerprint,
+                                      final byte[] payload )
+        throws IOException
+    {
+        final byte[] keyBytes = encode( key );
+        final ByteBuffer buf = ByteBuffer.allocate( 4 + keyBytes.length + 20 + payload.length + 8 );
+        buf.putInt( keyBytes.length );
+        buf.put( keyBytes );
+        buf.putLong( lastModified );
+        buf.putLong( fingerprint );
+        buf.putInt( payload.length );
+        buf.put( payload );
+        buf.putLong( checksum( payload ) );
+        buf.flip();
+
+        return buf;
+    }
+
+    private long[] metadataStamp( final RepositorySystemSession session, final Artifact artifact )
+    {
+        final File basedir = session.getLocalRepository().getBasedir();
+        final File dir =
+            new File( basedir, artifact.getGroupId().replace( '.', '/' ) + '/' + artifact.getArtifactId() );
+
+        final String[] names = dir.list();
+        if ( names == null )
+        {
+            return null;
+        }
+
+        long lastModified = dir.lastModified();
+        long size = names.length;
+        for ( final String name : names )
+        {
+            if ( name.startsWith( "maven-metadata" ) && name.endsWith( ".xml" ) )
+            {
+                final File f = new File( dir, name );
+                lastModified = Math.max( lastModified, f.lastModified() );
+                size += f.length();
+            }
+        }
+
+        return new long[] { lastModified, size };
+    }
+
+    /**
+     * Mirrors the resolver's own update check: a version range written at <code>written</code> is stale once any of
+     * the enabled repositories it was resolved from would be checked for updates again. The session update policy
+     * overrides those of the repositories, and nothing is stale while offline.
+     */
+    private static boolean isUpdateRequired( final RepositorySystemSession session, final VersionRangeRequest request,
+                                     final long written )
+    {
+        if ( session.isOffline() )
+        {
+            return false;
+        }
+
+        for ( final RemoteRepository repo : request.getRepositories() )
+        {
+            for ( final RepositoryPolicy policy : new RepositoryPolicy[] { repo.getPolicy( false ),
+                repo.getPolicy( true ) } )
+            {
+                if ( !policy.isEnabled() )
+                {
+                    continue;
+                }
+
+                final String updatePolicy =
+                    session.getUpdatePolicy() != null ? session.getUpdatePolicy() : policy.getUpdatePolicy();
+                if ( isUpdateRequired( updatePolicy, written ) )
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isUpdateRequired( final String updatePolicy, final long written )
+    {
+        if ( RepositoryPolicy.UPDATE_POLICY_NEVER.equals( updatePolicy ) )
+        {
+            return false;
+        }
+        else if ( RepositoryPolicy.UPDATE_POLICY_ALWAYS.equals( updatePolicy ) )
+        {
+            return true;
+        }
+        else if ( updatePolicy != null && updatePolicy.startsWith( RepositoryPolicy.UPDATE_POLICY_INTERVAL ) )
+        {
+            int minutes;
+            try
+            {
+                final int start = RepositoryPolicy.UPDATE_POLICY_INTERVAL.length() + 1;
+                minutes = Integer.parseInt( updatePolicy.substring( start ) );
+            }
+            catch ( final RuntimeException e )
+            {
+                minutes = 24 * 60;
+            }
+
+            return written < System.currentTimeMillis() - minutes * 60L * 1000L;
+        }
+
+        // daily, which is also what the resolver assumes for policies it doesn't know.
+        final Calendar midnight = Calendar.getInstance();
+        midnight.set( Calendar.HOUR_OF_DAY, 0 );
+        midnight.set( Calendar.MINUTE, 0 );
+        midnight.set( Calendar.SECOND, 0 );
+        midnight.set( Calendar.MILLISECOND, 0 );
+
+        return written < midnight.getTimeInMillis();
+    }
+
+    private String coordinate( final Artifact artifact )
+    {
+        return artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getExtension() + ':'
+            + artifact.getClassifier() + ':' + artifact.getVersion();
+    }
+
+    private String rangeKey( final VersionRangeRequest request )
+    {
+        final StringBuilder sb = new StringBuilder( coordinate( request.getArtifact() ) );
+        for ( final RemoteRepository repo : request.getRepositories() )
+        {
+            sb.append( '|' ).append( repo.getId() ).append( '=' ).append( repo.getUrl() );
+        }
+
+        return sb.toString();
+    }
+
+    private static long checksum( final byte[] payload )
+    {
+        final CRC32 crc = new CRC32();
+        crc.update( payload );
+        return crc.getValue();
+    }
+
+    private static byte[] encode( final String s )
+        throws IOException
+    {
+        return s.getBytes( "UTF-8" );
+    }
+
+    private static String decode( final byte[] bytes )
+    {
+        try
+        {
+            return new String( bytes, "UTF-8" );
+        }
+        catch ( final IOException e )
+        {
+            throw new IllegalStateException( "UTF-8 is not supported!", e );
+        }
+    }
+
+    private static void writeString( final DataOutputStream out, final String s )
+        throws IOException
+    {
+        out.writeBoolean( s != null );
+        if ( s != null )
+        {
+            out.writeUTF( s );
+        }
+    }
+
+    private static String readString( final DataInputStream in )
+        throws IOException
+    {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStringMap( final DataOutputStream out, final Map<String, String> map )
+        throws IOException
+    {
+        out.writeInt( map == null ? 0 : map.size() );
+        if ( map != null )
+        {
+            for ( final Map.Entry<String, String> entry : map.entrySet() )
+            {
+                out.writeUTF( entry.getKey() );
+                writeString( out, entry.getValue() );
+            }
+        }
+    }
+
+    private static Map<String, String> readStringMap( final DataInputStream in )
+        throws IOException
+    {
+        final int count = in.readInt();
+        final Map<String, String> map = new LinkedHashMap<String, String>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            map.put( in.readUTF(), readString( in ) );
+        }
+
+        return map;
+    }
+
+    private static void writeArtifact( final DataOutputStream out, final Artifact artifact )
+        throws IOException
+    {
+        out.writeUTF( artifact.getGroupId() );
+        out.writeUTF( artifact.getArtifactId() );
+        out.writeUTF( artifact.getClassifier() );
+        out.writeUTF( artifact.getExtension() );
+        out.writeUTF( artifact.getVersion() );
+        writeStringMap( out, artifact.getProperties() );
+    }
+
+    private static Artifact readArtifact( final DataInputStream in )
+        throws IOException
+    {
+        final String groupId = in.readUTF();
+        final String artifactId = in.readUTF();
+        final String classifier = in.readUTF();
+        final String extension = in.readUTF();
+        final String version = in.readUTF();
+        final Map<String, String> properties = readStringMap( in );
+
+        return new DefaultArtifact( groupId, artifactId, classifier, extension, version, properties, (File) null );
+    }
+
+    private static void writeArtifacts( final DataOutputStream out, final Collection<Artifact> artifacts )
+        throws IOException
+    {
+        out.writeInt( artifacts == null ? 0 : artifacts.size() );
+        if ( artifacts != null )
+        {
+            for ( final Artifact artifact : artifacts )
+            {
+                writeArtifact( out, artifact );
+            }
+        }
+    }
+
+    private static List<Artifact> readArtifacts( final DataInputStream in )
+        throws IOException
+    {
+        final int count = in.readInt();
+        final List<Artifact> artifacts = new ArrayList<Artifact>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            artifacts.add( readArtifact( in ) );
+        }
+
+        return artifacts;
+    }
+
+    private static void writeDependencies( final DataOutputStream out, final List<Dependency> dependencies )
+        throws IOException
+    {
+        out.writeInt( dependencies == null ? 0 : dependencies.size() );
+        if ( dependencies != null )
+        {
+            for ( final Dependency dependency : dependencies )
+            {
+                writeArtifact( out, dependency.getArtifact() );
+                out.writeUTF( dependency.getScope() );
+                out.writeBoolean( dependency.isOptional() );
+
+                final Collection<Exclusion> exclusions = dependency.getExclusions();
+                out.writeInt( exclusions.size() );
+                for ( final Exclusion exclusion : exclusions )
+                {
+                    out.writeUTF( exclusion.getGroupId() );
+                    out.writeUTF( exclusion.getArtifactId() );
+                    out.writeUTF( exclusion.getClassifier() );
+                    out.writeUTF( exclusion.getExtension() );
+                }
+            }
+        }
+    }
+
+    private static List<Dependency> readDependencies( final DataInputStream in )
+        throws IOException
+    {
+        final int count = in.readInt();
+        final List<Dependency> dependencies = new ArrayList<Dependency>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            final Artifact artifact = readArtifact( in );
+            final String scope = in.readUTF();
+            final boolean optional = in.readBoolean();
+
+            final int exclusionCount = in.readInt();
+            final List<Exclusion> exclusions = new ArrayList<Exclusion>( exclusionCount );
+            for ( int j = 0; j < exclusionCount; j++ )
+            {
+                exclusions.add( new Exclusion( in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF() ) );
+            }
+
+            dependencies.add( new Dependency( artifact, scope, optional, exclusions ) );
+        }
+
+        return dependencies;
+    }
+
+    private static void writeRemoteRepository( final DataOutputStream out, final RemoteRepository repo )
+        throws IOException
+    {
+        writeString( out, repo.getId() );
+        writeString( out, repo.getContentType() );
+        writeString( out, repo.getUrl() );
+        writePolicy( out, repo.getPolicy( false ) );
+        writePolicy( out, repo.getPolicy( true ) );
+        out.writeBoolean( repo.isRepositoryManager() );
+
+        final List<RemoteRepository> mirrored = repo.getMirroredRepositories();
+        out.writeInt( mirrored.size() );
+        for ( final RemoteRepository m : mirrored )
+        {
+            writeRemoteRepository( out, m );
+        }
+    }
+
+    private static RemoteRepository readRemoteRepository( final DataInputStream in )
+        throws IOException
+    {
+        final String id = readString( in );
+        final String type = readString( in );
+        final String url = readString( in );
+
+        final RemoteRepository repo = new RemoteRepository( id, type, url );
+        repo.setPolicy( false, readPolicy( in ) );
+        repo.setPolicy( true, readPolicy( in ) );
+        repo.setRepositoryManager( in.readBoolean() );
+
+        final int count = in.readInt();
+        final List<RemoteRepository> mirrored = new ArrayList<RemoteRepository>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            mirrored.add( readRemoteRepository( in ) );
+        }
+        repo.setMirroredRepositories( mirrored );
+
+        return repo;
+    }
+
+    private static void writePolicy( final DataOutputStream out, final RepositoryPolicy policy )
+        throws IOException
+    {
+        out.writeBoolean( policy.isEnabled() );
+        writeString( out, policy.getUpdatePolicy() );
+        writeString( out, policy.getChecksumPolicy() );
+    }
+
+    private static RepositoryPolicy readPolicy( final DataInputStream in )
+        throws IOException
+    {
+        return new RepositoryPolicy( in.readBoolean(), readString( in ), readString( in ) );
+    }
+
+    /**
+     * @return false if the repository can't be persisted.
+     */
+    private static boolean writeArtifactRepository( final DataOutputStream out, final ArtifactRepository repo )
+        throws IOException
+    {
+        if ( repo == null )
+        {
+            out.writeByte( NO_REPOSITORY );
+        }
+        else if ( repo instanceof LocalRepository )
+        {
+            out.writeByte( LOCAL_REPOSITORY );
+            out.writeUTF( ( (LocalRepository) repo ).getBasedir().getPath() );
+            writeString( out, repo.getContentType() );
+        }
+        else if ( repo instanceof RemoteRepository )
+        {
+            out.writeByte( REMOTE_REPOSITORY );
+            writeRemoteRepository( out, (RemoteRepository) repo );
+        }
+        else
+        {
+            return false;
+        }
+
+        return true;
+    }
+
+    private static ArtifactRepository readArtifactRepository( final DataInputStream in )
+        throws IOException
+    {
+        final int type = in.readByte();
+        switch ( type )
+        {
+            case NO_REPOSITORY:
+                return null;
+            case LOCAL_REPOSITORY:
+                return new LocalRepository( new File( in.readUTF() ), readString( in ) );
+            case REMOTE_REPOSITORY:
+                return readRemoteRepository( in );
+            default:
+                throw new IOException( "Unknown repository type: " + type );
+        }
+    }
+
+    private static final class Entry
+    {
+        final long lastModified;
+
+        final long fingerprint;
+
+        final int offset;
+
+        final int length;
+
+        final byte[] payload;
+
+        Entry( final long lastModified, final long fingerprint, final int offset, final int length,
+               final byte[] payload )
+        {
+            this.lastModified = lastModified;
+            this.fingerprint = fingerprint;
+            this.offset = offset;
+            this.length = length;
+            this.payload = payload;
+        }
+    }
+
+}
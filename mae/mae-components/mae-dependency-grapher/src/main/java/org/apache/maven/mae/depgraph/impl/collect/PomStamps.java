@@ -0,0 +1,549 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+import org.apache.maven.model.Activation;
+import org.apache.maven.model.ActivationOS;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Profile;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.repository.WorkspaceReader;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+
+/**
+ * Fingerprints the local-repository POMs an artifact descriptor is built from: the artifact's own POM, its parents,
+ * the POMs imported into dependency management (and their parents), plus the session properties that decide which
+ * profiles of those POMs are active. Returns null whenever one of these inputs can't be pinned down (a POM missing
+ * from the local repository or served from the workspace, an import version that can't be interpolated, or a
+ * file-based profile activation), in which case the descriptor must not be persisted.
+ * <p>
+ * The parts of each POM that matter here are parsed once per file version and kept, so repeated stamps only cost a
+ * few file system lookups. A stamp also lists the inputs it was computed from (see {@link Fingerprint#getInputs()}),
+ * so a stored descriptor can be checked in a later process with {@link #restamp(RepositorySystemSession, List)},
+ * without parsing any POM.
+ * </p>
+ */
+final class PomStamps
+{
+
+    private static final Logger logger = Logger.getLogger( PomStamps.class );
+
+    private static final Pattern EXPRESSION = Pattern.compile( "\\$\\{([^}]+)\\}" );
+
+    private static final int MAX_INTERPOLATIONS = 16;
+
+    private static final String POM_INPUT = "pom:";
+
+    private static final String ACTIVATION_INPUT = "activation:";
+
+    private final Map<String, Pom> poms = new ConcurrentHashMap<String, Pom>();
+
+    /**
+     * @return the fingerprint of the POMs involved and of the session properties activating their profiles; or null if
+     *         the descriptor can't be fingerprinted.
+     */
+    Fingerprint stamp( final RepositorySystemSession session, final Artifact artifact )
+    {
+        final Fingerprint fingerprint = new Fingerprint();
+        if ( !stamp( session, artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), fingerprint ) )
+        {
+            return null;
+        }
+
+        return fingerprint;
+    }
+
+    /**
+     * Compute the stamp again from the inputs of an earlier {@link Fingerprint}, only looking at the POM files'
+     * timestamps and sizes and at the session properties. Whatever the POMs point to (parents, imports, activation
+     * properties) can only have changed if one of those POMs has, so this gives the same stamp as
+     * {@link #stamp(RepositorySystemSession, Artifact)} as long as the inputs are still the same.
+     *
+     * @return the newest modification time of the POMs, and a digest of all inputs; or null if one of the POMs is gone
+     *         from the local repository, or is now served from the workspace.
+     */
+    long[] restamp( final RepositorySystemSession session, final List<String> inputs )
+    {
+        final Fingerprint fingerprint = new Fingerprint();
+        for ( final String input : inputs )
+        {
+            if ( input.startsWith( POM_INPUT ) )
+            {
+                final String[] coordinate = input.substring( POM_INPUT.length() ).split( ":" );
+                final File f =
+                    coordinate.length != 3 ? null : locate( session, coordinate[0], coordinate[1], coordinate[2] );
+                if ( f == null )
+                {
+                    return null;
+                }
+
+                final long lastModified = f.lastModified();
+                final long length = f.length();
+                if ( lastModified == 0 || !f.isFile() )
+                {
+                    return null;
+                }
+
+                fingerprint.addPom( input.substring( POM_INPUT.length() ), f, lastModified, length );
+            }
+            else if ( input.startsWith( ACTIVATION_INPUT ) )
+            {
+                final String name = input.substring( ACTIVATION_INPUT.length() );
+                fingerprint.addActivation( name, sessionProperty( session, name ) );
+            }
+            else
+            {
+                return null;
+            }
+        }
+
+        return fingerprint.toStamp();
+    }
+
+    private boolean stamp( final RepositorySystemSession session, final String groupId, final String artifactId,
+                           final String version, final Fingerprint fingerprint )
+    {
+        if ( !fingerprint.visited.add( groupId + ':' + artifactId + ':' + version ) )
+        {
+            return true;
+        }
+
+        // walk up to the root parent first, so properties can be interpolated the way inheritance sees them.
+        final List<Pom> lineage = new ArrayList<Pom>();
+        final Set<String> ancestors = new HashSet<String>();
+        String g = groupId;
+        String a = artifactId;
+        String v = version;
+        while ( g != null )
+        {
+            final Pom pom = load( session, g, a, v, fingerprint );
+            if ( pom == null )
+            {
+                return false;
+            }
+
+            lineage.add( pom );
+            g = pom.parentGroupId;
+            a = pom.parentArtifactId;
+            v = pom.parentVersion;
+
+            if ( g != null && !ancestors.add( g + ':' + a + ':' + v ) )
+            {
+                // a parent cycle; the model builder will fail on it, so there's nothing to remember.
+                return false;
+            }
+        }
+
+        final Properties properties = new Properties();
+        final Set<String> profileProperties = new HashSet<String>();
+        for ( int i = lineage.size() - 1; i >= 0; i-- )
+        {
+            final Pom pom = lineage.get( i );
+            properties.putAll( pom.properties );
+            profileProperties.addAll( pom.profileProperties );
+
+            if ( pom.activatedByFile )
+            {
+                return false;
+            }
+
+            for ( final String name : pom.activationProperties )
+            {
+                fingerprint.addActivation( name, sessionProperty( session, name ) );
+            }
+        }
+
+        final Pom self = lineage.get( 0 );
+        if ( self.groupId == null || self.version == null )
+        {
+            return false;
+        }
+
+        properties.setProperty( "project.groupId", self.groupId );
+        properties.setProperty( "project.version", self.version );
+        properties.setProperty( "pom.groupId", self.groupId );
+        properties.setProperty( "pom.version", self.version );
+        if ( self.parentVersion != null )
+        {
+            properties.setProperty( "project.parent.groupId", self.parentGroupId );
+            properties.setProperty( "project.parent.version", self.parentVersion );
+        }
+
+        for ( final Pom pom : lineage )
+        {
+            for ( final String[] imported : pom.imports )
+            {
+                final String[] coordinate = new String[3];
+                for ( int i = 0; i < coordinate.length; i++ )
+                {
+                    coordinate[i] = interpolate( imported[i], properties, profileProperties );
+                    if ( coordinate[i] == null )
+                    {
+                        if ( logger.isDebugEnabled() )
+                        {
+                            logger.debug( "Cannot pin down the import: " + imported[0] + ':' + imported[1] + ':'
+                                + imported[2] + " of: " + groupId + ':' + artifactId + ':' + version );
+                        }
+                        return false;
+                    }
+                }
+
+                if ( !stamp( session, coordinate[0], coordinate[1], coordinate[2], fingerprint ) )
+                {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private Pom load( final RepositorySystemSession session, final String groupId, final String artifactId,
+                      final String version, final Fingerprint fingerprint )
+    {
+        final File f = locate( session, groupId, artifactId, version );
+        if ( f == null )
+        {
+            return null;
+        }
+
+        final long lastModified = f.lastModified();
+        final long length = f.length();
+        if ( lastModified == 0 || !f.isFile() )
+        {
+            return null;
+        }
+
+        fingerprint.addPom( groupId + ':' + artifactId + ':' + version, f, lastModified, length );
+
+        final String key = f.getPath();
+        Pom pom = poms.get( key );
+        if ( pom == null || pom.lastModified != lastModified || pom.length != length )
+        {
+            pom = parse( f, lastModified, length );
+            if ( pom == null )
+            {
+                return null;
+            }
+            poms.put( key, pom );
+        }
+
+        return pom;
+    }
+
+    /**
+     * @return the POM's file in the local repository, or null if the POM is served from the workspace.
+     */
+    private static File locate( final RepositorySystemSession session, final String groupId,
+                                final String artifactId, final String version )
+    {
+        final Artifact pomArtifact = new DefaultArtifact( groupId, artifactId, "", "pom", version );
+
+        final WorkspaceReader workspace = session.getWorkspaceReader();
+        if ( workspace != null && workspace.findArtifact( pomArtifact ) != null )
+        {
+            return null;
+        }
+
+        final File basedir = session.getLocalRepository().getBasedir();
+        return new File( basedir, session.getLocalRepositoryManager().getPathForLocalArtifact( pomArtifact ) );
+    }
+
+    private static Pom parse( final File f, final long lastModified, final long length )
+    {
+        Reader reader = null;
+        try
+        {
+            reader = ReaderFactory.newXmlReader( f );
+            return new Pom( new MavenXpp3Reader().read( reader, false ), lastModified, length );
+        }
+        catch ( final IOException e )
+        {
+            logger.debug( "Cannot read: " + f + ". Reason: " + e.getMessage() );
+            return null;
+        }
+        catch ( final XmlPullParserException e )
+        {
+            logger.debug( "Cannot parse: " + f + ". Reason: " + e.getMessage() );
+            return null;
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+    }
+
+    /**
+     * Profile activation sees user properties over system properties, the same as the model builder.
+     */
+    private static String sessionProperty( final RepositorySystemSession session, final String name )
+    {
+        final Map<String, String> user = session.getUserProperties();
+        if ( user != null && user.containsKey( name ) )
+        {
+            return user.get( name );
+        }
+
+        final Map<String, String> system = session.getSystemProperties();
+        return system == null ? null : system.get( name );
+    }
+
+    /**
+     * @return the value, or null if it refers to something not defined by the POM lineage, or to a property a profile
+     *         could redefine.
+     */
+    private static String interpolate( final String value, final Properties properties,
+                                       final Set<String> profileProperties )
+    {
+        if ( value == null )
+        {
+            return null;
+        }
+
+        String result = value;
+        for ( int i = 0; i < MAX_INTERPOLATIONS && result.contains( "${" ); i++ )
+        {
+            final Matcher matcher = EXPRESSION.matcher( result );
+            final StringBuffer sb = new StringBuffer();
+            while ( matcher.find() )
+            {
+                final String name = matcher.group( 1 );
+                final String replacement = properties.getProperty( name );
+                if ( replacement == null || profileProperties.contains( name ) )
+                {
+                    return null;
+                }
+                matcher.appendReplacement( sb, Matcher.quoteReplacement( replacement ) );
+            }
+            matcher.appendTail( sb );
+            result = sb.toString();
+        }
+
+        return result.contains( "${" ) ? null : result;
+    }
+
+    /**
+     * The parts of a POM that decide which other inputs a descriptor depends on.
+     */
+    private static final class Pom
+    {
+        final long lastModified;
+
+        final long length;
+
+        final String groupId;
+
+        final String version;
+
+        final String parentGroupId;
+
+        final String parentArtifactId;
+
+        final String parentVersion;
+
+        final Properties properties;
+
+        /**
+         * groupId, artifactId, version of each <code>import</code>-scoped managed dependency, uninterpolated.
+         */
+        final List<String[]> imports = new ArrayList<String[]>();
+
+        final Set<String> activationProperties = new TreeSet<String>();
+
+        final Set<String> profileProperties = new HashSet<String>();
+
+        final boolean activatedByFile;
+
+        Pom( final Model model, final long lastModified, final long length )
+        {
+            this.lastModified = lastModified;
+            this.length = length;
+
+            final Parent parent = model.getParent();
+            parentGroupId = parent == null ? null : parent.getGroupId();
+            parentArtifactId = parent == null ? null : parent.getArtifactId();
+            parentVersion = parent == null ? null : parent.getVersion();
+
+            groupId = model.getGroupId() != null ? model.getGroupId() : parentGroupId;
+            version = model.getVersion() != null ? model.getVersion() : parentVersion;
+
+            properties = model.getProperties();
+            addImports( model.getDependencyManagement() );
+
+            boolean byFile = false;
+            for ( final Profile profile : model.getProfiles() )
+            {
+                addImports( profile.getDependencyManagement() );
+                profileProperties.addAll( profile.getProperties().stringPropertyNames() );
+
+                final Activation activation = profile.getActivation();
+                if ( activation == null )
+                {
+                    continue;
+                }
+
+                if ( activation.getProperty() != null )
+                {
+                    activationProperties.add( activation.getProperty().getName() );
+                }
+                if ( activation.getJdk() != null )
+                {
+                    activationProperties.add( "java.version" );
+                }
+
+                final ActivationOS os = activation.getOs();
+                if ( os != null )
+                {
+                    activationProperties.add( "os.name" );
+                    activationProperties.add( "os.arch" );
+                    activationProperties.add( "os.version" );
+                }
+
+                byFile |= activation.getFile() != null;
+            }
+            activatedByFile = byFile;
+        }
+
+        private void addImports( final DependencyManagement depMgmt )
+        {
+            if ( depMgmt == null )
+            {
+                return;
+            }
+
+            for ( final Dependency dep : depMgmt.getDependencies() )
+            {
+                if ( "import".equals( dep.getScope() ) && "pom".equals( dep.getType() ) )
+                {
+                    imports.add( new String[] { dep.getGroupId(), dep.getArtifactId(), dep.getVersion() } );
+                }
+            }
+        }
+    }
+
+    /**
+     * What a descriptor was derived from: the digested timestamps and sizes of its POMs and the values of the session
+     * properties activating their profiles, along with the inputs (POM coordinates and property names) needed to
+     * compute it again.
+     */
+    static final class Fingerprint
+    {
+        private final Set<String> visited = new HashSet<String>();
+
+        private final List<String> inputs = new ArrayList<String>();
+
+        private final List<String> values = new ArrayList<String>();
+
+        private long lastModified;
+
+        private void addPom( final String coordinate, final File f, final long lastModified, final long length )
+        {
+            this.lastModified = Math.max( this.lastModified, lastModified );
+
+            inputs.add( POM_INPUT + coordinate );
+            values.add( POM_INPUT + f.getPath() + ':' + lastModified + ':' + length );
+        }
+
+        private void addActivation( final String name, final String value )
+        {
+            inputs.add( ACTIVATION_INPUT + name );
+            values.add( ACTIVATION_INPUT + name + '=' + value );
+        }
+
+        /**
+         * @return the POMs and session properties this fingerprint was computed from, for
+         *         {@link PomStamps#restamp(RepositorySystemSession, List)}.
+         */
+        List<String> getInputs()
+        {
+            return inputs;
+        }
+
+        /**
+         * @return the newest modification time of the POMs, and a digest of all inputs.
+         */
+        long[] toStamp()
+        {
+            return new long[] { lastModified, digest() };
+        }
+
+        private long digest()
+        {
+            // the same inputs are reached in the same order, but keep the digest independent of it anyway.
+            final List<String> sorted = new ArrayList<String>( values );
+            Collections.sort( sorted );
+
+            try
+            {
+                final MessageDigest digest = MessageDigest.getInstance( "SHA-1" );
+                for ( final String input : sorted )
+                {
+                    digest.update( input.getBytes( "UTF-8" ) );
+                    digest.update( (byte) '\n' );
+                }
+
+                final byte[] bytes = digest.digest();
+                long result = 0;
+                for ( int i = 0; i < 8; i++ )
+                {
+                    result = ( result << 8 ) | ( bytes[i] & 0xff );
+                }
+
+                return result;
+            }
+            catch ( final NoSuchAlgorithmException e )
+            {
+                throw new IllegalStateException( "SHA-1 digests are not available: " + e.getMessage(), e );
+            }
+            catch ( final UnsupportedEncodingException e )
+            {
+                throw new IllegalStateException( "UTF-8 encoding is not available: " + e.getMessage(), e );
+            }
+        }
+    }
+
+}
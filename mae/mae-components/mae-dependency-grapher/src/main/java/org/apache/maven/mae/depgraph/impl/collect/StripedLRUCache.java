@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Size-bounded cache with least-recently-used eviction. Entries are spread over a fixed number of independently locked
+ * segments, so concurrent collector threads only contend when they hit the same segment. The size bound holds for the
+ * cache as a whole: a global counter tracks the number of entries, and a put that takes it over the bound evicts the
+ * least recently used entry of the segment it went to (or, if that one is empty, of the next non-empty segment).
+ * Recency is therefore exact within a segment, and approximate across segments. Entries are strongly referenced, so
+ * unlike a {@link java.util.WeakHashMap} they survive GC pressure until evicted.
+ */
+final class StripedLRUCache<K, V>
+{
+
+    private static final int DEFAULT_SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+
+    private final int maxSize;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final DepGraphCacheStats stats;
+
+    StripedLRUCache( final String name, final int maxSize )
+    {
+        this( name, maxSize, DEFAULT_SEGMENTS );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    StripedLRUCache( final String name, final int maxSize, final int segmentCount )
+    {
+        if ( maxSize < 1 )
+        {
+            throw new IllegalArgumentException( "Cache size must be positive; was: " + maxSize );
+        }
+
+        int count = 1;
+        while ( count < segmentCount )
+        {
+            count <<= 1;
+        }
+
+        this.maxSize = maxSize;
+        stats = new DepGraphCacheStats( name, maxSize );
+        segments = new Segment[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            segments[i] = new Segment<K, V>();
+        }
+    }
+
+    V get( final K key )
+    {
+        final V value = segments[indexFor( key )].get( key );
+        if ( value == null )
+        {
+            stats.miss();
+        }
+        else
+        {
+            stats.hit();
+        }
+
+        return value;
+    }
+
+    void put( final K key, final V value )
+    {
+        final int index = indexFor( key );
+        if ( segments[index].put( key, value ) )
+        {
+            if ( size.incrementAndGet() > maxSize )
+            {
+                evict( index );
+            }
+        }
+    }
+
+    int size()
+    {
+        return size.get();
+    }
+
+    DepGraphCacheStats getStats()
+    {
+        return stats;
+    }
+
+    /**
+     * Evict until the cache is back within its bound, starting with the segment that was just written to. An entry is
+     * always added to its segment before being counted, so there is an entry to evict for every count above the bound.
+     */
+    private void evict( final int start )
+    {
+        int index = start;
+        int emptySegments = 0;
+        while ( size.get() > maxSize && emptySegments < segments.length )
+        {
+            if ( segments[index].removeEldest() )
+            {
+                size.decrementAndGet();
+                stats.evicted();
+                emptySegments = 0;
+            }
+            else
+            {
+                emptySegments++;
+                index = ( index + 1 ) & ( segments.length - 1 );
+            }
+        }
+    }
+
+    private int indexFor( final K key )
+    {
+        // spread the hash bits, since keys such as artifacts often have poor low-order bits.
+        int h = key.hashCode();
+        h ^= ( h >>> 20 ) ^ ( h >>> 12 );
+        h ^= ( h >>> 7 ) ^ ( h >>> 4 );
+
+        return h & ( segments.length - 1 );
+    }
+
+    private static final class Segment<K, V>
+    {
+        private final Map<K, V> entries = new LinkedHashMap<K, V>( 16, 0.75f, true );
+
+        synchronized V get( final K key )
+        {
+            return entries.get( key );
+        }
+
+        /**
+         * @return true if the key was not in the segment yet
+         */
+        synchronized boolean put( final K key, final V value )
+        {
+            return entries.put( key, value ) == null;
+        }
+
+        synchronized boolean removeEldest()
+        {
+            final Iterator<V> it = entries.values().iterator();
+            if ( !it.hasNext() )
+            {
+                return false;
+            }
+
+            it.next();
+            it.remove();
+            return true;
+        }
+    }
+
+}
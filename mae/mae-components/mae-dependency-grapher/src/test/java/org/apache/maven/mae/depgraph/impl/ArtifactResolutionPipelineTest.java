@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.mae.depgraph.DepGraphNode;
+import org.apache.maven.mae.depgraph.event.DepGraphResolutionEvent;
+import org.apache.maven.mae.depgraph.event.DepGraphResolutionEventType;
+import org.apache.maven.mae.project.event.EventDispatcher;
+import org.apache.maven.mae.project.event.ProjectToolsListener;
+import org.apache.maven.mae.project.session.SimpleProjectToolsSession;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.RepositorySystem;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.resolution.ArtifactRequest;
+import org.sonatype.aether.resolution.ArtifactResolutionException;
+import org.sonatype.aether.resolution.ArtifactResult;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+
+public class ArtifactResolutionPipelineTest
+{
+
+    /** Artifacts with these ids fail to resolve unless the request has at least one remote repository. */
+    private final Set<String> remoteOnly = Collections.synchronizedSet( new HashSet<String>() );
+
+    /** Artifacts with these ids block in the resolver until the worker is interrupted. */
+    private final Set<String> blocking = Collections.synchronizedSet( new HashSet<String>() );
+
+    private final List<ArtifactRequest> requests = Collections.synchronizedList( new ArrayList<ArtifactRequest>() );
+
+    private final List<DepGraphResolutionEvent> events =
+        Collections.synchronizedList( new ArrayList<DepGraphResolutionEvent>() );
+
+    private final CountDownLatch blocked = new CountDownLatch( 1 );
+
+    private SimpleProjectToolsSession session;
+
+    private ArtifactResolutionPipeline.Batch batch;
+
+    @Before
+    public void setUp()
+    {
+        session = new SimpleProjectToolsSession();
+        session.setResolveThreads( 2 );
+
+        final ProjectToolsListener<DepGraphResolutionEvent> listener =
+            new ProjectToolsListener<DepGraphResolutionEvent>()
+            {
+                public void onEvent( final DepGraphResolutionEvent event )
+                {
+                    events.add( event );
+                }
+            };
+        session.setEventDispatcher( DepGraphResolutionEvent.class,
+                                    new EventDispatcher<DepGraphResolutionEvent>( listener ) );
+
+        batch =
+            ArtifactResolutionPipeline.forSession( session ).newBatch( new DefaultRepositorySystemSession(),
+                                                                       stubRepositorySystem(), session );
+    }
+
+    @After
+    public void tearDown()
+    {
+        session.clearStates();
+    }
+
+    @Test
+    public void awaitReturnsOnceEverySubmittedNodeIsResolved()
+    {
+        final DepGraphNode a = node( "a" );
+        final DepGraphNode b = node( "b" );
+        final DepGraphNode c = node( "c" );
+
+        assertTrue( batch.submit( a ) );
+        assertTrue( batch.submit( b ) );
+        assertTrue( batch.submit( c ) );
+        assertFalse( batch.submit( a ) );
+
+        batch.await();
+
+        assertEquals( 3, requests.size() );
+        for ( final DepGraphNode node : new DepGraphNode[] { a, b, c } )
+        {
+            assertNotNull( node.getKey(), node.getLatestResult().getArtifact().getFile() );
+        }
+        assertEquals( 3, count( DepGraphResolutionEventType.RESOLVED ) );
+    }
+
+    @Test
+    public void failureIsRecordedOnTheNodeAndPublished()
+    {
+        remoteOnly.add( "a" );
+        final DepGraphNode a = node( "a" );
+
+        batch.submit( a );
+        batch.await();
+
+        assertNull( a.getLatestResult().getArtifact() );
+        assertFalse( a.getLatestResult().getExceptions().isEmpty() );
+        assertEquals( 1, count( DepGraphResolutionEventType.FAILED ) );
+        assertEquals( 0, count( DepGraphResolutionEventType.RESOLVED ) );
+    }
+
+    @Test
+    public void failedNodeIsRetriedOnlyOnceItHasMoreRepositories()
+    {
+        remoteOnly.add( "a" );
+        final DepGraphNode a = node( "a" );
+        final DepGraphNode b = node( "b" );
+
+        batch.submit( a );
+        batch.submit( b );
+        batch.await();
+
+        // nothing new to try, and resolved nodes are never retried.
+        assertFalse( batch.retry( a ) );
+        assertFalse( batch.retry( b ) );
+        assertFalse( batch.retry( node( "c" ) ) );
+
+        a.getRemoteRepositories().add( new RemoteRepository( "central", "default", "http://repo.example/" ) );
+        assertTrue( batch.retry( a ) );
+        batch.await();
+
+        assertNotNull( a.getLatestResult().getArtifact().getFile() );
+        assertEquals( 3, requests.size() );
+        assertEquals( 1, count( DepGraphResolutionEventType.FAILED ) );
+        assertEquals( 2, count( DepGraphResolutionEventType.RESOLVED ) );
+    }
+
+    @Test
+    public void cancelInterruptsRunningWorkAndReportsIt()
+        throws Exception
+    {
+        blocking.add( "a" );
+        final DepGraphNode a = node( "a" );
+
+        batch.submit( a );
+        assertTrue( blocked.await( 10, TimeUnit.SECONDS ) );
+
+        batch.cancel();
+        batch.await();
+
+        assertTrue( batch.isCancelled() );
+        assertFalse( batch.submit( node( "b" ) ) );
+        assertNull( a.getLatestResult() );
+        assertEquals( 1, count( DepGraphResolutionEventType.CANCELLED ) );
+        assertEquals( 0, count( DepGraphResolutionEventType.FAILED ) );
+    }
+
+    @Test
+    public void clearingTheSessionShutsThePipelineDown()
+    {
+        final ArtifactResolutionPipeline pipeline = ArtifactResolutionPipeline.forSession( session );
+        assertSame( pipeline, ArtifactResolutionPipeline.forSession( session ) );
+
+        session.clearStates();
+
+        assertTrue( pipeline.isShutdown() );
+        assertNotSame( pipeline, ArtifactResolutionPipeline.forSession( session ) );
+    }
+
+    private int count( final DepGraphResolutionEventType type )
+    {
+        int count = 0;
+        synchronized ( events )
+        {
+            for ( final DepGraphResolutionEvent event : events )
+            {
+                if ( event.getType() == type )
+                {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private static DepGraphNode node( final String artifactId )
+    {
+        return new DepGraphNode( new DefaultArtifact( "org.test", artifactId, "jar", "1" ), false );
+    }
+
+    private RepositorySystem stubRepositorySystem()
+    {
+        final InvocationHandler handler = new InvocationHandler()
+        {
+            public Object invoke( final Object proxy, final Method method, final Object[] args )
+                throws ArtifactResolutionException
+            {
+                if ( !"resolveArtifact".equals( method.getName() ) )
+                {
+                    throw new UnsupportedOperationException( method.getName() );
+                }
+
+                return resolve( (ArtifactRequest) args[1] );
+            }
+        };
+
+        return (RepositorySystem) Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                           new Class<?>[] { RepositorySystem.class }, handler );
+    }
+
+    private ArtifactResult resolve( final ArtifactRequest request )
+        throws ArtifactResolutionException
+    {
+        requests.add( request );
+
+        final String artifactId = request.getArtifact().getArtifactId();
+        final ArtifactResult result = new ArtifactResult( request );
+        if ( blocking.contains( artifactId ) )
+        {
+            blocked.countDown();
+            try
+            {
+                new CountDownLatch( 1 ).await();
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return result;
+            }
+        }
+
+        if ( remoteOnly.contains( artifactId ) && request.getRepositories().isEmpty() )
+        {
+            result.addException( new IllegalStateException( "Not found: " + request.getArtifact() ) );
+            throw new ArtifactResolutionException( Collections.singletonList( result ) );
+        }
+
+        return result.setArtifact( request.getArtifact().setFile( new File( artifactId + ".jar" ) ) );
+    }
+
+}
@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.mae.depgraph.DepGraphNode;
+import org.apache.maven.mae.depgraph.DependencyGraph;
+import org.apache.maven.mae.depgraph.DependencyGraphDelta;
+import org.apache.maven.mae.project.session.SimpleProjectToolsSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.RepositorySystem;
+import org.sonatype.aether.collection.CollectRequest;
+import org.sonatype.aether.collection.CollectResult;
+import org.sonatype.aether.graph.DependencyNode;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+import org.sonatype.aether.util.artifact.DefaultArtifactTypeRegistry;
+import org.sonatype.aether.util.graph.DefaultDependencyNode;
+
+public class DependencyGraphResolverTest
+{
+
+    private final Map<String, MavenProject> reactor = new HashMap<String, MavenProject>();
+
+    private final Map<String, List<String>> repository = new HashMap<String, List<String>>();
+
+    private final List<Set<String>> collected = new ArrayList<Set<String>>();
+
+    private DependencyGraphResolver resolver;
+
+    private DefaultRepositorySystemSession rss;
+
+    private SimpleProjectToolsSession session;
+
+    private MavenProject app;
+
+    private MavenProject lib;
+
+    private MavenProject tool;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        // app -> lib (in the reactor) -> ext:1; tool -> other:1, unrelated to the rest.
+        lib = project( "lib", "org.ext:ext:1" );
+        app = project( "app", "org.test:lib:1" );
+        tool = project( "tool", "org.ext:other:1" );
+        repository.put( "org.ext:ext:1", new ArrayList<String>() );
+        repository.put( "org.ext:ext:2", new ArrayList<String>() );
+        repository.put( "org.ext:other:1", new ArrayList<String>() );
+
+        resolver = new DependencyGraphResolver();
+        final Field field = DependencyGraphResolver.class.getDeclaredField( "repositorySystem" );
+        field.setAccessible( true );
+        field.set( resolver, stubRepositorySystem() );
+
+        rss = new DefaultRepositorySystemSession();
+        rss.setArtifactTypeRegistry( new DefaultArtifactTypeRegistry() );
+        session = new SimpleProjectToolsSession();
+    }
+
+    @Test
+    public void firstUpdateRebuildsEverything()
+    {
+        final DependencyGraphDelta delta = update();
+
+        assertTrue( delta.isFullRebuild() );
+        assertEquals( 3, collected.size() );
+        assertTrue( keys( delta.getAdded() ).contains( "org.ext:ext:1" ) );
+    }
+
+    @Test
+    public void unchangedProjectsAreNotCollectedAgain()
+    {
+        update();
+        collected.clear();
+
+        final DependencyGraphDelta delta = update();
+
+        assertFalse( delta.isFullRebuild() );
+        assertTrue( delta.toString(), delta.isEmpty() );
+        assertTrue( collected.isEmpty() );
+    }
+
+    @Test
+    public void changeToReactorDependencyRecollectsDependents()
+    {
+        update();
+        collected.clear();
+
+        lib.getModel().getDependencies().get( 0 ).setVersion( "2" );
+        final DependencyGraphDelta delta = update();
+
+        // lib changed, and app reaches lib's dependencies through the workspace; tool is unaffected.
+        assertEquals( 2, collected.size() );
+        assertTrue( collected.contains( deps( "org.test:lib:1" ) ) );
+        assertTrue( collected.contains( deps( "org.ext:ext:2" ) ) );
+
+        assertTrue( keys( delta.getAdded() ).contains( "org.ext:ext:2" ) );
+        assertTrue( keys( delta.getRemoved() ).contains( "org.ext:ext:1" ) );
+        assertFalse( keys( delta.getChanged() ).contains( "org.test:tool:1" ) );
+        assertTrue( keys( delta.getChanged() ).contains( "org.test:app:1" ) );
+    }
+
+    @Test
+    public void reactorFingerprintsFollowDependencies()
+    {
+        final List<MavenProject> projects = Arrays.asList( app, lib, tool );
+        final Map<String, String> before = GraphFingerprints.fingerprint( projects );
+
+        lib.getModel().getDependencies().get( 0 ).setVersion( "2" );
+        final Map<String, String> after = GraphFingerprints.fingerprint( projects );
+
+        assertFalse( before.get( "org.test:app:1" ).equals( after.get( "org.test:app:1" ) ) );
+        assertFalse( before.get( "org.test:lib:1" ).equals( after.get( "org.test:lib:1" ) ) );
+        assertEquals( before.get( "org.test:tool:1" ), after.get( "org.test:tool:1" ) );
+    }
+
+    @Test
+    public void changedManagementRecollectsNodesSharedWithOtherRoots()
+    {
+        // web and batch both reach common:1 -> leaf:1; web manages leaf and is collected first.
+        repository.put( "org.ext:common:1", Arrays.asList( "org.ext:leaf:1" ) );
+        repository.put( "org.ext:leaf:1", new ArrayList<String>() );
+        repository.put( "org.ext:leaf:2", new ArrayList<String>() );
+        final MavenProject web = project( "web", "org.ext:common:1" );
+        manage( web, "org.ext:leaf:1" );
+        final MavenProject batch = project( "batch", "org.ext:common:1" );
+        final List<MavenProject> projects = Arrays.asList( web, batch );
+
+        resolver.updateGraph( projects, rss, session );
+        web.getDependencyManagement().getDependencies().get( 0 ).setVersion( "2" );
+        final DependencyGraphDelta delta = resolver.updateGraph( projects, rss, session );
+
+        final DependencyGraphDelta full =
+            resolver.updateGraph( projects, rss, new SimpleProjectToolsSession() );
+
+        assertEquals( edges( full.getGraph() ), edges( delta.getGraph() ) );
+        assertTrue( edges( delta.getGraph() ).contains( "org.ext:common:1 -> org.ext:leaf:2" ) );
+        assertTrue( keys( delta.getRemoved() ).contains( "org.ext:leaf:1" ) );
+    }
+
+    private DependencyGraphDelta update()
+    {
+        return resolver.updateGraph( Arrays.asList( app, lib, tool ), rss, session );
+    }
+
+    private MavenProject project( final String artifactId, final String... dependencies )
+    {
+        final Model model = new Model();
+        model.setGroupId( "org.test" );
+        model.setArtifactId( artifactId );
+        model.setVersion( "1" );
+        for ( final String coordinate : dependencies )
+        {
+            final String[] parts = coordinate.split( ":" );
+            final Dependency dependency = new Dependency();
+            dependency.setGroupId( parts[0] );
+            dependency.setArtifactId( parts[1] );
+            dependency.setVersion( parts[2] );
+            model.addDependency( dependency );
+        }
+
+        final MavenProject project = new MavenProject( model );
+        reactor.put( "org.test:" + artifactId, project );
+        return project;
+    }
+
+    /**
+     * Collects from {@link #repository}, except that projects in {@link #reactor} contribute their current
+     * dependencies, the way the workspace reader serves them during a build.
+     */
+    private RepositorySystem stubRepositorySystem()
+    {
+        final InvocationHandler handler = new InvocationHandler()
+        {
+            public Object invoke( final Object proxy, final Method method, final Object[] args )
+            {
+                if ( !"collectDependencies".equals( method.getName() ) )
+                {
+                    throw new UnsupportedOperationException( method.getName() );
+                }
+
+                return collect( (CollectRequest) args[1] );
+            }
+        };
+
+        return (RepositorySystem) Proxy.newProxyInstance( getClass().getClassLoader(),
+                                                           new Class<?>[] { RepositorySystem.class }, handler );
+    }
+
+    private CollectResult collect( final CollectRequest request )
+    {
+        final Map<String, String> managed = new HashMap<String, String>();
+        for ( final org.sonatype.aether.graph.Dependency dependency : request.getManagedDependencies() )
+        {
+            final org.sonatype.aether.artifact.Artifact artifact = dependency.getArtifact();
+            managed.put( artifact.getGroupId() + ':' + artifact.getArtifactId(), artifact.getVersion() );
+        }
+
+        final Set<String> requested = new TreeSet<String>();
+        final DefaultDependencyNode root = new DefaultDependencyNode();
+        for ( final org.sonatype.aether.graph.Dependency dependency : request.getDependencies() )
+        {
+            final org.sonatype.aether.artifact.Artifact artifact = dependency.getArtifact();
+            requested.add( artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getVersion() );
+            root.getChildren().add( node( artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(),
+                                          managed ) );
+        }
+        collected.add( requested );
+
+        final CollectResult result = new CollectResult( request );
+        result.setRoot( root );
+        return result;
+    }
+
+    /**
+     * Transitive dependencies get the version from <code>managed</code> if their groupId:artifactId is in it.
+     */
+    private DependencyNode node( final String groupId, final String artifactId, final String version,
+                                 final Map<String, String> managed )
+    {
+        final DefaultArtifact artifact = new DefaultArtifact( groupId, artifactId, "jar", version );
+        final DefaultDependencyNode node =
+            new DefaultDependencyNode( new org.sonatype.aether.graph.Dependency( artifact, "compile" ) );
+
+        final List<String> children = new ArrayList<String>();
+        final MavenProject project = reactor.get( groupId + ':' + artifactId );
+        if ( project != null )
+        {
+            for ( final Dependency dependency : project.getDependencies() )
+            {
+                children.add( dependency.getGroupId() + ':' + dependency.getArtifactId() + ':'
+                    + dependency.getVersion() );
+            }
+        }
+        else
+        {
+            children.addAll( repository.get( groupId + ':' + artifactId + ':' + version ) );
+        }
+
+        for ( final String child : children )
+        {
+            final String[] parts = child.split( ":" );
+            final String managedVersion = managed.get( parts[0] + ':' + parts[1] );
+            node.getChildren().add( node( parts[0], parts[1], managedVersion == null ? parts[2] : managedVersion,
+                                          managed ) );
+        }
+
+        return node;
+    }
+
+    private static void manage( final MavenProject project, final String coordinate )
+    {
+        final String[] parts = coordinate.split( ":" );
+        final Dependency dependency = new Dependency();
+        dependency.setGroupId( parts[0] );
+        dependency.setArtifactId( parts[1] );
+        dependency.setVersion( parts[2] );
+
+        final DependencyManagement depMgmt = new DependencyManagement();
+        depMgmt.addDependency( dependency );
+        project.getModel().setDependencyManagement( depMgmt );
+    }
+
+    private static Set<String> edges( final DependencyGraph graph )
+    {
+        final Set<String> result = new TreeSet<String>();
+        for ( final DepGraphNode node : graph )
+        {
+            for ( final DepGraphNode child : graph.getChildren( node ) )
+            {
+                result.add( node.getKey() + " -> " + child.getKey() );
+            }
+        }
+
+        return result;
+    }
+
+    private static Set<String> deps( final String... coordinates )
+    {
+        return new TreeSet<String>( Arrays.asList( coordinates ) );
+    }
+
+    private static Set<String> keys( final Set<DepGraphNode> nodes )
+    {
+        final Set<String> result = new TreeSet<String>();
+        for ( final DepGraphNode node : nodes )
+        {
+            result.add( node.getKey() );
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.sonatype.aether.RepositoryCache;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.resolution.ArtifactDescriptorRequest;
+import org.sonatype.aether.resolution.ArtifactDescriptorResult;
+import org.sonatype.aether.util.DefaultRepositoryCache;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+
+public class DepGraphCacheStatsTest
+{
+
+    @Test
+    public void statsArePublishedInRepositoryCache()
+    {
+        final DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+        session.setCache( new DefaultRepositoryCache() );
+        final RepositoryCache cache = session.getCache();
+
+        assertNull( cache.get( session, DepGraphCache.DESCRIPTOR_STATS ) );
+
+        final DepGraphCache pool = new DepGraphCache( session );
+
+        final ArtifactDescriptorRequest request =
+            new ArtifactDescriptorRequest( StubRepository.toArtifact( "org.test:a:1" ),
+                                           Collections.<RemoteRepository> emptyList(), null );
+        final Object key = pool.toKey( request );
+        assertNull( pool.getDescriptor( key, request ) );
+
+        final ArtifactDescriptorResult result = new ArtifactDescriptorResult( request );
+        result.setArtifact( request.getArtifact() );
+        pool.putDescriptor( key, result );
+        pool.getDescriptor( key, request );
+
+        final DepGraphCacheStats stats = (DepGraphCacheStats) cache.get( session, DepGraphCache.DESCRIPTOR_STATS );
+        assertEquals( 1, stats.getHits() );
+        assertEquals( 1, stats.getMisses() );
+        assertSame( stats, DepGraphCache.getDescriptorStats( session ) );
+        assertSame( cache.get( session, DepGraphCache.CONSTRAINT_STATS ), DepGraphCache.getConstraintStats( session ) );
+
+        // a second pool in the same session shares the cache and its counters.
+        new DepGraphCache( session ).getDescriptor( key, request );
+        assertEquals( 2, stats.getHits() );
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.graph.Dependency;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+
+public class DependencyPathTest
+{
+
+    private SlimDepGraph graph;
+
+    private DependencyPath path;
+
+    @Before
+    public void setUp()
+    {
+        graph = new SlimDepGraph( new DefaultRepositorySystemSession() );
+        path = new DependencyPath();
+    }
+
+    @Test
+    public void popReturnsEdgesInReverseOrder()
+    {
+        final List<SlimDependencyEdge> pushed = new ArrayList<SlimDependencyEdge>();
+        for ( int i = 0; i < 50; i++ )
+        {
+            final SlimDependencyEdge edge = edge( "org.test:a" + i + ":1" );
+            pushed.add( edge );
+            path.push( edge );
+            assertSame( edge, path.peek() );
+            assertEquals( i + 1, path.size() );
+        }
+
+        for ( int i = pushed.size() - 1; i >= 0; i-- )
+        {
+            assertSame( pushed.get( i ), path.pop() );
+            assertEquals( i, path.size() );
+        }
+    }
+
+    @Test
+    public void findsArtifactOnThePathUntilItIsPopped()
+    {
+        final SlimDependencyEdge a = edge( "org.test:a:1" );
+        path.push( a );
+        path.push( edge( "org.test:b:1" ) );
+
+        assertSame( a, path.findDuplicate( StubRepository.toArtifact( "org.test:a:1" ) ) );
+        assertNull( path.findDuplicate( StubRepository.toArtifact( "org.test:a:2" ) ) );
+        assertNull( path.findDuplicate( StubRepository.toArtifact( "org.test:c:1" ) ) );
+
+        path.pop();
+        assertSame( a, path.findDuplicate( StubRepository.toArtifact( "org.test:a:1" ) ) );
+
+        path.pop();
+        assertNull( path.findDuplicate( StubRepository.toArtifact( "org.test:a:1" ) ) );
+    }
+
+    @Test
+    public void coordinatesIncludeExtensionAndClassifier()
+    {
+        path.push( edge( "org.test:a:1" ) );
+
+        assertNull( path.findDuplicate( new DefaultArtifact( "org.test", "a", "", "pom", "1" ) ) );
+        assertNull( path.findDuplicate( new DefaultArtifact( "org.test", "a", "tests", "jar", "1" ) ) );
+    }
+
+    @Test
+    public void snapshotMatchesOnBaseVersion()
+    {
+        final SlimDependencyEdge snapshot = edge( "org.test:a:1.0-20110101.120000-1" );
+        path.push( snapshot );
+
+        assertSame( snapshot, path.findDuplicate( StubRepository.toArtifact( "org.test:a:1.0-SNAPSHOT" ) ) );
+    }
+
+    @Test
+    public void poppingADuplicateUncoversTheOneBelow()
+    {
+        final SlimDependencyEdge lower = edge( "org.test:a:1" );
+        final SlimDependencyEdge upper = edge( "org.test:a:1" );
+        path.push( lower );
+        path.push( edge( "org.test:b:1" ) );
+        path.push( upper );
+
+        assertSame( upper, path.findDuplicate( StubRepository.toArtifact( "org.test:a:1" ) ) );
+
+        path.pop();
+        assertSame( lower, path.findDuplicate( StubRepository.toArtifact( "org.test:a:1" ) ) );
+
+        path.pop();
+        path.pop();
+        assertNull( path.findDuplicate( StubRepository.toArtifact( "org.test:a:1" ) ) );
+        assertEquals( 0, path.size() );
+    }
+
+    @Test
+    public void edgesBelowAnUnknownRootAreNotCycles()
+    {
+        final SlimDependencyEdge below = edge( "org.test:a:1" );
+        path.push( below );
+        final SlimDependencyEdge root =
+            new SlimDependencyEdge( new SlimDependencyNode( SlimDependencyNode.UNKNOWN_ROOT_ID, graph ), graph );
+        path.push( root );
+
+        assertNull( path.findDuplicate( StubRepository.toArtifact( "org.test:a:1" ) ) );
+
+        final SlimDependencyEdge above = edge( "org.test:a:1" );
+        path.push( above );
+        assertSame( above, path.findDuplicate( StubRepository.toArtifact( "org.test:a:1" ) ) );
+
+        path.pop();
+        assertNull( path.findDuplicate( StubRepository.toArtifact( "org.test:a:1" ) ) );
+
+        assertSame( root, path.pop() );
+        assertSame( below, path.findDuplicate( StubRepository.toArtifact( "org.test:a:1" ) ) );
+    }
+
+    private SlimDependencyEdge edge( final String coordinate )
+    {
+        final SlimDependencyNode from = new SlimDependencyNode( "from:" + coordinate, graph );
+        final SlimDependencyNode to = new SlimDependencyNode( coordinate, graph );
+        final SlimDependencyEdge edge = new SlimDependencyEdge( from, to, graph );
+        edge.setDependency( new Dependency( StubRepository.toArtifact( coordinate ), "compile" ) );
+
+        return edge;
+    }
+
+}
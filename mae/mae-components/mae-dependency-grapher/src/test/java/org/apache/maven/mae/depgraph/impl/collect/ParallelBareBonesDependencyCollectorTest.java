@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.mae.project.session.ProjectToolsSession;
+import org.apache.maven.mae.project.session.SimpleProjectToolsSession;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonatype.aether.collection.CollectRequest;
+import org.sonatype.aether.collection.CollectResult;
+import org.sonatype.aether.graph.Dependency;
+import org.sonatype.aether.graph.DependencyNode;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.util.DefaultRepositoryCache;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+import org.sonatype.aether.util.graph.manager.ClassicDependencyManager;
+import org.sonatype.aether.util.graph.selector.AndDependencySelector;
+import org.sonatype.aether.util.graph.selector.ExclusionDependencySelector;
+import org.sonatype.aether.util.graph.selector.OptionalDependencySelector;
+import org.sonatype.aether.util.graph.selector.ScopeDependencySelector;
+import org.sonatype.aether.util.graph.transformer.NoopDependencyGraphTransformer;
+import org.sonatype.aether.util.graph.traverser.FatArtifactTraverser;
+
+public class ParallelBareBonesDependencyCollectorTest
+{
+
+    private StubRepository repository;
+
+    @Before
+    public void setUp()
+    {
+        repository = new StubRepository();
+
+        // a excludes y, and reaches b through m; c reaches b directly. The serial collector expands b below a,
+        // where y is excluded, and only links b below c. b's dependency on z is managed from the root.
+        repository.artifact( "org.test:root:1" ).dependsOn( "org.test:a:1", "org.test:y" ).dependsOn( "org.test:c:1" )
+                  .manages( "org.test:z:2" );
+        repository.artifact( "org.test:a:1" ).dependsOn( "org.test:m:1" );
+        repository.artifact( "org.test:m:1" ).dependsOn( "org.test:b:1" );
+        repository.artifact( "org.test:c:1" ).dependsOn( "org.test:b:1" );
+        repository.artifact( "org.test:b:1" ).dependsOn( "org.test:y:1" ).dependsOn( "org.test:z:1" );
+        repository.artifact( "org.test:y:1" );
+        repository.artifact( "org.test:z:1" );
+        repository.artifact( "org.test:z:2" );
+    }
+
+    @Test
+    public void parallelGraphMatchesSerialGraph()
+        throws Exception
+    {
+        final String serial = dump( collect( new BareBonesDependencyCollector(), 4 ) );
+        final String parallel = dump( collect( new ParallelBareBonesDependencyCollector(), 4 ) );
+
+        assertEquals( serial, parallel );
+
+        // the fixture only discriminates if the exclusion and the management actually applied.
+        assertFalse( serial, serial.contains( "org.test:y" ) );
+        assertTrue( serial, serial.contains( "org.test:z:jar:2 (compile, managed from 1)" ) );
+    }
+
+    @Test
+    public void failedFetchIsRetried()
+        throws Exception
+    {
+        repository.failOnce( "org.test:c:1" );
+
+        final CollectResult result = collect( new ParallelBareBonesDependencyCollector(), 4 );
+
+        assertTrue( result.getExceptions().toString(), result.getExceptions().isEmpty() );
+        assertEquals( dump( collect( new BareBonesDependencyCollector(), 4 ) ), dump( result ) );
+    }
+
+    private CollectResult collect( final BareBonesDependencyCollector collector, final int threads )
+        throws Exception
+    {
+        collector.setRemoteRepositoryManager( repository );
+        collector.setArtifactDescriptorReader( repository );
+        collector.setVersionRangeResolver( repository );
+
+        final ProjectToolsSession toolsSession = new SimpleProjectToolsSession().setResolveThreads( threads );
+
+        final DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+        session.setDependencySelector( new AndDependencySelector( new ScopeDependencySelector( "test", "provided" ),
+                                                                  new OptionalDependencySelector(),
+                                                                  new ExclusionDependencySelector() ) );
+        session.setDependencyManager( new ClassicDependencyManager() );
+        session.setDependencyTraverser( new FatArtifactTraverser() );
+        session.setDependencyGraphTransformer( NoopDependencyGraphTransformer.INSTANCE );
+        session.setCache( new DefaultRepositoryCache() );
+        session.getData().set( ProjectToolsSession.SESSION_KEY, toolsSession );
+
+        final CollectRequest request =
+            new CollectRequest( new Dependency( StubRepository.toArtifact( "org.test:root:1" ), "compile" ),
+                                Collections.<RemoteRepository> emptyList() );
+
+        return collector.collectDependencies( session, request );
+    }
+
+    private static String dump( final CollectResult result )
+    {
+        final StringBuilder sb = new StringBuilder();
+        dump( result.getRoot(), "", new HashSet<String>(), sb );
+        return sb.toString();
+    }
+
+    /**
+     * Children are sorted, since the order of a node's edges in the graph isn't part of the result.
+     */
+    private static void dump( final DependencyNode node, final String indent, final Set<String> path,
+                              final StringBuilder sb )
+    {
+        final Dependency dependency = node.getDependency();
+        final String id = dependency == null ? "(root)" : dependency.getArtifact().toString();
+        sb.append( indent ).append( id );
+        if ( dependency != null )
+        {
+            sb.append( " (" ).append( dependency.getScope() );
+            if ( node.getPremanagedVersion() != null )
+            {
+                sb.append( ", managed from " ).append( node.getPremanagedVersion() );
+            }
+            sb.append( ')' );
+        }
+        sb.append( '\n' );
+
+        if ( !path.add( id ) )
+        {
+            return;
+        }
+
+        final List<String> children = new ArrayList<String>();
+        for ( final DependencyNode child : node.getChildren() )
+        {
+            final StringBuilder childSb = new StringBuilder();
+            dump( child, indent + "  ", path, childSb );
+            children.add( childSb.toString() );
+        }
+        Collections.sort( children );
+        for ( final String child : children )
+        {
+            sb.append( child );
+        }
+
+        path.remove( id );
+    }
+
+}
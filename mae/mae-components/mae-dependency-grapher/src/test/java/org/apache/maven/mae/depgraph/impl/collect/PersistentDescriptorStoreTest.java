@@ -0,0 +1,438 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.impl.internal.SimpleLocalRepositoryManager;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.repository.RepositoryPolicy;
+import org.sonatype.aether.resolution.ArtifactDescriptorRequest;
+import org.sonatype.aether.resolution.ArtifactDescriptorResult;
+import org.sonatype.aether.resolution.VersionRangeRequest;
+import org.sonatype.aether.resolution.VersionRangeResult;
+import org.sonatype.aether.util.DefaultRepositoryCache;
+import org.sonatype.aether.util.DefaultRepositorySystemSession;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+import org.sonatype.aether.util.version.GenericVersionScheme;
+import org.sonatype.aether.version.Version;
+
+public class PersistentDescriptorStoreTest
+{
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File localRepository;
+
+    private File storeFile;
+
+    private DefaultRepositorySystemSession session;
+
+    private PersistentDescriptorStore store;
+
+    @Before
+    public void setUp()
+        throws Exception
+    {
+        localRepository = temp.newFolder( "repository" );
+        storeFile = new File( temp.getRoot(), "store/descriptors.bin" );
+        reopen();
+    }
+
+    @After
+    public void tearDown()
+    {
+        PersistentDescriptorStore.clear( session );
+    }
+
+    @Test
+    public void descriptorIsServedInTheNextSession()
+        throws Exception
+    {
+        pom( "org.test", "a", "1", "" );
+        store.putDescriptor( session, descriptor( "org.test:a:1", "org.test:b:2" ) );
+
+        reopen();
+
+        final ArtifactDescriptorResult result = store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) );
+        assertNotNull( result );
+        assertEquals( 1, result.getDependencies().size() );
+        assertEquals( "org.test:b:jar:2", result.getDependencies().get( 0 ).getArtifact().toString() );
+    }
+
+    @Test
+    public void changedPomInvalidatesDescriptor()
+        throws Exception
+    {
+        pom( "org.test", "a", "1", "" );
+        store.putDescriptor( session, descriptor( "org.test:a:1", "org.test:b:2" ) );
+
+        reopen();
+        pom( "org.test", "a", "1", "<description>changed</description>" );
+
+        assertNull( store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) ) );
+    }
+
+    @Test
+    public void changedParentInvalidatesDescriptor()
+        throws Exception
+    {
+        pom( "org.test", "parent", "1", "" );
+        pom( "org.test", "a", "1", parent( "org.test", "parent", "1" ) );
+        store.putDescriptor( session, descriptor( "org.test:a:1", "org.test:b:2" ) );
+
+        reopen();
+        assertNotNull( store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) ) );
+
+        pom( "org.test", "parent", "1", "<description>changed</description>" );
+        assertNull( store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) ) );
+    }
+
+    @Test
+    public void changedImportInvalidatesDescriptor()
+        throws Exception
+    {
+        // the import's version comes from a property of the parent.
+        pom( "org.test", "parent", "1", "<properties><bom.version>3</bom.version></properties>" );
+        pom( "org.test", "bom", "3", "" );
+        pom( "org.test", "a", "1", parent( "org.test", "parent", "1" )
+            + "<dependencyManagement><dependencies><dependency><groupId>org.test</groupId>"
+            + "<artifactId>bom</artifactId><version>${bom.version}</version><type>pom</type><scope>import</scope>"
+            + "</dependency></dependencies></dependencyManagement>" );
+        store.putDescriptor( session, descriptor( "org.test:a:1", "org.test:b:2" ) );
+
+        reopen();
+        assertNotNull( store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) ) );
+
+        pom( "org.test", "bom", "3", "<description>changed</description>" );
+        assertNull( store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) ) );
+    }
+
+    @Test
+    public void missingImportIsNotPersisted()
+        throws Exception
+    {
+        pom( "org.test", "a", "1", "<dependencyManagement><dependencies><dependency><groupId>org.test</groupId>"
+            + "<artifactId>bom</artifactId><version>3</version><type>pom</type><scope>import</scope>"
+            + "</dependency></dependencies></dependencyManagement>" );
+        store.putDescriptor( session, descriptor( "org.test:a:1", "org.test:b:2" ) );
+
+        assertEquals( 0, store.size() );
+    }
+
+    @Test
+    public void profileActivationInputsAreFingerprinted()
+        throws Exception
+    {
+        pom( "org.test", "a", "1", "<profiles><profile><id>p</id><activation><property><name>flavor</name>"
+            + "</property></activation></profile></profiles>" );
+        session.setUserProperty( "flavor", "vanilla" );
+        store.putDescriptor( session, descriptor( "org.test:a:1", "org.test:b:2" ) );
+
+        reopen();
+        session.setUserProperty( "flavor", "chocolate" );
+        assertNull( store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) ) );
+
+        session.setUserProperty( "flavor", "vanilla" );
+        assertNotNull( store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) ) );
+    }
+
+    @Test
+    public void damagedTailIsDropped()
+        throws Exception
+    {
+        pom( "org.test", "a", "1", "" );
+        pom( "org.test", "c", "1", "" );
+        store.putDescriptor( session, descriptor( "org.test:a:1", "org.test:b:2" ) );
+        store.putDescriptor( session, descriptor( "org.test:c:1", "org.test:b:2" ) );
+        PersistentDescriptorStore.clear( session );
+
+        // flip a byte of the last entry's checksum.
+        final long length = storeFile.length();
+        final RandomAccessFile raf = new RandomAccessFile( storeFile, "rw" );
+        try
+        {
+            raf.seek( length - 1 );
+            final int b = raf.read();
+            raf.seek( length - 1 );
+            raf.write( b ^ 0xff );
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        reopen();
+        assertNotNull( store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) ) );
+        assertNull( store.getDescriptor( session, descriptorRequest( "org.test:c:1" ) ) );
+        assertTrue( storeFile.length() < length );
+
+        // and the file is still usable.
+        store.putDescriptor( session, descriptor( "org.test:c:1", "org.test:b:2" ) );
+        reopen();
+        assertNotNull( store.getDescriptor( session, descriptorRequest( "org.test:c:1" ) ) );
+    }
+
+    @Test
+    public void supersededEntriesAreCompactedOnOpen()
+        throws Exception
+    {
+        pom( "org.test", "a", "1", "" );
+        store.putDescriptor( session, descriptor( "org.test:a:1", "org.test:b:2" ) );
+        pom( "org.test", "a", "1", "<description>changed</description>" );
+        store.putDescriptor( session, descriptor( "org.test:a:1", "org.test:b:3" ) );
+        PersistentDescriptorStore.clear( session );
+
+        final long length = storeFile.length();
+        reopen();
+
+        assertTrue( storeFile.length() < length );
+        assertEquals( 1, store.size() );
+
+        final ArtifactDescriptorResult result = store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) );
+        assertNotNull( result );
+        assertEquals( "org.test:b:jar:3", result.getDependencies().get( 0 ).getArtifact().toString() );
+    }
+
+    @Test
+    public void versionRangeFollowsUpdatePolicy()
+        throws Exception
+    {
+        FileUtils.writeStringToFile( new File( localRepository, "org/test/b/maven-metadata-central.xml" ),
+                                     "<metadata/>" );
+
+        final RemoteRepository never = repository( RepositoryPolicy.UPDATE_POLICY_NEVER );
+        store.putConstraint( session, range( never, "[1,3)", "1", "2" ) );
+
+        reopen();
+        final VersionRangeResult result = store.getConstraint( session, rangeRequest( never, "[1,3)" ) );
+        assertNotNull( result );
+        assertEquals( 2, result.getVersions().size() );
+
+        // the same range, resolved against a repository that must be checked every time.
+        final RemoteRepository always = repository( RepositoryPolicy.UPDATE_POLICY_ALWAYS );
+        store.putConstraint( session, range( always, "[1,3)", "1", "2" ) );
+
+        reopen();
+        assertNull( store.getConstraint( session, rangeRequest( always, "[1,3)" ) ) );
+
+        session.setOffline( true );
+        assertNotNull( store.getConstraint( session, rangeRequest( always, "[1,3)" ) ) );
+    }
+
+    @Test
+    public void warmReadDoesNotParsePoms()
+        throws Exception
+    {
+        pom( "org.test", "parent", "1", "" );
+        pom( "org.test", "a", "1", parent( "org.test", "parent", "1" ) );
+        store.putDescriptor( session, descriptor( "org.test:a:1", "org.test:b:2" ) );
+
+        reopen();
+
+        // garbage of the same size and timestamp: only a parse would notice.
+        final File pom = new File( localRepository, "org/test/a/1/a-1.pom" );
+        final long lastModified = pom.lastModified();
+        final char[] garbage = new char[(int) pom.length()];
+        Arrays.fill( garbage, 'x' );
+        FileUtils.writeStringToFile( pom, new String( garbage ), "UTF-8" );
+        pom.setLastModified( lastModified );
+
+        assertNotNull( store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) ) );
+
+        pom( "org.test", "parent", "1", "<description>changed</description>" );
+        assertNull( store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) ) );
+    }
+
+    @Test
+    public void sessionsInOneJvmShareTheStore()
+        throws Exception
+    {
+        final DefaultRepositorySystemSession other = newSession();
+        final PersistentDescriptorStore shared = PersistentDescriptorStore.get( other );
+        assertSame( store, shared );
+
+        pom( "org.test", "a", "1", "" );
+        store.putDescriptor( session, descriptor( "org.test:a:1", "org.test:b:2" ) );
+        assertNotNull( shared.getDescriptor( other, descriptorRequest( "org.test:a:1" ) ) );
+
+        // the first session ending leaves the file open for the other one.
+        PersistentDescriptorStore.clear( session );
+        pom( "org.test", "c", "1", "" );
+        shared.putDescriptor( other, descriptor( "org.test:c:1", "org.test:b:2" ) );
+        PersistentDescriptorStore.clear( other );
+
+        reopen();
+        assertTrue( store != shared );
+        assertNotNull( store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) ) );
+        assertNotNull( store.getDescriptor( session, descriptorRequest( "org.test:c:1" ) ) );
+    }
+
+    @Test
+    public void fileLockedInThisJvmIsOpenedReadOnly()
+        throws Exception
+    {
+        pom( "org.test", "a", "1", "" );
+        store.putDescriptor( session, descriptor( "org.test:a:1", "org.test:b:2" ) );
+        PersistentDescriptorStore.clear( session );
+
+        final RandomAccessFile raf = new RandomAccessFile( storeFile, "rw" );
+        try
+        {
+            final FileLock lock = raf.getChannel().lock();
+            try
+            {
+                reopen();
+                assertNotNull( store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) ) );
+
+                pom( "org.test", "c", "1", "" );
+                store.putDescriptor( session, descriptor( "org.test:c:1", "org.test:b:2" ) );
+            }
+            finally
+            {
+                lock.release();
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        reopen();
+        assertNotNull( store.getDescriptor( session, descriptorRequest( "org.test:a:1" ) ) );
+        assertNull( store.getDescriptor( session, descriptorRequest( "org.test:c:1" ) ) );
+    }
+
+    private void reopen()
+    {
+        if ( session != null )
+        {
+            PersistentDescriptorStore.clear( session );
+        }
+
+        session = newSession();
+        store = PersistentDescriptorStore.get( session );
+        assertNotNull( store );
+    }
+
+    private DefaultRepositorySystemSession newSession()
+    {
+        final DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+        session.setLocalRepositoryManager( new SimpleLocalRepositoryManager( localRepository ) );
+        session.setCache( new DefaultRepositoryCache() );
+        session.setConfigProperty( PersistentDescriptorStore.ENABLED_KEY, "true" );
+        session.setConfigProperty( PersistentDescriptorStore.FILE_KEY, storeFile.getPath() );
+
+        return session;
+    }
+
+    /**
+     * (Re)write a POM, making sure its timestamp moves even on file systems with coarse timestamps.
+     */
+    private void pom( final String groupId, final String artifactId, final String version, final String body )
+        throws IOException
+    {
+        final File f =
+            new File( localRepository, groupId.replace( '.', '/' ) + '/' + artifactId + '/' + version + '/'
+                + artifactId + '-' + version + ".pom" );
+        final long previous = f.lastModified();
+
+        FileUtils.writeStringToFile( f, "<project><modelVersion>4.0.0</modelVersion><groupId>" + groupId
+            + "</groupId><artifactId>" + artifactId + "</artifactId><version>" + version + "</version>" + body
+            + "</project>", "UTF-8" );
+
+        if ( previous != 0 )
+        {
+            f.setLastModified( previous + 2000 );
+        }
+    }
+
+    private static String parent( final String groupId, final String artifactId, final String version )
+    {
+        return "<parent><groupId>" + groupId + "</groupId><artifactId>" + artifactId + "</artifactId><version>"
+            + version + "</version></parent>";
+    }
+
+    private static ArtifactDescriptorRequest descriptorRequest( final String coordinate )
+    {
+        return new ArtifactDescriptorRequest( StubRepository.toArtifact( coordinate ),
+                                              Collections.<RemoteRepository> emptyList(), null );
+    }
+
+    private static ArtifactDescriptorResult descriptor( final String coordinate, final String dependency )
+    {
+        final ArtifactDescriptorResult result = new ArtifactDescriptorResult( descriptorRequest( coordinate ) );
+        result.setArtifact( StubRepository.toArtifact( coordinate ) );
+        result.setDependencies( new StubRepository.Descriptor().dependsOn( dependency ).dependencies );
+        return result;
+    }
+
+    private static RemoteRepository repository( final String updatePolicy )
+    {
+        final String checksumPolicy = RepositoryPolicy.CHECKSUM_POLICY_WARN;
+        final RemoteRepository repository = new RemoteRepository( "central", "default", "http://localhost/" );
+        repository.setPolicy( false, new RepositoryPolicy( true, updatePolicy, checksumPolicy ) );
+        repository.setPolicy( true, new RepositoryPolicy( false, updatePolicy, checksumPolicy ) );
+        return repository;
+    }
+
+    private static VersionRangeRequest rangeRequest( final RemoteRepository repository, final String range )
+    {
+        final Artifact artifact = new DefaultArtifact( "org.test", "b", "jar", range );
+        return new VersionRangeRequest( artifact, Collections.singletonList( repository ), null );
+    }
+
+    private static VersionRangeResult range( final RemoteRepository repository, final String range,
+                                             final String... versions )
+        throws Exception
+    {
+        final GenericVersionScheme scheme = new GenericVersionScheme();
+        final VersionRangeResult result = new VersionRangeResult( rangeRequest( repository, range ) );
+        result.setVersionConstraint( scheme.parseVersionConstraint( range ) );
+        for ( final String v : versions )
+        {
+            final Version version = scheme.parseVersion( v );
+            result.addVersion( version );
+            result.setRepository( version, repository );
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class StripedLRUCacheTest
+{
+
+    @Test
+    public void boundHoldsForWholeCache()
+    {
+        // more segments than entries allowed: a per-segment bound would let up to 16 entries in.
+        final StripedLRUCache<Integer, String> cache = new StripedLRUCache<Integer, String>( "test", 10, 16 );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            cache.put( i, "v" + i );
+            assertTrue( "size after put " + i + ": " + cache.size(), cache.size() <= 10 );
+        }
+
+        assertEquals( 10, cache.size() );
+        assertEquals( 990, cache.getStats().getEvictions() );
+    }
+
+    @Test
+    public void replacingAnEntryDoesNotGrowTheCache()
+    {
+        final StripedLRUCache<Integer, String> cache = new StripedLRUCache<Integer, String>( "test", 2, 1 );
+        cache.put( 1, "a" );
+        cache.put( 1, "b" );
+        cache.put( 2, "c" );
+
+        assertEquals( 2, cache.size() );
+        assertEquals( "b", cache.get( 1 ) );
+        assertEquals( 0, cache.getStats().getEvictions() );
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed()
+    {
+        final StripedLRUCache<String, String> cache = new StripedLRUCache<String, String>( "test", 3, 1 );
+        cache.put( "a", "a" );
+        cache.put( "b", "b" );
+        cache.put( "c", "c" );
+        cache.get( "a" );
+        cache.put( "d", "d" );
+
+        assertNull( cache.get( "b" ) );
+        assertEquals( "a", cache.get( "a" ) );
+        assertEquals( "c", cache.get( "c" ) );
+        assertEquals( "d", cache.get( "d" ) );
+    }
+
+    @Test
+    public void boundHoldsUnderConcurrentPuts()
+        throws Exception
+    {
+        final StripedLRUCache<Integer, Integer> cache = new StripedLRUCache<Integer, Integer>( "test", 100 );
+
+        final ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for ( int t = 0; t < 8; t++ )
+            {
+                final int offset = t * 10000;
+                futures.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        for ( int i = 0; i < 10000; i++ )
+                        {
+                            cache.put( offset + i, i );
+                            cache.get( offset + i / 2 );
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+            for ( final Future<Void> future : futures )
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertEquals( 100, cache.size() );
+        assertEquals( 80000 - 100, cache.getStats().getEvictions() );
+    }
+
+    @Test
+    public void countsHitsAndMisses()
+    {
+        final StripedLRUCache<String, String> cache = new StripedLRUCache<String, String>( "test", 10 );
+        cache.put( "a", "a" );
+        cache.get( "a" );
+        cache.get( "a" );
+        cache.get( "a" );
+        cache.get( "b" );
+
+        final DepGraphCacheStats stats = cache.getStats();
+        assertEquals( 3, stats.getHits() );
+        assertEquals( 1, stats.getMisses() );
+        assertEquals( 0.75, stats.getHitRate(), 0.0001 );
+        assertEquals( "test", stats.getName() );
+        assertEquals( 10, stats.getMaxSize() );
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.depgraph.impl.collect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.graph.Dependency;
+import org.sonatype.aether.graph.Exclusion;
+import org.sonatype.aether.impl.ArtifactDescriptorReader;
+import org.sonatype.aether.impl.RemoteRepositoryManager;
+import org.sonatype.aether.impl.VersionRangeResolver;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.repository.RepositoryPolicy;
+import org.sonatype.aether.resolution.ArtifactDescriptorException;
+import org.sonatype.aether.resolution.ArtifactDescriptorRequest;
+import org.sonatype.aether.resolution.ArtifactDescriptorResult;
+import org.sonatype.aether.resolution.VersionRangeRequest;
+import org.sonatype.aether.resolution.VersionRangeResolutionException;
+import org.sonatype.aether.resolution.VersionRangeResult;
+import org.sonatype.aether.spi.connector.RepositoryConnector;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+import org.sonatype.aether.util.version.GenericVersionScheme;
+import org.sonatype.aether.version.InvalidVersionSpecificationException;
+import org.sonatype.aether.version.VersionScheme;
+
+/**
+ * In-memory repository for collector tests: descriptors are declared with {@link #artifact(String)}, and every
+ * version is its own range.
+ */
+final class StubRepository
+    implements VersionRangeResolver, ArtifactDescriptorReader, RemoteRepositoryManager
+{
+
+    private final VersionScheme versionScheme = new GenericVersionScheme();
+
+    private final Map<String, Descriptor> descriptors = new HashMap<String, Descriptor>();
+
+    private final Set<String> failOnce = Collections.synchronizedSet( new HashSet<String>() );
+
+    final AtomicInteger rangeCalls = new AtomicInteger();
+
+    final AtomicInteger descriptorCalls = new AtomicInteger();
+
+    /**
+     * Declare the descriptor of <code>groupId:artifactId:version</code>.
+     */
+    Descriptor artifact( final String coordinate )
+    {
+        final Descriptor descriptor = new Descriptor();
+        descriptors.put( coordinate, descriptor );
+        return descriptor;
+    }
+
+    /**
+     * Make the next descriptor read of <code>groupId:artifactId:version</code> fail.
+     */
+    void failOnce( final String coordinate )
+    {
+        failOnce.add( coordinate );
+    }
+
+    static Artifact toArtifact( final String coordinate )
+    {
+        final String[] parts = coordinate.split( ":" );
+        return new DefaultArtifact( parts[0], parts[1], "jar", parts[2] );
+    }
+
+    private static String toCoordinate( final Artifact artifact )
+    {
+        return artifact.getGroupId() + ':' + artifact.getArtifactId() + ':' + artifact.getVersion();
+    }
+
+    @Override
+    public VersionRangeResult resolveVersionRange( final RepositorySystemSession session,
+                                                   final VersionRangeRequest request )
+        throws VersionRangeResolutionException
+    {
+        rangeCalls.incrementAndGet();
+
+        final VersionRangeResult result = new VersionRangeResult( request );
+        try
+        {
+            final String version = request.getArtifact().getVersion();
+            result.setVersionConstraint( versionScheme.parseVersionConstraint( version ) );
+            if ( descriptors.containsKey( toCoordinate( request.getArtifact() ) ) )
+            {
+                result.addVersion( versionScheme.parseVersion( version ) );
+            }
+        }
+        catch ( final InvalidVersionSpecificationException e )
+        {
+            throw new VersionRangeResolutionException( result, e.getMessage() );
+        }
+
+        return result;
+    }
+
+    @Override
+    public ArtifactDescriptorResult readArtifactDescriptor( final RepositorySystemSession session,
+                                                            final ArtifactDescriptorRequest request )
+        throws ArtifactDescriptorException
+    {
+        descriptorCalls.incrementAndGet();
+
+        final ArtifactDescriptorResult result = new ArtifactDescriptorResult( request );
+        final String coordinate = toCoordinate( request.getArtifact() );
+        final Descriptor descriptor = descriptors.get( coordinate );
+        if ( descriptor == null || failOnce.remove( coordinate ) )
+        {
+            throw new ArtifactDescriptorException( result, "Cannot read descriptor of: " + coordinate );
+        }
+
+        result.setArtifact( request.getArtifact() );
+        result.setDependencies( descriptor.dependencies );
+        result.setManagedDependencies( descriptor.managedDependencies );
+        result.setRepositories( new ArrayList<RemoteRepository>() );
+        return result;
+    }
+
+    @Override
+    public List<RemoteRepository> aggregateRepositories( final RepositorySystemSession session,
+                                                         final List<RemoteRepository> dominantRepositories,
+                                                         final List<RemoteRepository> recessiveRepositories,
+                                                         final boolean recessiveIsRaw )
+    {
+        return dominantRepositories;
+    }
+
+    @Override
+    public RepositoryPolicy getPolicy( final RepositorySystemSession session, final RemoteRepository repository,
+                                       final boolean releases, final boolean snapshots )
+    {
+        return new RepositoryPolicy();
+    }
+
+    @Override
+    public RepositoryConnector getRepositoryConnector( final RepositorySystemSession session,
+                                                      final RemoteRepository repository )
+    {
+        throw new UnsupportedOperationException( "Nothing is downloaded from a stub repository" );
+    }
+
+    static final class Descriptor
+    {
+        final List<Dependency> dependencies = new ArrayList<Dependency>();
+
+        final List<Dependency> managedDependencies = new ArrayList<Dependency>();
+
+        /**
+         * Add a compile dependency, excluding the given <code>groupId:artifactId</code>s.
+         */
+        Descriptor dependsOn( final String coordinate, final String... excluded )
+        {
+            final List<Exclusion> exclusions = new ArrayList<Exclusion>();
+            for ( final String key : Arrays.asList( excluded ) )
+            {
+                final String[] parts = key.split( ":" );
+                exclusions.add( new Exclusion( parts[0], parts[1], "", "jar" ) );
+            }
+
+            dependencies.add( new Dependency( toArtifact( coordinate ), "compile", false, exclusions ) );
+            return this;
+        }
+
+        Descriptor manages( final String coordinate )
+        {
+            managedDependencies.add( new Dependency( toArtifact( coordinate ), null ) );
+            return this;
+        }
+    }
+
+}
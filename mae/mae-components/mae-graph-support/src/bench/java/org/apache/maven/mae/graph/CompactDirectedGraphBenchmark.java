@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.graph;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.uci.ics.jung.graph.Graph;
+
+/**
+ * Building and walking a dependency-shaped graph with {@link CompactDirectedGraph} and with the JUNG-backed
+ * {@link SimpleDirectedGraph}. Vertices are artifact-like string ids; each has a few edges to vertices created after
+ * it, plus some duplicate connects, as collecting a real dependency graph produces.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class CompactDirectedGraphBenchmark
+{
+
+    private static final int OUT_DEGREE = 5;
+
+    private static final DirectionalEdge.SimpleDirectionalEdgeFactory<String> FACTORY =
+        new DirectionalEdge.SimpleDirectionalEdgeFactory<String>();
+
+    @Param( { "1000", "20000" } )
+    public int vertices;
+
+    private String[] ids;
+
+    private int[] from;
+
+    private int[] to;
+
+    private Graph<String, DirectionalEdge<String>> compactView;
+
+    private Graph<String, DirectionalEdge<String>> jungView;
+
+    @Setup
+    public void setUp()
+    {
+        ids = new String[vertices];
+        for ( int i = 0; i < vertices; i++ )
+        {
+            ids[i] = "org.bench.group" + ( i % 50 ) + ":artifact-" + i + ":jar:1." + ( i % 7 );
+        }
+
+        final Random random = new Random( 42 );
+        final int connects = ( vertices - 1 ) * OUT_DEGREE;
+        from = new int[connects];
+        to = new int[connects];
+        for ( int c = 0; c < connects; c++ )
+        {
+            final int f = c / OUT_DEGREE;
+            from[c] = f;
+            to[c] = f + 1 + random.nextInt( Math.min( vertices - f - 1, 200 ) );
+        }
+
+        compactView = buildCompact().getManagedGraph();
+        jungView = buildJung().getManagedGraph();
+    }
+
+    @Benchmark
+    public CompactDirectedGraph<String, DirectionalEdge<String>> buildCompact()
+    {
+        final CompactDirectedGraph<String, DirectionalEdge<String>> graph =
+            new CompactDirectedGraph<String, DirectionalEdge<String>>( FACTORY );
+        for ( int c = 0; c < from.length; c++ )
+        {
+            graph.connect( ids[from[c]], ids[to[c]] );
+        }
+
+        return graph.freeze();
+    }
+
+    @Benchmark
+    public SimpleDirectedGraph<String> buildJung()
+    {
+        final SimpleDirectedGraph<String> graph = new SimpleDirectedGraph<String>();
+        for ( int c = 0; c < from.length; c++ )
+        {
+            graph.connect( ids[from[c]], ids[to[c]] );
+        }
+
+        return graph;
+    }
+
+    @Benchmark
+    public long walkCompact()
+    {
+        return walk( compactView );
+    }
+
+    @Benchmark
+    public long walkJung()
+    {
+        return walk( jungView );
+    }
+
+    /**
+     * Visit the out-edges of every vertex and look up each edge's ends, as a traversal does.
+     */
+    private long walk( final Graph<String, DirectionalEdge<String>> graph )
+    {
+        long sum = 0;
+        for ( final String id : ids )
+        {
+            for ( final DirectionalEdge<String> edge : graph.getOutEdges( id ) )
+            {
+                sum += graph.getDest( edge ).length() + graph.inDegree( edge.getTo() );
+            }
+        }
+
+        return sum;
+    }
+
+}
@@ -0,0 +1,731 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.graph;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.mae.graph.DirectionalEdge.DirectionalEdgeFactory;
+
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.util.EdgeType;
+import edu.uci.ics.jung.graph.util.Pair;
+
+/**
+ * Memory-efficient alternative to {@link DirectedGraph}. Vertices are mapped to int ids, and edges are kept in
+ * compressed-sparse-row form: one array of edge ids per direction, sliced by per-vertex offset arrays. Apart from the
+ * edge instances themselves (which the {@link Graph} API has to hand out) there are no per-edge objects or per-vertex
+ * collections. Vertex lookups and edge de-duplication use open-addressing tables of primitives, so building the graph
+ * doesn't box either.
+ * <p>
+ * The graph has two phases. While building, {@link #connect(Object, Object)} appends to growable arrays; this phase is
+ * not thread-safe. The first call to {@link #freeze()} or {@link #getManagedGraph()} sorts the edges into CSR form,
+ * after which the graph is read-only. The read-only view implements JUNG's {@link Graph}, so it works with
+ * {@link org.apache.maven.mae.graph.traverse.GraphWalker} and the existing
+ * {@link org.apache.maven.mae.graph.traverse.GraphVisitor} implementations.
+ * </p>
+ */
+public class CompactDirectedGraph<V, E extends DirectionalEdge<V>>
+    implements GraphManager<V, E>
+{
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final DirectionalEdgeFactory<V, E> edgeFactory;
+
+    private static final long NO_CONNECTION = -1L;
+
+    /**
+     * Open-addressing table of vertex id + 1, keyed by the vertex's hash; 0 marks an empty slot.
+     */
+    private int[] vertexTable = new int[INITIAL_CAPACITY * 2];
+
+    private Object[] vertices = new Object[INITIAL_CAPACITY];
+
+    private int vertexCount;
+
+    private Object[] edges = new Object[INITIAL_CAPACITY];
+
+    private int edgeCount;
+
+    // build phase only.
+    private int[] edgeFrom = new int[INITIAL_CAPACITY];
+
+    private int[] edgeTo = new int[INITIAL_CAPACITY];
+
+    /**
+     * Open-addressing set of <code>(from &lt;&lt; 32) | to</code>; {@link #NO_CONNECTION} marks an empty slot.
+     */
+    private long[] connections = newConnectionTable( INITIAL_CAPACITY * 2 );
+
+    // frozen phase only.
+    private int[] outOffsets;
+
+    private int[] outEdges;
+
+    private int[] inOffsets;
+
+    private int[] inEdges;
+
+    private int[] sources;
+
+    private int[] targets;
+
+    private View view;
+
+    public CompactDirectedGraph( final DirectionalEdgeFactory<V, E> edgeFactory )
+    {
+        this.edgeFactory = edgeFactory;
+    }
+
+    public CompactDirectedGraph<V, E> connect( final V from, final V to )
+    {
+        if ( isFrozen() )
+        {
+            throw new IllegalStateException( "Graph has been frozen; it cannot be modified." );
+        }
+
+        final int f = register( from );
+        final int t = register( to );
+        if ( !addConnection( ( (long) f << 32 ) | ( t & 0xFFFFFFFFL ) ) )
+        {
+            return this;
+        }
+
+        if ( edgeCount == edges.length )
+        {
+            final int capacity = edgeCount * 2;
+            edges = Arrays.copyOf( edges, capacity );
+            edgeFrom = Arrays.copyOf( edgeFrom, capacity );
+            edgeTo = Arrays.copyOf( edgeTo, capacity );
+        }
+
+        edges[edgeCount] = edgeFactory.createEdge( from, to );
+        edgeFrom[edgeCount] = f;
+        edgeTo[edgeCount] = t;
+        edgeCount++;
+
+        return this;
+    }
+
+    public CompactDirectedGraph<V, E> addVertex( final V vertex )
+    {
+        if ( isFrozen() )
+        {
+            throw new IllegalStateException( "Graph has been frozen; it cannot be modified." );
+        }
+
+        register( vertex );
+        return this;
+    }
+
+    /**
+     * Finish the build phase, converting edges to CSR form. This is idempotent; later calls do nothing.
+     */
+    public synchronized CompactDirectedGraph<V, E> freeze()
+    {
+        if ( isFrozen() )
+        {
+            return this;
+        }
+
+        vertices = Arrays.copyOf( vertices, vertexCount );
+        edges = Arrays.copyOf( edges, edgeCount );
+        sources = Arrays.copyOf( edgeFrom, edgeCount );
+        targets = Arrays.copyOf( edgeTo, edgeCount );
+
+        outOffsets = new int[vertexCount + 1];
+        inOffsets = new int[vertexCount + 1];
+        for ( int e = 0; e < edgeCount; e++ )
+        {
+            outOffsets[sources[e] + 1]++;
+            inOffsets[targets[e] + 1]++;
+        }
+
+        for ( int v = 0; v < vertexCount; v++ )
+        {
+            outOffsets[v + 1] += outOffsets[v];
+            inOffsets[v + 1] += inOffsets[v];
+        }
+
+        outEdges = new int[edgeCount];
+        inEdges = new int[edgeCount];
+
+        final int[] outFill = Arrays.copyOf( outOffsets, vertexCount );
+        final int[] inFill = Arrays.copyOf( inOffsets, vertexCount );
+        for ( int e = 0; e < edgeCount; e++ )
+        {
+            outEdges[outFill[sources[e]]++] = e;
+            inEdges[inFill[targets[e]]++] = e;
+        }
+
+        edgeFrom = null;
+        edgeTo = null;
+        connections = null;
+        view = new View();
+
+        return this;
+    }
+
+    public synchronized boolean isFrozen()
+    {
+        return view != null;
+    }
+
+    public int getVertexCount()
+    {
+        return vertexCount;
+    }
+
+    public int getEdgeCount()
+    {
+        return edgeCount;
+    }
+
+    /**
+     * Retrieve a read-only JUNG view of this graph, freezing it first if necessary.
+     */
+    @Override
+    public Graph<V, E> getManagedGraph()
+    {
+        return freeze().view;
+    }
+
+    private int register( final V vertex )
+    {
+        final int slot = vertexSlot( vertexTable, vertex );
+        if ( vertexTable[slot] != 0 )
+        {
+            return vertexTable[slot] - 1;
+        }
+
+        if ( vertexCount == vertices.length )
+        {
+            vertices = Arrays.copyOf( vertices, vertexCount * 2 );
+        }
+
+        final int id = vertexCount++;
+        vertices[id] = vertex;
+        vertexTable[slot] = id + 1;
+
+        // keep the table at most half full.
+        if ( vertexCount * 2 > vertexTable.length )
+        {
+            final int[] table = new int[vertexTable.length * 2];
+            for ( int v = 0; v < vertexCount; v++ )
+            {
+                table[vertexSlot( table, vertices[v] )] = v + 1;
+            }
+            vertexTable = table;
+        }
+
+        return id;
+    }
+
+    private int idOf( final Object vertex )
+    {
+        if ( vertex == null )
+        {
+            return -1;
+        }
+
+        return vertexTable[vertexSlot( vertexTable, vertex )] - 1;
+    }
+
+    /**
+     * @return the slot holding <code>vertex</code> in <code>table</code>, or the empty slot where it would go.
+     */
+    private int vertexSlot( final int[] table, final Object vertex )
+    {
+        final int mask = table.length - 1;
+        int slot = spread( vertex.hashCode() ) & mask;
+        while ( table[slot] != 0 && !vertices[table[slot] - 1].equals( vertex ) )
+        {
+            slot = ( slot + 1 ) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * @return false if the connection was already present.
+     */
+    private boolean addConnection( final long connection )
+    {
+        final int slot = connectionSlot( connections, connection );
+        if ( connections[slot] == connection )
+        {
+            return false;
+        }
+
+        connections[slot] = connection;
+
+        // edgeCount doesn't include this connection yet.
+        if ( ( edgeCount + 1 ) * 2 > connections.length )
+        {
+            final long[] table = newConnectionTable( connections.length * 2 );
+            for ( final long c : connections )
+            {
+                if ( c != NO_CONNECTION )
+                {
+                    table[connectionSlot( table, c )] = c;
+                }
+            }
+            connections = table;
+        }
+
+        return true;
+    }
+
+    private static int connectionSlot( final long[] table, final long connection )
+    {
+        final int mask = table.length - 1;
+        int slot = spread( (int) ( connection ^ ( connection >>> 32 ) ) * 31 ) & mask;
+        while ( table[slot] != NO_CONNECTION && table[slot] != connection )
+        {
+            slot = ( slot + 1 ) & mask;
+        }
+
+        return slot;
+    }
+
+    private static long[] newConnectionTable( final int capacity )
+    {
+        final long[] table = new long[capacity];
+        Arrays.fill( table, NO_CONNECTION );
+        return table;
+    }
+
+    private static int spread( final int hash )
+    {
+        final int h = hash * 0x9E3779B9;
+        return h ^ ( h >>> 16 );
+    }
+
+    private int idOf( final E edge )
+    {
+        if ( edge == null )
+        {
+            return -1;
+        }
+
+        final int from = idOf( edge.getFrom() );
+        if ( from < 0 )
+        {
+            return -1;
+        }
+
+        for ( int i = outOffsets[from]; i < outOffsets[from + 1]; i++ )
+        {
+            if ( edges[outEdges[i]].equals( edge ) )
+            {
+                return outEdges[i];
+            }
+        }
+
+        return -1;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private V vertex( final int id )
+    {
+        return (V) vertices[id];
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private E edge( final int id )
+    {
+        return (E) edges[id];
+    }
+
+    /**
+     * List view over a slice of one of the CSR edge-id arrays (or over all edge ids, if <code>ids</code> is null),
+     * mapped either to edge instances or, given <code>ends</code>, to the vertex at that end of each edge.
+     */
+    private final class Slice<T>
+        extends AbstractList<T>
+    {
+        private final int[] ids;
+
+        private final int start;
+
+        private final int end;
+
+        private final int[] ends;
+
+        Slice( final int[] ids, final int start, final int end, final int[] ends )
+        {
+            this.ids = ids;
+            this.start = start;
+            this.end = end;
+            this.ends = ends;
+        }
+
+        @Override
+        @SuppressWarnings( "unchecked" )
+        public T get( final int index )
+        {
+            if ( index < 0 || start + index >= end )
+            {
+                throw new IndexOutOfBoundsException( "Index: " + index + ", size: " + size() );
+            }
+
+            final int e = ids == null ? start + index : ids[start + index];
+            return (T) ( ends == null ? edges[e] : vertices[ends[e]] );
+        }
+
+        @Override
+        public int size()
+        {
+            return end - start;
+        }
+    }
+
+    private final class View
+        implements Graph<V, E>
+    {
+
+        private Collection<E> outEdges( final int v )
+        {
+            return new Slice<E>( outEdges, outOffsets[v], outOffsets[v + 1], null );
+        }
+
+        private Collection<E> inEdges( final int v )
+        {
+            return new Slice<E>( inEdges, inOffsets[v], inOffsets[v + 1], null );
+        }
+
+        public Collection<E> getInEdges( final V vertex )
+        {
+            final int v = idOf( vertex );
+            return v < 0 ? null : inEdges( v );
+        }
+
+        public Collection<E> getOutEdges( final V vertex )
+        {
+            final int v = idOf( vertex );
+            return v < 0 ? null : outEdges( v );
+        }
+
+        public Collection<V> getPredecessors( final V vertex )
+        {
+            final int v = idOf( vertex );
+            return v < 0 ? null : new Slice<V>( inEdges, inOffsets[v], inOffsets[v + 1], sources );
+        }
+
+        public Collection<V> getSuccessors( final V vertex )
+        {
+            final int v = idOf( vertex );
+            return v < 0 ? null : new Slice<V>( outEdges, outOffsets[v], outOffsets[v + 1], targets );
+        }
+
+        public int inDegree( final V vertex )
+        {
+            final int v = idOf( vertex );
+            return v < 0 ? 0 : inOffsets[v + 1] - inOffsets[v];
+        }
+
+        public int outDegree( final V vertex )
+        {
+            final int v = idOf( vertex );
+            return v < 0 ? 0 : outOffsets[v + 1] - outOffsets[v];
+        }
+
+        public boolean isPredecessor( final V v1, final V v2 )
+        {
+            return findEdge( v1, v2 ) != null;
+        }
+
+        public boolean isSuccessor( final V v1, final V v2 )
+        {
+            return findEdge( v2, v1 ) != null;
+        }
+
+        public int getPredecessorCount( final V vertex )
+        {
+            final Collection<V> predecessors = getPredecessors( vertex );
+            return predecessors == null ? 0 : new HashSet<V>( predecessors ).size();
+        }
+
+        public int getSuccessorCount( final V vertex )
+        {
+            final Collection<V> successors = getSuccessors( vertex );
+            return successors == null ? 0 : new HashSet<V>( successors ).size();
+        }
+
+        public V getSource( final E directedEdge )
+        {
+            final int e = idOf( directedEdge );
+            return e < 0 ? null : vertex( sources[e] );
+        }
+
+        public V getDest( final E directedEdge )
+        {
+            final int e = idOf( directedEdge );
+            return e < 0 ? null : vertex( targets[e] );
+        }
+
+        public boolean isSource( final V vertex, final E edge )
+        {
+            final int e = idOf( edge );
+            return e >= 0 && sources[e] == idOf( vertex );
+        }
+
+        public boolean isDest( final V vertex, final E edge )
+        {
+            final int e = idOf( edge );
+            return e >= 0 && targets[e] == idOf( vertex );
+        }
+
+        public Pair<V> getEndpoints( final E edge )
+        {
+            final int e = idOf( edge );
+            return e < 0 ? null : new Pair<V>( vertex( sources[e] ), vertex( targets[e] ) );
+        }
+
+        public V getOpposite( final V vertex, final E edge )
+        {
+            final int e = idOf( edge );
+            final int v = idOf( vertex );
+            if ( e < 0 || v < 0 )
+            {
+                return null;
+            }
+
+            if ( sources[e] == v )
+            {
+                return vertex( targets[e] );
+            }
+            else if ( targets[e] == v )
+            {
+                return vertex( sources[e] );
+            }
+
+            throw new IllegalArgumentException( vertex + " is not incident to " + edge );
+        }
+
+        public Collection<E> getEdges()
+        {
+            return new Slice<E>( null, 0, edgeCount, null );
+        }
+
+        public Collection<V> getVertices()
+        {
+            final List<V> result = new ArrayList<V>( vertexCount );
+            for ( int v = 0; v < vertexCount; v++ )
+            {
+                result.add( vertex( v ) );
+            }
+
+            return Collections.unmodifiableList( result );
+        }
+
+        public boolean containsVertex( final V vertex )
+        {
+            return idOf( vertex ) > -1;
+        }
+
+        public boolean containsEdge( final E edge )
+        {
+            return idOf( edge ) > -1;
+        }
+
+        public int getEdgeCount()
+        {
+            return edgeCount;
+        }
+
+        public int getVertexCount()
+        {
+            return vertexCount;
+        }
+
+        public Collection<V> getNeighbors( final V vertex )
+        {
+            final int v = idOf( vertex );
+            if ( v < 0 )
+            {
+                return null;
+            }
+
+            final Set<V> neighbors = new HashSet<V>();
+            neighbors.addAll( getPredecessors( vertex ) );
+            neighbors.addAll( getSuccessors( vertex ) );
+
+            return Collections.unmodifiableSet( neighbors );
+        }
+
+        public Collection<E> getIncidentEdges( final V vertex )
+        {
+            final int v = idOf( vertex );
+            if ( v < 0 )
+            {
+                return null;
+            }
+
+            final Set<E> incident = new HashSet<E>();
+            incident.addAll( inEdges( v ) );
+            incident.addAll( outEdges( v ) );
+
+            return Collections.unmodifiableSet( incident );
+        }
+
+        public Collection<V> getIncidentVertices( final E edge )
+        {
+            final Pair<V> endpoints = getEndpoints( edge );
+            if ( endpoints == null )
+            {
+                return null;
+            }
+
+            final List<V> result = new ArrayList<V>( 2 );
+            result.add( endpoints.getFirst() );
+            result.add( endpoints.getSecond() );
+
+            return Collections.unmodifiableList( result );
+        }
+
+        public E findEdge( final V v1, final V v2 )
+        {
+            final int from = idOf( v1 );
+            final int to = idOf( v2 );
+            if ( from < 0 || to < 0 )
+            {
+                return null;
+            }
+
+            for ( int i = outOffsets[from]; i < outOffsets[from + 1]; i++ )
+            {
+                if ( targets[outEdges[i]] == to )
+                {
+                    return edge( outEdges[i] );
+                }
+            }
+
+            return null;
+        }
+
+        public Collection<E> findEdgeSet( final V v1, final V v2 )
+        {
+            final E edge = findEdge( v1, v2 );
+            if ( edge == null )
+            {
+                return Collections.emptySet();
+            }
+
+            return Collections.singleton( edge );
+        }
+
+        public boolean isNeighbor( final V v1, final V v2 )
+        {
+            return findEdge( v1, v2 ) != null || findEdge( v2, v1 ) != null;
+        }
+
+        public boolean isIncident( final V vertex, final E edge )
+        {
+            return isSource( vertex, edge ) || isDest( vertex, edge );
+        }
+
+        public int degree( final V vertex )
+        {
+            return inDegree( vertex ) + outDegree( vertex );
+        }
+
+        public int getNeighborCount( final V vertex )
+        {
+            final Collection<V> neighbors = getNeighbors( vertex );
+            return neighbors == null ? 0 : neighbors.size();
+        }
+
+        public int getIncidentCount( final E edge )
+        {
+            final Pair<V> endpoints = getEndpoints( edge );
+            if ( endpoints == null )
+            {
+                return 0;
+            }
+
+            return endpoints.getFirst().equals( endpoints.getSecond() ) ? 1 : 2;
+        }
+
+        public EdgeType getEdgeType( final E edge )
+        {
+            return containsEdge( edge ) ? EdgeType.DIRECTED : null;
+        }
+
+        public EdgeType getDefaultEdgeType()
+        {
+            return EdgeType.DIRECTED;
+        }
+
+        public Collection<E> getEdges( final EdgeType edgeType )
+        {
+            return edgeType == EdgeType.DIRECTED ? getEdges() : Collections.<E> emptySet();
+        }
+
+        public int getEdgeCount( final EdgeType edgeType )
+        {
+            return edgeType == EdgeType.DIRECTED ? edgeCount : 0;
+        }
+
+        public boolean addVertex( final V vertex )
+        {
+            throw new UnsupportedOperationException( "Graph is read-only." );
+        }
+
+        public boolean addEdge( final E edge, final Collection<? extends V> vertices )
+        {
+            throw new UnsupportedOperationException( "Graph is read-only." );
+        }
+
+        public boolean addEdge( final E edge, final Collection<? extends V> vertices, final EdgeType edgeType )
+        {
+            throw new UnsupportedOperationException( "Graph is read-only." );
+        }
+
+        public boolean addEdge( final E e, final V v1, final V v2 )
+        {
+            throw new UnsupportedOperationException( "Graph is read-only." );
+        }
+
+        public boolean addEdge( final E e, final V v1, final V v2, final EdgeType edgeType )
+        {
+            throw new UnsupportedOperationException( "Graph is read-only." );
+        }
+
+        public boolean removeVertex( final V vertex )
+        {
+            throw new UnsupportedOperationException( "Graph is read-only." );
+        }
+
+        public boolean removeEdge( final E edge )
+        {
+            throw new UnsupportedOperationException( "Graph is read-only." );
+        }
+
+    }
+
+}
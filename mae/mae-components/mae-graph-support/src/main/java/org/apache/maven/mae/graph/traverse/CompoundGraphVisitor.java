@@ -21,6 +21,10 @@ package org.apache.maven.mae.graph.traverse;
 
 import edu.uci.ics.jung.graph.Graph;
 
+/**
+ * Fans each callback out to several visitors, so they can all be fed from a single walk. Every visitor sees every
+ * callback; the walk only continues past a vertex or edge if all of them agree to.
+ */
 public final class CompoundGraphVisitor<V, E>
     implements GraphVisitor<V, E>
 {
@@ -31,6 +35,22 @@ public final class CompoundGraphVisitor<V, E>
         this.visitors = visitors;
     }
 
+    /**
+     * @return true if all of the wrapped visitors are safe to call from several threads at once.
+     */
+    public boolean isThreadSafe()
+    {
+        for ( final GraphVisitor<V, E> visitor : visitors )
+        {
+            if ( !GraphWalker.isThreadSafe( visitor ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      * 
@@ -42,15 +62,10 @@ public final class CompoundGraphVisitor<V, E>
         boolean doContinue = true;
         for ( final GraphVisitor<V, E> visitor : visitors )
         {
-            doContinue = doContinue && visitor.traversedEdge( graph, edge );
-
-            if ( !doContinue )
-            {
-                break;
-            }
+            doContinue = visitor.traversedEdge( graph, edge ) && doContinue;
         }
 
-        return false;
+        return doContinue;
     }
 
     /**
@@ -65,15 +80,10 @@ public final class CompoundGraphVisitor<V, E>
         boolean doContinue = true;
         for ( final GraphVisitor<V, E> visitor : visitors )
         {
-            doContinue = doContinue && visitor.startedVertexVisit( graph, vertex );
-
-            if ( !doContinue )
-            {
-                break;
-            }
+            doContinue = visitor.startedVertexVisit( graph, vertex ) && doContinue;
         }
 
-        return false;
+        return doContinue;
     }
 
     /**
@@ -88,15 +98,10 @@ public final class CompoundGraphVisitor<V, E>
         boolean doContinue = true;
         for ( final GraphVisitor<V, E> visitor : visitors )
         {
-            doContinue = doContinue && visitor.finishedVertexVisit( graph, vertex );
-
-            if ( !doContinue )
-            {
-                break;
-            }
+            doContinue = visitor.finishedVertexVisit( graph, vertex ) && doContinue;
         }
 
-        return false;
+        return doContinue;
     }
 
     /**
@@ -20,70 +20,375 @@
 package org.apache.maven.mae.graph.traverse;
 
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.maven.mae.graph.GraphManager;
 
 import edu.uci.ics.jung.graph.Graph;
 
+/**
+ * Walks a graph from a starting vertex, reporting each vertex and edge to a {@link GraphVisitor}. Each vertex is
+ * visited at most once; later encounters are reported via {@link GraphVisitor#skippedVertexVisit}.
+ * <p>
+ * All walks keep their own stacks or queues, so graph depth is not limited by the thread's stack size.
+ * </p>
+ */
 public final class GraphWalker
 {
 
-    public static <V, E> List<V> walkDepthFirst( final GraphManager<V, E> graphManager,
-                                                 final V start, final GraphVisitor<V, E> visitor )
+    private GraphWalker()
+    {
+    }
+
+    public static <V, E> List<V> walkDepthFirst( final GraphManager<V, E> graphManager, final V start,
+                                                 final GraphVisitor<V, E> visitor )
     {
         return walkDepthFirst( graphManager.getManagedGraph(), start, visitor );
     }
 
+    /**
+     * Depth-first walk. Callbacks arrive in the same order as a recursive walk would produce them, so nested output
+     * such as {@link org.apache.maven.mae.graph.output.GraphPrinter}'s stays correct.
+     * 
+     * @return The vertices encountered, in the order they were first reached.
+     */
     public static <V, E> List<V> walkDepthFirst( final Graph<V, E> graph, final V start,
                                                  final GraphVisitor<V, E> visitor )
     {
-        final LinkedHashSet<V> encounters = new LinkedHashSet<V>();
-        encounters.add( start );
+        final Progress<V> progress = new Progress<V>( start );
+        if ( !visitor.startedVertexVisit( graph, start ) )
+        {
+            return progress.order;
+        }
+
+        final LinkedList<Frame<V, E>> stack = new LinkedList<Frame<V, E>>();
+        stack.addFirst( new Frame<V, E>( start, graph.getOutEdges( start ) ) );
+
+        while ( !stack.isEmpty() )
+        {
+            final Frame<V, E> frame = stack.getFirst();
+            if ( !frame.edges.hasNext() )
+            {
+                stack.removeFirst();
+                visitor.finishedVertexVisit( graph, frame.vertex );
+                continue;
+            }
+
+            final E edge = frame.edges.next();
+            final V to = traverse( graph, frame.vertex, edge, visitor );
+            if ( to == null )
+            {
+                continue;
+            }
 
-        walkDepthFirst( graph, start, visitor, encounters );
+            if ( progress.add( to ) )
+            {
+                if ( visitor.startedVertexVisit( graph, to ) )
+                {
+                    stack.addFirst( new Frame<V, E>( to, graph.getOutEdges( to ) ) );
+                }
+            }
+            else
+            {
+                visitor.skippedVertexVisit( graph, to );
+            }
+        }
 
-        return new ArrayList<V>( encounters );
+        return progress.order;
     }
 
-    private static <V, E> void walkDepthFirst( final Graph<V, E> graph, final V from,
-                                               final GraphVisitor<V, E> visitor,
-                                               final Set<V> progress )
+    public static <V, E> List<V> walkBreadthFirst( final GraphManager<V, E> graphManager, final V start,
+                                                   final GraphVisitor<V, E> visitor )
     {
-        if ( !visitor.startedVertexVisit( graph, from ) )
+        return walkBreadthFirst( graphManager.getManagedGraph(), start, visitor );
+    }
+
+    /**
+     * Breadth-first walk. Each vertex is started, has all of its out-edges reported, and is finished before the next
+     * vertex in the queue is started.
+     * 
+     * @return The vertices encountered, in the order they were first reached.
+     */
+    public static <V, E> List<V> walkBreadthFirst( final Graph<V, E> graph, final V start,
+                                                   final GraphVisitor<V, E> visitor )
+    {
+        final Progress<V> progress = new Progress<V>( start );
+
+        final LinkedList<V> queue = new LinkedList<V>();
+        queue.add( start );
+
+        while ( !queue.isEmpty() )
         {
-            return;
+            final V from = queue.removeFirst();
+            if ( !visitor.startedVertexVisit( graph, from ) )
+            {
+                continue;
+            }
+
+            for ( final E edge : outEdges( graph, from ) )
+            {
+                final V to = traverse( graph, from, edge, visitor );
+                if ( to == null )
+                {
+                    continue;
+                }
+
+                if ( progress.add( to ) )
+                {
+                    queue.addLast( to );
+                }
+                else
+                {
+                    visitor.skippedVertexVisit( graph, to );
+                }
+            }
+
+            visitor.finishedVertexVisit( graph, from );
         }
 
-        for ( final E edge : graph.getOutEdges( from ) )
+        return progress.order;
+    }
+
+    public static <V, E> List<V> walkParallel( final GraphManager<V, E> graphManager, final V start,
+                                               final GraphVisitor<V, E> visitor, final int threads )
+    {
+        return walkParallel( graphManager.getManagedGraph(), start, visitor, threads );
+    }
+
+    /**
+     * Level-synchronous parallel walk, using a temporary pool of the given size. See
+     * {@link #walkParallel(Graph, Object, GraphVisitor, ExecutorService)}.
+     */
+    public static <V, E> List<V> walkParallel( final Graph<V, E> graph, final V start,
+                                               final GraphVisitor<V, E> visitor, final int threads )
+    {
+        if ( threads < 2 || !isThreadSafe( visitor ) )
         {
-            final V to = graph.getOpposite( from, edge );
+            return walkBreadthFirst( graph, start, visitor );
+        }
 
-            if ( to.equals( from ) )
+        final ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            return walkParallel( graph, start, visitor, executor );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Level-synchronous parallel walk. All vertices at one distance from the start are visited concurrently on the
+     * given executor; the next level is only started once the current one is finished. Which vertices end up on the
+     * next level, and which are reported as skipped, is decided on the calling thread in a fixed order, so the
+     * returned list is the same as for {@link #walkBreadthFirst(Graph, Object, GraphVisitor)}. The order of callbacks
+     * within a level is not.
+     * <p>
+     * This is only used if the visitor is a {@link ConcurrentGraphVisitor} (or a {@link CompoundGraphVisitor} made up
+     * of them). Other visitors are walked breadth-first on the calling thread.
+     * </p>
+     */
+    public static <V, E> List<V> walkParallel( final Graph<V, E> graph, final V start,
+                                               final GraphVisitor<V, E> visitor, final ExecutorService executor )
+    {
+        if ( !isThreadSafe( visitor ) )
+        {
+            return walkBreadthFirst( graph, start, visitor );
+        }
+
+        final Progress<V> progress = new Progress<V>( start );
+
+        List<V> level = Collections.singletonList( start );
+        while ( !level.isEmpty() )
+        {
+            final List<Callable<List<V>>> tasks = new ArrayList<Callable<List<V>>>( level.size() );
+            for ( final V from : level )
             {
-                visitor.skippedVertexVisit( graph, to );
-                continue;
+                tasks.add( new Callable<List<V>>()
+                {
+                    @Override
+                    public List<V> call()
+                    {
+                        return visitLevelVertex( graph, from, visitor );
+                    }
+                } );
             }
 
-            if ( !visitor.traversedEdge( graph, edge ) )
+            final List<Future<List<V>>> results;
+            try
             {
-                visitor.skippedEdgeTraversal( graph, edge );
-                continue;
+                results = executor.invokeAll( tasks );
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                break;
             }
 
-            if ( !progress.contains( to ) )
+            final List<V> next = new ArrayList<V>();
+            for ( final Future<List<V>> result : results )
             {
-                progress.add( to );
-                walkDepthFirst( graph, to, visitor, progress );
+                final List<V> candidates;
+                try
+                {
+                    candidates = result.get();
+                }
+                catch ( final InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                    return progress.order;
+                }
+                catch ( final ExecutionException e )
+                {
+                    final Throwable cause = e.getCause();
+                    if ( cause instanceof RuntimeException )
+                    {
+                        throw (RuntimeException) cause;
+                    }
+                    else if ( cause instanceof Error )
+                    {
+                        throw (Error) cause;
+                    }
+
+                    throw new IllegalStateException( "Graph visitor failed: " + cause.getMessage(), cause );
+                }
+
+                for ( final V to : candidates )
+                {
+                    if ( progress.add( to ) )
+                    {
+                        next.add( to );
+                    }
+                    else
+                    {
+                        visitor.skippedVertexVisit( graph, to );
+                    }
+                }
             }
-            else
+
+            level = next;
+        }
+
+        return progress.order;
+    }
+
+    /**
+     * @return true if the visitor declares that it can be called from several threads at once.
+     */
+    public static boolean isThreadSafe( final GraphVisitor<?, ?> visitor )
+    {
+        if ( visitor instanceof CompoundGraphVisitor<?, ?> )
+        {
+            return ( (CompoundGraphVisitor<?, ?>) visitor ).isThreadSafe();
+        }
+
+        return visitor instanceof ConcurrentGraphVisitor<?, ?>;
+    }
+
+    /**
+     * Start, report out-edges of, and finish a single vertex during a parallel walk.
+     * 
+     * @return The vertices at the far end of every edge the visitor chose to traverse.
+     */
+    private static <V, E> List<V> visitLevelVertex( final Graph<V, E> graph, final V from,
+                                                    final GraphVisitor<V, E> visitor )
+    {
+        if ( !visitor.startedVertexVisit( graph, from ) )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<V> candidates = new ArrayList<V>();
+        for ( final E edge : outEdges( graph, from ) )
+        {
+            final V to = traverse( graph, from, edge, visitor );
+            if ( to != null )
             {
-                visitor.skippedVertexVisit( graph, to );
+                candidates.add( to );
             }
         }
 
         visitor.finishedVertexVisit( graph, from );
+
+        return candidates;
+    }
+
+    /**
+     * Report an edge to the visitor.
+     * 
+     * @return The vertex at the far end of the edge, or null if the edge is a self-loop or the visitor declined it.
+     */
+    private static <V, E> V traverse( final Graph<V, E> graph, final V from, final E edge,
+                                      final GraphVisitor<V, E> visitor )
+    {
+        final V to = graph.getOpposite( from, edge );
+
+        if ( to.equals( from ) )
+        {
+            visitor.skippedVertexVisit( graph, to );
+            return null;
+        }
+
+        if ( !visitor.traversedEdge( graph, edge ) )
+        {
+            visitor.skippedEdgeTraversal( graph, edge );
+            return null;
+        }
+
+        return to;
+    }
+
+    private static <V, E> Collection<E> outEdges( final Graph<V, E> graph, final V vertex )
+    {
+        final Collection<E> edges = graph.getOutEdges( vertex );
+        return edges == null ? Collections.<E> emptyList() : edges;
+    }
+
+    private static final class Frame<V, E>
+    {
+        final V vertex;
+
+        final Iterator<E> edges;
+
+        Frame( final V vertex, final Collection<E> edges )
+        {
+            this.vertex = vertex;
+            this.edges = edges == null ? Collections.<E> emptyList().iterator() : edges.iterator();
+        }
+    }
+
+    private static final class Progress<V>
+    {
+        final Set<V> seen = new HashSet<V>();
+
+        final List<V> order = new ArrayList<V>();
+
+        Progress( final V start )
+        {
+            add( start );
+        }
+
+        boolean add( final V vertex )
+        {
+            if ( seen.add( vertex ) )
+            {
+                order.add( vertex );
+                return true;
+            }
+
+            return false;
+        }
     }
 }
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.maven.mae.graph.traverse.GraphWalker;
+import org.junit.Test;
+
+import edu.uci.ics.jung.graph.Graph;
+
+public class CompactDirectedGraphTest
+{
+
+    @Test
+    public void connectDeduplicatesEdgesAndFreezesIntoReadOnlyView()
+    {
+        final CompactDirectedGraph<String, DirectionalEdge<String>> graph = newGraph();
+        graph.connect( "a", "b" ).connect( "a", "c" ).connect( "b", "c" ).connect( "a", "b" );
+
+        final Graph<String, DirectionalEdge<String>> view = graph.getManagedGraph();
+
+        assertEquals( 3, view.getVertexCount() );
+        assertEquals( 3, view.getEdgeCount() );
+        assertEquals( 2, view.outDegree( "a" ) );
+        assertEquals( 2, view.inDegree( "c" ) );
+        assertTrue( view.containsEdge( new DirectionalEdge<String>( "b", "c" ) ) );
+        assertFalse( view.containsEdge( new DirectionalEdge<String>( "c", "b" ) ) );
+        assertEquals( "c", view.getOpposite( "b", new DirectionalEdge<String>( "b", "c" ) ) );
+        assertNull( view.getOutEdges( "missing" ) );
+
+        try
+        {
+            graph.connect( "c", "d" );
+        }
+        catch ( final IllegalStateException e )
+        {
+            return;
+        }
+
+        throw new AssertionError( "Frozen graph accepted a new edge." );
+    }
+
+    @Test
+    public void depthFirstWalkMatchesJungBackedGraph()
+    {
+        final CompactDirectedGraph<String, DirectionalEdge<String>> compact = newGraph();
+        final SimpleDirectedGraph<String> jung = new SimpleDirectedGraph<String>();
+
+        // a small diamond with a back-edge, plus a self-loop.
+        final String[][] edges = { { "root", "a" }, { "a", "b" }, { "a", "c" }, { "b", "d" }, { "c", "d" },
+            { "d", "a" }, { "d", "d" } };
+
+        for ( final String[] edge : edges )
+        {
+            compact.connect( edge[0], edge[1] );
+            jung.connect( edge[0], edge[1] );
+        }
+
+        final Recorder<String> events = new Recorder<String>();
+        final List<String> fromCompact = GraphWalker.walkDepthFirst( compact, "root", events );
+        final List<String> fromJung = GraphWalker.walkDepthFirst( jung, "root", new Recorder<String>() );
+
+        // out-edges come back in insertion order, so the walk is fully determined. Self-loops are skipped without
+        // being traversed.
+        assertEquals( Arrays.asList( "root", "a", "b", "d", "c" ), fromCompact );
+        assertEquals( Arrays.asList( "start root", "edge root->a", "start a", "edge a->b", "start b", "edge b->d",
+                                     "start d", "edge d->a", "skip a", "skip d", "finish d",
+                                     "finish b", "edge a->c", "start c", "edge c->d", "skip d", "finish c",
+                                     "finish a", "finish root" ), events.events );
+
+        // JUNG's edge order depends on hashing, so only the vertices reached can be compared.
+        assertEquals( new HashSet<String>( fromJung ), new HashSet<String>( fromCompact ) );
+    }
+
+    @Test
+    public void lookupsAndDeduplicationSurviveTableGrowth()
+    {
+        final int vertices = 5000;
+        final CompactDirectedGraph<Integer, DirectionalEdge<Integer>> graph = newGraph();
+        for ( int pass = 0; pass < 2; pass++ )
+        {
+            for ( int from = 0; from < vertices; from++ )
+            {
+                graph.connect( from, ( from + 1 ) % vertices ).connect( from, ( from * 7 ) % vertices );
+            }
+        }
+
+        final Graph<Integer, DirectionalEdge<Integer>> view = graph.getManagedGraph();
+        assertEquals( vertices, view.getVertexCount() );
+
+        int expectedEdges = 0;
+        for ( int from = 0; from < vertices; from++ )
+        {
+            final boolean distinct = ( from + 1 ) % vertices != ( from * 7 ) % vertices;
+            expectedEdges += distinct ? 2 : 1;
+
+            assertTrue( view.containsVertex( from ) );
+            assertEquals( distinct ? 2 : 1, view.outDegree( from ) );
+            assertEquals( Integer.valueOf( ( from + 1 ) % vertices ),
+                          view.getDest( view.findEdge( from, ( from + 1 ) % vertices ) ) );
+        }
+
+        assertEquals( expectedEdges, view.getEdgeCount() );
+        assertFalse( view.containsVertex( vertices ) );
+    }
+
+    private static <T> CompactDirectedGraph<T, DirectionalEdge<T>> newGraph()
+    {
+        return new CompactDirectedGraph<T, DirectionalEdge<T>>( new DirectionalEdge.SimpleDirectionalEdgeFactory<T>() );
+    }
+
+    private static class Recorder<T>
+        extends DirectedGraph.Visitor<T>
+    {
+        final List<String> events = new ArrayList<String>();
+
+        @Override
+        public boolean traversedEdge( final Graph<T, DirectionalEdge<T>> graph, final DirectionalEdge<T> edge )
+        {
+            events.add( "edge " + edge.getFrom() + "->" + edge.getTo() );
+            return true;
+        }
+
+        @Override
+        public boolean startedVertexVisit( final Graph<T, DirectionalEdge<T>> graph, final T vertex )
+        {
+            events.add( "start " + vertex );
+            return true;
+        }
+
+        @Override
+        public boolean finishedVertexVisit( final Graph<T, DirectionalEdge<T>> graph, final T vertex )
+        {
+            events.add( "finish " + vertex );
+            return true;
+        }
+
+        @Override
+        public void skippedVertexVisit( final Graph<T, DirectionalEdge<T>> graph, final T vertex )
+        {
+            events.add( "skip " + vertex );
+        }
+
+        @Override
+        public void skippedEdgeTraversal( final Graph<T, DirectionalEdge<T>> graph, final DirectionalEdge<T> edge )
+        {
+            events.add( "skip edge " + edge.getFrom() + "->" + edge.getTo() );
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.maven.mae.graph.traverse;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.mae.graph.DirectedGraph;
+import org.apache.maven.mae.graph.DirectionalEdge;
+import org.apache.maven.mae.graph.SimpleDirectedGraph;
+import org.junit.Test;
+
+import edu.uci.ics.jung.graph.Graph;
+
+public class GraphWalkerTest
+{
+
+    @Test
+    public void depthFirstWalkHandlesChainsDeeperThanTheThreadStack()
+    {
+        final SimpleDirectedGraph<Integer> graph = new SimpleDirectedGraph<Integer>();
+        final int depth = 100000;
+        for ( int i = 0; i < depth; i++ )
+        {
+            graph.connect( i, i + 1 );
+        }
+
+        final Recorder<Integer> recorder = new Recorder<Integer>();
+        final List<Integer> visited = GraphWalker.walkDepthFirst( graph, 0, recorder );
+
+        assertEquals( depth + 1, visited.size() );
+        assertEquals( depth + 1, recorder.finished.size() );
+        assertEquals( Integer.valueOf( depth ), recorder.finished.get( 0 ) );
+    }
+
+    @Test
+    public void depthFirstCallbacksAreNested()
+    {
+        final SimpleDirectedGraph<String> graph = new SimpleDirectedGraph<String>();
+        graph.connect( "a", "b" ).connect( "b", "c" ).connect( "a", "c" );
+
+        final Recorder<String> recorder = new Recorder<String>();
+        GraphWalker.walkDepthFirst( graph, "a", recorder );
+
+        final List<String> events = recorder.events;
+        assertEquals( "+a", events.get( 0 ) );
+        assertEquals( "-a", events.get( events.size() - 1 ) );
+        assertEquals( 1, Collections.frequency( events, "+c" ) );
+        assertEquals( 1, Collections.frequency( events, "~c" ) );
+        assertEquals( events.indexOf( "+c" ) + 1, events.indexOf( "-c" ) );
+    }
+
+    @Test
+    public void breadthFirstVisitsByLevel()
+    {
+        final SimpleDirectedGraph<String> graph = new SimpleDirectedGraph<String>();
+        graph.connect( "root", "a" ).connect( "a", "a1" ).connect( "root", "b" ).connect( "b", "b1" );
+
+        final List<String> order = GraphWalker.walkBreadthFirst( graph, "root", new Recorder<String>() );
+
+        assertEquals( "root", order.get( 0 ) );
+        assertEquals( Arrays.asList( "a", "b" ), sorted( order.subList( 1, 3 ) ) );
+        assertEquals( Arrays.asList( "a1", "b1" ), sorted( order.subList( 3, 5 ) ) );
+    }
+
+    @Test
+    public void parallelWalkVisitsEachVertexOnceAndMatchesBreadthFirstOrder()
+    {
+        final SimpleDirectedGraph<Integer> graph = new SimpleDirectedGraph<Integer>();
+        final int size = 2000;
+        for ( int i = 0; i < size; i++ )
+        {
+            graph.connect( i, ( i * 2 + 1 ) % size ).connect( i, ( i * 2 + 2 ) % size );
+        }
+
+        final Counting<Integer> counting = new Counting<Integer>();
+        final List<Integer> parallel = GraphWalker.walkParallel( graph, 0, counting, 4 );
+        final List<Integer> serial = GraphWalker.walkBreadthFirst( graph, 0, new Recorder<Integer>() );
+
+        assertEquals( serial, parallel );
+        assertEquals( parallel.size(), counting.started.get() );
+        assertEquals( parallel.size(), counting.finished.get() );
+    }
+
+    @Test
+    public void compoundVisitorFeedsEveryVisitor()
+    {
+        final SimpleDirectedGraph<String> graph = new SimpleDirectedGraph<String>();
+        graph.connect( "a", "b" ).connect( "b", "c" );
+
+        final Recorder<String> first = new Recorder<String>();
+        final Recorder<String> second = new Recorder<String>();
+
+        @SuppressWarnings( "unchecked" )
+        final CompoundGraphVisitor<String, DirectionalEdge<String>> compound =
+            new CompoundGraphVisitor<String, DirectionalEdge<String>>( first, second );
+
+        final List<String> visited = GraphWalker.walkDepthFirst( graph, "a", compound );
+
+        assertEquals( Arrays.asList( "a", "b", "c" ), visited );
+        assertEquals( first.events, second.events );
+        assertEquals( 6, first.events.size() );
+    }
+
+    private static List<String> sorted( final List<String> list )
+    {
+        final List<String> result = new ArrayList<String>( list );
+        Collections.sort( result );
+        return result;
+    }
+
+    private static class Recorder<T>
+        extends DirectedGraph.Visitor<T>
+    {
+        final List<String> events = new ArrayList<String>();
+
+        final List<T> finished = new ArrayList<T>();
+
+        @Override
+        public boolean traversedEdge( final Graph<T, DirectionalEdge<T>> graph, final DirectionalEdge<T> edge )
+        {
+            return true;
+        }
+
+        @Override
+        public boolean startedVertexVisit( final Graph<T, DirectionalEdge<T>> graph, final T vertex )
+        {
+            events.add( "+" + vertex );
+            return true;
+        }
+
+        @Override
+        public boolean finishedVertexVisit( final Graph<T, DirectionalEdge<T>> graph, final T vertex )
+        {
+            events.add( "-" + vertex );
+            finished.add( vertex );
+            return true;
+        }
+
+        @Override
+        public void skippedVertexVisit( final Graph<T, DirectionalEdge<T>> graph, final T vertex )
+        {
+            events.add( "~" + vertex );
+        }
+
+        @Override
+        public void skippedEdgeTraversal( final Graph<T, DirectionalEdge<T>> graph, final DirectionalEdge<T> edge )
+        {
+        }
+    }
+
+    private static final class Counting<T>
+        implements ConcurrentGraphVisitor<T, DirectionalEdge<T>>
+    {
+        final AtomicInteger started = new AtomicInteger();
+
+        final AtomicInteger finished = new AtomicInteger();
+
+        @Override
+        public boolean traversedEdge( final Graph<T, DirectionalEdge<T>> graph, final DirectionalEdge<T> edge )
+        {
+            return true;
+        }
+
+        @Override
+        public boolean startedVertexVisit( final Graph<T, DirectionalEdge<T>> graph, final T vertex )
+        {
+            started.incrementAndGet();
+            return true;
+        }
+
+        @Override
+        public boolean finishedVertexVisit( final Graph<T, DirectionalEdge<T>> graph, final T vertex )
+        {
+            finished.incrementAndGet();
+            return true;
+        }
+
+        @Override
+        public void skippedVertexVisit( final Graph<T, DirectionalEdge<T>> graph, final T vertex )
+        {
+        }
+
+        @Override
+        public void skippedEdgeTraversal( final Graph<T, DirectionalEdge<T>> graph, final DirectionalEdge<T> edge )
+        {
+        }
+    }
+
+}
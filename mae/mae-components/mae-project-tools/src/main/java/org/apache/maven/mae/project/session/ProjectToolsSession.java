@@ -108,6 +108,10 @@ public interface ProjectToolsSession
 
     <T> T clearState( Class<T> stateType );
 
+    /**
+     * Drop all state stored on this session. States that implement {@link java.io.Closeable} are closed, so this is
+     * what to call once the session is no longer needed.
+     */
     void clearStates();
 
     int getPomValidationLevel();
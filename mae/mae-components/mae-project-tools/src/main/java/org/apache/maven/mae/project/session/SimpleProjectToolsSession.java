@@ -21,7 +21,9 @@ package org.apache.maven.mae.project.session;
 
 import static org.apache.maven.artifact.ArtifactUtils.key;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -29,6 +31,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.log4j.Logger;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.execution.DefaultMavenExecutionRequest;
 import org.apache.maven.execution.DefaultMavenExecutionResult;
@@ -51,6 +54,8 @@ public class SimpleProjectToolsSession
     implements ProjectToolsSession
 {
 
+    private static final Logger LOGGER = Logger.getLogger( SimpleProjectToolsSession.class );
+
     private transient List<ArtifactRepository> remoteArtifactRepositories;
 
     private transient List<RemoteRepository> remoteRepositories;
@@ -474,7 +479,23 @@ public class SimpleProjectToolsSession
     @Override
     public void clearStates()
     {
+        final List<Object> cleared = new ArrayList<Object>( states.values() );
         states.clear();
+
+        for ( final Object state : cleared )
+        {
+            if ( state instanceof Closeable )
+            {
+                try
+                {
+                    ( (Closeable) state ).close();
+                }
+                catch ( final IOException e )
+                {
+                    LOGGER.error( "Failed to close session state: " + state + ". Reason: " + e.getMessage(), e );
+                }
+            }
+        }
     }
 
     @Override
@@ -15,15 +15,13 @@
 package org.apache.maven.plugins.digest;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
-import org.apache.commons.codec.binary.Hex;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Component;
@@ -92,6 +90,28 @@ public abstract class AbstractDigestMojo
     // Mojo options
     // ----------------------------------------------------------------------
 
+    /**
+     * The number of files to digest concurrently. Each file is read once for all of the algorithms. Zero or less
+     * means one thread per available processor.
+     */
+    @Parameter( property = "maven.digest.threads", defaultValue = "0" )
+    private int threads;
+
+    /**
+     * Whether to keep the digests of each file in {@link #cacheFile}, so that files whose size and modification time
+     * have not changed since the last run are not read again.
+     */
+    @Parameter( property = "maven.digest.useCache", defaultValue = "true" )
+    private boolean useCache;
+
+    /**
+     * The file in which digests are cached between runs. It lives outside the build directory so that it survives
+     * {@code mvn clean}; entries are keyed by canonical path, so one file serves every project.
+     */
+    @Parameter( property = "maven.digest.cacheFile",
+                defaultValue = "${user.home}/.m2/maven-digest-plugin/digest-cache.properties" )
+    private File cacheFile;
+
     // ----------------------------------------------------------------------
     // Public methods
     // ----------------------------------------------------------------------
@@ -127,44 +147,67 @@ public abstract class AbstractDigestMojo
                 algorithms.add( "MD5" );
                 algorithms.add( "SHA1" );
             }
+            final List<String> algorithmNames = new ArrayList<String>( algorithms.size() );
+            final List<String> extensions = new ArrayList<String>( algorithms.size() );
+            for ( String algorithm : algorithms )
+            {
+                String[] parts = algorithm.split( ">" );
+                if ( parts.length == 2 )
+                {
+                    algorithmNames.add( parts[0] );
+                    extensions.add( parts[1] );
+                }
+                else
+                {
+                    algorithmNames.add( algorithm );
+                    extensions.add( getExtension( algorithm ) );
+                }
+            }
+            final String[] algorithmArray = algorithmNames.toArray( new String[algorithmNames.size()] );
+            final DigestEngine engine = new DigestEngine( algorithmArray, getThreadCount() );
+            final DigestCache cache = useCache ? new DigestCache( cacheFile ) : null;
+            final String[][] hexDigests = digestFiles( engine, cache, algorithmArray, files );
             success = true;
-            for ( String file : files )
+            for ( int i = 0; i < files.length; i++ )
             {
-                for ( String algorithm : algorithms )
+                final String[] fileDigests = hexDigests[i];
+                for ( int j = 0; j < fileDigests.length; j++ )
                 {
-                    String[] parts = algorithm.split( ">" );
-                    String extension;
-                    if ( parts.length == 2 )
-                    {
-                        algorithm = parts[0];
-                        extension = parts[1];
-                    }
-                    else
-                    {
-                        extension = getExtension( algorithm );
-                    }
-                    success &= processFile (algorithm, extension, file);
+                    success &= processFile( algorithmNames.get( j ), extensions.get( j ), files[i], fileDigests[j] );
                 }
             }
+            if ( cache != null )
+            {
+                final int lookups = cache.getHits() + cache.getMisses();
+                log.info( "Digest cache: " + cache.getHits() + " of " + files.length + " files unchanged ("
+                              + ( lookups == 0 ? 0 : 100 * cache.getHits() / lookups ) + "% hit rate), "
+                              + cache.getBytesAvoided() + " bytes not read" );
+            }
         }
         return success;
     }
 
-    protected final String createDigest( String algorithm, String extension, String file )
-                    throws Exception
-                {
-                    // Unfortunately DigestUtils.getDigest is not public
-                    // Do this before opening file in case not found
-                    MessageDigest digest = MessageDigest.getInstance( algorithm );
-                    FileInputStream is = new FileInputStream( file );
-                    String hexDigest = digestHex( digest, is );
-                    is.close();
-                    return hexDigest;
-                }
-
-    protected abstract boolean processFile( String algorithm, String extension, String file)
+    /**
+     * Processes one digest of one file.
+     *
+     * @param algorithm the algorithm name
+     * @param extension the digest file extension
+     * @param file the file that was digested
+     * @param digest the hex encoded digest of the file
+     * @return {@code true} if the file was processed successfully
+     */
+    protected abstract boolean processFile( String algorithm, String extension, String file, String digest )
         throws Exception;
 
+    /**
+     * Override this method to ignore digests held in the cache. Freshly computed digests are still stored.
+     * @return this implementation returns {@code false}
+     */
+    protected boolean isForceDigest()
+    {
+        return false;
+    }
+
     /**
      * Override this method to change the default includes.
      * @return this implementation returns {@link #EMPTY_STRING_ARRAY}
@@ -189,24 +232,65 @@ public abstract class AbstractDigestMojo
         return "." + algorithm.toLowerCase( Locale.ENGLISH ).replace( "-", "" );
     }
 
-    private String digestHex( MessageDigest digest, InputStream data )
+    /**
+     * Digests the files, taking unchanged files from the cache and storing the others in it.
+     *
+     * @param cache the digest cache, or {@code null} if caching is disabled
+     * @return the hex encoded digests of each file, in algorithm order
+     */
+    private String[][] digestFiles( DigestEngine engine, DigestCache cache, String[] algorithms, String[] files )
         throws IOException
     {
-        return Hex.encodeHexString( digest( digest, data ) );
-    }
+        final String[][] hexDigests = new String[files.length][];
+        final boolean force = isForceDigest();
 
-    // Unfortunately, the Codec version is private
-    private byte[] digest( MessageDigest digest, InputStream data )
-        throws IOException
-    {
-        byte[] buffer = new byte[1024];
-        int read = data.read( buffer );
-        while ( read > -1 )
+        final List<File> pending = new ArrayList<File>( files.length );
+        final List<Integer> pendingIndex = new ArrayList<Integer>( files.length );
+        final String[] keys = new String[files.length];
+        final long[] sizes = new long[files.length];
+        final long[] lastModified = new long[files.length];
+        final long checked = System.currentTimeMillis();
+        for ( int i = 0; i < files.length; i++ )
         {
-            digest.update( buffer, 0, read );
-            read = data.read( buffer );
+            final File file = new File( files[i] );
+            if ( cache != null )
+            {
+                keys[i] = file.getCanonicalPath();
+                sizes[i] = file.length();
+                lastModified[i] = file.lastModified();
+                if ( !force )
+                {
+                    hexDigests[i] = cache.get( keys[i], sizes[i], lastModified[i], algorithms );
+                }
+            }
+            if ( hexDigests[i] == null )
+            {
+                pending.add( file );
+                pendingIndex.add( i );
+            }
+        }
+
+        final List<String[]> computed = engine.digestAll( pending );
+        for ( int p = 0; p < computed.size(); p++ )
+        {
+            final int i = pendingIndex.get( p );
+            hexDigests[i] = computed.get( p );
+            if ( cache != null )
+            {
+                cache.put( keys[i], sizes[i], lastModified[i], checked, algorithms, hexDigests[i] );
+            }
         }
-        return digest.digest();
+
+        if ( cache != null )
+        {
+            cache.save();
+        }
+        return hexDigests;
+    }
+
+    private int getThreadCount()
+    {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
     }
 
     private String[] scanForSources()
@@ -0,0 +1,280 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.maven.plugins.digest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Persistent store of previously computed digests. Entries are keyed by canonical path and are only returned while the
+ * file still has the size and modification time it had when it was digested. Java 5 offers no portable access to the
+ * inode number, so a file replaced by another of the same size and timestamp is not detected.
+ * <p>
+ * The store is not thread safe; the mojo reads and updates it from the calling thread only.
+ */
+final class DigestCache
+{
+
+    /**
+     * Coarsest modification time resolution expected from a file system. A file modified this close to the moment it
+     * was digested may have changed again without its timestamp moving, so its entry is not trusted.
+     */
+    private static final long MTIME_RESOLUTION = 2000L;
+
+    private final File file;
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    private boolean dirty;
+
+    private int hits;
+
+    private int misses;
+
+    private long bytesAvoided;
+
+    /**
+     * @param file the file the cache is stored in; it need not exist yet
+     * @throws IOException if an existing cache file cannot be read; a corrupt one is ignored
+     */
+    DigestCache( File file )
+        throws IOException
+    {
+        this.file = file;
+        if ( file.isFile() )
+        {
+            load();
+        }
+    }
+
+    /**
+     * Looks up the digests of a file, recording a hit or a miss.
+     *
+     * @param key the canonical path of the file
+     * @param size the current size of the file
+     * @param lastModified the current modification time of the file
+     * @param algorithms the algorithms wanted
+     * @return the hex encoded digests in algorithm order, or {@code null} if the file changed or any algorithm is
+     *         missing
+     */
+    String[] get( String key, long size, long lastModified, String[] algorithms )
+    {
+        final Entry entry = entries.get( key );
+        if ( entry != null && entry.isValid( size, lastModified ) )
+        {
+            final String[] digests = new String[algorithms.length];
+            for ( int i = 0; i < algorithms.length; i++ )
+            {
+                digests[i] = entry.digests.get( algorithms[i] );
+                if ( digests[i] == null )
+                {
+                    misses++;
+                    return null;
+                }
+            }
+            hits++;
+            bytesAvoided += size;
+            return digests;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Records the digests of a file. Digests of other algorithms are kept while the existing entry is still valid.
+     *
+     * @param key the canonical path of the file
+     * @param size the size of the file before it was read
+     * @param lastModified the modification time of the file before it was read
+     * @param checked the time at which reading started
+     * @param algorithms the algorithms digested
+     * @param digests the hex encoded digests in algorithm order
+     */
+    void put( String key, long size, long lastModified, long checked, String[] algorithms, String[] digests )
+    {
+        Entry entry = entries.get( key );
+        if ( entry == null || !entry.isValid( size, lastModified ) )
+        {
+            entry = new Entry( size, lastModified, checked );
+            entries.put( key, entry );
+        }
+        else
+        {
+            entry.checked = checked;
+        }
+        for ( int i = 0; i < algorithms.length; i++ )
+        {
+            entry.digests.put( algorithms[i], digests[i] );
+        }
+        dirty = true;
+    }
+
+    /**
+     * Writes the cache back to its file if it changed.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    void save()
+        throws IOException
+    {
+        if ( !dirty )
+        {
+            return;
+        }
+        final Properties properties = new Properties();
+        for ( Map.Entry<String, Entry> e : entries.entrySet() )
+        {
+            properties.setProperty( e.getKey(), e.getValue().toString() );
+        }
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if ( parent != null && !parent.isDirectory() && !parent.mkdirs() )
+        {
+            throw new IOException( "Could not create directory " + parent );
+        }
+        final OutputStream os = new FileOutputStream( file );
+        try
+        {
+            properties.store( os, "maven-digest-plugin cache: size,lastModified,checked,algorithm=digest..." );
+        }
+        finally
+        {
+            os.close();
+        }
+        dirty = false;
+    }
+
+    int getHits()
+    {
+        return hits;
+    }
+
+    int getMisses()
+    {
+        return misses;
+    }
+
+    long getBytesAvoided()
+    {
+        return bytesAvoided;
+    }
+
+    private void load()
+        throws IOException
+    {
+        final Properties properties = new Properties();
+        final InputStream is = new FileInputStream( file );
+        try
+        {
+            properties.load( is );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // a malformed unicode escape: the file is corrupt, start from an empty cache
+            return;
+        }
+        finally
+        {
+            is.close();
+        }
+        for ( Enumeration<?> keys = properties.propertyNames(); keys.hasMoreElements(); )
+        {
+            final String key = (String) keys.nextElement();
+            final Entry entry = Entry.parse( properties.getProperty( key ) );
+            if ( entry != null )
+            {
+                entries.put( key, entry );
+            }
+        }
+    }
+
+    private static final class Entry
+    {
+        private final long size;
+
+        private final long lastModified;
+
+        private long checked;
+
+        private final Map<String, String> digests = new HashMap<String, String>();
+
+        Entry( long size, long lastModified, long checked )
+        {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checked = checked;
+        }
+
+        /**
+         * @return whether the entry describes a file of this size and modification time, digested long enough after
+         *         its last modification to be trusted
+         */
+        boolean isValid( long size, long lastModified )
+        {
+            return this.size == size && this.lastModified == lastModified
+                && lastModified < checked - MTIME_RESOLUTION;
+        }
+
+        /**
+         * @return the parsed entry, or {@code null} if the value is malformed
+         */
+        static Entry parse( String value )
+        {
+            final String[] fields = value.split( "," );
+            if ( fields.length < 3 )
+            {
+                return null;
+            }
+            final Entry entry;
+            try
+            {
+                entry = new Entry( Long.parseLong( fields[0] ), Long.parseLong( fields[1] ),
+                                   Long.parseLong( fields[2] ) );
+            }
+            catch ( NumberFormatException e )
+            {
+                return null;
+            }
+            for ( int i = 3; i < fields.length; i++ )
+            {
+                final int eq = fields[i].lastIndexOf( '=' );
+                if ( eq > 0 )
+                {
+                    entry.digests.put( fields[i].substring( 0, eq ), fields[i].substring( eq + 1 ) );
+                }
+            }
+            return entry;
+        }
+
+        @Override
+        public String toString()
+        {
+            final StringBuilder buf = new StringBuilder();
+            buf.append( size ).append( ',' ).append( lastModified ).append( ',' ).append( checked );
+            for ( Map.Entry<String, String> e : digests.entrySet() )
+            {
+                buf.append( ',' ).append( e.getKey() ).append( '=' ).append( e.getValue() );
+            }
+            return buf.toString();
+        }
+    }
+}
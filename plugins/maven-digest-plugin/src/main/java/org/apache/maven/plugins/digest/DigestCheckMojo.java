@@ -20,6 +20,7 @@ import java.io.IOException;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 
 /**
  * Checks digests (MD5 and SHA1 by default) for files specified by the configured includes and excludes.
@@ -42,6 +43,13 @@ public class DigestCheckMojo
     // Mojo options
     // ----------------------------------------------------------------------
 
+    /**
+     * Whether to read every file again rather than check against digests cached by an earlier run, default
+     * {@code false}
+     */
+    @Parameter( property = "maven.digest.forceVerify", defaultValue = "false" )
+    private boolean forceVerify;
+
     // ----------------------------------------------------------------------
     // Public methods
     // ----------------------------------------------------------------------
@@ -69,12 +77,11 @@ public class DigestCheckMojo
     // ----------------------------------------------------------------------
 
     @Override
-    protected boolean processFile( String algorithm, String extension, String file )
+    protected boolean processFile( String algorithm, String extension, String file, String digest )
         throws Exception
     {
         final Log log = getLog();
         final String algoPath = algorithm + " (" + extension + ")";
-        final String digest = createDigest( algorithm, extension, file );
         boolean success = false;
         try
         {
@@ -100,6 +107,12 @@ public class DigestCheckMojo
         return success;
     }
 
+    @Override
+    protected boolean isForceDigest()
+    {
+        return forceVerify;
+    }
+
     @Override
     protected String[] getDefaultIncludes() {
         return new String[]{"*.zip", "*.gz", "*.xml", "*.pom", "*.bz2"};
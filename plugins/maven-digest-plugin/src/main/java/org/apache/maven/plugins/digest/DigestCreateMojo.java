@@ -14,11 +14,13 @@
 
 package org.apache.maven.plugins.digest;
 
+import java.io.File;
 import java.io.PrintWriter;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.FileUtils;
 
 /**
  * Creates digests (MD5 and SHA1 by default) for files specified by the configured includes and excludes. Also allows
@@ -29,6 +31,11 @@ public class DigestCreateMojo
     extends AbstractDigestMojo
 {
 
+    /**
+     * The line terminator written after each digest, as {@link PrintWriter#println()} would.
+     */
+    private static final String LINE_SEPARATOR = System.getProperty( "line.separator" );
+
     // ----------------------------------------------------------------------
     // Mojo components
     // ----------------------------------------------------------------------
@@ -74,20 +81,18 @@ public class DigestCreateMojo
     // ----------------------------------------------------------------------
 
     @Override
-    protected boolean processFile( String algorithm, String extension, String file )
+    protected boolean processFile( String algorithm, String extension, String file, String digest )
         throws Exception
     {
-        final String digest = createDigest( algorithm, extension, file );
-        final PrintWriter pw = new PrintWriter( file + extension, "UTF-8" );
-        pw.print( digest );
-        if ( appendFilename )
-        {
-            pw.println( " *" + file );
-        }
-        else
+        final String content = digest + ( appendFilename ? " *" + file : "" ) + LINE_SEPARATOR;
+        final File digestFile = new File( file + extension );
+        if ( digestFile.isFile() && content.equals( FileUtils.fileRead( digestFile, "UTF-8" ) ) )
         {
-            pw.println();
+            getLog().debug( digestFile + " is up to date" );
+            return true;
         }
+        final PrintWriter pw = new PrintWriter( digestFile, "UTF-8" );
+        pw.print( content );
         pw.close();
         return true;
     }
@@ -0,0 +1,208 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.maven.plugins.digest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Computes the digests of files for a fixed set of algorithms. Each file is read exactly once, and every block read is
+ * fed to all of the requested {@link MessageDigest}s. Independent files are digested in parallel.
+ */
+final class DigestEngine
+{
+
+    /**
+     * The default read buffer size.
+     */
+    static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private final String[] algorithms;
+
+    private final int threads;
+
+    private final int bufferSize;
+
+    /**
+     * @param algorithms the digest algorithm names
+     * @param threads the maximum number of files to digest concurrently
+     * @throws NoSuchAlgorithmException if any of the algorithms is not available
+     */
+    DigestEngine( String[] algorithms, int threads )
+        throws NoSuchAlgorithmException
+    {
+        this( algorithms, threads, DEFAULT_BUFFER_SIZE );
+    }
+
+    DigestEngine( String[] algorithms, int threads, int bufferSize )
+        throws NoSuchAlgorithmException
+    {
+        // Fail before any file is opened if an algorithm is unknown
+        for ( String algorithm : algorithms )
+        {
+            MessageDigest.getInstance( algorithm );
+        }
+        this.algorithms = algorithms.clone();
+        this.threads = Math.max( 1, threads );
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Digests a single file.
+     *
+     * @param file the file to digest
+     * @return the hex encoded digests, in the order of the algorithms given to the constructor
+     * @throws IOException if the file cannot be read
+     */
+    String[] digest( File file )
+        throws IOException
+    {
+        final MessageDigest[] digests = newDigests();
+        final ByteBuffer buffer = ByteBuffer.allocate( bufferSize );
+        final byte[] array = buffer.array();
+        final FileInputStream is = new FileInputStream( file );
+        try
+        {
+            final FileChannel channel = is.getChannel();
+            while ( channel.read( buffer ) > -1 )
+            {
+                buffer.flip();
+                for ( MessageDigest digest : digests )
+                {
+                    digest.update( array, buffer.position(), buffer.remaining() );
+                }
+                buffer.clear();
+            }
+        }
+        finally
+        {
+            is.close();
+        }
+
+        final String[] result = new String[digests.length];
+        for ( int i = 0; i < digests.length; i++ )
+        {
+            result[i] = Hex.encodeHexString( digests[i].digest() );
+        }
+        return result;
+    }
+
+    /**
+     * Digests several files, using up to the configured number of threads.
+     *
+     * @param files the files to digest
+     * @return the hex encoded digests of each file, in the order of the files given
+     * @throws IOException if any of the files cannot be read
+     */
+    List<String[]> digestAll( List<File> files )
+        throws IOException
+    {
+        final List<String[]> results = new ArrayList<String[]>( files.size() );
+        final int poolSize = Math.min( threads, files.size() );
+        if ( poolSize <= 1 )
+        {
+            for ( File file : files )
+            {
+                results.add( digest( file ) );
+            }
+            return results;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool( poolSize );
+        try
+        {
+            final List<Future<String[]>> futures = new ArrayList<Future<String[]>>( files.size() );
+            for ( final File file : files )
+            {
+                futures.add( executor.submit( new Callable<String[]>()
+                {
+                    public String[] call()
+                        throws IOException
+                    {
+                        return digest( file );
+                    }
+                } ) );
+            }
+            for ( Future<String[]> future : futures )
+            {
+                results.add( get( future ) );
+            }
+            return results;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private MessageDigest[] newDigests()
+    {
+        final MessageDigest[] digests = new MessageDigest[algorithms.length];
+        for ( int i = 0; i < algorithms.length; i++ )
+        {
+            try
+            {
+                digests[i] = MessageDigest.getInstance( algorithms[i] );
+            }
+            catch ( NoSuchAlgorithmException e )
+            {
+                // checked in the constructor
+                throw new IllegalStateException( e );
+            }
+        }
+        return digests;
+    }
+
+    private static String[] get( Future<String[]> future )
+        throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while digesting files" );
+        }
+        catch ( ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+            if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.maven.plugins.digest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that cached digests survive a reload and are only returned for an unchanged file.
+ */
+public class DigestCacheTest
+    extends TestCase
+{
+
+    private static final String KEY = "/repo/artifact.jar";
+
+    private static final String[] ALGORITHMS = { "MD5", "SHA-1" };
+
+    private static final String[] DIGESTS = { "900150983cd24fb0d6963f7d28e17f72",
+        "a9993e364706816aba3e25717850c26c9cd0d89d" };
+
+    private static final long SIZE = 1234;
+
+    private static final long MTIME = 1000000000000L;
+
+    /** Well after the modification, so that the entry is trusted. */
+    private static final long CHECKED = MTIME + 60000;
+
+    private File cacheFile;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        cacheFile = File.createTempFile( "digest-cache", ".properties" );
+        cacheFile.delete();
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        cacheFile.delete();
+        super.tearDown();
+    }
+
+    public void testHitAfterReload()
+        throws Exception
+    {
+        final DigestCache cache = new DigestCache( cacheFile );
+        assertNull( cache.get( KEY, SIZE, MTIME, ALGORITHMS ) );
+        cache.put( KEY, SIZE, MTIME, CHECKED, ALGORITHMS, DIGESTS );
+        cache.save();
+
+        final DigestCache reloaded = new DigestCache( cacheFile );
+        assertEquals( Arrays.asList( DIGESTS ), Arrays.asList( reloaded.get( KEY, SIZE, MTIME, ALGORITHMS ) ) );
+        assertEquals( 1, reloaded.getHits() );
+        assertEquals( 0, reloaded.getMisses() );
+        assertEquals( SIZE, reloaded.getBytesAvoided() );
+    }
+
+    public void testSubsetOfAlgorithmsHits()
+        throws Exception
+    {
+        final DigestCache cache = savedCache();
+
+        assertEquals( Arrays.asList( DIGESTS[1] ),
+                      Arrays.asList( cache.get( KEY, SIZE, MTIME, new String[] { "SHA-1" } ) ) );
+    }
+
+    public void testMissingAlgorithmMisses()
+        throws Exception
+    {
+        final DigestCache cache = savedCache();
+
+        assertNull( cache.get( KEY, SIZE, MTIME, new String[] { "MD5", "SHA-256" } ) );
+        assertEquals( 0, cache.getHits() );
+        assertEquals( 1, cache.getMisses() );
+    }
+
+    public void testSizeChangeInvalidates()
+        throws Exception
+    {
+        assertNull( savedCache().get( KEY, SIZE + 1, MTIME, ALGORITHMS ) );
+    }
+
+    public void testModificationTimeChangeInvalidates()
+        throws Exception
+    {
+        final DigestCache cache = savedCache();
+
+        assertNull( cache.get( KEY, SIZE, MTIME + 1, ALGORITHMS ) );
+        assertNull( cache.get( KEY, SIZE, MTIME - 1000, ALGORITHMS ) );
+        assertEquals( 2, cache.getMisses() );
+    }
+
+    public void testEntryDigestedRightAfterModificationIsNotTrusted()
+        throws Exception
+    {
+        final DigestCache cache = new DigestCache( cacheFile );
+        // the file may have been written again within the timestamp resolution
+        cache.put( KEY, SIZE, MTIME, MTIME + 500, ALGORITHMS, DIGESTS );
+
+        assertNull( cache.get( KEY, SIZE, MTIME, ALGORITHMS ) );
+    }
+
+    public void testNewDigestsReplaceInvalidEntry()
+        throws Exception
+    {
+        final DigestCache cache = savedCache();
+        final String[] changed = { "0cc175b9c0f1b6a831c399e269772661", "86f7e437faa5a7fce15d1ddcb9eaeaea377667b8" };
+        cache.put( KEY, SIZE + 1, MTIME + 1, CHECKED + 1, ALGORITHMS, changed );
+
+        assertNull( cache.get( KEY, SIZE, MTIME, ALGORITHMS ) );
+        assertEquals( Arrays.asList( changed ), Arrays.asList( cache.get( KEY, SIZE + 1, MTIME + 1, ALGORITHMS ) ) );
+    }
+
+    public void testMalformedEntriesAreIgnored()
+        throws Exception
+    {
+        savedCache();
+        write( cacheFile, "/repo/broken.jar=not,a,number\n/repo/short.jar=12\n" + KEY + "=" + SIZE + "," + MTIME
+            + "," + CHECKED + ",MD5=" + DIGESTS[0] + ",SHA-1=" + DIGESTS[1] + "\n" );
+
+        final DigestCache cache = new DigestCache( cacheFile );
+        assertNull( cache.get( "/repo/broken.jar", 12, MTIME, ALGORITHMS ) );
+        assertNull( cache.get( "/repo/short.jar", 12, MTIME, ALGORITHMS ) );
+        assertEquals( Arrays.asList( DIGESTS ), Arrays.asList( cache.get( KEY, SIZE, MTIME, ALGORITHMS ) ) );
+    }
+
+    public void testCorruptFileIsIgnored()
+        throws Exception
+    {
+        // a truncated unicode escape makes Properties.load fail
+        write( cacheFile, KEY + "=" + SIZE + "," + MTIME + "\\u00" );
+
+        final DigestCache cache = new DigestCache( cacheFile );
+        assertNull( cache.get( KEY, SIZE, MTIME, ALGORITHMS ) );
+
+        cache.put( KEY, SIZE, MTIME, CHECKED, ALGORITHMS, DIGESTS );
+        cache.save();
+        assertNotNull( new DigestCache( cacheFile ).get( KEY, SIZE, MTIME, ALGORITHMS ) );
+    }
+
+    private DigestCache savedCache()
+        throws IOException
+    {
+        final DigestCache cache = new DigestCache( cacheFile );
+        cache.put( KEY, SIZE, MTIME, CHECKED, ALGORITHMS, DIGESTS );
+        cache.save();
+        return new DigestCache( cacheFile );
+    }
+
+    private static void write( File file, String content )
+        throws IOException
+    {
+        final OutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( content.getBytes( "ISO-8859-1" ) );
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.maven.plugins.digest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the single pass digests against published test vectors.
+ */
+public class DigestEngineTest
+    extends TestCase
+{
+
+    private static final String[] ALGORITHMS = { "MD5", "SHA-1", "SHA-256" };
+
+    private static final String FOX = "The quick brown fox jumps over the lazy dog";
+
+    private static final String[] FOX_DIGESTS = { "9e107d9d372bb6826bd81d3542a419d6",
+        "2fd4e1c67a2d28fced849ee1bb76e7391b93eb12", "d7a8fbb307d7809469ca9abcb0082e4f8d5651e46d3cdb762d02d0bf37c9e592" };
+
+    private static final String[] ABC_DIGESTS = { "900150983cd24fb0d6963f7d28e17f72",
+        "a9993e364706816aba3e25717850c26c9cd0d89d", "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad" };
+
+    private static final String[] EMPTY_DIGESTS = { "d41d8cd98f00b204e9800998ecf8427e",
+        "da39a3ee5e6b4b0d3255bfef95601890afd80709", "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855" };
+
+    private final List<File> files = new ArrayList<File>();
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        for ( File file : files )
+        {
+            file.delete();
+        }
+        super.tearDown();
+    }
+
+    public void testDigestsAllAlgorithmsInOnePass()
+        throws Exception
+    {
+        final DigestEngine engine = new DigestEngine( ALGORITHMS, 1 );
+
+        assertDigests( FOX_DIGESTS, engine.digest( file( FOX ) ) );
+        assertDigests( ABC_DIGESTS, engine.digest( file( "abc" ) ) );
+        assertDigests( EMPTY_DIGESTS, engine.digest( file( "" ) ) );
+    }
+
+    public void testDigestsAcrossSeveralReads()
+        throws Exception
+    {
+        // 7 does not divide the length, so the last read is a partial one
+        final DigestEngine engine = new DigestEngine( ALGORITHMS, 1, 7 );
+
+        assertDigests( FOX_DIGESTS, engine.digest( file( FOX ) ) );
+    }
+
+    public void testDigestsInAlgorithmOrder()
+        throws Exception
+    {
+        final DigestEngine engine = new DigestEngine( new String[] { "SHA-256", "MD5" }, 1 );
+
+        assertDigests( new String[] { FOX_DIGESTS[2], FOX_DIGESTS[0] }, engine.digest( file( FOX ) ) );
+    }
+
+    public void testDigestAllKeepsFileOrder()
+        throws Exception
+    {
+        final List<File> inputs = new ArrayList<File>();
+        final List<String[]> expected = new ArrayList<String[]>();
+        for ( int i = 0; i < 10; i++ )
+        {
+            inputs.add( file( FOX ) );
+            expected.add( FOX_DIGESTS );
+            inputs.add( file( "abc" ) );
+            expected.add( ABC_DIGESTS );
+            inputs.add( file( "" ) );
+            expected.add( EMPTY_DIGESTS );
+        }
+
+        final List<String[]> results = new DigestEngine( ALGORITHMS, 4, 16 ).digestAll( inputs );
+
+        assertEquals( expected.size(), results.size() );
+        for ( int i = 0; i < results.size(); i++ )
+        {
+            assertDigests( expected.get( i ), results.get( i ) );
+        }
+    }
+
+    public void testDigestAllFailsOnMissingFile()
+        throws Exception
+    {
+        final File missing = new File( file( "" ).getPath() + ".missing" );
+        try
+        {
+            new DigestEngine( ALGORITHMS, 2 ).digestAll( Arrays.asList( file( FOX ), missing ) );
+            fail( "A missing file should fail" );
+        }
+        catch ( IOException e )
+        {
+            // expected
+        }
+    }
+
+    public void testUnknownAlgorithmFailsEarly()
+    {
+        try
+        {
+            new DigestEngine( new String[] { "MD5", "NO-SUCH-DIGEST" }, 1 );
+            fail( "An unknown algorithm should fail" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            // expected
+        }
+    }
+
+    private File file( String content )
+        throws IOException
+    {
+        final File file = File.createTempFile( "digest-engine", ".txt" );
+        files.add( file );
+        final OutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( content.getBytes( "US-ASCII" ) );
+        }
+        finally
+        {
+            os.close();
+        }
+        return file;
+    }
+
+    private static void assertDigests( String[] expected, String[] actual )
+    {
+        assertEquals( Arrays.asList( expected ), Arrays.asList( actual ) );
+    }
+}
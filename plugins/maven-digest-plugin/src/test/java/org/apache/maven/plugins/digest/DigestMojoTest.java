@@ -0,0 +1,184 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.maven.plugins.digest;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Runs the create and check goals twice over the same files, checking what the second run takes from the cache.
+ */
+public class DigestMojoTest
+    extends TestCase
+{
+
+    /** The goals resolve the files they find against the working directory. */
+    private static final String DIR = "target/digest-mojo-test";
+
+    private static final String FILE = DIR + "/artifact.zip";
+
+    private static final String CONTENT = "the content of the artifact";
+
+    /** Well before the runs, so that the cached digests are trusted. */
+    private static final long MTIME = System.currentTimeMillis() / 1000 * 1000 - 60000;
+
+    private File cacheFile;
+
+    private List<String> messages;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+        FileUtils.deleteDirectory( DIR );
+        write( FILE, CONTENT );
+        cacheFile = new File( DIR, "digest-cache.properties" );
+        messages = new ArrayList<String>();
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( DIR );
+        super.tearDown();
+    }
+
+    public void testDigestFilesAreNotRewrittenWhenUnchanged()
+        throws Exception
+    {
+        createMojo( true ).execute();
+        final File md5 = new File( FILE + ".md5" );
+        final File sha1 = new File( FILE + ".sha1" );
+        assertEquals( "512c9960306dceca14d9068399cf898e", FileUtils.fileRead( md5 ).trim() );
+        md5.setLastModified( MTIME );
+        sha1.setLastModified( MTIME );
+
+        createMojo( true ).execute();
+
+        assertEquals( MTIME, md5.lastModified() );
+        assertEquals( MTIME, sha1.lastModified() );
+    }
+
+    public void testReportsHitRateAndBytesNotRead()
+        throws Exception
+    {
+        createMojo( true ).execute();
+        assertTrue( messages.toString(),
+                    messages.contains( "Digest cache: 0 of 1 files unchanged (0% hit rate), 0 bytes not read" ) );
+
+        messages.clear();
+        createMojo( true ).execute();
+        assertTrue( messages.toString(), messages.contains( "Digest cache: 1 of 1 files unchanged (100% hit rate), "
+            + CONTENT.length() + " bytes not read" ) );
+    }
+
+    public void testCheckTrustsTheCache()
+        throws Exception
+    {
+        createMojo( true ).execute();
+
+        // the same size and modification time, so only reading the file tells it changed
+        write( FILE, CONTENT.toUpperCase() );
+
+        checkMojo( true, false ).execute();
+        try
+        {
+            checkMojo( true, true ).execute();
+            fail( "Reading the file again should find it changed" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            // expected
+        }
+    }
+
+    public void testNoCacheReadsEveryFile()
+        throws Exception
+    {
+        createMojo( false ).execute();
+        write( FILE, CONTENT.toUpperCase() );
+
+        try
+        {
+            checkMojo( false, false ).execute();
+            fail( "Without the cache the file should be found changed" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertFalse( cacheFile.exists() );
+        }
+    }
+
+    private DigestCreateMojo createMojo( boolean useCache )
+        throws Exception
+    {
+        return configure( new DigestCreateMojo(), useCache );
+    }
+
+    private DigestCheckMojo checkMojo( boolean useCache, boolean forceVerify )
+        throws Exception
+    {
+        final DigestCheckMojo mojo = configure( new DigestCheckMojo(), useCache );
+        setField( DigestCheckMojo.class, mojo, "forceVerify", Boolean.valueOf( forceVerify ) );
+        return mojo;
+    }
+
+    private <T extends AbstractDigestMojo> T configure( T mojo, boolean useCache )
+        throws Exception
+    {
+        setField( AbstractDigestMojo.class, mojo, "project", new MavenProject() );
+        setField( AbstractDigestMojo.class, mojo, "files", FILE );
+        setField( AbstractDigestMojo.class, mojo, "useCache", Boolean.valueOf( useCache ) );
+        setField( AbstractDigestMojo.class, mojo, "cacheFile", cacheFile );
+        mojo.setLog( new SystemStreamLog()
+        {
+            @Override
+            public void info( CharSequence content )
+            {
+                messages.add( content.toString() );
+            }
+        } );
+        return mojo;
+    }
+
+    private static void setField( Class<?> type, Object object, String name, Object value )
+        throws Exception
+    {
+        final Field field = type.getDeclaredField( name );
+        field.setAccessible( true );
+        field.set( object, value );
+    }
+
+    private static void write( String path, String content )
+        throws IOException
+    {
+        final File file = new File( path );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file, "UTF-8", content );
+        file.setLastModified( MTIME );
+    }
+}
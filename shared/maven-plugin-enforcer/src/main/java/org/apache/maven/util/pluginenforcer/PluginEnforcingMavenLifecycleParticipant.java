@@ -18,6 +18,20 @@ package org.apache.maven.util.pluginenforcer;
 * under the License.
 */
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.apache.maven.AbstractMavenLifecycleParticipant;
 import org.apache.maven.MavenExecutionException;
 import org.apache.maven.artifact.ArtifactUtils;
@@ -31,6 +45,10 @@ import org.apache.maven.shared.utils.StringUtils;
 
 /**
  * Enforces that a specific version of a plugin is used throughout a build.
+ * <p>
+ * The versions to force are read once, from the <code>force.plugins</code> property and the file named by the
+ * <code>force.plugins.file</code> property, into an index keyed by <code>groupId:artifactId</code>. Each project's
+ * plugins are then looked up in that index in a single pass, the projects being processed in parallel.
  *
  * @author Stephen Connolly
  * @since 03-Nov-2009 21:52:08
@@ -47,7 +65,8 @@ public class PluginEnforcingMavenLifecycleParticipant
         throws MavenExecutionException
     {
         String config = session.getUserProperties().getProperty( "force.plugins" );
-        if ( StringUtils.isEmpty( config ) )
+        String configFile = session.getUserProperties().getProperty( "force.plugins.file" );
+        if ( StringUtils.isEmpty( config ) && StringUtils.isEmpty( configFile ) )
         {
             logger.info( "Plugin Enforcer: Nothing to do (i.e. -Dforce.plugins undefined)" );
             return;
@@ -55,75 +74,222 @@ public class PluginEnforcingMavenLifecycleParticipant
         logger.info( StringUtils.repeat( "-", 72 ) );
         logger.info( "Plugin Enforcer" );
         logger.info( StringUtils.repeat( "-", 72 ) );
-        for ( String forcePlugin : config.split( "," ) )
+
+        PluginOverrides overrides = new PluginOverrides();
+        if ( StringUtils.isNotEmpty( configFile ) )
         {
-            if ( StringUtils.isEmpty( forcePlugin ) )
+            File file = resolve( session, configFile );
+            try
             {
-                continue;
+                overrides.parse( file );
             }
-            String[] parts = forcePlugin.split( ":" );
-            if ( parts.length < 2 || parts.length > 3 )
+            catch ( IOException e )
             {
-                logger.warn( "\"" + forcePlugin + "\" does not match the format [groupId:]artifactId:version" );
-                continue;
+                throw new MavenExecutionException( "Cannot read force.plugins.file " + file.getAbsolutePath(), e );
             }
-            String groupId = parts.length == 3 ? parts[0] : "org.apache.maven.plugins";
-            String artifactId = parts[parts.length - 2];
-            String version = parts[parts.length - 1];
-            if ( StringUtils.isEmpty( groupId ) || StringUtils.isEmpty( artifactId ) || StringUtils.isEmpty( version ) )
+        }
+        if ( StringUtils.isNotEmpty( config ) )
+        {
+            // the command line wins over the file
+            overrides.parse( config );
+        }
+        for ( String forcePlugin : overrides.getMalformed() )
+        {
+            logger.warn( "\"" + forcePlugin + "\" does not match the format [groupId:]artifactId:version" );
+        }
+        if ( overrides.isEmpty() )
+        {
+            return;
+        }
+        for ( Map.Entry<String, String> override : overrides.getVersions().entrySet() )
+        {
+            logger.info( "Forcing " + override.getKey() + " to " + override.getValue() );
+        }
+        logger.info( "" );
+
+        List<ProjectReport> reports = enforce( session.getProjects(), overrides );
+
+        int updatedProjects = 0;
+        int managedReplacements = 0;
+        int buildReplacements = 0;
+        Map<String, Integer> projectsByOverride = new LinkedHashMap<String, Integer>();
+        for ( String key : overrides.getVersions().keySet() )
+        {
+            projectsByOverride.put( key, 0 );
+        }
+        for ( ProjectReport report : reports )
+        {
+            if ( report.replacements.isEmpty() )
             {
-                logger.warn( "\"" + forcePlugin + "\" does not match the format [groupId:]artifactId:version" );
+                logger.warn( "No replacements Project: " + report.name );
+                logger.info( "" );
                 continue;
             }
-            logger.info( "Forcing " + ArtifactUtils.versionlessKey( groupId, artifactId ) + " to " + version );
+            updatedProjects++;
+            managedReplacements += report.managedReplacements;
+            buildReplacements += report.replacements.size() - report.managedReplacements;
+            logger.info( "Project: " + report.name );
+            for ( String replacement : report.replacements )
+            {
+                logger.info( replacement );
+            }
             logger.info( "" );
-            for ( MavenProject project : session.getProjects() )
+            for ( String key : report.overrides )
             {
-                String name = StringUtils.isEmpty( project.getName() ) ?
-                    ArtifactUtils.versionlessKey( project.getGroupId(), project.getArtifactId() ) + ":"
-                        + project.getVersion() : project.getName();
-                boolean projectIdentified = false;
-                for ( Plugin plugin : project.getPluginManagement().getPlugins() )
-                {
-                    if ( StringUtils.equals( groupId, plugin.getGroupId() ) && StringUtils.equals( artifactId,
-                                                                                                   plugin.getArtifactId() ) )
-                    {
-                        if ( !projectIdentified )
-                        {
-                            logger.info( "Project: " + name );
-                            projectIdentified = true;
-                        }
-                        logger.info(
-                            "Plugin Management: replacing version " + plugin.getVersion() + " with " + version );
-                        plugin.setVersion( version );
-                    }
-                }
-                for ( Plugin plugin : project.getBuildPlugins() )
+                projectsByOverride.put( key, projectsByOverride.get( key ) + 1 );
+            }
+        }
+
+        logger.info( "Plugin Enforcer summary: " + updatedProjects + " of " + reports.size() + " projects updated, "
+            + managedReplacements + " plugin management and " + buildReplacements + " build plugin versions replaced" );
+        for ( Map.Entry<String, Integer> entry : projectsByOverride.entrySet() )
+        {
+            String line = "  " + entry.getKey() + ":" + overrides.getVersions().get( entry.getKey() ) + " applied to "
+                + entry.getValue() + " project(s)";
+            if ( entry.getValue() == 0 )
+            {
+                logger.warn( line );
+            }
+            else
+            {
+                logger.info( line );
+            }
+        }
+        logger.info( "" );
+    }
+
+    /**
+     * Resolves a relative <code>force.plugins.file</code> against the directory Maven was started from, rather than
+     * the working directory of the JVM, which may differ (e.g. when embedded or with <code>-f</code>).
+     */
+    private static File resolve( MavenSession session, String path )
+    {
+        File file = new File( path );
+        if ( file.isAbsolute() )
+        {
+            return file;
+        }
+        String baseDirectory = session.getRequest() == null ? null : session.getRequest().getBaseDirectory();
+        if ( StringUtils.isEmpty( baseDirectory ) )
+        {
+            baseDirectory = session.getExecutionRootDirectory();
+        }
+        return StringUtils.isEmpty( baseDirectory ) ? file : new File( baseDirectory, path );
+    }
+
+    /**
+     * Applies the overrides to every project, in parallel.
+     *
+     * @return the report of each project, in the order of the projects.
+     */
+    private List<ProjectReport> enforce( List<MavenProject> projects, final PluginOverrides overrides )
+        throws MavenExecutionException
+    {
+        List<ProjectReport> reports = new ArrayList<ProjectReport>( projects.size() );
+        int threads = Math.min( Runtime.getRuntime().availableProcessors(), projects.size() );
+        if ( threads <= 1 )
+        {
+            for ( MavenProject project : projects )
+            {
+                reports.add( enforce( project, overrides ) );
+            }
+            return reports;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Future<ProjectReport>> futures = new ArrayList<Future<ProjectReport>>( projects.size() );
+            for ( final MavenProject project : projects )
+            {
+                futures.add( executor.submit( new Callable<ProjectReport>()
                 {
-                    if ( StringUtils.equals( groupId, plugin.getGroupId() ) && StringUtils.equals( artifactId,
-                                                                                                   plugin.getArtifactId() ) )
+                    public ProjectReport call()
                     {
-                        if ( !projectIdentified )
-                        {
-                            logger.info( "Project: " + name );
-                            projectIdentified = true;
-                        }
-                        logger.info( "Build Plugins: replacing version " + plugin.getVersion() + " with " + version );
-                        plugin.setVersion( version );
+                        return enforce( project, overrides );
                     }
-                }
-                if ( projectIdentified )
-                {
-                    logger.info( "" );
-                }
-                else
-                {
-                    logger.warn( "No replacements Project: " + name );
+                } ) );
+            }
+            for ( Future<ProjectReport> future : futures )
+            {
+                reports.add( future.get() );
+            }
+            return reports;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MavenExecutionException( "Interrupted while enforcing plugin versions", e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new MavenExecutionException( "Failed to enforce plugin versions", e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
 
-                    logger.info( "" );
+    /**
+     * Applies the overrides to one project, looking up each of its managed and build plugins once. Only touches the
+     * project's own model, so projects can be processed concurrently; logging is left to the caller.
+     */
+    private static ProjectReport enforce( MavenProject project, PluginOverrides overrides )
+    {
+        String name = StringUtils.isEmpty( project.getName() ) ?
+            ArtifactUtils.versionlessKey( project.getGroupId(), project.getArtifactId() ) + ":"
+                + project.getVersion() : project.getName();
+        ProjectReport report = new ProjectReport( name );
+        if ( project.getPluginManagement() != null )
+        {
+            for ( Plugin plugin : project.getPluginManagement().getPlugins() )
+            {
+                if ( replace( plugin, overrides, "Plugin Management", report ) )
+                {
+                    report.managedReplacements++;
                 }
             }
         }
+        for ( Plugin plugin : project.getBuildPlugins() )
+        {
+            replace( plugin, overrides, "Build Plugins", report );
+        }
+        return report;
+    }
 
+    private static boolean replace( Plugin plugin, PluginOverrides overrides, String section, ProjectReport report )
+    {
+        String version = overrides.getVersion( plugin.getGroupId(), plugin.getArtifactId() );
+        if ( version == null )
+        {
+            return false;
+        }
+        String groupId = plugin.getGroupId() == null ? PluginOverrides.DEFAULT_GROUP_ID : plugin.getGroupId();
+        String key = ArtifactUtils.versionlessKey( groupId, plugin.getArtifactId() );
+        report.replacements.add( section + ": replacing " + key + " version " + plugin.getVersion() + " with "
+            + version );
+        report.overrides.add( key );
+        plugin.setVersion( version );
+        return true;
+    }
+
+    /**
+     * What was replaced in one project.
+     */
+    private static class ProjectReport
+    {
+        final String name;
+
+        final List<String> replacements = new ArrayList<String>();
+
+        final Set<String> overrides = new LinkedHashSet<String>();
+
+        int managedReplacements;
+
+        ProjectReport( String name )
+        {
+            this.name = name;
+        }
     }
 }
@@ -0,0 +1,152 @@
+package org.apache.maven.util.pluginenforcer;
+/*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*  http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.shared.utils.StringUtils;
+import org.apache.maven.shared.utils.io.IOUtil;
+
+/**
+ * The plugin versions to force, indexed by <code>groupId:artifactId</code>. When a plugin is given more than once, the
+ * last version wins.
+ */
+class PluginOverrides
+{
+
+    static final String DEFAULT_GROUP_ID = "org.apache.maven.plugins";
+
+    private final Map<String, String> versions = new LinkedHashMap<String, String>();
+
+    private final List<String> malformed = new ArrayList<String>();
+
+    /**
+     * Adds the overrides of a comma separated list of <code>[groupId:]artifactId:version</code>.
+     *
+     * @param config the list.
+     */
+    void parse( String config )
+    {
+        for ( String forcePlugin : config.split( "," ) )
+        {
+            add( forcePlugin.trim() );
+        }
+    }
+
+    /**
+     * Adds the overrides listed in a file, one or more comma separated <code>[groupId:]artifactId:version</code> per
+     * line. Blank lines and lines starting with <code>#</code> are ignored.
+     *
+     * @param file the file.
+     * @throws IOException if the file cannot be read.
+     */
+    void parse( File file )
+        throws IOException
+    {
+        BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ) );
+        try
+        {
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                line = line.trim();
+                if ( !line.startsWith( "#" ) )
+                {
+                    parse( line );
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+    }
+
+    private void add( String forcePlugin )
+    {
+        if ( StringUtils.isEmpty( forcePlugin ) )
+        {
+            return;
+        }
+        String[] parts = forcePlugin.split( ":" );
+        if ( parts.length < 2 || parts.length > 3 )
+        {
+            malformed.add( forcePlugin );
+            return;
+        }
+        String groupId = parts.length == 3 ? parts[0] : DEFAULT_GROUP_ID;
+        String artifactId = parts[parts.length - 2];
+        String version = parts[parts.length - 1];
+        if ( StringUtils.isEmpty( groupId ) || StringUtils.isEmpty( artifactId ) || StringUtils.isEmpty( version ) )
+        {
+            malformed.add( forcePlugin );
+            return;
+        }
+        String key = ArtifactUtils.versionlessKey( groupId, artifactId );
+        // re-insert, so that the iteration order is the order of the effective definitions
+        versions.remove( key );
+        versions.put( key, version );
+    }
+
+    /**
+     * @param groupId the plugin groupId, <code>null</code> meaning {@link #DEFAULT_GROUP_ID} as in the POM.
+     * @param artifactId the plugin artifactId.
+     * @return the version to force, or <code>null</code> if the plugin is not overridden.
+     */
+    String getVersion( String groupId, String artifactId )
+    {
+        if ( artifactId == null )
+        {
+            return null;
+        }
+        return versions.get( ArtifactUtils.versionlessKey( groupId == null ? DEFAULT_GROUP_ID : groupId,
+                                                           artifactId ) );
+    }
+
+    /**
+     * @return the versions to force, keyed by <code>groupId:artifactId</code>.
+     */
+    Map<String, String> getVersions()
+    {
+        return Collections.unmodifiableMap( versions );
+    }
+
+    /**
+     * @return the entries that do not match the format <code>[groupId:]artifactId:version</code>.
+     */
+    List<String> getMalformed()
+    {
+        return Collections.unmodifiableList( malformed );
+    }
+
+    boolean isEmpty()
+    {
+        return versions.isEmpty();
+    }
+}
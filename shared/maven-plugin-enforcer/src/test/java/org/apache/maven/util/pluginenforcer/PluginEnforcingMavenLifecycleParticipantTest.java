@@ -18,13 +18,27 @@ package org.apache.maven.util.pluginenforcer;
 * under the License.
 */
 
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginManagement;
+import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.logging.Logger;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.Properties;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.*;
 
 /**
@@ -132,4 +146,168 @@ public class PluginEnforcingMavenLifecycleParticipantTest
     }
 
 
+    @Test
+    public void parseFile()
+        throws Exception
+    {
+        MavenSession session = mock( MavenSession.class );
+        Logger logger = mock( Logger.class );
+        PluginEnforcingMavenLifecycleParticipant instance = newInstance( logger );
+        File file = File.createTempFile( "force-plugins", ".txt" );
+        file.deleteOnExit();
+        writeLines( file, "# pinned plugins", "", "org.mytest:myplugin:1.0", "foobar:3.0, org.mytest:other:2.0" );
+        final Properties properties = new Properties();
+        properties.setProperty( "force.plugins.file", file.getAbsolutePath() );
+        when( session.getUserProperties() ).thenReturn( properties );
+        instance.afterProjectsRead( session );
+        verify( logger, never() ).warn( contains( "does not match the format" ) );
+        verify( logger, times( 1 ) ).info( contains( "Forcing org.mytest:myplugin to 1.0" ) );
+        verify( logger, times( 1 ) ).info( contains( "Forcing org.apache.maven.plugins:foobar to 3.0" ) );
+        verify( logger, times( 1 ) ).info( contains( "Forcing org.mytest:other to 2.0" ) );
+    }
+
+    @Test
+    public void commandLineOverridesFile()
+        throws Exception
+    {
+        MavenSession session = mock( MavenSession.class );
+        Logger logger = mock( Logger.class );
+        PluginEnforcingMavenLifecycleParticipant instance = newInstance( logger );
+        File file = File.createTempFile( "force-plugins", ".txt" );
+        file.deleteOnExit();
+        writeLines( file, "org.mytest:myplugin:1.0" );
+        final Properties properties = new Properties();
+        properties.setProperty( "force.plugins.file", file.getAbsolutePath() );
+        properties.setProperty( "force.plugins", "org.mytest:myplugin:1.1" );
+        when( session.getUserProperties() ).thenReturn( properties );
+        instance.afterProjectsRead( session );
+        verify( logger, never() ).info( contains( "Forcing org.mytest:myplugin to 1.0" ) );
+        verify( logger, times( 1 ) ).info( contains( "Forcing org.mytest:myplugin to 1.1" ) );
+    }
+
+    @Test
+    public void relativeFileIsResolvedAgainstBaseDirectory()
+        throws Exception
+    {
+        MavenSession session = mock( MavenSession.class );
+        MavenExecutionRequest request = mock( MavenExecutionRequest.class );
+        Logger logger = mock( Logger.class );
+        PluginEnforcingMavenLifecycleParticipant instance = newInstance( logger );
+        File file = File.createTempFile( "force-plugins", ".txt" );
+        file.deleteOnExit();
+        writeLines( file, "org.mytest:myplugin:1.0" );
+        final Properties properties = new Properties();
+        properties.setProperty( "force.plugins.file", file.getName() );
+        when( session.getUserProperties() ).thenReturn( properties );
+        when( session.getRequest() ).thenReturn( request );
+        when( request.getBaseDirectory() ).thenReturn( file.getParent() );
+        instance.afterProjectsRead( session );
+        verify( logger, times( 1 ) ).info( contains( "Forcing org.mytest:myplugin to 1.0" ) );
+    }
+
+    @Test
+    public void relativeFileFallsBackToExecutionRoot()
+        throws Exception
+    {
+        MavenSession session = mock( MavenSession.class );
+        Logger logger = mock( Logger.class );
+        PluginEnforcingMavenLifecycleParticipant instance = newInstance( logger );
+        File file = File.createTempFile( "force-plugins", ".txt" );
+        file.deleteOnExit();
+        writeLines( file, "org.mytest:myplugin:1.0" );
+        final Properties properties = new Properties();
+        properties.setProperty( "force.plugins.file", file.getName() );
+        when( session.getUserProperties() ).thenReturn( properties );
+        when( session.getExecutionRootDirectory() ).thenReturn( file.getParent() );
+        instance.afterProjectsRead( session );
+        verify( logger, times( 1 ) ).info( contains( "Forcing org.mytest:myplugin to 1.0" ) );
+    }
+
+    @Test( expected = MavenExecutionException.class )
+    public void missingFile()
+        throws Exception
+    {
+        MavenSession session = mock( MavenSession.class );
+        Logger logger = mock( Logger.class );
+        PluginEnforcingMavenLifecycleParticipant instance = newInstance( logger );
+        final Properties properties = new Properties();
+        properties.setProperty( "force.plugins.file", new File( "does-not-exist.txt" ).getAbsolutePath() );
+        when( session.getUserProperties() ).thenReturn( properties );
+        instance.afterProjectsRead( session );
+    }
+
+    @Test
+    public void replaceVersions()
+        throws Exception
+    {
+        MavenSession session = mock( MavenSession.class );
+        Logger logger = mock( Logger.class );
+        PluginEnforcingMavenLifecycleParticipant instance = newInstance( logger );
+        final Properties properties = new Properties();
+        properties.setProperty( "force.plugins",
+                                "org.mytest:myplugin:1.0,maven-surefire-plugin:2.6,org.mytest:unused:1" );
+        when( session.getUserProperties() ).thenReturn( properties );
+
+        Plugin managed = newPlugin( "org.mytest", "myplugin", "0.9" );
+        Plugin surefire = newPlugin( "org.apache.maven.plugins", "maven-surefire-plugin", "2.4.3" );
+        Plugin untouched = newPlugin( "org.mytest", "another", "0.1" );
+        MavenProject first = newProject( "first" );
+        first.getBuild().getPluginManagement().addPlugin( managed );
+        first.getBuild().addPlugin( surefire );
+        first.getBuild().addPlugin( untouched );
+        MavenProject second = newProject( "second" );
+        when( session.getProjects() ).thenReturn( Arrays.asList( first, second ) );
+
+        instance.afterProjectsRead( session );
+
+        assertEquals( "1.0", managed.getVersion() );
+        assertEquals( "2.6", surefire.getVersion() );
+        assertEquals( "0.1", untouched.getVersion() );
+        verify( logger, times( 1 ) ).info( "Project: first" );
+        verify( logger, times( 1 ) ).warn( contains( "No replacements Project: second" ) );
+        verify( logger, times( 1 ) ).info(
+            contains( "1 of 2 projects updated, 1 plugin management and 1 build plugin versions replaced" ) );
+        verify( logger, times( 1 ) ).warn( contains( "org.mytest:unused:1 applied to 0 project(s)" ) );
+    }
+
+    private static MavenProject newProject( String name )
+    {
+        Model model = new Model();
+        model.setGroupId( "org.mytest" );
+        model.setArtifactId( name );
+        model.setVersion( "1.0-SNAPSHOT" );
+        model.setName( name );
+        Build build = new Build();
+        build.setPluginManagement( new PluginManagement() );
+        model.setBuild( build );
+        return new MavenProject( model );
+    }
+
+    private static Plugin newPlugin( String groupId, String artifactId, String version )
+    {
+        Plugin plugin = new Plugin();
+        plugin.setGroupId( groupId );
+        plugin.setArtifactId( artifactId );
+        plugin.setVersion( version );
+        return plugin;
+    }
+
+    private static void writeLines( File file, String... lines )
+        throws IOException
+    {
+        Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+        try
+        {
+            for ( String line : lines )
+            {
+                writer.write( line );
+                writer.write( '\n' );
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
 }
@@ -22,13 +22,23 @@ package org.apache.maven.shared.scmchanges;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.maven.AbstractMavenLifecycleParticipant;
 import org.apache.maven.MavenExecutionException;
 import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Extension;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Plugin;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.scm.ScmFile;
 import org.apache.maven.scm.ScmFileSet;
@@ -70,6 +80,12 @@ public class MakeScmChanges
     /** Disabled by default; activate via -Dmake.scmChanges=true */
     boolean enabled = false;
     
+    /**
+     * make.dependents: Select the changed projects and every reactor project depending on them, directly or not,
+     * instead of relying on the reactor's make-downstream behavior
+     */
+    boolean makeDependents = false;
+
     /** make.baseDir: Search SCM for modified files in this directory.  Defaults to ${project.baseDir} for the root project. */
     File baseDir;
     
@@ -87,9 +103,10 @@ public class MakeScmChanges
 
         List<ScmFile> changedFiles = getChangedFilesFromScm( baseDir );
 
-        List<String> includedProjects = new ArrayList<String>();
+        Set<MavenProject> changedProjects = new LinkedHashSet<MavenProject>();
 
         MavenProject topLevelProject = session.getTopLevelProject();
+        ProjectPathIndex index = new ProjectPathIndex( session.getProjects() );
         for ( ScmFile changedScmFile : changedFiles )
         {
             logger.debug( changedScmFile.toString() );
@@ -112,45 +129,41 @@ public class MakeScmChanges
                 continue;
             }
             
-            boolean found = false;
-            // TODO There's a cleverer/faster way to code this, right? This is O(n^2)
-            for ( MavenProject project : session.getProjects() )
+            MavenProject project = index.findProject( changedFile );
+            boolean found = project != null;
+            if ( found )
             {
                 File projectDirectory = project.getFile().getParentFile();
-                if ( changedFile.getAbsolutePath().startsWith( projectDirectory.getAbsolutePath() + File.separator ) )
+                if ( topLevelProject.equals( project ) )
                 {
-                    if (topLevelProject.equals( project )) {
-                        // If we include the top level project, then we'll build everything.
-                        // We have to be very careful before allowing that to happen.
-                        
-                        // In particular, if the modified file is in a subdirectory X that is not itself
-                        // a Maven project, we don't want that one file to cause a full build. 
-                        // i.e. we ignore changes that are in a random subdirectory.
-                        
-                        // Is the top level project actually in the baseDir?
-                        // Sometimes people have sibling child projects, e.g.
-                        // <module>../child-project</module>
-                        // If the top level project isn't the baseDir, then running the whole build may be rational.
-                        if (baseDir.equals(projectDirectory.getAbsoluteFile())) {
-                            
-                            // is the changed file the baseDir or one of its immediate descendants?
-                            // That should probably provoke a rebuild.
-                            if (!(baseDir.equals( changedFile ) || baseDir.equals( changedFile.getParentFile() ))) {
-                                // OK, so the changed file is in some random subdirectory of the baseDir.
-                                // Skip it.
-                                logger.debug( "Not considering top level project for " + changedFile +
-                                              " because that would trigger a full rebuild." );
-                                continue;
-                            }
-                        }
-                    }
-                    if ( !includedProjects.contains( project ) )
+                    // If we include the top level project, then we'll build everything.
+                    // We have to be very careful before allowing that to happen.
+
+                    // In particular, if the modified file is in a subdirectory X that is not itself
+                    // a Maven project, we don't want that one file to cause a full build.
+                    // i.e. we ignore changes that are in a random subdirectory.
+
+                    // Is the top level project actually in the baseDir?
+                    // Sometimes people have sibling child projects, e.g.
+                    // <module>../child-project</module>
+                    // If the top level project isn't the baseDir, then running the whole build may be rational.
+                    if ( baseDir.equals( projectDirectory.getAbsoluteFile() ) )
                     {
-                        logger.debug( "Including " + project );
+                        // is the changed file the baseDir or one of its immediate descendants?
+                        // That should probably provoke a rebuild.
+                        if ( !( baseDir.equals( changedFile ) || baseDir.equals( changedFile.getParentFile() ) ) )
+                        {
+                            // OK, so the changed file is in some random subdirectory of the baseDir.
+                            // Skip it.
+                            logger.debug( "Not considering top level project for " + changedFile
+                                + " because that would trigger a full rebuild." );
+                            continue;
+                        }
                     }
-                    includedProjects.add( project.getGroupId() + ":" + project.getArtifactId() );
-                    found = true;
-                    break;
+                }
+                if ( changedProjects.add( project ) )
+                {
+                    logger.debug( "Including " + project );
                 }
             }
             if ( !found )
@@ -159,6 +172,17 @@ public class MakeScmChanges
             }
         }
 
+        if ( makeDependents )
+        {
+            changedProjects = collectDownstream( changedProjects, session.getProjects() );
+        }
+
+        List<String> includedProjects = new ArrayList<String>( changedProjects.size() );
+        for ( MavenProject project : changedProjects )
+        {
+            includedProjects.add( project.getGroupId() + ":" + project.getArtifactId() );
+        }
+
         if ( includedProjects.isEmpty() )
         {
             if ( failIfNothingToDo )
@@ -174,13 +198,17 @@ public class MakeScmChanges
 
         MavenExecutionRequest request = session.getRequest();
         String makeBehavior = request.getMakeBehavior();
-        if ( makeBehavior == null )
-        {
-            request.setMakeBehavior( MavenExecutionRequest.REACTOR_MAKE_DOWNSTREAM );
-        }
-        if ( MavenExecutionRequest.REACTOR_MAKE_UPSTREAM.equals( makeBehavior ) )
+        if ( !makeDependents )
         {
-            request.setMakeBehavior( MavenExecutionRequest.REACTOR_MAKE_BOTH );
+            // let the reactor add the downstream projects
+            if ( makeBehavior == null )
+            {
+                request.setMakeBehavior( MavenExecutionRequest.REACTOR_MAKE_DOWNSTREAM );
+            }
+            if ( MavenExecutionRequest.REACTOR_MAKE_UPSTREAM.equals( makeBehavior ) )
+            {
+                request.setMakeBehavior( MavenExecutionRequest.REACTOR_MAKE_BOTH );
+            }
         }
 
         request.setSelectedProjects( includedProjects );
@@ -210,6 +238,7 @@ public class MakeScmChanges
         ignoreUnknown = Boolean.parseBoolean( sessionProps.getProperty( "make.ignoreUnknown", "true" ) );
         ignoreRootPom = Boolean.parseBoolean( sessionProps.getProperty( "make.ignoreRootPom", "false" ) );
         failIfNothingToDo = Boolean.parseBoolean( sessionProps.getProperty( "make.failIfNothingToDo", "true" ) );
+        makeDependents = Boolean.parseBoolean( sessionProps.getProperty( "make.dependents", "false" ) );
         
         String basePath = sessionProps.getProperty( "make.baseDir" );
         if (basePath != null) {
@@ -219,6 +248,92 @@ public class MakeScmChanges
         }
     }
 
+    /**
+     * Add to the changed projects every reactor project that depends on one of them, directly or transitively, through
+     * its parent, dependencies, build plugins or build extensions.
+     */
+    Set<MavenProject> collectDownstream( Set<MavenProject> changedProjects, List<MavenProject> projects )
+    {
+        Map<String, MavenProject> projectsById = new HashMap<String, MavenProject>();
+        for ( MavenProject project : projects )
+        {
+            projectsById.put( key( project.getGroupId(), project.getArtifactId() ), project );
+        }
+
+        // reverse dependency graph: project -> reactor projects referencing it
+        Map<MavenProject, List<MavenProject>> downstream = new HashMap<MavenProject, List<MavenProject>>();
+        for ( MavenProject project : projects )
+        {
+            for ( String upstreamKey : getUpstreamKeys( project ) )
+            {
+                MavenProject upstream = projectsById.get( upstreamKey );
+                if ( upstream == null || upstream == project )
+                {
+                    continue;
+                }
+                List<MavenProject> dependents = downstream.get( upstream );
+                if ( dependents == null )
+                {
+                    dependents = new ArrayList<MavenProject>();
+                    downstream.put( upstream, dependents );
+                }
+                dependents.add( project );
+            }
+        }
+
+        Set<MavenProject> selected = new LinkedHashSet<MavenProject>( changedProjects );
+        LinkedList<MavenProject> queue = new LinkedList<MavenProject>( changedProjects );
+        while ( !queue.isEmpty() )
+        {
+            List<MavenProject> dependents = downstream.get( queue.removeFirst() );
+            if ( dependents == null )
+            {
+                continue;
+            }
+            for ( MavenProject dependent : dependents )
+            {
+                if ( selected.add( dependent ) )
+                {
+                    logger.debug( "Including downstream " + dependent );
+                    queue.add( dependent );
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static Set<String> getUpstreamKeys( MavenProject project )
+    {
+        Set<String> keys = new HashSet<String>();
+        Parent parent = project.getModel().getParent();
+        if ( parent != null )
+        {
+            keys.add( key( parent.getGroupId(), parent.getArtifactId() ) );
+        }
+        for ( Dependency dependency : project.getDependencies() )
+        {
+            keys.add( key( dependency.getGroupId(), dependency.getArtifactId() ) );
+        }
+        for ( Plugin plugin : project.getBuildPlugins() )
+        {
+            keys.add( key( plugin.getGroupId(), plugin.getArtifactId() ) );
+            for ( Dependency dependency : plugin.getDependencies() )
+            {
+                keys.add( key( dependency.getGroupId(), dependency.getArtifactId() ) );
+            }
+        }
+        for ( Extension extension : project.getBuildExtensions() )
+        {
+            keys.add( key( extension.getGroupId(), extension.getArtifactId() ) );
+        }
+        return keys;
+    }
+
+    private static String key( String groupId, String artifactId )
+    {
+        return groupId + ":" + artifactId;
+    }
+
     List<ScmFile> getChangedFilesFromScm( File baseDir )
         throws MavenExecutionException
     {
@@ -0,0 +1,118 @@
+package org.apache.maven.shared.scmchanges;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Trie of project base directories, keyed by path segment, so that the project owning a file is found in time
+ * proportional to the depth of the file's path rather than to the number of projects.
+ */
+class ProjectPathIndex
+{
+    private final Node root = new Node();
+
+    ProjectPathIndex( List<MavenProject> projects )
+    {
+        for ( MavenProject project : projects )
+        {
+            Node node = root;
+            for ( String segment : segments( project.getFile().getParentFile() ) )
+            {
+                Node child = node.children.get( segment );
+                if ( child == null )
+                {
+                    child = new Node();
+                    node.children.put( segment, child );
+                }
+                node = child;
+            }
+            if ( node.project == null )
+            {
+                node.project = project;
+            }
+        }
+    }
+
+    /**
+     * Find the project whose base directory is the deepest one containing the file, i.e. the most specific module.
+     *
+     * @param file an absolute file
+     * @return the project, or <code>null</code> if the file is not below any project base directory
+     */
+    MavenProject findProject( File file )
+    {
+        String[] segments = segments( file );
+        MavenProject found = root.project;
+        Node node = root;
+        // a project only owns the files strictly below its base directory: stop at the file's parent
+        for ( int i = 0; i < segments.length - 1; i++ )
+        {
+            node = node.children.get( segments[i] );
+            if ( node == null )
+            {
+                break;
+            }
+            if ( node.project != null )
+            {
+                found = node.project;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Split the absolute path of the file, resolving <code>.</code> and <code>..</code> so that a module declared as
+     * <code>../child</code> and a file reported below <code>child</code> end up on the same segments.
+     */
+    private static String[] segments( File file )
+    {
+        List<String> segments = new ArrayList<String>();
+        for ( String segment : file.getAbsolutePath().split( Pattern.quote( File.separator ) ) )
+        {
+            if ( "..".equals( segment ) )
+            {
+                if ( !segments.isEmpty() )
+                {
+                    segments.remove( segments.size() - 1 );
+                }
+            }
+            else if ( segment.length() > 0 && !".".equals( segment ) )
+            {
+                segments.add( segment );
+            }
+        }
+        return segments.toArray( new String[segments.size()] );
+    }
+
+    private static class Node
+    {
+        final Map<String, Node> children = new HashMap<String, Node>();
+
+        MavenProject project;
+    }
+}
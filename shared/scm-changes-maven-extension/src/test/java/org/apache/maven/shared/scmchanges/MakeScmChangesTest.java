@@ -34,6 +34,7 @@ import org.apache.maven.MavenExecutionException;
 import org.apache.maven.execution.DefaultMavenExecutionRequest;
 import org.apache.maven.execution.MavenExecutionRequest;
 import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Scm;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.scm.ScmFile;
@@ -351,4 +352,98 @@ public class MakeScmChangesTest
 
     }
 
+    @Test
+    public void nestedModuleSelectsDeepestProject()
+        throws MavenExecutionException
+    {
+        MavenSession session = mock( MavenSession.class );
+
+        msc = PowerMockito.spy( msc );
+
+        // use default parameters
+        PowerMockito.doNothing().when( msc ).readParameters( (MavenSession) any() );
+
+        ScmFile changedFile = new ScmFile( "agg/child/src/main/java/Foo.java", ScmFileStatus.MODIFIED );
+
+        List<ScmFile> changedFiles = Arrays.asList( changedFile );
+
+        PowerMockito.doReturn( changedFiles ).when( msc ).getChangedFilesFromScm( (File) any() );
+
+        MavenProject project = newProject( "root", "pom.xml" );
+        MavenProject aggregator = newProject( "agg", "agg/pom.xml" );
+        MavenProject child = newProject( "child", "agg/child/pom.xml" );
+
+        when( session.getTopLevelProject() ).thenReturn( project );
+
+        when( session.getProjects() ).thenReturn( Arrays.asList( project, aggregator, child ) );
+
+        MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        when( session.getRequest() ).thenReturn( request );
+
+        msc.afterProjectsRead( session );
+
+        List<String> selectedProjects = request.getSelectedProjects();
+        assertThat( selectedProjects.toString(), is( "[test:child]" ) );
+        assertThat( request.getMakeBehavior(), is( MavenExecutionRequest.REACTOR_MAKE_DOWNSTREAM ) );
+    }
+
+    @Test
+    public void makeDependents()
+        throws MavenExecutionException
+    {
+        MavenSession session = mock( MavenSession.class );
+
+        msc.makeDependents = true;
+
+        msc = PowerMockito.spy( msc );
+
+        // use default parameters
+        PowerMockito.doNothing().when( msc ).readParameters( (MavenSession) any() );
+
+        ScmFile changedFile = new ScmFile( "a/src/main/java/Foo.java", ScmFileStatus.MODIFIED );
+
+        List<ScmFile> changedFiles = Arrays.asList( changedFile );
+
+        PowerMockito.doReturn( changedFiles ).when( msc ).getChangedFilesFromScm( (File) any() );
+
+        MavenProject project = newProject( "root", "pom.xml" );
+        MavenProject a = newProject( "a", "a/pom.xml" );
+        MavenProject b = newProject( "b", "b/pom.xml" );
+        MavenProject c = newProject( "c", "c/pom.xml" );
+        MavenProject unrelated = newProject( "unrelated", "unrelated/pom.xml" );
+        addDependency( b, a );
+        addDependency( c, b );
+
+        when( session.getTopLevelProject() ).thenReturn( project );
+
+        when( session.getProjects() ).thenReturn( Arrays.asList( project, a, b, c, unrelated ) );
+
+        MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        when( session.getRequest() ).thenReturn( request );
+
+        msc.afterProjectsRead( session );
+
+        List<String> selectedProjects = request.getSelectedProjects();
+        assertThat( selectedProjects.toString(), is( "[test:a, test:b, test:c]" ) );
+        assertNull( request.getMakeBehavior() );
+    }
+
+    private static MavenProject newProject( String artifactId, String pom )
+    {
+        MavenProject project = new MavenProject();
+        project.setGroupId( "test" );
+        project.setArtifactId( artifactId );
+        project.setFile( new File( pom ).getAbsoluteFile() );
+        return project;
+    }
+
+    private static void addDependency( MavenProject project, MavenProject upstream )
+    {
+        Dependency dependency = new Dependency();
+        dependency.setGroupId( upstream.getGroupId() );
+        dependency.setArtifactId( upstream.getArtifactId() );
+        dependency.setVersion( upstream.getVersion() );
+        project.getModel().addDependency( dependency );
+    }
+
 }
@@ -0,0 +1,106 @@
+package org.apache.maven.shared.scmchanges;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.maven.project.MavenProject;
+import org.junit.Test;
+
+public class ProjectPathIndexTest
+{
+
+    private final File workspace = new File( "target/workspace" ).getAbsoluteFile();
+
+    private final File baseDir = new File( workspace, "parent" );
+
+    private final MavenProject parent = project( baseDir );
+
+    private final MavenProject a = project( new File( baseDir, "a" ) );
+
+    private final MavenProject ab = project( new File( baseDir, "ab" ) );
+
+    private final MavenProject nested = project( new File( baseDir, "a/nested" ) );
+
+    @Test
+    public void fileBelowModuleBelongsToDeepestModule()
+    {
+        ProjectPathIndex index = new ProjectPathIndex( Arrays.asList( parent, a, nested ) );
+
+        assertSame( a, index.findProject( new File( baseDir, "a/src/main/java/Foo.java" ) ) );
+        assertSame( nested, index.findProject( new File( baseDir, "a/nested/pom.xml" ) ) );
+        assertSame( parent, index.findProject( new File( baseDir, "pom.xml" ) ) );
+    }
+
+    @Test
+    public void fileEqualToProjectDirectoryBelongsToEnclosingProject()
+    {
+        ProjectPathIndex index = new ProjectPathIndex( Arrays.asList( parent, a, nested ) );
+
+        // e.g. a deleted module directory: it is a change of the aggregator, not of the module
+        assertSame( parent, index.findProject( new File( baseDir, "a" ) ) );
+        assertSame( a, index.findProject( new File( baseDir, "a/nested" ) ) );
+        assertNull( index.findProject( baseDir ) );
+    }
+
+    @Test
+    public void siblingsSharingANamePrefixAreKeptApart()
+    {
+        ProjectPathIndex index = new ProjectPathIndex( Arrays.asList( parent, a, ab ) );
+
+        assertSame( a, index.findProject( new File( baseDir, "a/pom.xml" ) ) );
+        assertSame( ab, index.findProject( new File( baseDir, "ab/pom.xml" ) ) );
+        assertSame( parent, index.findProject( new File( baseDir, "abc/pom.xml" ) ) );
+        assertSame( parent, index.findProject( new File( baseDir, "a.txt" ) ) );
+    }
+
+    @Test
+    public void moduleOutsideBaseDirectory()
+    {
+        // <module>../child</module>, as given to the index before or after normalization
+        MavenProject child = project( new File( baseDir, "../child" ) );
+        MavenProject other = project( new File( workspace, "other" ) );
+        ProjectPathIndex index = new ProjectPathIndex( Arrays.asList( parent, child, other ) );
+
+        assertSame( child, index.findProject( new File( workspace, "child/src/main/java/Foo.java" ) ) );
+        assertSame( child, index.findProject( new File( baseDir, "../child/pom.xml" ) ) );
+        assertSame( other, index.findProject( new File( baseDir, "./../other/./pom.xml" ) ) );
+        assertNull( index.findProject( new File( workspace, "unrelated/pom.xml" ) ) );
+    }
+
+    @Test
+    public void firstProjectWinsForTheSameDirectory()
+    {
+        MavenProject duplicate = project( new File( baseDir, "a" ) );
+        ProjectPathIndex index = new ProjectPathIndex( Arrays.asList( parent, a, duplicate ) );
+
+        assertSame( a, index.findProject( new File( baseDir, "a/pom.xml" ) ) );
+    }
+
+    private static MavenProject project( File directory )
+    {
+        MavenProject project = new MavenProject();
+        project.setFile( new File( directory, "pom.xml" ) );
+        return project;
+    }
+}
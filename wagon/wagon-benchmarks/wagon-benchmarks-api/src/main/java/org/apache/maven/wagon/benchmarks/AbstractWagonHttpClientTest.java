@@ -43,8 +43,10 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -66,6 +68,11 @@ public abstract class AbstractWagonHttpClientTest
 
     static int requestNumber = Integer.parseInt( System.getProperty( "wagon.benchmark.rq.number" ) );
 
+    /**
+     * when set, the existing tests also reuse one connected wagon per worker thread instead of one per request.
+     */
+    static boolean reuseConnections = Boolean.getBoolean( "wagon.benchmark.reuse.connections" );
+
     static FileWriter resultWriter = null;
 
 
@@ -301,8 +308,78 @@ public abstract class AbstractWagonHttpClientTest
         fileGet( compressResponse, ssl, new FileInputStream( new File( System.getProperty( "mediumFilePath" ) ) ) );
     }
 
+    //-------------------------
+    // connected wagons reused by each worker thread
+    //-------------------------
+
+    @Test
+    public void testgetSmallFilesHttpReused()
+        throws Exception
+    {
+        long start = System.currentTimeMillis();
+
+        InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream( "maven-metadata.xml" );
+        fileGet( false, false, true, is );
+        IOUtils.closeQuietly( is );
+
+        long end = System.currentTimeMillis();
+        String msg = getClass().getSimpleName() + " getSmallFilesHttpReused time " + ( end - start );
+        log.info( msg );
+        IOUtils.write( msg + SystemUtils.LINE_SEPARATOR, resultWriter );
+    }
+
+    @Test
+    public void testgetSmallFilesHttpsReused()
+        throws Exception
+    {
+        long start = System.currentTimeMillis();
+
+        InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream( "maven-metadata.xml" );
+        fileGet( false, true, true, is );
+        IOUtils.closeQuietly( is );
+
+        long end = System.currentTimeMillis();
+        String msg = getClass().getSimpleName() + " getSmallFilesHttpsReused time " + ( end - start );
+        log.info( msg );
+        IOUtils.write( msg + SystemUtils.LINE_SEPARATOR, resultWriter );
+    }
+
+    @Test
+    public void testgetMediumFileHttpReused()
+        throws Exception
+    {
+        long start = System.currentTimeMillis();
+
+        fileGet( false, false, true, new FileInputStream( new File( System.getProperty( "mediumFilePath" ) ) ) );
+
+        long end = System.currentTimeMillis();
+        String msg = getClass().getSimpleName() + " getMediumFileHttpReused time " + ( end - start );
+        log.info( msg );
+        IOUtils.write( msg + SystemUtils.LINE_SEPARATOR, resultWriter );
+    }
+
+    @Test
+    public void testgetMediumFileHttpsReused()
+        throws Exception
+    {
+        long start = System.currentTimeMillis();
+
+        fileGet( false, true, true, new FileInputStream( new File( System.getProperty( "mediumFilePath" ) ) ) );
+
+        long end = System.currentTimeMillis();
+        String msg = getClass().getSimpleName() + " getMediumFileHttpsReused time " + ( end - start );
+        log.info( msg );
+        IOUtils.write( msg + SystemUtils.LINE_SEPARATOR, resultWriter );
+    }
+
     private void fileGet( boolean compressResponse, boolean ssl, InputStream is )
         throws Exception
+    {
+        fileGet( compressResponse, ssl, reuseConnections, is );
+    }
+
+    private void fileGet( boolean compressResponse, boolean ssl, boolean reuse, InputStream is )
+        throws Exception
     {
         GetFileServlet.compressResponse = compressResponse;
 
@@ -316,14 +393,36 @@ public abstract class AbstractWagonHttpClientTest
 
         testServer.start( parallelRequestNumber );
 
-        call( ssl, testServer.port, false );
+        TransferStats stats = new TransferStats();
+
+        long start = System.currentTimeMillis();
+
+        if ( reuse )
+        {
+            callReusingWagons( ssl, testServer.port, stats );
+        }
+        else
+        {
+            call( ssl, testServer.port, stats );
+        }
+
+        long end = System.currentTimeMillis();
+
+        String msg = getClass().getSimpleName() + " stats " + ( ssl ? "https" : "http" )
+            + ( compressResponse ? " compressed" : "" ) + ( reuse ? " reused " : " perRequest " )
+            + stats.summary( end - start, testServer.getConnections() );
+        log.info( msg );
+        IOUtils.write( msg + SystemUtils.LINE_SEPARATOR, resultWriter );
 
         testServer.stop();
 
     }
 
 
-    protected void call( final boolean ssl, final int port, final boolean testcontent )
+    /**
+     * Connects a new wagon for every request, as a build does when fetching each artifact with a fresh wagon.
+     */
+    protected void call( final boolean ssl, final int port, final TransferStats stats )
         throws Exception
     {
         List<Callable<Void>> callables = new ArrayList<Callable<Void>>();
@@ -342,14 +441,15 @@ public abstract class AbstractWagonHttpClientTest
                     File tmpFile = null;
                     try
                     {
+                        long start = System.nanoTime();
                         wagon.connect( new Repository( "foo", repoUrl ) );
+                        stats.wagonConnected( System.nanoTime() - start );
 
                         tmpFile = File.createTempFile( "wagon-test", "benchmark" );
 
-                        wagon.get( "foo", tmpFile );
-
-                        assertTrue( tmpFile.length() > 1 );
+                        get( wagon, tmpFile, stats, true );
 
+                        wagon.disconnect();
                     }
                     catch ( Exception e )
                     {
@@ -357,7 +457,10 @@ public abstract class AbstractWagonHttpClientTest
                     }
                     finally
                     {
-                        tmpFile.delete();
+                        if ( tmpFile != null )
+                        {
+                            tmpFile.delete();
+                        }
                     }
                     return null;
                 }
@@ -365,12 +468,116 @@ public abstract class AbstractWagonHttpClientTest
 
         }
 
-        ExecutorService executorService = Executors.newFixedThreadPool( parallelRequestNumber );
+        invokeAll( callables );
+    }
 
-        executorService.invokeAll( callables );
+    /**
+     * Connects one wagon per worker thread and makes all of that worker's requests with it, so that persistent
+     * connections are reused and the transfer rate is not dominated by TCP and TLS handshakes.
+     */
+    protected void callReusingWagons( final boolean ssl, final int port, final TransferStats stats )
+        throws Exception
+    {
+        List<Callable<Void>> callables = new ArrayList<Callable<Void>>();
 
-        executorService.shutdown();
-        executorService.awaitTermination( 10, TimeUnit.SECONDS );
+        final String repoUrl = ( ssl ? "https" : "http" ) + "://localhost:" + port + "/";
+
+        for ( int i = 0; i < parallelRequestNumber; i++ )
+        {
+            // spread the requests over the workers; the first ones take the remainder.
+            final int requests =
+                requestNumber / parallelRequestNumber + ( i < requestNumber % parallelRequestNumber ? 1 : 0 );
+            final StreamingWagon wagon = ssl ? getHttpsWagon() : getHttpWagon();
+            wagon.setTimeout( 10000 );
+
+            callables.add( new Callable<Void>()
+            {
+                public Void call()
+                {
+                    File tmpFile = null;
+                    try
+                    {
+                        long start = System.nanoTime();
+                        wagon.connect( new Repository( "foo", repoUrl ) );
+                        stats.wagonConnected( System.nanoTime() - start );
+
+                        tmpFile = File.createTempFile( "wagon-test", "benchmark" );
+
+                        for ( int j = 0; j < requests; j++ )
+                        {
+                            get( wagon, tmpFile, stats, j == 0 );
+                        }
+
+                        wagon.disconnect();
+                    }
+                    catch ( Exception e )
+                    {
+                        throw new RuntimeException( e.getMessage(), e );
+                    }
+                    finally
+                    {
+                        if ( tmpFile != null )
+                        {
+                            tmpFile.delete();
+                        }
+                    }
+                    return null;
+                }
+            } );
+        }
+
+        invokeAll( callables );
+    }
+
+    private void get( StreamingWagon wagon, File tmpFile, TransferStats stats, boolean firstRequest )
+        throws Exception
+    {
+        long start = System.nanoTime();
+
+        wagon.get( "foo", tmpFile );
+
+        stats.transferred( tmpFile.length(), System.nanoTime() - start, firstRequest );
+
+        assertTrue( tmpFile.length() > 1 );
+    }
+
+    /**
+     * Runs the requests and fails with the first request that failed, so that a broken wagon does not pass for a fast
+     * one.
+     */
+    private void invokeAll( List<Callable<Void>> callables )
+        throws Exception
+    {
+        ExecutorService executorService = Executors.newFixedThreadPool( parallelRequestNumber );
+        try
+        {
+            for ( Future<Void> future : executorService.invokeAll( callables ) )
+            {
+                try
+                {
+                    future.get();
+                }
+                catch ( ExecutionException e )
+                {
+                    Throwable cause = e.getCause();
+                    if ( cause instanceof Error )
+                    {
+                        throw (Error) cause;
+                    }
+                    if ( cause instanceof RuntimeException && cause.getCause() instanceof Exception )
+                    {
+                        // unwrap what the callables wrapped
+                        throw (Exception) cause.getCause();
+                    }
+                    throw e;
+                }
+            }
+        }
+        finally
+        {
+            executorService.shutdownNow();
+            executorService.awaitTermination( 10, TimeUnit.SECONDS );
+        }
     }
 
     abstract StreamingWagon getHttpWagon()
@@ -55,6 +55,8 @@ public class TestServer
 
     public Server server;
 
+    private Connector connector;
+
     public TestServer()
     {
         // no op
@@ -87,8 +89,6 @@ public class TestServer
 
         server.setHandler( context );
 
-        Connector connector = null;
-
         if ( ssl )
         {
             connector = new SslSocketConnector();
@@ -114,6 +114,7 @@ public class TestServer
 
         connector.setRequestBufferSize( 2 * 1024 );
         connector.setResponseBufferSize( 12 * 1024 );
+        connector.setStatsOn( true );
 
         server.addConnector( connector );
 
@@ -122,6 +123,19 @@ public class TestServer
 
     }
 
+    public Connector getConnector()
+    {
+        return connector;
+    }
+
+    /**
+     * @return the number of connections accepted since the server started
+     */
+    public int getConnections()
+    {
+        return connector.getConnections();
+    }
+
     public void stop()
         throws Exception
     {
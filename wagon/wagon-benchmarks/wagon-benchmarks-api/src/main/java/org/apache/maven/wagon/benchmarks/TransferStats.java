@@ -0,0 +1,112 @@
+package org.apache.maven.wagon.benchmarks;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transfer figures of one benchmark run, collected from the worker threads. The first request made with a wagon pays
+ * for opening the connection (and the TLS handshake), so comparing it with the requests made on an already used wagon
+ * gives an estimate of the connection setup cost. The time of <code>Wagon.connect()</code> is reported on its own: the
+ * http wagons only set up their client there and open the socket lazily, on the first request.
+ *
+ * @author Olivier Lamy
+ */
+public class TransferStats
+{
+
+    private final AtomicInteger wagons = new AtomicInteger();
+
+    private final AtomicLong wagonConnectNanos = new AtomicLong();
+
+    private final AtomicInteger firstRequests = new AtomicInteger();
+
+    private final AtomicLong firstRequestNanos = new AtomicLong();
+
+    private final AtomicInteger reusedRequests = new AtomicInteger();
+
+    private final AtomicLong reusedRequestNanos = new AtomicLong();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * @param nanos the time spent in <code>Wagon.connect()</code>, which is not the time to open a connection
+     */
+    public void wagonConnected( long nanos )
+    {
+        wagons.incrementAndGet();
+        wagonConnectNanos.addAndGet( nanos );
+    }
+
+    public void transferred( long length, long nanos, boolean firstRequest )
+    {
+        bytes.addAndGet( length );
+        if ( firstRequest )
+        {
+            firstRequests.incrementAndGet();
+            firstRequestNanos.addAndGet( nanos );
+        }
+        else
+        {
+            reusedRequests.incrementAndGet();
+            reusedRequestNanos.addAndGet( nanos );
+        }
+    }
+
+    public long getBytes()
+    {
+        return bytes.get();
+    }
+
+    /**
+     * @param elapsedMillis     the wall clock time of the run
+     * @param serverConnections the number of connections the server accepted during the run
+     */
+    public String summary( long elapsedMillis, int serverConnections )
+    {
+        double firstMillis = mean( firstRequestNanos.get(), firstRequests.get() );
+        double reusedMillis = mean( reusedRequestNanos.get(), reusedRequests.get() );
+
+        StringBuilder summary = new StringBuilder();
+        summary.append( "wagons " ).append( wagons.get() );
+        summary.append( " connectionsOpened " ).append( serverConnections );
+        summary.append( " requests " ).append( firstRequests.get() + reusedRequests.get() );
+        summary.append( " wagonConnectMs " ).append( format( mean( wagonConnectNanos.get(), wagons.get() ) ) );
+        summary.append( " firstRequestMs " ).append( format( firstMillis ) );
+        if ( reusedRequests.get() > 0 )
+        {
+            summary.append( " reusedRequestMs " ).append( format( reusedMillis ) );
+            summary.append( " handshakeMs " ).append( format( Math.max( 0, firstMillis - reusedMillis ) ) );
+        }
+        summary.append( " bytesPerSec " ).append( elapsedMillis > 0 ? bytes.get() * 1000 / elapsedMillis : 0 );
+
+        return summary.toString();
+    }
+
+    private static double mean( long nanos, int count )
+    {
+        return count == 0 ? 0 : nanos / 1000000.0 / count;
+    }
+
+    private static String format( double value )
+    {
+        return String.format( "%.2f", value );
+    }
+}
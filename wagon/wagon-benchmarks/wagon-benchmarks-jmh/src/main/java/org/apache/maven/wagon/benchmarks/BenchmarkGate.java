@@ -0,0 +1,240 @@
+package org.apache.maven.wagon.benchmarks;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.util.Statistics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Runs the benchmarks, prints throughput and latency percentiles per provider, and compares the throughput scores with
+ * a recorded baseline. Exits with a non-zero status when a score dropped by more than the tolerance, when there is no
+ * baseline, or when a benchmark of this run has no baseline score. JMH command line options are passed through, e.g.
+ * <code>-p provider=http -t 4</code>.
+ * <p/>
+ * Sys props available:
+ * <ul>
+ * <li>wagon.benchmark.baseline: the baseline properties file</li>
+ * <li>wagon.benchmark.tolerance: the allowed relative throughput drop, 0.10 by default</li>
+ * <li>wagon.benchmark.record: write the scores of this run as the new baseline instead of checking them</li>
+ * <li>wagon.benchmark.lenient: only warn when the baseline or some of its scores are missing</li>
+ * </ul>
+ */
+public class BenchmarkGate
+{
+
+    public static void main( String[] args )
+        throws Exception
+    {
+        Options options = new OptionsBuilder().parent( new CommandLineOptions( args ) ).build();
+        if ( options.getIncludes().isEmpty() )
+        {
+            String benchmarks = BenchmarkGate.class.getPackage().getName() + ".*Benchmark";
+            options = new OptionsBuilder().parent( options ).include( benchmarks ).build();
+        }
+
+        Collection<RunResult> results = new Runner( options ).run();
+
+        TreeMap<String, Double> throughput = new TreeMap<String, Double>();
+        for ( RunResult result : results )
+        {
+            Result primary = result.getPrimaryResult();
+            String key = key( result );
+
+            if ( result.getParams().getMode() == Mode.Throughput )
+            {
+                throughput.put( key, Double.valueOf( primary.getScore() ) );
+                System.out.println( key + " throughput " + format( primary.getScore() ) + " "
+                    + primary.getScoreUnit() );
+            }
+            else if ( result.getParams().getMode() == Mode.SampleTime )
+            {
+                Statistics statistics = primary.getStatistics();
+                System.out.println( key + " latency p50 " + format( statistics.getPercentile( 50 ) ) + " p90 "
+                    + format( statistics.getPercentile( 90 ) ) + " p99 " + format( statistics.getPercentile( 99 ) )
+                    + " " + primary.getScoreUnit() );
+            }
+        }
+
+        File baselineFile =
+            new File( System.getProperty( "wagon.benchmark.baseline", "benchmark-baseline.properties" ) );
+
+        if ( Boolean.getBoolean( "wagon.benchmark.record" ) )
+        {
+            record( baselineFile, throughput );
+            System.out.println( "Recorded " + throughput.size() + " scores in " + baselineFile );
+            return;
+        }
+
+        boolean lenient = Boolean.getBoolean( "wagon.benchmark.lenient" );
+
+        if ( throughput.isEmpty() )
+        {
+            System.err.println( "ERROR no throughput score was measured, nothing to check against " + baselineFile );
+            System.exit( 1 );
+        }
+
+        if ( !baselineFile.exists() )
+        {
+            String message =
+                "no baseline at " + baselineFile + "; run with -Dwagon.benchmark.record=true to create one.";
+            if ( lenient )
+            {
+                System.err.println( "WARNING " + message );
+                return;
+            }
+            System.err.println( "ERROR " + message );
+            System.exit( 1 );
+        }
+
+        Properties baseline = load( baselineFile );
+        double tolerance = Double.parseDouble( System.getProperty( "wagon.benchmark.tolerance", "0.10" ) );
+        List<String> regressions = check( baseline, throughput, tolerance );
+
+        List<String> missing = missing( baseline, throughput );
+        for ( String key : missing )
+        {
+            System.err.println( ( lenient ? "WARNING" : "ERROR" ) + " no baseline score for " + key
+                + "; record it with -Dwagon.benchmark.record=true" );
+        }
+
+        if ( !regressions.isEmpty() || ( !missing.isEmpty() && !lenient ) )
+        {
+            for ( String regression : regressions )
+            {
+                System.err.println( "REGRESSION " + regression );
+            }
+            System.exit( 1 );
+        }
+
+        System.out.println( "No throughput regression beyond " + format( tolerance * 100 ) + "% against "
+            + baselineFile );
+    }
+
+    static List<String> check( Properties baseline, TreeMap<String, Double> throughput, double tolerance )
+    {
+        List<String> regressions = new ArrayList<String>();
+
+        for ( String key : throughput.keySet() )
+        {
+            String expected = baseline.getProperty( key );
+            if ( expected == null )
+            {
+                // reported by missing()
+                continue;
+            }
+
+            double expectedScore = Double.parseDouble( expected );
+            double score = throughput.get( key ).doubleValue();
+            if ( score < expectedScore * ( 1 - tolerance ) )
+            {
+                regressions.add( key + ": " + format( score ) + " ops/s, baseline " + format( expectedScore )
+                    + " ops/s" );
+            }
+        }
+
+        return regressions;
+    }
+
+    static List<String> missing( Properties baseline, TreeMap<String, Double> throughput )
+    {
+        List<String> missing = new ArrayList<String>();
+
+        for ( String key : throughput.keySet() )
+        {
+            if ( baseline.getProperty( key ) == null )
+            {
+                missing.add( key );
+            }
+        }
+
+        return missing;
+    }
+
+    private static String key( RunResult result )
+    {
+        StringBuilder key = new StringBuilder( result.getParams().getBenchmark() );
+
+        for ( String param : result.getParams().getParamsKeys() )
+        {
+            key.append( ',' ).append( param ).append( '=' ).append( result.getParams().getParam( param ) );
+        }
+        key.append( ",threads=" ).append( result.getParams().getThreads() );
+
+        return key.toString();
+    }
+
+    private static String format( double value )
+    {
+        return String.format( "%.3f", Double.valueOf( value ) );
+    }
+
+    private static Properties load( File file )
+        throws Exception
+    {
+        Properties properties = new Properties();
+        InputStream is = new FileInputStream( file );
+        try
+        {
+            properties.load( is );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( is );
+        }
+        return properties;
+    }
+
+    private static void record( File file, TreeMap<String, Double> throughput )
+        throws Exception
+    {
+        Properties properties = file.exists() ? load( file ) : new Properties();
+        for ( String key : throughput.keySet() )
+        {
+            properties.setProperty( key, String.valueOf( throughput.get( key ) ) );
+        }
+
+        OutputStream os = new FileOutputStream( file );
+        try
+        {
+            properties.store( os, "wagon benchmark throughput baseline (ops/s)" );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( os );
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.apache.maven.wagon.benchmarks;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.bio.SocketConnector;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * Local server kept running for a whole benchmark trial, so that its startup cost is not part of the measurement the
+ * way it is with one {@link TestServer} per test.
+ */
+public class BenchmarkServer
+{
+
+    private final Server server;
+
+    private final Connector connector;
+
+    /**
+     * @param nio       use a select channel connector instead of a blocking socket connector
+     * @param threads   the minimum number of request threads
+     * @param servlet   the servlet answering every path
+     */
+    public BenchmarkServer( boolean nio, int threads, PayloadServlet servlet )
+    {
+        server = new Server();
+
+        QueuedThreadPool threadpool = new QueuedThreadPool();
+        threadpool.setMinThreads( threads );
+        threadpool.setMaxThreads( threads * 2 + 2 );
+        server.setThreadPool( threadpool );
+
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath( "/" );
+        context.addServlet( new ServletHolder( servlet ), "/*" );
+        server.setHandler( context );
+
+        connector = nio ? new SelectChannelConnector() : new SocketConnector();
+        connector.setPort( 0 );
+        connector.setRequestBufferSize( 8 * 1024 );
+        connector.setResponseBufferSize( 64 * 1024 );
+        server.addConnector( connector );
+    }
+
+    public void start()
+        throws Exception
+    {
+        server.start();
+    }
+
+    public int getPort()
+    {
+        return connector.getLocalPort();
+    }
+
+    public String getUrl()
+    {
+        return "http://localhost:" + getPort() + "/";
+    }
+
+    public void stop()
+        throws Exception
+    {
+        server.stop();
+    }
+}
@@ -0,0 +1,87 @@
+package org.apache.maven.wagon.benchmarks;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content served by the {@link BenchmarkServer}. The gzip encoding is computed once, up front, so that compression
+ * does not show up in the measured requests.
+ */
+public class Payload
+{
+
+    private final byte[] content;
+
+    private final byte[] gzipContent;
+
+    public Payload( byte[] content )
+        throws IOException
+    {
+        this.content = content;
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream( content.length / 4 + 64 );
+        GZIPOutputStream out = new GZIPOutputStream( buffer );
+        out.write( content );
+        out.finish();
+        this.gzipContent = buffer.toByteArray();
+    }
+
+    /**
+     * Builds a payload of the given size by repeating the bundled maven-metadata.xml, so that it compresses like the
+     * text resources a repository usually serves.
+     */
+    public static Payload ofSize( int size )
+        throws IOException
+    {
+        InputStream is = Thread.currentThread().getContextClassLoader().getResourceAsStream( "maven-metadata.xml" );
+        byte[] sample;
+        try
+        {
+            sample = IOUtils.toByteArray( is );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( is );
+        }
+
+        byte[] content = new byte[size];
+        for ( int i = 0; i < size; i += sample.length )
+        {
+            System.arraycopy( sample, 0, content, i, Math.min( sample.length, size - i ) );
+        }
+
+        return new Payload( content );
+    }
+
+    public byte[] getContent()
+    {
+        return content;
+    }
+
+    public byte[] getGzipContent()
+    {
+        return gzipContent;
+    }
+}
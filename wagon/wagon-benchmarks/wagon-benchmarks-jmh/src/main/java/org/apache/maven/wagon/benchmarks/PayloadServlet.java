@@ -0,0 +1,129 @@
+package org.apache.maven.wagon.benchmarks;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Serves a {@link Payload} for any path. Unlike {@link GetFileServlet}, the response is never compressed on the fly:
+ * the pre-compressed content is sent when compression is enabled and the client accepts gzip. Single byte ranges are
+ * honoured for uncompressed responses.
+ */
+public class PayloadServlet
+    extends HttpServlet
+{
+
+    private final Payload payload;
+
+    private final boolean compress;
+
+    private final boolean keepAlive;
+
+    public PayloadServlet( Payload payload, boolean compress, boolean keepAlive )
+    {
+        this.payload = payload;
+        this.compress = compress;
+        this.keepAlive = keepAlive;
+    }
+
+    @Override
+    protected void doGet( HttpServletRequest req, HttpServletResponse res )
+        throws ServletException, IOException
+    {
+        if ( !keepAlive )
+        {
+            res.setHeader( "Connection", "close" );
+        }
+
+        String acceptEncoding = req.getHeader( "Accept-Encoding" );
+        if ( compress && acceptEncoding != null && acceptEncoding.indexOf( "gzip" ) >= 0 )
+        {
+            byte[] content = payload.getGzipContent();
+            res.setHeader( "Content-Encoding", "gzip" );
+            res.setContentLength( content.length );
+            res.getOutputStream().write( content );
+            return;
+        }
+
+        byte[] content = payload.getContent();
+        res.setHeader( "Accept-Ranges", "bytes" );
+
+        long[] range = parseRange( req.getHeader( "Range" ), content.length );
+        if ( range == null )
+        {
+            res.setContentLength( content.length );
+            res.getOutputStream().write( content );
+        }
+        else
+        {
+            int start = (int) range[0];
+            int length = (int) ( range[1] - range[0] + 1 );
+            res.setStatus( HttpServletResponse.SC_PARTIAL_CONTENT );
+            res.setHeader( "Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + content.length );
+            res.setContentLength( length );
+            res.getOutputStream().write( content, start, length );
+        }
+    }
+
+    /**
+     * @return the first and last index of a satisfiable single byte range, or <code>null</code> to send everything
+     */
+    static long[] parseRange( String header, int length )
+    {
+        if ( header == null || !header.startsWith( "bytes=" ) || header.indexOf( ',' ) >= 0 )
+        {
+            return null;
+        }
+
+        String spec = header.substring( "bytes=".length() ).trim();
+        int dash = spec.indexOf( '-' );
+        if ( dash < 0 )
+        {
+            return null;
+        }
+
+        try
+        {
+            long first;
+            long last;
+            if ( dash == 0 )
+            {
+                // suffix range: the last n bytes
+                first = Math.max( 0, length - Long.parseLong( spec.substring( 1 ) ) );
+                last = length - 1;
+            }
+            else
+            {
+                first = Long.parseLong( spec.substring( 0, dash ) );
+                last = dash == spec.length() - 1 ? length - 1 : Long.parseLong( spec.substring( dash + 1 ) );
+            }
+
+            last = Math.min( last, length - 1 );
+            return ( first <= last ) ? new long[]{ first, last } : null;
+        }
+        catch ( NumberFormatException e )
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.apache.maven.wagon.benchmarks;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ranged GETs against the {@link BenchmarkServer}, as issued when resuming a download. The wagon API has no way to
+ * request a byte range, so this measures the server side with a plain {@link HttpURLConnection} client, giving a
+ * baseline for the ranged transfers the providers do internally.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 3 )
+@Fork( 1 )
+public class RangedGetBenchmark
+{
+
+    /** 16 MB */
+    @Param( { "16777216" } )
+    public int size;
+
+    /** 64 KB and 1 MB */
+    @Param( { "65536", "1048576" } )
+    public int rangeLength;
+
+    /** the bio connector with -p nio=false,true */
+    @Param( { "true" } )
+    public boolean nio;
+
+    /** a connection per request with -p keepAlive=true,false */
+    @Param( { "true" } )
+    public boolean keepAlive;
+
+    private BenchmarkServer server;
+
+    private URL url;
+
+    private final AtomicLong nextRange = new AtomicLong();
+
+    @Setup( Level.Trial )
+    public void startServer()
+        throws Exception
+    {
+        server = new BenchmarkServer( nio, Runtime.getRuntime().availableProcessors(),
+                                      new PayloadServlet( Payload.ofSize( size ), false, keepAlive ) );
+        server.start();
+        url = new URL( server.getUrl() + WagonTransferBenchmark.RESOURCE );
+    }
+
+    @TearDown( Level.Trial )
+    public void stopServer()
+        throws Exception
+    {
+        server.stop();
+    }
+
+    @Benchmark
+    public int rangedGet()
+        throws Exception
+    {
+        // walk through the payload so that successive requests ask for different ranges.
+        int ranges = size / rangeLength;
+        long first = ( nextRange.getAndIncrement() % ranges ) * rangeLength;
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty( "Range", "bytes=" + first + "-" + ( first + rangeLength - 1 ) );
+
+        InputStream is = connection.getInputStream();
+        try
+        {
+            IOUtils.copy( is, new NullOutputStream() );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( is );
+        }
+
+        return connection.getResponseCode();
+    }
+
+}
@@ -0,0 +1,213 @@
+package org.apache.maven.wagon.benchmarks;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.maven.wagon.StreamingWagon;
+import org.apache.maven.wagon.providers.http.HttpWagon;
+import org.apache.maven.wagon.providers.http.LightweightHttpWagon;
+import org.apache.maven.wagon.repository.Repository;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.PlexusContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.maven.wagon.AhcWagon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads a payload through each wagon provider from a {@link BenchmarkServer} which lives for the whole trial.
+ * Throughput mode gives the transfer rate, sample time mode the latency percentiles. Each operation downloads the
+ * payload <code>concurrency</code> times in parallel, through as many connected wagons, so with a concurrency of 8 the
+ * score counts batches of 8 downloads.
+ * <p/>
+ * The default parameters keep the run short: a 1 KB and a 1 MB file, uncompressed, over the nio connector with
+ * keep-alive. Other combinations are selected with JMH options, e.g.
+ * <code>-p size=16777216 -p compressed=false,true -p nio=false,true -p keepAlive=true,false</code>.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 3 )
+@Fork( 1 )
+public class WagonTransferBenchmark
+{
+
+    static final String RESOURCE = "payload";
+
+    @Param( { "http", "lightweight", "ahc" } )
+    public String provider;
+
+    /** 1 KB and 1 MB; 16777216 (16 MB) with -p */
+    @Param( { "1024", "1048576" } )
+    public int size;
+
+    @Param( { "false" } )
+    public boolean compressed;
+
+    @Param( { "true" } )
+    public boolean nio;
+
+    @Param( { "true" } )
+    public boolean keepAlive;
+
+    /** parallel downloads per operation */
+    @Param( { "1", "8" } )
+    public int concurrency;
+
+    private BenchmarkServer server;
+
+    private PlexusContainer container;
+
+    @Setup( Level.Trial )
+    public void startServer()
+        throws Exception
+    {
+        PayloadServlet servlet = new PayloadServlet( Payload.ofSize( size ), compressed, keepAlive );
+        server = new BenchmarkServer( nio, Runtime.getRuntime().availableProcessors(), servlet );
+        server.start();
+
+        container = new DefaultPlexusContainer();
+    }
+
+    @TearDown( Level.Trial )
+    public void stopServer()
+        throws Exception
+    {
+        container.dispose();
+        server.stop();
+    }
+
+    StreamingWagon newWagon()
+        throws Exception
+    {
+        if ( "http".equals( provider ) )
+        {
+            return container.lookup( HttpWagon.class );
+        }
+        if ( "lightweight".equals( provider ) )
+        {
+            return container.lookup( LightweightHttpWagon.class );
+        }
+        if ( "ahc".equals( provider ) )
+        {
+            return container.lookup( AhcWagon.class );
+        }
+        throw new IllegalArgumentException( "Unknown wagon provider: " + provider );
+    }
+
+    /**
+     * <code>concurrency</code> wagons per benchmark thread, connected once per trial so that persistent connections
+     * can be reused, and the threads which drive them in parallel.
+     */
+    @State( Scope.Thread )
+    public static class Client
+    {
+        StreamingWagon[] wagons;
+
+        ExecutorService executor;
+
+        @Setup( Level.Trial )
+        public void connect( WagonTransferBenchmark benchmark )
+            throws Exception
+        {
+            wagons = new StreamingWagon[benchmark.concurrency];
+            for ( int i = 0; i < wagons.length; i++ )
+            {
+                wagons[i] = benchmark.newWagon();
+                wagons[i].setTimeout( 10000 );
+                wagons[i].connect( new Repository( "benchmark", benchmark.server.getUrl() ) );
+            }
+
+            if ( wagons.length > 1 )
+            {
+                executor = Executors.newFixedThreadPool( wagons.length );
+            }
+        }
+
+        @TearDown( Level.Trial )
+        public void disconnect()
+            throws Exception
+        {
+            if ( executor != null )
+            {
+                executor.shutdownNow();
+            }
+            for ( StreamingWagon wagon : wagons )
+            {
+                wagon.disconnect();
+            }
+        }
+    }
+
+    @Benchmark
+    public void get( Client client )
+        throws Exception
+    {
+        if ( client.executor == null )
+        {
+            download( client.wagons[0] );
+            return;
+        }
+
+        List<Future<Void>> downloads = new ArrayList<Future<Void>>( client.wagons.length );
+        for ( final StreamingWagon wagon : client.wagons )
+        {
+            downloads.add( client.executor.submit( new Callable<Void>()
+            {
+                public Void call()
+                    throws Exception
+                {
+                    download( wagon );
+                    return null;
+                }
+            } ) );
+        }
+
+        for ( Future<Void> download : downloads )
+        {
+            download.get();
+        }
+    }
+
+    private static void download( StreamingWagon wagon )
+        throws Exception
+    {
+        wagon.getToStream( RESOURCE, new NullOutputStream() );
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.apache.maven.wagon.benchmarks;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BenchmarkGateTest
+{
+
+    private static final String HTTP = "WagonTransferBenchmark.get,provider=http,threads=1";
+
+    private static final String AHC = "WagonTransferBenchmark.get,provider=ahc,threads=1";
+
+    @Test
+    public void scoreWithinToleranceIsNoRegression()
+    {
+        Properties baseline = baseline( HTTP, "100.0" );
+
+        assertTrue( BenchmarkGate.check( baseline, scores( HTTP, 90.5 ), 0.10 ).isEmpty() );
+        assertTrue( BenchmarkGate.check( baseline, scores( HTTP, 150.0 ), 0.10 ).isEmpty() );
+    }
+
+    @Test
+    public void scoreBelowToleranceIsARegression()
+    {
+        List<String> regressions = BenchmarkGate.check( baseline( HTTP, "100.0" ), scores( HTTP, 89.0 ), 0.10 );
+
+        assertEquals( 1, regressions.size() );
+        assertTrue( regressions.get( 0 ), regressions.get( 0 ).startsWith( HTTP + ": " ) );
+    }
+
+    @Test
+    public void scoreWithoutBaselineIsMissingNotARegression()
+    {
+        Properties baseline = baseline( HTTP, "100.0" );
+        TreeMap<String, Double> scores = scores( HTTP, 100.0 );
+        scores.put( AHC, Double.valueOf( 1.0 ) );
+
+        assertTrue( BenchmarkGate.check( baseline, scores, 0.10 ).isEmpty() );
+        assertEquals( Collections.singletonList( AHC ), BenchmarkGate.missing( baseline, scores ) );
+    }
+
+    @Test
+    public void baselineScoresNotInTheRunAreIgnored()
+    {
+        Properties baseline = baseline( HTTP, "100.0" );
+        baseline.setProperty( AHC, "100.0" );
+
+        assertTrue( BenchmarkGate.missing( baseline, scores( HTTP, 100.0 ) ).isEmpty() );
+        assertTrue( BenchmarkGate.check( baseline, scores( HTTP, 100.0 ), 0.10 ).isEmpty() );
+    }
+
+    @Test
+    public void everyScoreIsMissingFromAnEmptyBaseline()
+    {
+        TreeMap<String, Double> scores = scores( HTTP, 100.0 );
+        scores.put( AHC, Double.valueOf( 100.0 ) );
+
+        assertEquals( Arrays.asList( AHC, HTTP ), BenchmarkGate.missing( new Properties(), scores ) );
+    }
+
+    private static Properties baseline( String key, String score )
+    {
+        Properties baseline = new Properties();
+        baseline.setProperty( key, score );
+        return baseline;
+    }
+
+    private static TreeMap<String, Double> scores( String key, double score )
+    {
+        TreeMap<String, Double> scores = new TreeMap<String, Double>();
+        scores.put( key, Double.valueOf( score ) );
+        return scores;
+    }
+}
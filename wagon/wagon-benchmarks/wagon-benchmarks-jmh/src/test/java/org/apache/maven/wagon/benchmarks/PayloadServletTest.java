@@ -0,0 +1,74 @@
+package org.apache.maven.wagon.benchmarks;
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class PayloadServletTest
+{
+
+    private static final int LENGTH = 1000;
+
+    @Test
+    public void closedRange()
+    {
+        assertRange( 0, 99, "bytes=0-99" );
+        assertRange( 500, 500, "bytes=500-500" );
+    }
+
+    @Test
+    public void openRangeRunsToTheEnd()
+    {
+        assertRange( 900, 999, "bytes=900-" );
+    }
+
+    @Test
+    public void suffixRangeIsTheLastBytes()
+    {
+        assertRange( 900, 999, "bytes=-100" );
+        assertRange( 0, 999, "bytes=-5000" );
+    }
+
+    @Test
+    public void lastIndexIsCappedToTheContent()
+    {
+        assertRange( 990, 999, "bytes=990-5000" );
+        assertRange( 0, 999, "bytes= 0-999 " );
+    }
+
+    @Test
+    public void unsatisfiableOrUnsupportedRangesSendEverything()
+    {
+        assertNull( PayloadServlet.parseRange( null, LENGTH ) );
+        assertNull( PayloadServlet.parseRange( "items=0-10", LENGTH ) );
+        assertNull( PayloadServlet.parseRange( "bytes=0-10,20-30", LENGTH ) );
+        assertNull( PayloadServlet.parseRange( "bytes=10", LENGTH ) );
+        assertNull( PayloadServlet.parseRange( "bytes=abc-def", LENGTH ) );
+        assertNull( PayloadServlet.parseRange( "bytes=50-10", LENGTH ) );
+        assertNull( PayloadServlet.parseRange( "bytes=1000-", LENGTH ) );
+    }
+
+    private static void assertRange( long first, long last, String header )
+    {
+        assertArrayEquals( header, new long[]{ first, last }, PayloadServlet.parseRange( header, LENGTH ) );
+    }
+}
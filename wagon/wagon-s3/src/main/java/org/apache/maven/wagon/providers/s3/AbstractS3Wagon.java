@@ -19,7 +19,6 @@ package org.apache.maven.wagon.providers.s3;
  * under the License.
  */
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -56,13 +55,34 @@ import org.jets3t.service.security.AWSCredentials;
 public abstract class AbstractS3Wagon
     extends AbstractWagon
 {
-    // TODO: add multithread support - need to put the 
-    //S3ServiceSimpleMulti simpleMulti = new S3ServiceSimpleMulti(s3Service);
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     private S3Service s3Service;
 
     private S3Bucket bucket;
 
+    private S3RestClient restClient;
+
+    /**
+     * Base URL of the REST interface used for the transfers in parts.
+     */
+    private String endpoint = "https://s3.amazonaws.com";
+
+    /**
+     * Size of the parts uploaded or fetched in parallel.
+     */
+    private int partSize = 8 * 1024 * 1024;
+
+    /**
+     * Number of parts uploaded or fetched at the same time; with 1, every transfer is a single request.
+     */
+    private int parallelism = 4;
+
+    /**
+     * Size above which an object is transferred in parts; smaller ones take a single request.
+     */
+    private long parallelThreshold = 16 * 1024 * 1024;
+
     protected void openConnectionInternal()
         throws ConnectionException, AuthenticationException
     {
@@ -84,6 +104,8 @@ public abstract class AbstractS3Wagon
 
             // create bucket - or just get object
             bucket = s3Service.createBucket( host );
+
+            restClient = new S3RestClient( endpoint, host, privateKey, passphrase, parallelism );
         }
         catch( S3ServiceException e )
         {
@@ -94,7 +116,61 @@ public abstract class AbstractS3Wagon
     }
 
     protected void closeConnection() throws ConnectionException
-    {}
+    {
+        if ( restClient != null )
+        {
+            restClient.close();
+            restClient = null;
+        }
+    }
+
+    /**
+     * For the tests, which have no S3 service to connect to.
+     */
+    void setRestClient( S3RestClient restClient )
+    {
+        this.restClient = restClient;
+    }
+
+    public String getEndpoint()
+    {
+        return endpoint;
+    }
+
+    public void setEndpoint( String endpoint )
+    {
+        this.endpoint = endpoint;
+    }
+
+    public int getPartSize()
+    {
+        return partSize;
+    }
+
+    public void setPartSize( int partSize )
+    {
+        this.partSize = partSize;
+    }
+
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    public void setParallelism( int parallelism )
+    {
+        this.parallelism = parallelism;
+    }
+
+    public long getParallelThreshold()
+    {
+        return parallelThreshold;
+    }
+
+    public void setParallelThreshold( long parallelThreshold )
+    {
+        this.parallelThreshold = parallelThreshold;
+    }
 
     protected abstract S3Service getService( AWSCredentials awsCredentials )
         throws S3ServiceException;
@@ -112,17 +188,15 @@ public abstract class AbstractS3Wagon
 
         try
         {
-            s3Object = s3Service.getObject( bucket, resourceName );
-
-            BufferedInputStream bis = new BufferedInputStream( s3Object.getDataInputStream() );
-
-            FileOutputStream fos = new FileOutputStream( destination );
-
-            byte[] readerBytes = new byte[ 1024*8 ];
-            int size = 0;
-            while( (size = bis.read( readerBytes )) > 0 )
+            if ( parallelism > 1 )
             {
-                fos.write( readerBytes, 0, size );
+                parallelGet( resourceName, destination );
+            }
+            else
+            {
+                s3Object = s3Service.getObject( bucket, resourceName );
+
+                copy( s3Object.getDataInputStream(), destination );
             }
         }
         catch( S3ServiceException e )
@@ -133,6 +207,20 @@ public abstract class AbstractS3Wagon
         {
             throw new ResourceDoesNotExistException( "", e );
         }
+        catch ( S3RestClient.S3ResponseException e )
+        {
+            fireTransferError( resource, e, TransferEvent.REQUEST_GET );
+
+            if ( e.getStatus() == 404 )
+            {
+                throw new ResourceDoesNotExistException( "Cannot get object from S3", e );
+            }
+            if ( e.getStatus() == 403 )
+            {
+                throw new AuthorizationException( "Cannot get object from S3", e );
+            }
+            throw new TransferFailedException( "Cannot get object from S3", e );
+        }
         catch( IOException e )
         {
             fireTransferError( resource, e, TransferEvent.REQUEST_GET );            
@@ -143,6 +231,137 @@ public abstract class AbstractS3Wagon
         fireGetCompleted( resource, destination );
     }
 
+    private void copy( InputStream is, File destination )
+        throws IOException
+    {
+        FileOutputStream fos = null;
+        try
+        {
+            fos = new FileOutputStream( destination );
+
+            byte[] readerBytes = new byte[ BUFFER_SIZE ];
+            int size = 0;
+            while( (size = is.read( readerBytes )) > 0 )
+            {
+                fos.write( readerBytes, 0, size );
+            }
+        }
+        finally
+        {
+            is.close();
+            if ( fos != null )
+            {
+                fos.close();
+            }
+        }
+    }
+
+    /**
+     * Fetches the object with a plain GET, whose answer gives its length and ETag. An object no larger than
+     * <code>parallelThreshold</code> is read whole from it. Of a larger one only the first part is, while the other
+     * parts are fetched <code>parallelism</code> at a time with ranged GETs conditional on the ETag, so that all the
+     * parts come from the same version of the object. When the service cannot serve ranges, the object is fetched
+     * again with a single GET; any other failure fails the transfer.
+     */
+    private void parallelGet( final String resourceName, File destination )
+        throws IOException
+    {
+        final S3RestClient client = restClient;
+
+        S3RestClient.S3Response object = client.getObject( resourceName );
+
+        // -1 when the service does not give the length
+        long length = object.getContentLength();
+        if ( length <= parallelThreshold || length <= partSize )
+        {
+            copy( object.getInputStream(), destination );
+
+            if ( length >= 0 && destination.length() != length )
+            {
+                throw new IOException( "Invalid content for " + resourceName + ": expected " + length
+                    + " bytes, got " + destination.length() );
+            }
+            return;
+        }
+
+        final String etag = object.getETag();
+
+        RangedDownload download = new RangedDownload( new RangedDownload.RangeSource()
+        {
+            public InputStream getRange( long first, long last )
+                throws IOException
+            {
+                return client.getRange( resourceName, first, last, etag );
+            }
+        }, length, partSize, parallelism );
+
+        download.setFirstPart( object.getInputStream() );
+
+        // the parts of a multipart object can only be checked against the ETag when they have the uploaded size
+        boolean checkable = S3RestClient.toMd5( etag ) != null || object.getPartSize() == partSize;
+        download.setExpectedETag( checkable ? etag : null );
+
+        try
+        {
+            download.download( destination );
+        }
+        catch ( S3RestClient.S3ResponseException e )
+        {
+            if ( !e.isRangeUnsupported() )
+            {
+                throw e;
+            }
+
+            copy( client.getObject( resourceName ).getInputStream(), destination );
+        }
+    }
+
+    /**
+     * Uploads the file in parts of <code>partSize</code> bytes, <code>parallelism</code> at a time, and checks the ETag
+     * of the assembled object against the MD5s of the parts. A failed upload is aborted, so that the service drops the
+     * parts it already holds.
+     */
+    private void multipartPut( File source, final String key )
+        throws IOException
+    {
+        final S3RestClient client = restClient;
+
+        final String uploadId = client.initiateMultipartUpload( key, "binary/octet-stream", partSize );
+        try
+        {
+            MultipartUpload upload = new MultipartUpload( new MultipartUpload.PartTarget()
+            {
+                public String putPart( int partNumber, byte[] data, int length, byte[] md5 )
+                    throws IOException
+                {
+                    return client.uploadPart( key, uploadId, partNumber, data, length, md5 );
+                }
+            }, partSize, parallelism );
+
+            String[] etags = upload.upload( source );
+
+            String etag = S3RestClient.unquote( client.completeMultipartUpload( key, uploadId, etags ) );
+            if ( !upload.getETag().equalsIgnoreCase( etag ) )
+            {
+                throw new IOException( "Checksum mismatch after putting " + key + " to S3: expected "
+                    + upload.getETag() + ", got " + etag );
+            }
+        }
+        catch ( IOException e )
+        {
+            try
+            {
+                client.abortMultipartUpload( key, uploadId );
+            }
+            catch ( IOException abortFailure )
+            {
+                // report the failure of the upload
+            }
+
+            throw e;
+        }
+    }
+
     public boolean getIfNewer( String resourceName, File destination, long timestamp )
         throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException
     {
@@ -178,6 +397,36 @@ public abstract class AbstractS3Wagon
     {
         Resource resource = new Resource( destination );
 
+        if ( parallelism > 1 && source.length() > parallelThreshold )
+        {
+            firePutInitiated( resource, source );
+
+            try
+            {
+                multipartPut( source, resource.getName() );
+            }
+            catch ( S3RestClient.S3ResponseException e )
+            {
+                fireTransferError( resource, e, TransferEvent.REQUEST_PUT );
+
+                if ( e.getStatus() == 403 )
+                {
+                    throw new AuthorizationException( "Cannot put object to S3", e );
+                }
+                throw new TransferFailedException( "Cannot put object to S3", e );
+            }
+            catch ( IOException e )
+            {
+                fireTransferError( resource, e, TransferEvent.REQUEST_PUT );
+
+                throw new TransferFailedException( "Cannot put object to S3", e );
+            }
+
+            firePutCompleted( resource, source );
+
+            return;
+        }
+
         InputStream is;
         try
         {
@@ -201,7 +450,20 @@ public abstract class AbstractS3Wagon
 
         try
         {
-            s3Service.putObject( bucket, s3Object );
+            String md5 = RangedDownload.md5( source );
+
+            S3Object stored = s3Service.putObject( bucket, s3Object );
+
+            String storedMd5 = S3RestClient.toMd5( stored.getETag() );
+            if ( storedMd5 != null && !storedMd5.equalsIgnoreCase( md5 ) )
+            {
+                TransferFailedException e = new TransferFailedException( "Checksum mismatch after putting "
+                    + resource + " to S3: expected " + md5 + ", got " + storedMd5 );
+
+                fireTransferError( resource, e, TransferEvent.REQUEST_PUT );
+
+                throw e;
+            }
         }
         catch( S3ServiceException e )
         {
@@ -209,6 +471,23 @@ public abstract class AbstractS3Wagon
 
             throw new TransferFailedException( "Cannot put object to S3", e );
         }
+        catch( IOException e )
+        {
+            fireTransferError( resource, e, TransferEvent.REQUEST_PUT );
+
+            throw new TransferFailedException( "Cannot read source file", e );
+        }
+        finally
+        {
+            try
+            {
+                is.close();
+            }
+            catch ( IOException e )
+            {
+                // ignore
+            }
+        }
 
         // TODO: loop a few times?
 
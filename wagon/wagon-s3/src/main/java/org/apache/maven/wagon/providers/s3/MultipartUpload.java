@@ -0,0 +1,243 @@
+package org.apache.maven.wagon.providers.s3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+/**
+ * Uploads a file as parts sent by several threads. Each worker reads its part with positional reads of the file, so
+ * parts can be sent in any order. Every part is sent with its MD5, which the service checks, and the ETag the service
+ * gives the part, which is its MD5, is checked against it in turn.
+ *
+ * @author Eric Redmond
+ */
+public class MultipartUpload
+{
+    /**
+     * Target of the parts of an upload.
+     */
+    public interface PartTarget
+    {
+        /**
+         * @param partNumber the number of the part, from 1
+         * @param data the content of the part, from index 0
+         * @param length the length of the part
+         * @param md5 the MD5 of the part
+         * @return the ETag of the stored part
+         */
+        String putPart( int partNumber, byte[] data, int length, byte[] md5 )
+            throws IOException;
+    }
+
+    private final PartTarget target;
+
+    private final int partSize;
+
+    private final int parallelism;
+
+    private long length;
+
+    private int nextPart;
+
+    private String[] etags;
+
+    private byte[][] partDigests;
+
+    private Thread[] threads;
+
+    private IOException failure;
+
+    public MultipartUpload( PartTarget target, int partSize, int parallelism )
+    {
+        if ( partSize < 1 || parallelism < 1 )
+        {
+            throw new IllegalArgumentException( "Part size and parallelism must be positive" );
+        }
+
+        this.target = target;
+        this.partSize = partSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return the ETags of the parts, in order
+     */
+    public String[] upload( File source )
+        throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile( source, "r" );
+        try
+        {
+            length = file.length();
+            final FileChannel channel = file.getChannel();
+
+            int parts = (int) Math.max( 1, ( length + partSize - 1 ) / partSize );
+            int threadCount = Math.min( parallelism, parts );
+            etags = new String[parts];
+            partDigests = new byte[parts][];
+
+            synchronized ( this )
+            {
+                threads = new Thread[threadCount];
+                for ( int i = 0; i < threadCount; i++ )
+                {
+                    threads[i] = new Thread( "s3-multipart-put-" + i )
+                    {
+                        public void run()
+                        {
+                            uploadParts( channel );
+                        }
+                    };
+                    threads[i].setDaemon( true );
+                    threads[i].start();
+                }
+            }
+
+            try
+            {
+                for ( int i = 0; i < threadCount; i++ )
+                {
+                    threads[i].join();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                // stop the workers rather than leave them uploading parts of an upload nobody completes
+                fail( new InterruptedIOException( "Interrupted while waiting for the parts of the upload" ) );
+
+                Thread.currentThread().interrupt();
+            }
+        }
+        finally
+        {
+            file.close();
+        }
+
+        synchronized ( this )
+        {
+            if ( failure != null )
+            {
+                throw failure;
+            }
+        }
+
+        return etags;
+    }
+
+    /**
+     * @return the ETag of the object the uploaded parts make, without its quotes
+     */
+    public String getETag()
+    {
+        return RangedDownload.multipartETag( partDigests );
+    }
+
+    private void uploadParts( FileChannel channel )
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( (int) Math.max( 1, Math.min( partSize, length ) ) );
+        MessageDigest digest = RangedDownload.newMd5();
+        try
+        {
+            int part;
+            while ( ( part = takePart() ) >= 0 )
+            {
+                long first = (long) part * partSize;
+                int size = (int) Math.min( partSize, length - first );
+
+                buffer.clear();
+                buffer.limit( size );
+                while ( buffer.hasRemaining() )
+                {
+                    if ( channel.read( buffer, first + buffer.position() ) < 0 )
+                    {
+                        throw new IOException( "The file ended within the part for bytes " + first + "-"
+                            + ( first + size - 1 ) );
+                    }
+                }
+
+                digest.update( buffer.array(), 0, size );
+                byte[] md5 = digest.digest();
+
+                String etag = target.putPart( part + 1, buffer.array(), size, md5 );
+
+                // the ETag of an encrypted part is not its MD5: the service checked the part against the one sent
+                String stored = S3RestClient.toMd5( etag );
+                if ( stored != null && !stored.equalsIgnoreCase( RangedDownload.toHex( md5 ) ) )
+                {
+                    throw new IOException( "Checksum mismatch for part " + ( part + 1 ) + ": expected "
+                        + RangedDownload.toHex( md5 ) + ", got " + etag );
+                }
+
+                setPart( part, etag, md5 );
+            }
+        }
+        catch ( IOException e )
+        {
+            fail( e );
+        }
+        catch ( RuntimeException e )
+        {
+            IOException failure = new IOException( "Multipart upload failed: " + e.getMessage() );
+            failure.initCause( e );
+            fail( failure );
+        }
+    }
+
+    private synchronized void setPart( int part, String etag, byte[] md5 )
+    {
+        etags[part] = etag;
+        partDigests[part] = md5;
+    }
+
+    private synchronized int takePart()
+    {
+        if ( failure != null || nextPart >= etags.length )
+        {
+            return -1;
+        }
+
+        return nextPart++;
+    }
+
+    /**
+     * Records the first failure and interrupts the other workers, which take no new part afterwards.
+     */
+    private synchronized void fail( IOException e )
+    {
+        if ( failure == null )
+        {
+            failure = e;
+
+            for ( int i = 0; threads != null && i < threads.length; i++ )
+            {
+                if ( threads[i] != Thread.currentThread() )
+                {
+                    threads[i].interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package org.apache.maven.wagon.providers.s3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Downloads a resource as byte ranges fetched by several threads. Each part is checked for its expected length and
+ * written into the destination file at its own position, so parts can complete in any order.
+ * <p>
+ * S3 returns no checksum for a byte range, so the parts are checked against the ETag of the object: the ETag of an
+ * object uploaded in one request is the MD5 of the whole content, checked on the assembled file; the ETag of a
+ * multipart upload is the MD5 of the MD5s of its parts, checked on the MD5s of the downloaded parts when they have the
+ * same size as the uploaded ones, as they do when both wagons use the same part size.
+ * 
+ * @author Eric Redmond
+ */
+public class RangedDownload
+{
+    /**
+     * Source of the byte ranges of a resource.
+     */
+    public interface RangeSource
+    {
+        /**
+         * @param first index of the first byte
+         * @param last index of the last byte, inclusive
+         * @return a stream of the bytes in the range
+         */
+        InputStream getRange( long first, long last )
+            throws IOException;
+    }
+
+    private final RangeSource source;
+
+    private final long length;
+
+    private final int partSize;
+
+    private final int parallelism;
+
+    private String expectedETag;
+
+    private InputStream firstPart;
+
+    private long nextPart;
+
+    private byte[][] partDigests;
+
+    private Thread[] threads;
+
+    private IOException failure;
+
+    public RangedDownload( RangeSource source, long length, int partSize, int parallelism )
+    {
+        if ( partSize < 1 || parallelism < 1 )
+        {
+            throw new IllegalArgumentException( "Part size and parallelism must be positive" );
+        }
+
+        this.source = source;
+        this.length = length;
+        this.partSize = partSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param expectedETag the ETag of the resource, or <code>null</code> to skip the verification
+     */
+    public void setExpectedETag( String expectedETag )
+    {
+        this.expectedETag = expectedETag;
+    }
+
+    /**
+     * @param firstPart a stream starting at the first byte of the resource, e.g. the body of a plain GET, from which
+     *            the first part is read instead of being requested; it is closed once the part is read
+     */
+    public void setFirstPart( InputStream firstPart )
+    {
+        this.firstPart = firstPart;
+    }
+
+    public void download( File destination )
+        throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile( destination, "rw" );
+        try
+        {
+            file.setLength( length );
+            final FileChannel channel = file.getChannel();
+
+            long parts = ( length + partSize - 1 ) / partSize;
+            int threadCount = (int) Math.min( parallelism, parts );
+            partDigests = new byte[(int) parts][];
+
+            synchronized ( this )
+            {
+                threads = new Thread[threadCount];
+                for ( int i = 0; i < threadCount; i++ )
+                {
+                    threads[i] = new Thread( "s3-ranged-get-" + i )
+                    {
+                        public void run()
+                        {
+                            downloadParts( channel );
+                        }
+                    };
+                    threads[i].setDaemon( true );
+                    threads[i].start();
+                }
+            }
+
+            try
+            {
+                for ( int i = 0; i < threadCount; i++ )
+                {
+                    threads[i].join();
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                // stop the workers rather than leave them downloading into a file nobody waits for
+                fail( new InterruptedIOException( "Interrupted while waiting for the parts of the download" ) );
+
+                Thread.currentThread().interrupt();
+            }
+        }
+        finally
+        {
+            file.close();
+
+            // not taken when a request failed first
+            InputStream is = takeFirstPart();
+            if ( is != null )
+            {
+                is.close();
+            }
+        }
+
+        synchronized ( this )
+        {
+            if ( failure != null )
+            {
+                throw failure;
+            }
+        }
+
+        verify( destination );
+    }
+
+    private void verify( File destination )
+        throws IOException
+    {
+        String expected = S3RestClient.unquote( expectedETag );
+        String actual;
+        if ( S3RestClient.toMd5( expected ) != null )
+        {
+            actual = md5( destination );
+        }
+        else if ( expected != null && expected.endsWith( "-" + partDigests.length ) )
+        {
+            actual = multipartETag( partDigests );
+        }
+        else
+        {
+            // a multipart upload with other part sizes: only the part lengths are checked
+            return;
+        }
+
+        if ( !expected.equalsIgnoreCase( actual ) )
+        {
+            throw new IOException( "Checksum mismatch for " + destination + ": expected " + expected + ", got "
+                + actual );
+        }
+    }
+
+    private void downloadParts( FileChannel channel )
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( (int) Math.min( partSize, length ) );
+        MessageDigest digest = newMd5();
+        try
+        {
+            long part;
+            while ( ( part = takePart() ) >= 0 )
+            {
+                long first = part * partSize;
+                long last = Math.min( first + partSize, length ) - 1;
+
+                InputStream is = part == 0 ? takeFirstPart() : null;
+                if ( is != null )
+                {
+                    readPart( first, last, is, false, buffer );
+                }
+                else
+                {
+                    readPart( first, last, source.getRange( first, last ), true, buffer );
+                }
+
+                digest.update( buffer.array(), 0, buffer.limit() );
+                setPartDigest( (int) part, digest.digest() );
+
+                while ( buffer.hasRemaining() )
+                {
+                    channel.write( buffer, first + buffer.position() );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            fail( e );
+        }
+        catch ( RuntimeException e )
+        {
+            IOException failure = new IOException( "Ranged get failed: " + e.getMessage() );
+            failure.initCause( e );
+            fail( failure );
+        }
+    }
+
+    /**
+     * Reads a whole part into the buffer, flipped for writing. Fails if the part is shorter than the range, or longer
+     * when the stream should end with the part.
+     */
+    private void readPart( long first, long last, InputStream is, boolean ends, ByteBuffer buffer )
+        throws IOException
+    {
+        int expected = (int) ( last - first + 1 );
+        buffer.clear();
+        buffer.limit( expected );
+
+        try
+        {
+            byte[] bytes = buffer.array();
+            int count = 0;
+            int n;
+            while ( count < expected && ( n = is.read( bytes, count, expected - count ) ) > 0 )
+            {
+                count += n;
+            }
+
+            if ( count != expected || ( ends && is.read() != -1 ) )
+            {
+                throw new IOException( "Invalid part for bytes " + first + "-" + last + ": expected " + expected
+                    + " bytes, got " + ( count == expected ? "more" : String.valueOf( count ) ) );
+            }
+
+            buffer.position( count );
+            buffer.flip();
+        }
+        finally
+        {
+            is.close();
+        }
+    }
+
+    private synchronized InputStream takeFirstPart()
+    {
+        InputStream is = firstPart;
+        firstPart = null;
+        return is;
+    }
+
+    private synchronized void setPartDigest( int part, byte[] digest )
+    {
+        partDigests[part] = digest;
+    }
+
+    private synchronized long takePart()
+    {
+        if ( failure != null || nextPart * partSize >= length )
+        {
+            return -1;
+        }
+
+        return nextPart++;
+    }
+
+    /**
+     * Records the first failure and interrupts the other workers, which take no new part afterwards.
+     */
+    private synchronized void fail( IOException e )
+    {
+        if ( failure == null )
+        {
+            failure = e;
+
+            for ( int i = 0; threads != null && i < threads.length; i++ )
+            {
+                if ( threads[i] != Thread.currentThread() )
+                {
+                    threads[i].interrupt();
+                }
+            }
+        }
+    }
+
+    static MessageDigest newMd5()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "MD5" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "MD5 is not available" );
+        }
+    }
+
+    static String md5( File file )
+        throws IOException
+    {
+        MessageDigest digest = newMd5();
+
+        InputStream is = new FileInputStream( file );
+        try
+        {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ( ( n = is.read( buffer ) ) > 0 )
+            {
+                digest.update( buffer, 0, n );
+            }
+        }
+        finally
+        {
+            is.close();
+        }
+
+        return toHex( digest.digest() );
+    }
+
+    /**
+     * @return the ETag S3 gives an object uploaded in parts with these MD5s, without its quotes
+     */
+    static String multipartETag( byte[][] partDigests )
+    {
+        MessageDigest digest = newMd5();
+        for ( int i = 0; i < partDigests.length; i++ )
+        {
+            digest.update( partDigests[i] );
+        }
+        return toHex( digest.digest() ) + "-" + partDigests.length;
+    }
+
+    static String toHex( byte[] bytes )
+    {
+        StringBuffer hex = new StringBuffer( bytes.length * 2 );
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            int b = bytes[i] & 0xff;
+            if ( b < 0x10 )
+            {
+                hex.append( '0' );
+            }
+            hex.append( Integer.toHexString( b ) );
+        }
+        return hex.toString();
+    }
+}
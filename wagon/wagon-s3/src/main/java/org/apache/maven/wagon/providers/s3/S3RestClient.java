@@ -0,0 +1,687 @@
+package org.apache.maven.wagon.providers.s3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.methods.DeleteMethod;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.commons.httpclient.util.URIUtil;
+
+/**
+ * Signed requests to the REST interface of S3, for the transfers jets3t 0.5.0 cannot do: GETs whose response is read
+ * only in part, byte ranges whose <code>Content-Range</code> is checked, and multipart uploads. Requests are signed
+ * with the same scheme as jets3t (HMAC-SHA1 of the request description), with the bucket in the path, so any
+ * S3-compatible service that jets3t talks to can be used as endpoint.
+ *
+ * @author Eric Redmond
+ */
+public class S3RestClient
+{
+    /**
+     * Metadata of an object uploaded in parts: the size of the parts.
+     */
+    static final String PART_SIZE_HEADER = "x-amz-meta-part-size";
+
+    private final String endpoint;
+
+    private final String bucket;
+
+    private final String accessKey;
+
+    private final String secretKey;
+
+    private final MultiThreadedHttpConnectionManager connectionManager;
+
+    private final HttpClient client;
+
+    /**
+     * @param endpoint the base URL of the service, e.g. <code>https://s3.amazonaws.com</code>
+     * @param connections the number of requests that may run at the same time
+     */
+    public S3RestClient( String endpoint, String bucket, String accessKey, String secretKey, int connections )
+    {
+        this.endpoint = endpoint.endsWith( "/" ) ? endpoint.substring( 0, endpoint.length() - 1 ) : endpoint;
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+
+        connectionManager = new MultiThreadedHttpConnectionManager();
+        connectionManager.getParams().setDefaultMaxConnectionsPerHost( connections );
+        connectionManager.getParams().setMaxTotalConnections( connections );
+        client = new HttpClient( connectionManager );
+    }
+
+    public void close()
+    {
+        connectionManager.shutdown();
+    }
+
+    /**
+     * Starts a plain GET of an object. Its body may be read in part only: closing the stream early drops the
+     * connection instead of reading the rest of the object.
+     */
+    public S3Response getObject( String key )
+        throws IOException
+    {
+        GetMethod method = new GetMethod( uri( key ) );
+        execute( method, key, null, null, null );
+
+        if ( method.getStatusCode() != 200 )
+        {
+            throw failure( method, "GET " + key );
+        }
+
+        return new S3Response( method );
+    }
+
+    /**
+     * @param ifMatch the ETag the object must still have, or <code>null</code>
+     * @return the bytes <code>first</code> to <code>last</code> of an object
+     * @throws S3ResponseException if the service does not answer with exactly this range, e.g. with a 200 when it
+     *             ignores the range, a 412 when the object changed, or a 416 or 501 when it cannot serve ranges
+     */
+    public InputStream getRange( String key, long first, long last, String ifMatch )
+        throws IOException
+    {
+        GetMethod method = new GetMethod( uri( key ) );
+        method.setRequestHeader( "Range", "bytes=" + first + "-" + last );
+        if ( ifMatch != null )
+        {
+            method.setRequestHeader( "If-Match", ifMatch );
+        }
+        execute( method, key, null, null, null );
+
+        String what = "GET " + key + " bytes " + first + "-" + last;
+        if ( method.getStatusCode() == 200 )
+        {
+            // the whole object is coming: do not read it
+            method.abort();
+            method.releaseConnection();
+            throw new S3ResponseException( 200, what + " (range ignored)", null );
+        }
+        if ( method.getStatusCode() != 206 )
+        {
+            throw failure( method, what );
+        }
+
+        Header contentRange = method.getResponseHeader( "Content-Range" );
+        long[] range = contentRange == null ? null : parseContentRange( contentRange.getValue() );
+        if ( range == null || range[0] != first || range[1] != last )
+        {
+            method.abort();
+            method.releaseConnection();
+            throw new IOException( "Invalid Content-Range for " + what + ": "
+                + ( contentRange == null ? null : contentRange.getValue() ) );
+        }
+
+        return new S3Response( method ).getInputStream();
+    }
+
+    /**
+     * @param partSize the size of the parts, kept with the object so that a download can check the parts against its
+     *            ETag
+     * @return the id of the new upload
+     */
+    public String initiateMultipartUpload( String key, String contentType, int partSize )
+        throws IOException
+    {
+        PostMethod method = new PostMethod( uri( key ) );
+        method.setRequestHeader( PART_SIZE_HEADER, String.valueOf( partSize ) );
+        try
+        {
+            execute( method, key, "uploads", null, contentType );
+
+            String body = method.getResponseBodyAsString();
+            if ( method.getStatusCode() != 200 )
+            {
+                throw new S3ResponseException( method.getStatusCode(), "POST " + key + "?uploads", body );
+            }
+
+            String uploadId = element( body, "UploadId" );
+            if ( uploadId == null )
+            {
+                throw new IOException( "No upload id in the answer to POST " + key + "?uploads: " + body );
+            }
+            return uploadId;
+        }
+        finally
+        {
+            method.releaseConnection();
+        }
+    }
+
+    /**
+     * Uploads a part, with its MD5 so that the service rejects a part that was corrupted on the way.
+     *
+     * @param partNumber the number of the part, from 1
+     * @return the ETag the service gives the part
+     */
+    public String uploadPart( String key, String uploadId, int partNumber, final byte[] data, final int length,
+                              byte[] md5 )
+        throws IOException
+    {
+        PutMethod method = new PutMethod( uri( key ) );
+        method.setRequestEntity( new RequestEntity()
+        {
+            public boolean isRepeatable()
+            {
+                return true;
+            }
+
+            public void writeRequest( OutputStream out )
+                throws IOException
+            {
+                out.write( data, 0, length );
+            }
+
+            public long getContentLength()
+            {
+                return length;
+            }
+
+            public String getContentType()
+            {
+                return null;
+            }
+        } );
+
+        String what = "PUT " + key + " part " + partNumber;
+        try
+        {
+            execute( method, key, "partNumber=" + partNumber + "&uploadId=" + uploadId,
+                     new String( Base64.encodeBase64( md5 ), "US-ASCII" ), null );
+
+            if ( method.getStatusCode() != 200 )
+            {
+                throw new S3ResponseException( method.getStatusCode(), what, method.getResponseBodyAsString() );
+            }
+
+            Header etag = method.getResponseHeader( "ETag" );
+            if ( etag == null )
+            {
+                throw new IOException( "No ETag in the answer to " + what );
+            }
+            return etag.getValue();
+        }
+        finally
+        {
+            method.releaseConnection();
+        }
+    }
+
+    /**
+     * @param etags the ETags of the parts, in order
+     * @return the ETag of the assembled object
+     */
+    public String completeMultipartUpload( String key, String uploadId, String[] etags )
+        throws IOException
+    {
+        StringBuffer xml = new StringBuffer( "<CompleteMultipartUpload>" );
+        for ( int i = 0; i < etags.length; i++ )
+        {
+            xml.append( "<Part><PartNumber>" ).append( i + 1 ).append( "</PartNumber><ETag>" );
+            xml.append( escape( etags[i] ) ).append( "</ETag></Part>" );
+        }
+        xml.append( "</CompleteMultipartUpload>" );
+        final byte[] content = xml.toString().getBytes( "UTF-8" );
+
+        PostMethod method = new PostMethod( uri( key ) );
+        method.setRequestEntity( new RequestEntity()
+        {
+            public boolean isRepeatable()
+            {
+                return true;
+            }
+
+            public void writeRequest( OutputStream out )
+                throws IOException
+            {
+                out.write( content );
+            }
+
+            public long getContentLength()
+            {
+                return content.length;
+            }
+
+            public String getContentType()
+            {
+                return null;
+            }
+        } );
+
+        String what = "POST " + key + "?uploadId=" + uploadId;
+        try
+        {
+            execute( method, key, "uploadId=" + uploadId, null, "application/xml" );
+
+            // the service may report a failure in the body of a 200
+            String body = method.getResponseBodyAsString();
+            String etag = element( body, "ETag" );
+            if ( method.getStatusCode() != 200 || etag == null )
+            {
+                throw new S3ResponseException( method.getStatusCode(), what, body );
+            }
+            return unescape( etag );
+        }
+        finally
+        {
+            method.releaseConnection();
+        }
+    }
+
+    public void abortMultipartUpload( String key, String uploadId )
+        throws IOException
+    {
+        DeleteMethod method = new DeleteMethod( uri( key ) );
+        try
+        {
+            execute( method, key, "uploadId=" + uploadId, null, null );
+
+            if ( method.getStatusCode() != 204 && method.getStatusCode() != 200 )
+            {
+                throw new S3ResponseException( method.getStatusCode(), "DELETE " + key + "?uploadId=" + uploadId,
+                                               method.getResponseBodyAsString() );
+            }
+        }
+        finally
+        {
+            method.releaseConnection();
+        }
+    }
+
+    private String path( String key )
+        throws IOException
+    {
+        return "/" + bucket + "/" + URIUtil.encodePath( key, "UTF-8" );
+    }
+
+    private String uri( String key )
+        throws IOException
+    {
+        return endpoint + path( key );
+    }
+
+    /**
+     * Signs and sends a request.
+     *
+     * @param subresource the query string, e.g. <code>uploads</code>, which is part of what is signed
+     */
+    private void execute( HttpMethodBase method, String key, String subresource, String contentMd5,
+                          String contentType )
+        throws IOException
+    {
+        String path = path( key );
+        String date = httpDate( new Date() );
+
+        if ( subresource != null )
+        {
+            method.setQueryString( URIUtil.encodeQuery( subresource, "UTF-8" ) );
+        }
+        method.setRequestHeader( "Date", date );
+        if ( contentMd5 != null )
+        {
+            method.setRequestHeader( "Content-MD5", contentMd5 );
+        }
+        if ( contentType != null )
+        {
+            method.setRequestHeader( "Content-Type", contentType );
+        }
+
+        StringBuffer amzHeaders = new StringBuffer();
+        Header[] headers = method.getRequestHeaders();
+        Arrays.sort( headers, new Comparator()
+        {
+            public int compare( Object o1, Object o2 )
+            {
+                return ( (Header) o1 ).getName().toLowerCase( Locale.ENGLISH )
+                    .compareTo( ( (Header) o2 ).getName().toLowerCase( Locale.ENGLISH ) );
+            }
+        } );
+        for ( int i = 0; i < headers.length; i++ )
+        {
+            String name = headers[i].getName().toLowerCase( Locale.ENGLISH );
+            if ( name.startsWith( "x-amz-" ) )
+            {
+                amzHeaders.append( name ).append( ':' ).append( headers[i].getValue().trim() ).append( '\n' );
+            }
+        }
+
+        String stringToSign = method.getName() + "\n" + ( contentMd5 == null ? "" : contentMd5 ) + "\n"
+            + ( contentType == null ? "" : contentType ) + "\n" + date + "\n" + amzHeaders + path
+            + ( subresource == null ? "" : "?" + subresource );
+        method.setRequestHeader( "Authorization", "AWS " + accessKey + ":" + sign( secretKey, stringToSign ) );
+
+        try
+        {
+            client.executeMethod( method );
+        }
+        catch ( IOException e )
+        {
+            method.releaseConnection();
+            throw e;
+        }
+    }
+
+    private static S3ResponseException failure( HttpMethod method, String what )
+    {
+        String body;
+        try
+        {
+            body = method.getResponseBodyAsString();
+        }
+        catch ( IOException e )
+        {
+            body = null;
+        }
+        finally
+        {
+            method.releaseConnection();
+        }
+
+        return new S3ResponseException( method.getStatusCode(), what, body );
+    }
+
+    static String sign( String secretKey, String stringToSign )
+    {
+        try
+        {
+            Mac mac = Mac.getInstance( "HmacSHA1" );
+            mac.init( new SecretKeySpec( secretKey.getBytes( "UTF-8" ), "HmacSHA1" ) );
+
+            return new String( Base64.encodeBase64( mac.doFinal( stringToSign.getBytes( "UTF-8" ) ) ), "US-ASCII" );
+        }
+        catch ( GeneralSecurityException e )
+        {
+            throw new IllegalStateException( "HmacSHA1 is not available: " + e.getMessage() );
+        }
+        catch ( UnsupportedEncodingException e )
+        {
+            throw new IllegalStateException( e.getMessage() );
+        }
+    }
+
+    static String httpDate( Date date )
+    {
+        SimpleDateFormat format = new SimpleDateFormat( "EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US );
+        format.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+        return format.format( date );
+    }
+
+    /**
+     * @return the text of the first element of this name in an XML document, or <code>null</code>
+     */
+    static String element( String xml, String name )
+    {
+        if ( xml == null )
+        {
+            return null;
+        }
+
+        int start = xml.indexOf( "<" + name + ">" );
+        int end = start < 0 ? -1 : xml.indexOf( "</" + name + ">", start );
+
+        return end < 0 ? null : xml.substring( start + name.length() + 2, end );
+    }
+
+    private static String escape( String text )
+    {
+        StringBuffer escaped = new StringBuffer( text.length() + 16 );
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            char c = text.charAt( i );
+            switch ( c )
+            {
+                case '"':
+                    escaped.append( "&quot;" );
+                    break;
+                case '&':
+                    escaped.append( "&amp;" );
+                    break;
+                case '<':
+                    escaped.append( "&lt;" );
+                    break;
+                case '>':
+                    escaped.append( "&gt;" );
+                    break;
+                default:
+                    escaped.append( c );
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String unescape( String text )
+    {
+        return text.replaceAll( "&quot;", "\"" ).replaceAll( "&lt;", "<" ).replaceAll( "&gt;", ">" )
+            .replaceAll( "&amp;", "&" );
+    }
+
+    /**
+     * @return the first byte, the last byte and the length of the whole object given by a <code>Content-Range</code>
+     *         header, e.g. <code>bytes 0-8388607/20971520</code>, the length being <code>-1</code> if it is not known,
+     *         or <code>null</code> if the header is not a byte range
+     */
+    static long[] parseContentRange( String contentRange )
+    {
+        int dash = contentRange.indexOf( '-' );
+        int slash = contentRange.lastIndexOf( '/' );
+        if ( !contentRange.startsWith( "bytes " ) || dash < 0 || slash < dash )
+        {
+            return null;
+        }
+
+        try
+        {
+            long first = Long.parseLong( contentRange.substring( "bytes ".length(), dash ).trim() );
+            long last = Long.parseLong( contentRange.substring( dash + 1, slash ).trim() );
+            String length = contentRange.substring( slash + 1 ).trim();
+
+            // "*": unknown length
+            return new long[]{ first, last, "*".equals( length ) ? -1 : Long.parseLong( length ) };
+        }
+        catch ( NumberFormatException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return the MD5 an ETag holds, or <code>null</code> if it is not a plain MD5 (e.g. for a multipart object)
+     */
+    static String toMd5( String etag )
+    {
+        String md5 = unquote( etag );
+
+        return md5 != null && md5.matches( "[0-9a-fA-F]{32}" ) ? md5 : null;
+    }
+
+    /**
+     * @return the ETag without its quotes
+     */
+    static String unquote( String etag )
+    {
+        if ( etag == null )
+        {
+            return null;
+        }
+
+        return etag.length() > 1 && etag.startsWith( "\"" ) && etag.endsWith( "\"" )
+            ? etag.substring( 1, etag.length() - 1 ) : etag;
+    }
+
+    /**
+     * The answer to a plain GET, whose body has not been read yet.
+     */
+    public static class S3Response
+    {
+        private final HttpMethod method;
+
+        private final InputStream inputStream;
+
+        S3Response( final HttpMethod method )
+            throws IOException
+        {
+            this.method = method;
+
+            InputStream body = method.getResponseBodyAsStream();
+            if ( body == null )
+            {
+                method.releaseConnection();
+                throw new IOException( "No body in the answer to " + method.getPath() );
+            }
+
+            inputStream = new FilterInputStream( body )
+            {
+                private boolean eof;
+
+                private boolean closed;
+
+                public int read()
+                    throws IOException
+                {
+                    int b = super.read();
+                    eof = b < 0;
+                    return b;
+                }
+
+                public int read( byte[] b, int off, int len )
+                    throws IOException
+                {
+                    int n = super.read( b, off, len );
+                    eof = n < 0;
+                    return n;
+                }
+
+                public void close()
+                {
+                    if ( !closed )
+                    {
+                        closed = true;
+                        if ( !eof )
+                        {
+                            // drop the connection rather than read the rest of the object
+                            method.abort();
+                        }
+                        method.releaseConnection();
+                    }
+                }
+            };
+        }
+
+        /**
+         * @return the length of the object, or <code>-1</code> if the service did not give it
+         */
+        public long getContentLength()
+        {
+            Header header = method.getResponseHeader( "Content-Length" );
+            try
+            {
+                return header == null ? -1 : Long.parseLong( header.getValue().trim() );
+            }
+            catch ( NumberFormatException e )
+            {
+                return -1;
+            }
+        }
+
+        public String getETag()
+        {
+            Header header = method.getResponseHeader( "ETag" );
+            return header == null ? null : header.getValue();
+        }
+
+        /**
+         * @return the size of the parts the object was uploaded in, or <code>-1</code> if it is not known
+         */
+        public long getPartSize()
+        {
+            Header header = method.getResponseHeader( PART_SIZE_HEADER );
+            try
+            {
+                return header == null ? -1 : Long.parseLong( header.getValue().trim() );
+            }
+            catch ( NumberFormatException e )
+            {
+                return -1;
+            }
+        }
+
+        public InputStream getInputStream()
+        {
+            return inputStream;
+        }
+    }
+
+    /**
+     * A request the service answered with an unexpected status.
+     */
+    public static class S3ResponseException
+        extends IOException
+    {
+        private final int status;
+
+        public S3ResponseException( int status, String request, String body )
+        {
+            super( request + " failed: " + status
+                + ( element( body, "Code" ) == null ? "" : " " + element( body, "Code" ) ) );
+
+            this.status = status;
+        }
+
+        public int getStatus()
+        {
+            return status;
+        }
+
+        /**
+         * @return whether the service cannot serve byte ranges, so that the object has to be fetched whole: it
+         *         answered a range request with a 416 or a 501, or with a 200 and the whole object
+         */
+        public boolean isRangeUnsupported()
+        {
+            return status == 200 || status == 416 || status == 501;
+        }
+    }
+}
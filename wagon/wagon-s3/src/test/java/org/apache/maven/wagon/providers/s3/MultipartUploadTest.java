@@ -0,0 +1,212 @@
+package org.apache.maven.wagon.providers.s3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Test the multipart upload against an in-memory target, and the parsing of the S3 answers it relies on.
+ */
+public class MultipartUploadTest
+    extends TestCase
+{
+    private File source;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        source = File.createTempFile( "multipart-upload", ".bin" );
+        source.deleteOnExit();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        source.delete();
+
+        super.tearDown();
+    }
+
+    public void testUploadSendsEveryPartWithItsMd5()
+        throws Exception
+    {
+        byte[] content = write( 200 * 1024 );
+
+        final byte[] uploaded = new byte[content.length];
+        MultipartUpload upload = new MultipartUpload( new MultipartUpload.PartTarget()
+        {
+            public String putPart( int partNumber, byte[] data, int length, byte[] md5 )
+            {
+                System.arraycopy( data, 0, uploaded, ( partNumber - 1 ) * 64 * 1024, length );
+
+                MessageDigest digest = RangedDownload.newMd5();
+                digest.update( data, 0, length );
+                assertEquals( RangedDownload.toHex( digest.digest() ), RangedDownload.toHex( md5 ) );
+
+                return "\"" + RangedDownload.toHex( md5 ) + "\"";
+            }
+        }, 64 * 1024, 3 );
+
+        String[] etags = upload.upload( source );
+
+        assertEquals( 4, etags.length );
+        assertTrue( Arrays.equals( content, uploaded ) );
+        assertTrue( upload.getETag(), upload.getETag().endsWith( "-4" ) );
+    }
+
+    public void testPartStoredWithAnotherChecksumFails()
+        throws Exception
+    {
+        write( 200 * 1024 );
+
+        MultipartUpload upload = new MultipartUpload( new MultipartUpload.PartTarget()
+        {
+            public String putPart( int partNumber, byte[] data, int length, byte[] md5 )
+            {
+                return partNumber == 3 ? "\"00000000000000000000000000000000\"" : RangedDownload.toHex( md5 );
+            }
+        }, 64 * 1024, 2 );
+
+        try
+        {
+            upload.upload( source );
+            fail( "A part stored with another checksum should fail the upload" );
+        }
+        catch ( IOException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().startsWith( "Checksum mismatch for part 3" ) );
+        }
+    }
+
+    public void testInterruptStopsWorkers()
+        throws Exception
+    {
+        write( 256 * 1024 );
+
+        final List workers = Collections.synchronizedList( new ArrayList() );
+        final MultipartUpload upload = new MultipartUpload( new MultipartUpload.PartTarget()
+        {
+            public String putPart( int partNumber, byte[] data, int length, byte[] md5 )
+                throws IOException
+            {
+                workers.add( Thread.currentThread() );
+                try
+                {
+                    // a part which is never stored
+                    Thread.sleep( 60 * 1000 );
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new InterruptedIOException( "cancelled" );
+                }
+                return RangedDownload.toHex( md5 );
+            }
+        }, 64 * 1024, 4 );
+
+        final Object[] result = new Object[2];
+        Thread caller = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    upload.upload( source );
+                }
+                catch ( IOException e )
+                {
+                    result[0] = e;
+                }
+                result[1] = Boolean.valueOf( Thread.currentThread().isInterrupted() );
+            }
+        };
+        caller.start();
+
+        while ( workers.size() < 4 )
+        {
+            Thread.sleep( 10 );
+        }
+        caller.interrupt();
+        caller.join( 10 * 1000 );
+
+        assertFalse( caller.isAlive() );
+        assertTrue( String.valueOf( result[0] ), result[0] instanceof InterruptedIOException );
+        assertEquals( Boolean.TRUE, result[1] );
+
+        for ( Iterator it = workers.iterator(); it.hasNext(); )
+        {
+            Thread worker = (Thread) it.next();
+            worker.join( 10 * 1000 );
+            assertFalse( worker.getName(), worker.isAlive() );
+        }
+    }
+
+    public void testParseContentRange()
+    {
+        long[] range = S3RestClient.parseContentRange( "bytes 8388608-16777215/20971520" );
+        assertEquals( 8388608, range[0] );
+        assertEquals( 16777215, range[1] );
+        assertEquals( 20971520, range[2] );
+
+        assertEquals( -1, S3RestClient.parseContentRange( "bytes 0-8388607/*" )[2] );
+        assertNull( S3RestClient.parseContentRange( "0-8388607/20971520" ) );
+        assertNull( S3RestClient.parseContentRange( "bytes */20971520" ) );
+    }
+
+    public void testEtagToMd5()
+    {
+        assertEquals( "0123456789abcdef0123456789abcdef",
+                      S3RestClient.toMd5( "\"0123456789abcdef0123456789abcdef\"" ) );
+        assertEquals( "0123456789abcdef0123456789abcdef", S3RestClient.toMd5( "0123456789abcdef0123456789abcdef" ) );
+        assertNull( S3RestClient.toMd5( "\"0123456789abcdef0123456789abcdef-3\"" ) );
+        assertNull( S3RestClient.toMd5( null ) );
+    }
+
+    private byte[] write( int length )
+        throws IOException
+    {
+        byte[] content = new byte[length];
+        new Random( length ).nextBytes( content );
+
+        RandomAccessFile raf = new RandomAccessFile( source, "rw" );
+        try
+        {
+            raf.write( content );
+        }
+        finally
+        {
+            raf.close();
+        }
+        return content;
+    }
+}
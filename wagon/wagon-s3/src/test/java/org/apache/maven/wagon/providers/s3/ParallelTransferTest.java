@@ -0,0 +1,296 @@
+package org.apache.maven.wagon.providers.s3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.wagon.ResourceDoesNotExistException;
+import org.apache.maven.wagon.TransferFailedException;
+import org.apache.maven.wagon.authorization.AuthorizationException;
+
+/**
+ * Test the transfers in parts of the S3 wagon against a local stand-in for S3.
+ */
+public class ParallelTransferTest
+    extends TestCase
+{
+    private static final int PART_SIZE = 64 * 1024;
+
+    private S3StandIn s3;
+
+    private S3RestClient client;
+
+    private AbstractS3Wagon wagon;
+
+    private File file;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        s3 = new S3StandIn( "bucket", "access", "secret" );
+        client = new S3RestClient( s3.getEndpoint(), "bucket", "access", "secret", 4 );
+
+        wagon = new S3RESTWagon();
+        wagon.setPartSize( PART_SIZE );
+        wagon.setParallelism( 4 );
+        wagon.setParallelThreshold( 2 * PART_SIZE );
+        wagon.setRestClient( client );
+
+        file = File.createTempFile( "parallel-transfer", ".bin" );
+        file.deleteOnExit();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        client.close();
+        s3.stop();
+        file.delete();
+
+        super.tearDown();
+    }
+
+    public void testSmallObjectTakesOnePlainGet()
+        throws Exception
+    {
+        byte[] content = content( 2 * PART_SIZE );
+        s3.putObject( "small.jar", content );
+
+        wagon.get( "small.jar", file );
+
+        assertTrue( Arrays.equals( content, read( file ) ) );
+        assertEquals( Collections.singletonList( "GET /bucket/small.jar" ), s3.getRequests() );
+    }
+
+    public void testLargeObjectIsFetchedInParts()
+        throws Exception
+    {
+        byte[] content = content( 4 * PART_SIZE + 7 );
+        s3.putObject( "large.zip", content );
+        String etag = s3.getETag( "large.zip" );
+
+        wagon.get( "large.zip", file );
+
+        assertTrue( Arrays.equals( content, read( file ) ) );
+
+        // the first part comes from the plain GET, which gives the length of the object
+        List expected = new ArrayList();
+        expected.add( "GET /bucket/large.zip" );
+        for ( int part = 1; part < 5; part++ )
+        {
+            long first = part * PART_SIZE;
+            long last = Math.min( first + PART_SIZE, content.length ) - 1;
+            expected.add( "GET /bucket/large.zip Range: bytes=" + first + "-" + last + " If-Match: " + etag );
+        }
+        List requests = s3.getRequests();
+        Collections.sort( expected );
+        Collections.sort( requests );
+        assertEquals( expected, requests );
+    }
+
+    public void testObjectOfUnknownLengthIsReadWhole()
+        throws Exception
+    {
+        byte[] content = content( 4 * PART_SIZE );
+        s3.putObject( "large.zip", content );
+        s3.setLengthHidden( true );
+
+        wagon.get( "large.zip", file );
+
+        assertTrue( Arrays.equals( content, read( file ) ) );
+        assertEquals( 1, s3.getRequests().size() );
+    }
+
+    public void testObjectChangedDuringTheDownloadFails()
+        throws Exception
+    {
+        s3.putObject( "large.zip", content( 4 * PART_SIZE ) );
+        s3.setReplacement( content( 5 * PART_SIZE ) );
+
+        try
+        {
+            wagon.get( "large.zip", file );
+            fail( "Parts of another version of the object should fail the download" );
+        }
+        catch ( TransferFailedException e )
+        {
+            assertTrue( e.getCause().getMessage(), e.getCause().getMessage().indexOf( "412" ) >= 0 );
+        }
+    }
+
+    public void testRangesUnsupportedFallsBackToASingleGet()
+        throws Exception
+    {
+        byte[] content = content( 4 * PART_SIZE );
+        s3.putObject( "large.zip", content );
+        s3.setRangesUnsupported( true );
+
+        wagon.get( "large.zip", file );
+
+        assertTrue( Arrays.equals( content, read( file ) ) );
+        List requests = s3.getRequests();
+        assertEquals( "GET /bucket/large.zip", requests.get( requests.size() - 1 ) );
+    }
+
+    public void testForbiddenIsNotRetried()
+        throws Exception
+    {
+        s3.putObject( "large.zip", content( 4 * PART_SIZE ) );
+
+        S3RestClient intruder = new S3RestClient( s3.getEndpoint(), "bucket", "access", "guess", 4 );
+        wagon.setRestClient( intruder );
+        try
+        {
+            wagon.get( "large.zip", file );
+            fail( "A request with a wrong signature should be refused" );
+        }
+        catch ( AuthorizationException e )
+        {
+            assertEquals( 1, s3.getRequests().size() );
+        }
+        finally
+        {
+            intruder.close();
+        }
+    }
+
+    public void testMissingObject()
+        throws Exception
+    {
+        try
+        {
+            wagon.get( "missing.jar", file );
+            fail( "A missing object should not be found" );
+        }
+        catch ( ResourceDoesNotExistException e )
+        {
+            assertEquals( 1, s3.getRequests().size() );
+        }
+    }
+
+    public void testMultipartPut()
+        throws Exception
+    {
+        byte[] content = content( 4 * PART_SIZE + 7 );
+        write( file, content );
+
+        wagon.put( file, "large.zip" );
+
+        assertTrue( Arrays.equals( content, s3.getObject( "large.zip" ) ) );
+        assertTrue( s3.getETag( "large.zip" ), s3.getETag( "large.zip" ).endsWith( "-5\"" ) );
+
+        List requests = s3.getRequests();
+        assertEquals( "POST /bucket/large.zip?uploads", requests.get( 0 ) );
+        for ( int part = 1; part <= 5; part++ )
+        {
+            assertTrue( requests.contains( "PUT /bucket/large.zip?partNumber=" + part + "&uploadId=upload-1" ) );
+        }
+        assertEquals( "POST /bucket/large.zip?uploadId=upload-1", requests.get( 6 ) );
+        assertEquals( 7, requests.size() );
+
+        // the parts have the size the download uses, so they are checked against the ETag
+        File copy = File.createTempFile( "parallel-transfer", ".bin" );
+        try
+        {
+            wagon.get( "large.zip", copy );
+            assertTrue( Arrays.equals( content, read( copy ) ) );
+        }
+        finally
+        {
+            copy.delete();
+        }
+    }
+
+    public void testPartWithAnotherChecksumAbortsTheUpload()
+        throws Exception
+    {
+        write( file, content( 4 * PART_SIZE ) );
+        s3.setPartETagsCorrupted( true );
+
+        try
+        {
+            wagon.put( file, "large.zip" );
+            fail( "A part whose ETag is not its MD5 should fail the upload" );
+        }
+        catch ( TransferFailedException e )
+        {
+            assertTrue( e.getCause().getMessage(), e.getCause().getMessage().startsWith( "Checksum mismatch" ) );
+        }
+
+        assertEquals( Collections.singletonList( "upload-1" ), s3.getAborted() );
+        assertNull( s3.getObject( "large.zip" ) );
+    }
+
+    private static byte[] content( int length )
+    {
+        byte[] content = new byte[length];
+        new Random( length ).nextBytes( content );
+        return content;
+    }
+
+    private static void write( File file, byte[] content )
+        throws IOException
+    {
+        OutputStream os = new FileOutputStream( file );
+        try
+        {
+            os.write( content );
+        }
+        finally
+        {
+            os.close();
+        }
+    }
+
+    private static byte[] read( File file )
+        throws IOException
+    {
+        byte[] content = new byte[(int) file.length()];
+        InputStream is = new FileInputStream( file );
+        try
+        {
+            int count = 0;
+            int n;
+            while ( count < content.length && ( n = is.read( content, count, content.length - count ) ) > 0 )
+            {
+                count += n;
+            }
+        }
+        finally
+        {
+            is.close();
+        }
+        return content;
+    }
+}
@@ -0,0 +1,340 @@
+package org.apache.maven.wagon.providers.s3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Test the ranged download against an in-memory stand-in for S3 ranged GETs.
+ */
+public class RangedDownloadTest
+    extends TestCase
+{
+    private File destination;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        destination = File.createTempFile( "ranged-download", ".bin" );
+        destination.deleteOnExit();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        destination.delete();
+
+        super.tearDown();
+    }
+
+    public void testDownloadAssemblesParts()
+        throws Exception
+    {
+        byte[] content = content( 1024 * 1024 + 123 );
+        File expected = write( content );
+
+        RangedDownload download = new RangedDownload( new MemoryRangeSource( content ), content.length, 64 * 1024, 4 );
+        download.setExpectedETag( "\"" + RangedDownload.md5( expected ) + "\"" );
+        download.download( destination );
+
+        assertEquals( content.length, destination.length() );
+        assertEquals( RangedDownload.md5( expected ), RangedDownload.md5( destination ) );
+
+        expected.delete();
+    }
+
+    public void testDownloadSmallerThanPart()
+        throws Exception
+    {
+        byte[] content = content( 1000 );
+
+        new RangedDownload( new MemoryRangeSource( content ), content.length, 64 * 1024, 4 ).download( destination );
+
+        assertEquals( content.length, destination.length() );
+    }
+
+    public void testShortPartFails()
+        throws Exception
+    {
+        final byte[] content = content( 256 * 1024 );
+
+        RangedDownload download = new RangedDownload( new MemoryRangeSource( content )
+        {
+            public InputStream getRange( long first, long last )
+                throws IOException
+            {
+                // drop the last byte of the third part
+                return first == 2 * 64 * 1024 ? super.getRange( first, last - 1 ) : super.getRange( first, last );
+            }
+        }, content.length, 64 * 1024, 4 );
+
+        try
+        {
+            download.download( destination );
+            fail( "A short part should fail the download" );
+        }
+        catch ( IOException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().indexOf( "131072-196607" ) >= 0 );
+        }
+    }
+
+    public void testChecksumMismatchFails()
+        throws Exception
+    {
+        byte[] content = content( 200 * 1024 );
+
+        RangedDownload download = new RangedDownload( new MemoryRangeSource( content ), content.length, 64 * 1024, 2 );
+        download.setExpectedETag( "00000000000000000000000000000000" );
+
+        try
+        {
+            download.download( destination );
+            fail( "A checksum mismatch should fail the download" );
+        }
+        catch ( IOException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().startsWith( "Checksum mismatch" ) );
+        }
+    }
+
+    public void testSourceFailureFails()
+        throws Exception
+    {
+        byte[] content = content( 200 * 1024 );
+
+        RangedDownload download = new RangedDownload( new MemoryRangeSource( content )
+        {
+            public InputStream getRange( long first, long last )
+                throws IOException
+            {
+                throw new IOException( "503 Slow Down" );
+            }
+        }, content.length, 64 * 1024, 2 );
+
+        try
+        {
+            download.download( destination );
+            fail( "A failing range request should fail the download" );
+        }
+        catch ( IOException e )
+        {
+            assertEquals( "503 Slow Down", e.getMessage() );
+        }
+    }
+
+    public void testFirstPartFromOpenStream()
+        throws Exception
+    {
+        byte[] content = content( 300 * 1024 );
+        File expected = write( content );
+
+        final List requested = Collections.synchronizedList( new ArrayList() );
+        RangedDownload download = new RangedDownload( new MemoryRangeSource( content )
+        {
+            public InputStream getRange( long first, long last )
+                throws IOException
+            {
+                requested.add( new Long( first ) );
+                return super.getRange( first, last );
+            }
+        }, content.length, 64 * 1024, 2 );
+
+        // the body of a plain GET, of which only the first part is read
+        final boolean[] closed = new boolean[1];
+        download.setFirstPart( new ByteArrayInputStream( content )
+        {
+            public void close()
+            {
+                closed[0] = true;
+            }
+        } );
+        download.setExpectedETag( RangedDownload.md5( expected ) );
+        download.download( destination );
+
+        assertEquals( 4, requested.size() );
+        assertFalse( requested.contains( new Long( 0 ) ) );
+        assertTrue( closed[0] );
+        assertEquals( RangedDownload.md5( expected ), RangedDownload.md5( destination ) );
+
+        expected.delete();
+    }
+
+    public void testMultipartETagChecksParts()
+        throws Exception
+    {
+        byte[] content = content( 200 * 1024 );
+
+        byte[][] digests = new byte[4][];
+        for ( int i = 0; i < digests.length; i++ )
+        {
+            int first = i * 64 * 1024;
+            MessageDigest digest = RangedDownload.newMd5();
+            digest.update( content, first, Math.min( 64 * 1024, content.length - first ) );
+            digests[i] = digest.digest();
+        }
+        String etag = "\"" + RangedDownload.multipartETag( digests ) + "\"";
+
+        RangedDownload download = new RangedDownload( new MemoryRangeSource( content ), content.length, 64 * 1024, 2 );
+        download.setExpectedETag( etag );
+        download.download( destination );
+
+        // a part corrupted on the way
+        content[100 * 1024]++;
+        download = new RangedDownload( new MemoryRangeSource( content ), content.length, 64 * 1024, 2 );
+        download.setExpectedETag( etag );
+        try
+        {
+            download.download( destination );
+            fail( "A corrupted part should fail the download" );
+        }
+        catch ( IOException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().startsWith( "Checksum mismatch" ) );
+        }
+
+        // uploaded in other parts: not checkable
+        download = new RangedDownload( new MemoryRangeSource( content ), content.length, 64 * 1024, 2 );
+        download.setExpectedETag( "\"" + RangedDownload.toHex( new byte[16] ) + "-2\"" );
+        download.download( destination );
+    }
+
+    public void testInterruptStopsWorkers()
+        throws Exception
+    {
+        byte[] content = content( 256 * 1024 );
+
+        final List workers = Collections.synchronizedList( new ArrayList() );
+        final RangedDownload download = new RangedDownload( new MemoryRangeSource( content )
+        {
+            public InputStream getRange( long first, long last )
+                throws IOException
+            {
+                workers.add( Thread.currentThread() );
+                try
+                {
+                    // a range which never comes
+                    Thread.sleep( 60 * 1000 );
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new InterruptedIOException( "cancelled" );
+                }
+                return super.getRange( first, last );
+            }
+        }, content.length, 64 * 1024, 4 );
+
+        final Object[] result = new Object[2];
+        Thread caller = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    download.download( destination );
+                }
+                catch ( IOException e )
+                {
+                    result[0] = e;
+                }
+                result[1] = Boolean.valueOf( Thread.currentThread().isInterrupted() );
+            }
+        };
+        caller.start();
+
+        while ( workers.size() < 4 )
+        {
+            Thread.sleep( 10 );
+        }
+        caller.interrupt();
+        caller.join( 10 * 1000 );
+
+        assertFalse( caller.isAlive() );
+        assertTrue( String.valueOf( result[0] ), result[0] instanceof InterruptedIOException );
+        assertEquals( Boolean.TRUE, result[1] );
+
+        for ( Iterator it = workers.iterator(); it.hasNext(); )
+        {
+            Thread worker = (Thread) it.next();
+            worker.join( 10 * 1000 );
+            assertFalse( worker.getName(), worker.isAlive() );
+        }
+    }
+
+    private static byte[] content( int length )
+    {
+        byte[] content = new byte[length];
+        new Random( length ).nextBytes( content );
+        return content;
+    }
+
+    private static File write( byte[] content )
+        throws IOException
+    {
+        File file = File.createTempFile( "ranged-download-expected", ".bin" );
+        file.deleteOnExit();
+
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try
+        {
+            raf.write( content );
+        }
+        finally
+        {
+            raf.close();
+        }
+        return file;
+    }
+
+    /**
+     * Serves byte ranges of an in-memory object, as S3 does for a GET with a Range header.
+     */
+    private static class MemoryRangeSource
+        implements RangedDownload.RangeSource
+    {
+        private final byte[] content;
+
+        MemoryRangeSource( byte[] content )
+        {
+            this.content = content;
+        }
+
+        public InputStream getRange( long first, long last )
+            throws IOException
+        {
+            return new ByteArrayInputStream( content, (int) first, (int) ( last - first + 1 ) );
+        }
+    }
+}
@@ -0,0 +1,633 @@
+package org.apache.maven.wagon.providers.s3;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * A local stand-in for the part of the S3 REST interface the wagon uses: GETs of whole objects and of byte ranges,
+ * conditional on an ETag, and multipart uploads. Requests must be signed with the given keys, as S3 requires.
+ */
+public class S3StandIn
+{
+    private final String bucket;
+
+    private final String accessKey;
+
+    private final String secretKey;
+
+    private final ServerSocket serverSocket;
+
+    private final Map objects = Collections.synchronizedMap( new HashMap() );
+
+    private final Map uploads = Collections.synchronizedMap( new HashMap() );
+
+    private final List requests = Collections.synchronizedList( new ArrayList() );
+
+    private final List aborted = Collections.synchronizedList( new ArrayList() );
+
+    private final List sockets = Collections.synchronizedList( new ArrayList() );
+
+    private int uploadCount;
+
+    private boolean rangesUnsupported;
+
+    private boolean lengthHidden;
+
+    private boolean partETagsCorrupted;
+
+    private byte[] replacement;
+
+    public S3StandIn( String bucket, String accessKey, String secretKey )
+        throws IOException
+    {
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+
+        serverSocket = new ServerSocket( 0 );
+
+        Thread acceptor = new Thread( "s3-stand-in" )
+        {
+            public void run()
+            {
+                accept();
+            }
+        };
+        acceptor.setDaemon( true );
+        acceptor.start();
+    }
+
+    public String getEndpoint()
+    {
+        return "http://localhost:" + serverSocket.getLocalPort();
+    }
+
+    public void stop()
+        throws IOException
+    {
+        serverSocket.close();
+
+        synchronized ( sockets )
+        {
+            for ( Iterator it = sockets.iterator(); it.hasNext(); )
+            {
+                ( (Socket) it.next() ).close();
+            }
+        }
+    }
+
+    public void putObject( String key, byte[] content )
+    {
+        objects.put( key, new StoredObject( content, "\"" + RangedDownload.toHex( md5( content ) ) + "\"", null ) );
+    }
+
+    public byte[] getObject( String key )
+    {
+        StoredObject object = (StoredObject) objects.get( key );
+        return object == null ? null : object.content;
+    }
+
+    public String getETag( String key )
+    {
+        StoredObject object = (StoredObject) objects.get( key );
+        return object == null ? null : object.etag;
+    }
+
+    /**
+     * @return the requests received so far, as <code>METHOD /bucket/key?query</code> followed by the
+     *         <code>Range</code> and <code>If-Match</code> headers when there are
+     */
+    public List getRequests()
+    {
+        synchronized ( requests )
+        {
+            return new ArrayList( requests );
+        }
+    }
+
+    /**
+     * @return the ids of the aborted uploads
+     */
+    public List getAborted()
+    {
+        return aborted;
+    }
+
+    /**
+     * Answer range requests with a 501, as a service that cannot serve ranges.
+     */
+    public void setRangesUnsupported( boolean rangesUnsupported )
+    {
+        this.rangesUnsupported = rangesUnsupported;
+    }
+
+    /**
+     * Send whole objects without their length, until the connection is closed.
+     */
+    public void setLengthHidden( boolean lengthHidden )
+    {
+        this.lengthHidden = lengthHidden;
+    }
+
+    /**
+     * Answer uploaded parts with an ETag which is not their MD5.
+     */
+    public void setPartETagsCorrupted( boolean partETagsCorrupted )
+    {
+        this.partETagsCorrupted = partETagsCorrupted;
+    }
+
+    /**
+     * Replace the object with this content once a plain GET of it has been answered, as another upload would.
+     */
+    public void setReplacement( byte[] replacement )
+    {
+        this.replacement = replacement;
+    }
+
+    private void accept()
+    {
+        try
+        {
+            while ( true )
+            {
+                final Socket socket = serverSocket.accept();
+                sockets.add( socket );
+
+                Thread connection = new Thread( "s3-stand-in-connection" )
+                {
+                    public void run()
+                    {
+                        serve( socket );
+                    }
+                };
+                connection.setDaemon( true );
+                connection.start();
+            }
+        }
+        catch ( IOException e )
+        {
+            // stopped
+        }
+    }
+
+    private void serve( Socket socket )
+    {
+        try
+        {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+
+            boolean open = true;
+            while ( open )
+            {
+                String requestLine = readLine( in );
+                if ( requestLine == null || requestLine.length() == 0 )
+                {
+                    break;
+                }
+
+                Request request = new Request( requestLine );
+                String line;
+                while ( ( line = readLine( in ) ) != null && line.length() > 0 )
+                {
+                    int colon = line.indexOf( ':' );
+                    request.headers.put( line.substring( 0, colon ).trim().toLowerCase(),
+                                         line.substring( colon + 1 ).trim() );
+                }
+
+                String contentLength = request.header( "content-length" );
+                request.body = new byte[contentLength == null ? 0 : Integer.parseInt( contentLength )];
+                int count = 0;
+                int n;
+                while ( count < request.body.length
+                    && ( n = in.read( request.body, count, request.body.length - count ) ) > 0 )
+                {
+                    count += n;
+                }
+
+                requests.add( request.toString() );
+
+                open = handle( request, out );
+                out.flush();
+            }
+        }
+        catch ( IOException e )
+        {
+            // the client dropped the connection
+        }
+        finally
+        {
+            try
+            {
+                socket.close();
+            }
+            catch ( IOException e )
+            {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * @return whether the connection stays open
+     */
+    private boolean handle( Request request, OutputStream out )
+        throws IOException
+    {
+        if ( !request.path.startsWith( "/" + bucket + "/" ) )
+        {
+            return error( out, 404, "NoSuchBucket" );
+        }
+        if ( !isSigned( request ) )
+        {
+            return error( out, 403, "SignatureDoesNotMatch" );
+        }
+
+        String key = request.path.substring( bucket.length() + 2 );
+        Map query = request.query();
+
+        if ( "GET".equals( request.method ) && query.isEmpty() )
+        {
+            return get( key, request, out );
+        }
+        if ( "POST".equals( request.method ) && query.containsKey( "uploads" ) )
+        {
+            String uploadId;
+            synchronized ( this )
+            {
+                uploadId = "upload-" + ( ++uploadCount );
+            }
+            uploads.put( uploadId, new Upload( key, request.header( S3RestClient.PART_SIZE_HEADER ) ) );
+
+            return respond( out, 200, new String[0], xml( "InitiateMultipartUploadResult", "<UploadId>" + uploadId
+                + "</UploadId>" ) );
+        }
+
+        Upload upload = (Upload) uploads.get( query.get( "uploadId" ) );
+        if ( upload == null || !upload.key.equals( key ) )
+        {
+            return error( out, 404, "NoSuchUpload" );
+        }
+
+        if ( "PUT".equals( request.method ) && query.containsKey( "partNumber" ) )
+        {
+            byte[] md5 = md5( request.body );
+            if ( !new String( Base64.encodeBase64( md5 ), "US-ASCII" ).equals( request.header( "content-md5" ) ) )
+            {
+                return error( out, 400, "BadDigest" );
+            }
+
+            upload.parts.put( Integer.valueOf( (String) query.get( "partNumber" ) ), request.body );
+
+            String etag = "\"" + RangedDownload.toHex( partETagsCorrupted ? new byte[16] : md5 ) + "\"";
+            return respond( out, 200, new String[] { "ETag", etag }, new byte[0] );
+        }
+        if ( "POST".equals( request.method ) )
+        {
+            return complete( key, upload, (String) query.get( "uploadId" ), new String( request.body, "UTF-8" ), out );
+        }
+        if ( "DELETE".equals( request.method ) )
+        {
+            uploads.remove( query.get( "uploadId" ) );
+            aborted.add( query.get( "uploadId" ) );
+
+            return respond( out, 204, new String[0], new byte[0] );
+        }
+
+        return error( out, 501, "NotImplemented" );
+    }
+
+    private boolean get( String key, Request request, OutputStream out )
+        throws IOException
+    {
+        StoredObject object = (StoredObject) objects.get( key );
+        if ( object == null )
+        {
+            return error( out, 404, "NoSuchKey" );
+        }
+
+        String ifMatch = request.header( "if-match" );
+        if ( ifMatch != null && !ifMatch.equals( object.etag ) )
+        {
+            return error( out, 412, "PreconditionFailed" );
+        }
+
+        String range = request.header( "range" );
+        if ( range != null )
+        {
+            if ( rangesUnsupported )
+            {
+                return error( out, 501, "NotImplemented" );
+            }
+
+            int dash = range.indexOf( '-' );
+            int first = Integer.parseInt( range.substring( "bytes=".length(), dash ) );
+            int last = Math.min( Integer.parseInt( range.substring( dash + 1 ) ), object.content.length - 1 );
+            if ( first >= object.content.length )
+            {
+                return error( out, 416, "InvalidRange" );
+            }
+
+            byte[] body = new byte[last - first + 1];
+            System.arraycopy( object.content, first, body, 0, body.length );
+
+            return respond( out, 206, new String[] { "ETag", object.etag, "Content-Range",
+                "bytes " + first + "-" + last + "/" + object.content.length }, body );
+        }
+
+        if ( replacement != null )
+        {
+            putObject( key, replacement );
+            replacement = null;
+        }
+
+        String[] headers = object.partSize == null ? new String[] { "ETag", object.etag }
+                        : new String[] { "ETag", object.etag, S3RestClient.PART_SIZE_HEADER, object.partSize };
+        if ( lengthHidden )
+        {
+            writeHead( out, 200, headers );
+            out.write( "Connection: close\r\n\r\n".getBytes( "US-ASCII" ) );
+            out.write( object.content );
+            return false;
+        }
+
+        return respond( out, 200, headers, object.content );
+    }
+
+    private boolean complete( String key, Upload upload, String uploadId, String xml, OutputStream out )
+        throws IOException
+    {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        MessageDigest digest = newMd5();
+        int parts = 0;
+        for ( int start = xml.indexOf( "<Part>" ); start >= 0; start = xml.indexOf( "<Part>", start + 1 ) )
+        {
+            parts++;
+            int number = Integer.parseInt( S3RestClient.element( xml.substring( start ), "PartNumber" ) );
+            String etag = S3RestClient.element( xml.substring( start ), "ETag" ).replaceAll( "&quot;", "\"" );
+
+            byte[] part = (byte[]) upload.parts.get( new Integer( number ) );
+            if ( number != parts || part == null
+                || !partETagsCorrupted && !etag.equals( "\"" + RangedDownload.toHex( md5( part ) ) + "\"" ) )
+            {
+                return error( out, 400, "InvalidPart" );
+            }
+
+            content.write( part );
+            digest.update( md5( part ) );
+        }
+
+        String etag = "\"" + RangedDownload.toHex( digest.digest() ) + "-" + parts + "\"";
+        objects.put( key, new StoredObject( content.toByteArray(), etag, upload.partSize ) );
+        uploads.remove( uploadId );
+
+        return respond( out, 200, new String[0], xml( "CompleteMultipartUploadResult", "<ETag>"
+            + etag.replaceAll( "\"", "&quot;" ) + "</ETag>" ) );
+    }
+
+    /**
+     * Checks the <code>Authorization</code> header against the signature of the request.
+     */
+    private boolean isSigned( Request request )
+        throws IOException
+    {
+        StringBuffer stringToSign = new StringBuffer();
+        stringToSign.append( request.method ).append( '\n' );
+        stringToSign.append( nonNull( request.header( "content-md5" ) ) ).append( '\n' );
+        stringToSign.append( nonNull( request.header( "content-type" ) ) ).append( '\n' );
+        stringToSign.append( nonNull( request.header( "date" ) ) ).append( '\n' );
+        for ( Iterator it = new TreeMap( request.headers ).entrySet().iterator(); it.hasNext(); )
+        {
+            Map.Entry header = (Map.Entry) it.next();
+            if ( ( (String) header.getKey() ).startsWith( "x-amz-" ) )
+            {
+                stringToSign.append( header.getKey() ).append( ':' ).append( header.getValue() ).append( '\n' );
+            }
+        }
+        stringToSign.append( request.path );
+        if ( request.queryString != null )
+        {
+            stringToSign.append( '?' ).append( request.queryString );
+        }
+
+        try
+        {
+            Mac mac = Mac.getInstance( "HmacSHA1" );
+            mac.init( new SecretKeySpec( secretKey.getBytes( "UTF-8" ), "HmacSHA1" ) );
+            String signature =
+                new String( Base64.encodeBase64( mac.doFinal( stringToSign.toString().getBytes( "UTF-8" ) ) ),
+                            "US-ASCII" );
+
+            return ( "AWS " + accessKey + ":" + signature ).equals( request.header( "authorization" ) );
+        }
+        catch ( Exception e )
+        {
+            IOException failure = new IOException( e.getMessage() );
+            failure.initCause( e );
+            throw failure;
+        }
+    }
+
+    private static String nonNull( String value )
+    {
+        return value == null ? "" : value;
+    }
+
+    private static byte[] xml( String root, String content )
+        throws IOException
+    {
+        return ( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<" + root + ">" + content + "</" + root + ">" )
+            .getBytes( "UTF-8" );
+    }
+
+    private static boolean error( OutputStream out, int status, String code )
+        throws IOException
+    {
+        return respond( out, status, new String[0], xml( "Error", "<Code>" + code + "</Code>" ) );
+    }
+
+    private static boolean respond( OutputStream out, int status, String[] headers, byte[] body )
+        throws IOException
+    {
+        writeHead( out, status, headers );
+        out.write( ( "Content-Length: " + body.length + "\r\n\r\n" ).getBytes( "US-ASCII" ) );
+        out.write( body );
+        return true;
+    }
+
+    private static void writeHead( OutputStream out, int status, String[] headers )
+        throws IOException
+    {
+        StringBuffer head = new StringBuffer( "HTTP/1.1 " ).append( status ).append( " Stand-in\r\n" );
+        for ( int i = 0; i < headers.length; i += 2 )
+        {
+            head.append( headers[i] ).append( ": " ).append( headers[i + 1] ).append( "\r\n" );
+        }
+        out.write( head.toString().getBytes( "US-ASCII" ) );
+    }
+
+    private static String readLine( InputStream in )
+        throws IOException
+    {
+        StringBuffer line = new StringBuffer();
+        int c;
+        while ( ( c = in.read() ) != '\n' )
+        {
+            if ( c < 0 )
+            {
+                return line.length() == 0 ? null : line.toString();
+            }
+            if ( c != '\r' )
+            {
+                line.append( (char) c );
+            }
+        }
+        return line.toString();
+    }
+
+    private static MessageDigest newMd5()
+    {
+        return RangedDownload.newMd5();
+    }
+
+    private static byte[] md5( byte[] content )
+    {
+        return newMd5().digest( content );
+    }
+
+    private static class StoredObject
+    {
+        private final byte[] content;
+
+        private final String etag;
+
+        private final String partSize;
+
+        StoredObject( byte[] content, String etag, String partSize )
+        {
+            this.content = content;
+            this.etag = etag;
+            this.partSize = partSize;
+        }
+    }
+
+    private static class Upload
+    {
+        private final String key;
+
+        private final String partSize;
+
+        private final Map parts = Collections.synchronizedMap( new HashMap() );
+
+        Upload( String key, String partSize )
+        {
+            this.key = key;
+            this.partSize = partSize;
+        }
+    }
+
+    private static class Request
+    {
+        private final String method;
+
+        private final String path;
+
+        private final String queryString;
+
+        private final Map headers = new HashMap();
+
+        private byte[] body;
+
+        Request( String requestLine )
+        {
+            String[] parts = requestLine.split( " " );
+            method = parts[0];
+
+            String uri = parts[1];
+            if ( uri.startsWith( "http" ) )
+            {
+                uri = uri.substring( uri.indexOf( '/', uri.indexOf( "//" ) + 2 ) );
+            }
+
+            int question = uri.indexOf( '?' );
+            path = question < 0 ? uri : uri.substring( 0, question );
+            queryString = question < 0 ? null : uri.substring( question + 1 );
+        }
+
+        String header( String name )
+        {
+            return (String) headers.get( name );
+        }
+
+        Map query()
+        {
+            Map query = new HashMap();
+            if ( queryString != null )
+            {
+                String[] params = queryString.split( "&" );
+                for ( int i = 0; i < params.length; i++ )
+                {
+                    int equals = params[i].indexOf( '=' );
+                    query.put( equals < 0 ? params[i] : params[i].substring( 0, equals ),
+                               equals < 0 ? "" : params[i].substring( equals + 1 ) );
+                }
+            }
+            return query;
+        }
+
+        public String toString()
+        {
+            StringBuffer buffer = new StringBuffer( method ).append( ' ' ).append( path );
+            if ( queryString != null )
+            {
+                buffer.append( '?' ).append( queryString );
+            }
+            if ( header( "range" ) != null )
+            {
+                buffer.append( " Range: " ).append( header( "range" ) );
+            }
+            if ( header( "if-match" ) != null )
+            {
+                buffer.append( " If-Match: " ).append( header( "if-match" ) );
+            }
+            return buffer.toString();
+        }
+    }
+}
@@ -216,6 +216,9 @@ public abstract class AbstractGanymedWagon
         {
             IOUtil.close( stdoutReader );
             IOUtil.close( stderrReader );
+
+            // release the channel; the connection stays open for the next command.
+            session.close();
         }
     }
 
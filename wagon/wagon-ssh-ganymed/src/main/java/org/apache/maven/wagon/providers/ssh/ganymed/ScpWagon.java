@@ -37,6 +37,14 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * A base class for deployers and fetchers using protocols from SSH2 family and
@@ -57,6 +65,41 @@ import java.io.OutputStream;
 public class ScpWagon
     extends AbstractGanymedWagon
 {
+    /**
+     * Longest mkdir command sent in one go when creating the directories of a whole tree.
+     */
+    private static final int MAX_COMMAND_LENGTH = 32 * 1024;
+
+    /**
+     * Number of SCP channels opened at the same time on the connection by {@link #putDirectory(File, String)}. With
+     * the default of 1, directories are copied as a single archive as before.
+     */
+    private int putThreads = 1;
+
+    /**
+     * Remote directories created (or found) during the current connection, so that each is only created once.
+     */
+    private Set createdDirectories = new HashSet();
+
+    private final Object listenerLock = new Object();
+
+    public int getPutThreads()
+    {
+        return putThreads;
+    }
+
+    public void setPutThreads( int putThreads )
+    {
+        this.putThreads = putThreads;
+    }
+
+    public void closeConnection()
+    {
+        createdDirectories.clear();
+
+        super.closeConnection();
+    }
+
     public void put( File source, String destination )
         throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException
     {
@@ -72,25 +115,14 @@ public class ScpWagon
 
         try
         {
-            String umaskCmd = null;
-            if ( getRepository().getPermissions() != null )
-            {
-                String dirPerms = getRepository().getPermissions().getDirectoryMode();
-
-                if ( dirPerms != null )
-                {
-                    umaskCmd = "umask " + PermissionModeUtils.getUserMaskFor( dirPerms );
-                }
-            }
-
-            String mkdirCmd = "mkdir -p " + getPath( basedir, dir );
+            String remoteDir = getPath( basedir, dir );
 
-            if ( umaskCmd != null )
+            if ( !createdDirectories.contains( remoteDir ) )
             {
-                mkdirCmd = umaskCmd + "; " + mkdirCmd;
-            }
+                executeCommand( getMkdirCommand( getUmaskCommand(), Collections.singletonList( remoteDir ) ) );
 
-            executeCommand( mkdirCmd );
+                createdDirectories.add( remoteDir );
+            }
         }
         catch ( CommandExecutionException e )
         {
@@ -105,21 +137,9 @@ public class ScpWagon
 
         firePutStarted( resource, source );
 
-        // TODO: should we just incorporate this code directly to be able to use the normal putTransfer and tracking?
-        SCPClient client = new SCPClient( connection );
         try
         {
-            int index = path.lastIndexOf( '/' );
-            String octalMode = getOctalMode( permissions );
-            if ( octalMode != null )
-            {
-                client.put( source.getAbsolutePath(), path.substring( index + 1 ), path.substring( 0, index ),
-                            octalMode );
-            }
-            else
-            {
-                client.put( source.getAbsolutePath(), path.substring( index + 1 ), path.substring( 0, index ) );
-            }
+            scpPut( source, path, permissions );
         }
         catch ( IOException e )
         {
@@ -147,6 +167,266 @@ public class ScpWagon
         }
     }
 
+    /**
+     * Sends one file over its own SCP channel of the connection. Called from several threads at once by
+     * {@link #putDirectory(File, String)}.
+     */
+    protected void scpPut( File source, String path, RepositoryPermissions permissions )
+        throws IOException
+    {
+        // TODO: should we just incorporate this code directly to be able to use the normal putTransfer and tracking?
+        SCPClient client = new SCPClient( connection );
+
+        int index = path.lastIndexOf( '/' );
+        String octalMode = getOctalMode( permissions );
+        if ( octalMode != null )
+        {
+            client.put( source.getAbsolutePath(), path.substring( index + 1 ), path.substring( 0, index ), octalMode );
+        }
+        else
+        {
+            client.put( source.getAbsolutePath(), path.substring( index + 1 ), path.substring( 0, index ) );
+        }
+    }
+
+    private String getUmaskCommand()
+    {
+        if ( getRepository().getPermissions() != null )
+        {
+            String dirPerms = getRepository().getPermissions().getDirectoryMode();
+
+            if ( dirPerms != null )
+            {
+                return "umask " + PermissionModeUtils.getUserMaskFor( dirPerms );
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param umaskCmd the umask command to run first, or <code>null</code>
+     * @param directories the remote directories to create
+     * @return a single command creating all the directories
+     */
+    static String getMkdirCommand( String umaskCmd, Collection directories )
+    {
+        StringBuffer mkdirCmd = new StringBuffer();
+
+        if ( umaskCmd != null )
+        {
+            mkdirCmd.append( umaskCmd ).append( "; " );
+        }
+
+        mkdirCmd.append( "mkdir -p" );
+
+        for ( Iterator i = directories.iterator(); i.hasNext(); )
+        {
+            mkdirCmd.append( ' ' ).append( i.next() );
+        }
+
+        return mkdirCmd.toString();
+    }
+
+    /**
+     * Copies the tree file by file when more than one put thread is configured: all the missing directories are
+     * created with a single command, then the files are sent over several SCP channels of the one connection at once.
+     */
+    public void putDirectory( File sourceDirectory, String destinationDirectory )
+        throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException
+    {
+        if ( putThreads <= 1 )
+        {
+            super.putDirectory( sourceDirectory, destinationDirectory );
+            return;
+        }
+
+        if ( !sourceDirectory.isDirectory() )
+        {
+            throw new ResourceDoesNotExistException( "Cannot find source directory: " + sourceDirectory );
+        }
+
+        destinationDirectory = StringUtils.replace( destinationDirectory, "\\", "/" );
+        String remoteBase = getPath( getRepository().getBasedir(), destinationDirectory );
+
+        final List files = new ArrayList();
+        Set directories = new TreeSet();
+        directories.add( remoteBase );
+        collect( sourceDirectory, remoteBase, files, directories );
+
+        directories.removeAll( createdDirectories );
+
+        Resource resource = new Resource( destinationDirectory );
+
+        try
+        {
+            String umaskCmd = getUmaskCommand();
+            List batch = new ArrayList();
+            int length = 0;
+            for ( Iterator i = directories.iterator(); i.hasNext(); )
+            {
+                String directory = (String) i.next();
+                batch.add( directory );
+                length += directory.length() + 1;
+
+                if ( length > MAX_COMMAND_LENGTH || !i.hasNext() )
+                {
+                    executeCommand( getMkdirCommand( umaskCmd, batch ) );
+                    batch.clear();
+                    length = 0;
+                }
+            }
+            createdDirectories.addAll( directories );
+        }
+        catch ( CommandExecutionException e )
+        {
+            fireTransferError( resource, e, TransferEvent.REQUEST_PUT );
+
+            throw new TransferFailedException( "Error performing commands for file transfer", e );
+        }
+
+        final RepositoryPermissions permissions = getRepository().getPermissions();
+        final Exception[] failure = new Exception[1];
+        final int[] next = new int[1];
+
+        Thread[] threads = new Thread[Math.min( putThreads, files.size() )];
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            threads[i] = new Thread( "scp-put-" + i )
+            {
+                public void run()
+                {
+                    while ( true )
+                    {
+                        String[] file;
+                        synchronized ( next )
+                        {
+                            if ( failure[0] != null || next[0] >= files.size() )
+                            {
+                                return;
+                            }
+                            file = (String[]) files.get( next[0]++ );
+                        }
+
+                        File source = new File( file[0] );
+                        Resource fileResource = new Resource( file[1] );
+
+                        try
+                        {
+                            synchronized ( listenerLock )
+                            {
+                                firePutInitiated( fileResource, source );
+                                firePutStarted( fileResource, source );
+                            }
+
+                            scpPut( source, file[1], permissions );
+
+                            // listeners see the events of one file at a time.
+                            synchronized ( listenerLock )
+                            {
+                                postProcessListeners( fileResource, source, TransferEvent.REQUEST_PUT );
+                                firePutCompleted( fileResource, source );
+                            }
+                        }
+                        catch ( Exception e )
+                        {
+                            synchronized ( listenerLock )
+                            {
+                                fireTransferError( fileResource, e, TransferEvent.REQUEST_PUT );
+                            }
+
+                            synchronized ( next )
+                            {
+                                if ( failure[0] == null )
+                                {
+                                    failure[0] = e;
+                                }
+                            }
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        try
+        {
+            for ( int i = 0; i < threads.length; i++ )
+            {
+                threads[i].join();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            // no worker takes another file, and those blocked in a transfer are woken up
+            synchronized ( next )
+            {
+                if ( failure[0] == null )
+                {
+                    failure[0] = e;
+                }
+            }
+            for ( int i = 0; i < threads.length; i++ )
+            {
+                threads[i].interrupt();
+            }
+
+            Thread.currentThread().interrupt();
+
+            throw new TransferFailedException( "Interrupted while copying " + sourceDirectory, e );
+        }
+
+        synchronized ( next )
+        {
+            if ( failure[0] != null )
+            {
+                throw new TransferFailedException( "Error transferring file. Reason: " + failure[0].getMessage(),
+                                                   failure[0] );
+            }
+        }
+
+        try
+        {
+            if ( permissions != null && permissions.getGroup() != null )
+            {
+                executeCommand( "chgrp -Rf " + permissions.getGroup() + " " + remoteBase );
+            }
+        }
+        catch ( CommandExecutionException e )
+        {
+            fireTransferError( resource, e, TransferEvent.REQUEST_PUT );
+
+            throw new TransferFailedException( "Error performing commands for file transfer", e );
+        }
+    }
+
+    /**
+     * Lists the files of a local tree as pairs of local and remote paths, and the remote directories they need.
+     */
+    private static void collect( File directory, String remotePath, List files, Set directories )
+    {
+        File[] children = directory.listFiles();
+        if ( children == null )
+        {
+            return;
+        }
+
+        for ( int i = 0; i < children.length; i++ )
+        {
+            String childPath = remotePath + "/" + children[i].getName();
+
+            if ( children[i].isDirectory() )
+            {
+                directories.add( childPath );
+                collect( children[i], childPath, files, directories );
+            }
+            else
+            {
+                files.add( new String[]{ children[i].getAbsolutePath(), childPath } );
+            }
+        }
+    }
+
     public void get( String resourceName, File destination )
         throws TransferFailedException, ResourceDoesNotExistException, AuthorizationException
     {
@@ -0,0 +1,361 @@
+package org.apache.maven.wagon.providers.ssh.ganymed;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.wagon.CommandExecutionException;
+import org.apache.maven.wagon.Streams;
+import org.apache.maven.wagon.TransferFailedException;
+import org.apache.maven.wagon.repository.Repository;
+import org.apache.maven.wagon.repository.RepositoryPermissions;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Test the commands and transfers of the SCP wagon against a stubbed connection, which need no ssh server.
+ *
+ * @version $Id$
+ */
+public class ScpWagonCommandTest
+    extends TestCase
+{
+    private File source;
+
+    private RecordingScpWagon wagon;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        source = File.createTempFile( "scp-put", "" );
+        source.delete();
+        source.mkdirs();
+
+        wagon = new RecordingScpWagon();
+        wagon.connect( new Repository( "test", "scp://localhost/repo" ) );
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        wagon.disconnect();
+        FileUtils.deleteDirectory( source );
+
+        super.tearDown();
+    }
+
+    public void testMkdirCommand()
+    {
+        assertEquals( "mkdir -p /repo/org/apache",
+                      ScpWagon.getMkdirCommand( null, Collections.singletonList( "/repo/org/apache" ) ) );
+    }
+
+    public void testBatchedMkdirCommandWithUmask()
+    {
+        assertEquals( "umask 0002; mkdir -p /repo/a /repo/a/b /repo/c",
+                      ScpWagon.getMkdirCommand( "umask 0002",
+                                                Arrays.asList( new String[]{ "/repo/a", "/repo/a/b", "/repo/c" } ) ) );
+    }
+
+    public void testPutCreatesEachDirectoryOnce()
+        throws Exception
+    {
+        File file = file( "a.jar" );
+
+        wagon.put( file, "org/apache/a-1.0.jar" );
+        wagon.put( file, "org/apache/a-1.0.pom" );
+        wagon.put( file, "org/codehaus/b-1.0.jar" );
+
+        assertEquals( Arrays.asList( new String[]{ "mkdir -p /repo/org/apache", "mkdir -p /repo/org/codehaus" } ),
+                      wagon.commands );
+        assertEquals( Arrays.asList( new String[]{ "/repo/org/apache/a-1.0.jar", "/repo/org/apache/a-1.0.pom",
+            "/repo/org/codehaus/b-1.0.jar" } ), wagon.sent );
+    }
+
+    public void testDirectoriesAreCreatedAgainOnTheNextConnection()
+        throws Exception
+    {
+        File file = file( "a.jar" );
+
+        wagon.put( file, "org/apache/a-1.0.jar" );
+        wagon.disconnect();
+        wagon.connect( new Repository( "test", "scp://localhost/repo" ) );
+        wagon.put( file, "org/apache/a-1.0.pom" );
+
+        assertEquals( Arrays.asList( new String[]{ "mkdir -p /repo/org/apache", "mkdir -p /repo/org/apache" } ),
+                      wagon.commands );
+    }
+
+    public void testParallelPutDirectoryCreatesTheTreeWithOneCommand()
+        throws Exception
+    {
+        file( "a/a.jar" );
+        file( "a/b/b.jar" );
+        file( "c/c.jar" );
+        file( "c/d/e/e.jar" );
+        file( "f.jar" );
+        file( "g.jar" );
+
+        wagon.setPutThreads( 3 );
+        wagon.putDirectory( source, "site" );
+
+        assertEquals( Collections.singletonList( "mkdir -p /repo/site /repo/site/a /repo/site/a/b /repo/site/c"
+            + " /repo/site/c/d /repo/site/c/d/e" ), wagon.commands );
+
+        List sent = new ArrayList( wagon.sent );
+        Collections.sort( sent );
+        assertEquals( Arrays.asList( new String[]{ "/repo/site/a/a.jar", "/repo/site/a/b/b.jar", "/repo/site/c/c.jar",
+            "/repo/site/c/d/e/e.jar", "/repo/site/f.jar", "/repo/site/g.jar" } ), sent );
+
+        // the directories are known for the rest of the connection
+        wagon.commands.clear();
+        wagon.put( file( "h.jar" ), "site/c/d/h.jar" );
+        wagon.putDirectory( source, "site" );
+
+        assertEquals( Collections.EMPTY_LIST, wagon.commands );
+    }
+
+    public void testParallelPutDirectorySendsFilesAtOnce()
+        throws Exception
+    {
+        for ( int i = 0; i < 9; i++ )
+        {
+            file( "file-" + i + ".jar" );
+        }
+        wagon.concurrency = 3;
+
+        wagon.setPutThreads( 3 );
+        wagon.putDirectory( source, "site" );
+
+        assertEquals( 9, wagon.sent.size() );
+        assertEquals( 3, wagon.maxActive );
+        assertEquals( 3, new HashSet( wagon.threads ).size() );
+    }
+
+    public void testLongMkdirIsSplit()
+        throws Exception
+    {
+        StringBuffer name = new StringBuffer();
+        for ( int i = 0; i < 100; i++ )
+        {
+            name.append( 'x' );
+        }
+
+        Set expected = new HashSet();
+        expected.add( "/repo/site" );
+        for ( int i = 0; i < 400; i++ )
+        {
+            new File( source, name.toString() + i ).mkdir();
+            expected.add( "/repo/site/" + name + i );
+        }
+
+        wagon.setPutThreads( 3 );
+        wagon.putDirectory( source, "site" );
+
+        assertEquals( 2, wagon.commands.size() );
+
+        Set created = new HashSet();
+        for ( Iterator i = wagon.commands.iterator(); i.hasNext(); )
+        {
+            String command = (String) i.next();
+            assertTrue( command.length() < 33 * 1024 );
+
+            StringTokenizer tokens = new StringTokenizer( command.substring( "mkdir -p ".length() ) );
+            while ( tokens.hasMoreTokens() )
+            {
+                created.add( tokens.nextToken() );
+            }
+        }
+        assertEquals( expected, created );
+    }
+
+    public void testFailedFileFailsParallelPutDirectory()
+        throws Exception
+    {
+        for ( int i = 0; i < 6; i++ )
+        {
+            file( "file-" + i + ".jar" );
+        }
+        wagon.failing = "/repo/site/file-3.jar";
+
+        wagon.setPutThreads( 3 );
+        try
+        {
+            wagon.putDirectory( source, "site" );
+            fail( "A file which cannot be sent should fail the copy" );
+        }
+        catch ( TransferFailedException e )
+        {
+            assertTrue( e.getCause() instanceof IOException );
+            assertFalse( wagon.sent.contains( "/repo/site/file-3.jar" ) );
+        }
+    }
+
+    public void testInterruptStopsParallelPutDirectory()
+        throws Exception
+    {
+        for ( int i = 0; i < 6; i++ )
+        {
+            file( "file-" + i + ".jar" );
+        }
+        wagon.blocking = true;
+        wagon.setPutThreads( 3 );
+
+        final Object[] result = new Object[2];
+        Thread caller = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    wagon.putDirectory( source, "site" );
+                }
+                catch ( Exception e )
+                {
+                    result[0] = e;
+                }
+                result[1] = Boolean.valueOf( Thread.currentThread().isInterrupted() );
+            }
+        };
+        caller.start();
+
+        while ( wagon.threads.size() < 3 )
+        {
+            Thread.sleep( 10 );
+        }
+        caller.interrupt();
+        caller.join( 10 * 1000 );
+
+        assertFalse( caller.isAlive() );
+        assertTrue( String.valueOf( result[0] ), result[0] instanceof TransferFailedException );
+        assertEquals( Boolean.TRUE, result[1] );
+
+        for ( Iterator it = wagon.threads.iterator(); it.hasNext(); )
+        {
+            Thread worker = (Thread) it.next();
+            worker.join( 10 * 1000 );
+            assertFalse( worker.getName(), worker.isAlive() );
+        }
+
+        // no worker took another file once the copy was cancelled
+        assertEquals( 3, wagon.threads.size() );
+        assertEquals( Collections.EMPTY_LIST, wagon.sent );
+    }
+
+    private File file( String path )
+        throws IOException
+    {
+        File file = new File( source, path );
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite( file.getAbsolutePath(), path );
+        return file;
+    }
+
+    /**
+     * Records the commands and the files it is given instead of sending them, as ganymed sessions cannot be made
+     * without a server.
+     */
+    private static class RecordingScpWagon
+        extends ScpWagon
+    {
+        private final List commands = Collections.synchronizedList( new ArrayList() );
+
+        private final List sent = Collections.synchronizedList( new ArrayList() );
+
+        private final List threads = Collections.synchronizedList( new ArrayList() );
+
+        private String failing;
+
+        private boolean blocking;
+
+        private int concurrency = 1;
+
+        private int active;
+
+        private int maxActive;
+
+        public void openConnectionInternal()
+        {
+            // no connection to open
+        }
+
+        public Streams executeCommand( String command, boolean ignoreFailures )
+            throws CommandExecutionException
+        {
+            commands.add( command );
+
+            return new Streams();
+        }
+
+        protected void scpPut( File source, String path, RepositoryPermissions permissions )
+            throws IOException
+        {
+            threads.add( Thread.currentThread() );
+
+            if ( path.equals( failing ) )
+            {
+                throw new IOException( "scp: " + path + ": Permission denied" );
+            }
+
+            try
+            {
+                if ( blocking )
+                {
+                    // a transfer which never ends
+                    Thread.sleep( 60 * 1000 );
+                }
+
+                synchronized ( this )
+                {
+                    active++;
+                    maxActive = Math.max( maxActive, active );
+                    notifyAll();
+
+                    // wait for the expected number of transfers to run at once
+                    long end = System.currentTimeMillis() + 10 * 1000;
+                    while ( maxActive < concurrency && System.currentTimeMillis() < end )
+                    {
+                        wait( 100 );
+                    }
+                    active--;
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                throw new InterruptedIOException( "cancelled" );
+            }
+
+            sent.add( path );
+        }
+    }
+}